@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.SQLException;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.StepEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static com.andrewclam.bakingapp.data.TestRecipeProvider.ingredientValues;
+import static com.andrewclam.bakingapp.data.TestRecipeProvider.recipeValues;
+import static com.andrewclam.bakingapp.data.TestRecipeProvider.stepValues;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Instrumentation tests of {@link RecipeContentProvider#applyBatch(ArrayList)}: a batch is
+ * applied in one transaction, all of it or none of it, and each changed uri is notified once
+ * the batch is committed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeContentProviderBatchTest {
+
+    private TestRecipeProvider mTestProvider;
+
+    @Before
+    public void setUp() {
+        mTestProvider = new TestRecipeProvider();
+    }
+
+    @After
+    public void tearDown() {
+        mTestProvider.shutdown();
+    }
+
+    @Test
+    public void applyBatch_recipes_eachUriNotifiedOnceAfterCommit() throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (long recipeId = 1; recipeId <= 3; recipeId++) {
+            addRecipe(operations, recipeId);
+        }
+
+        ContentProviderResult[] results = mTestProvider.getProvider().applyBatch(operations);
+
+        assertEquals(operations.size(), results.length);
+        assertEquals(3, mTestProvider.count(RecipeEntry.CONTENT_URI_RECIPE));
+        assertEquals(6, mTestProvider.count(IngredientEntry.CONTENT_URI_INGREDIENT));
+        assertEquals(9, mTestProvider.count(StepEntry.CONTENT_URI_STEP));
+
+        // 18 rows, 3 notifications: the recipe uri is not notified again for the child rows
+        assertEquals(Arrays.asList(RecipeEntry.CONTENT_URI_RECIPE,
+                IngredientEntry.CONTENT_URI_INGREDIENT, StepEntry.CONTENT_URI_STEP),
+                mTestProvider.getNotifiedUris());
+    }
+
+    @Test
+    public void applyBatch_failedAssertion_nothingAppliedNorNotified() throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        addRecipe(operations, 1);
+        operations.add(ContentProviderOperation.newAssertQuery(RecipeEntry.CONTENT_URI_RECIPE)
+                .withExpectedCount(2)
+                .build());
+
+        try {
+            mTestProvider.getProvider().applyBatch(operations);
+            fail("Applied a batch whose assertion fails");
+        } catch (OperationApplicationException expected) {
+            // The rows written before the assertion are rolled back
+        }
+
+        assertNothingWritten();
+    }
+
+    @Test
+    public void applyBatch_rowNotWritable_throwsSQLExceptionAndRollsBack() throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        addRecipe(operations, 1);
+
+        // An ingredient without a name, the NOT NULL constraint fails its insert
+        ContentValues badIngredient = ingredientValues(1, "nameless");
+        badIngredient.remove(IngredientEntry.COLUMN_INGREDIENT_NAME);
+        operations.add(ContentProviderOperation.newInsert(IngredientEntry.CONTENT_URI_INGREDIENT)
+                .withValues(badIngredient)
+                .build());
+
+        try {
+            mTestProvider.getProvider().applyBatch(operations);
+            fail("Applied a batch with a row that can't be written");
+        } catch (SQLException expected) {
+            // Thrown as it is, the sync service catches it along with the batch exceptions
+        }
+
+        assertNothingWritten();
+    }
+
+    @Test
+    public void applyBatch_afterFailedBatch_notifiesAgain() throws Exception {
+        ArrayList<ContentProviderOperation> failing = new ArrayList<>();
+        addRecipe(failing, 1);
+        failing.add(ContentProviderOperation.newAssertQuery(RecipeEntry.CONTENT_URI_RECIPE)
+                .withExpectedCount(0)
+                .build());
+        try {
+            mTestProvider.getProvider().applyBatch(failing);
+            fail("Applied a batch whose assertion fails");
+        } catch (OperationApplicationException expected) {
+            // The batch state of the thread is cleared on failure
+        }
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        addRecipe(operations, 2);
+        mTestProvider.getProvider().applyBatch(operations);
+
+        assertEquals(1, mTestProvider.count(RecipeEntry.CONTENT_URI_RECIPE));
+        assertEquals(3, mTestProvider.getNotifiedUris().size());
+    }
+
+    @Test
+    public void insert_outsideBatch_notifiesRightAway() {
+        mTestProvider.getProvider().insert(IngredientEntry.CONTENT_URI_INGREDIENT,
+                ingredientValues(1, "salt"));
+
+        // The ingredient change is a change of the recipes too
+        assertEquals(new HashSet<>(Arrays.asList(IngredientEntry.CONTENT_URI_INGREDIENT,
+                RecipeEntry.CONTENT_URI_RECIPE)),
+                new HashSet<Uri>(mTestProvider.getNotifiedUris()));
+    }
+
+    /**
+     * addRecipe() adds the operations inserting a recipe with 2 ingredients and 3 steps
+     */
+    private static void addRecipe(ArrayList<ContentProviderOperation> operations,
+                                  long recipeId) {
+        operations.add(ContentProviderOperation.newInsert(RecipeEntry.CONTENT_URI_RECIPE)
+                .withValues(recipeValues(recipeId, "Recipe " + recipeId))
+                .build());
+        for (String name : new String[]{"flour", "sugar"}) {
+            operations.add(ContentProviderOperation
+                    .newInsert(IngredientEntry.CONTENT_URI_INGREDIENT)
+                    .withValues(ingredientValues(recipeId, name))
+                    .build());
+        }
+        for (long stepNum = 0; stepNum < 3; stepNum++) {
+            operations.add(ContentProviderOperation.newInsert(StepEntry.CONTENT_URI_STEP)
+                    .withValues(stepValues(recipeId, stepNum))
+                    .build());
+        }
+    }
+
+    private void assertNothingWritten() {
+        assertEquals(0, mTestProvider.count(RecipeEntry.CONTENT_URI_RECIPE));
+        assertEquals(0, mTestProvider.count(IngredientEntry.CONTENT_URI_INGREDIENT));
+        assertEquals(0, mTestProvider.count(StepEntry.CONTENT_URI_STEP));
+        assertTrue(mTestProvider.getNotifiedUris().isEmpty());
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.StepEntry;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.RecipeChangeSet;
+import com.andrewclam.bakingapp.services.SyncDbIntentService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.andrewclam.bakingapp.data.TestRecipeProvider.ingredientValues;
+import static com.andrewclam.bakingapp.data.TestRecipeProvider.recipe;
+import static com.andrewclam.bakingapp.data.TestRecipeProvider.stepValues;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation tests of the content hash of the recipes: an ingredient or a step written
+ * through the provider clears the hash of its recipe, so the next sync rewrites the recipe;
+ * a recipe written by a delta gets the hash of its content.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeContentProviderContentHashTest {
+
+    private TestRecipeProvider mTestProvider;
+
+    @Before
+    public void setUp() {
+        mTestProvider = new TestRecipeProvider();
+        mTestProvider.getProvider().syncRecipes(catalog(), true);
+    }
+
+    @After
+    public void tearDown() {
+        mTestProvider.shutdown();
+    }
+
+    @Test
+    public void syncRecipes_unchangedCatalog_storesHashes() {
+        assertTrue(hasContentHash(1));
+        assertTrue(hasContentHash(2));
+        assertEquals(2, mTestProvider.getProvider().syncRecipes(catalog(), true).getUnchanged());
+    }
+
+    @Test
+    public void insertIngredient_clearsHashOfItsRecipe() {
+        mTestProvider.getResolver().insert(IngredientEntry.CONTENT_URI_INGREDIENT,
+                ingredientValues(1, "Salt"));
+
+        assertFalse(hasContentHash(1));
+        assertTrue(hasContentHash(2));
+        assertNextSyncRewritesRecipe1();
+    }
+
+    @Test
+    public void upsertIngredient_clearsHashOfItsRecipe() {
+        // Same uid as a synced ingredient, updated in place
+        ContentValues values = ingredientValues(1, "Ingredient 0");
+        values.put(IngredientEntry.COLUMN_INGREDIENT_QUANTITY, 42);
+        mTestProvider.getResolver().insert(IngredientEntry.CONTENT_URI_INGREDIENT, values);
+
+        assertEquals(9, mTestProvider.count(IngredientEntry.CONTENT_URI_INGREDIENT,
+                IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY + "=1"));
+        assertFalse(hasContentHash(1));
+        assertTrue(hasContentHash(2));
+        assertNextSyncRewritesRecipe1();
+    }
+
+    @Test
+    public void insertStep_clearsHashOfItsRecipe() {
+        mTestProvider.getResolver().insert(StepEntry.CONTENT_URI_STEP, stepValues(1, 7));
+
+        assertFalse(hasContentHash(1));
+        assertTrue(hasContentHash(2));
+        assertNextSyncRewritesRecipe1();
+    }
+
+    @Test
+    public void upsertStep_movedToAnotherRecipe_clearsHashOfBothRecipes() {
+        // The uid of the first step of recipe 1, keyed to recipe 2
+        ContentValues values = stepValues(2, 7);
+        values.put(StepEntry.COLUMN_STEP_UID, RecipeKeys.stepKey(1, 0));
+        mTestProvider.getResolver().insert(StepEntry.CONTENT_URI_STEP, values);
+
+        assertFalse(hasContentHash(1));
+        assertFalse(hasContentHash(2));
+        assertEquals(2, mTestProvider.getProvider().syncRecipes(catalog(), true).getUpdated());
+    }
+
+    @Test
+    public void bulkInsertIngredients_clearsHashOfTheirRecipes() {
+        mTestProvider.getResolver().bulkInsert(IngredientEntry.CONTENT_URI_INGREDIENT,
+                new ContentValues[]{ingredientValues(1, "Salt"), ingredientValues(1, "Pepper")});
+
+        assertFalse(hasContentHash(1));
+        assertTrue(hasContentHash(2));
+        assertNextSyncRewritesRecipe1();
+    }
+
+    @Test
+    public void bulkInsertSteps_clearsHashOfTheirRecipes() {
+        mTestProvider.getResolver().bulkInsert(StepEntry.CONTENT_URI_STEP,
+                new ContentValues[]{stepValues(1, 7), stepValues(1, 8)});
+
+        assertFalse(hasContentHash(1));
+        assertTrue(hasContentHash(2));
+        assertNextSyncRewritesRecipe1();
+    }
+
+    @Test
+    public void applyChangesNow_storesHashOfTheDeltaRecipes() {
+        // Recipe 1 loses an ingredient and a step, recipe 3 is added
+        Recipe changed = recipe(1, 8, 6);
+        Recipe added = recipe(3, 2, 2);
+        RecipeChangeSet delta = RecipeChangeSet.delta(
+                new ArrayList<>(Arrays.asList(changed, added)), new ArrayList<Long>(), "token");
+        SyncDbIntentService.applyChangesNow(mTestProvider.getContext(), delta);
+
+        assertEquals(RecipeContentHash.of(changed), contentHashOf(1));
+        assertEquals(RecipeContentHash.of(added), contentHashOf(3));
+        assertTrue(hasContentHash(2));
+        assertEquals(3, mTestProvider.getProvider()
+                .syncRecipes(Arrays.asList(changed, recipe(2, 9, 7), added), true)
+                .getUnchanged());
+    }
+
+    private void assertNextSyncRewritesRecipe1() {
+        SyncStats stats = mTestProvider.getProvider().syncRecipes(catalog(), true);
+
+        assertEquals(1, stats.getUpdated());
+        assertEquals(1, stats.getUnchanged());
+        assertTrue(hasContentHash(1));
+        assertEquals(9, mTestProvider.count(IngredientEntry.CONTENT_URI_INGREDIENT,
+                IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY + "=1"));
+        assertEquals(7, mTestProvider.count(StepEntry.CONTENT_URI_STEP,
+                StepEntry.COLUMN_STEP_RECIPE_KEY + "=1"));
+    }
+
+    private boolean hasContentHash(long recipeId) {
+        return mTestProvider.count(RecipeEntry.CONTENT_URI_RECIPE,
+                RecipeEntry.COLUMN_RECIPE_UID + "=" + recipeId + " AND "
+                        + RecipeEntry.COLUMN_RECIPE_CONTENT_HASH + " IS NOT NULL") == 1;
+    }
+
+    private long contentHashOf(long recipeId) {
+        Cursor cursor = mTestProvider.getProvider().query(RecipeEntry.CONTENT_URI_RECIPE,
+                new String[]{RecipeEntry.COLUMN_RECIPE_CONTENT_HASH},
+                RecipeEntry.COLUMN_RECIPE_UID + "=" + recipeId, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertFalse(cursor.isNull(0));
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static List<Recipe> catalog() {
+        return Arrays.asList(recipe(1, 9, 7), recipe(2, 9, 7));
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.andrewclam.bakingapp.data.RecipeDbContract.FullRecipeEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.StepEntry;
+import com.andrewclam.bakingapp.models.Recipe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.andrewclam.bakingapp.data.TestRecipeProvider.ingredientValues;
+import static com.andrewclam.bakingapp.data.TestRecipeProvider.recipeValues;
+import static com.andrewclam.bakingapp.data.TestRecipeProvider.stepValues;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation tests of the rows of {@link FullRecipeEntry}: the UNION ALL of the
+ * ingredient rows and the step rows comes back ordered by recipe, then ingredients before
+ * steps, then ingredients in order of insertion and steps in order of their number, however
+ * the rows were written.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeContentProviderFullRecipesTest {
+
+    private TestRecipeProvider mTestProvider;
+
+    @Before
+    public void setUp() {
+        mTestProvider = new TestRecipeProvider();
+
+        // Recipe 2 is stored first, the children are written out of order
+        insert(RecipeEntry.CONTENT_URI_RECIPE, recipeValues(2, "Brownies"));
+        insert(RecipeEntry.CONTENT_URI_RECIPE, recipeValues(1, "Nutella Pie"));
+        insert(StepEntry.CONTENT_URI_STEP, stepValues(1, 2));
+        insert(IngredientEntry.CONTENT_URI_INGREDIENT, ingredientValues(2, "Sugar"));
+        insert(StepEntry.CONTENT_URI_STEP, stepValues(1, 0));
+        insert(IngredientEntry.CONTENT_URI_INGREDIENT, ingredientValues(1, "Flour"));
+        insert(StepEntry.CONTENT_URI_STEP, stepValues(2, 1));
+        insert(IngredientEntry.CONTENT_URI_INGREDIENT, ingredientValues(1, "Butter"));
+        insert(StepEntry.CONTENT_URI_STEP, stepValues(1, 1));
+
+        // Recipe 3 has no children, recipe 4 only has steps
+        insert(RecipeEntry.CONTENT_URI_RECIPE, recipeValues(3, "Yellow Cake"));
+        insert(RecipeEntry.CONTENT_URI_RECIPE, recipeValues(4, "Cheesecake"));
+        insert(StepEntry.CONTENT_URI_STEP, stepValues(4, 1));
+        insert(StepEntry.CONTENT_URI_STEP, stepValues(4, 0));
+    }
+
+    @After
+    public void tearDown() {
+        mTestProvider.shutdown();
+    }
+
+    @Test
+    public void query_fullRecipes_orderedByRecipeThenRowKindThenChildOrder() {
+        assertEquals(Arrays.asList(
+                "2 ingredient Sugar",
+                "2 step 1",
+                "1 ingredient Flour",
+                "1 ingredient Butter",
+                "1 step 0",
+                "1 step 1",
+                "1 step 2",
+                "3 ingredient null",
+                "4 ingredient null",
+                "4 step 0",
+                "4 step 1"
+        ), readRows(FullRecipeEntry.CONTENT_URI_FULL_RECIPE, null, null));
+    }
+
+    @Test
+    public void query_fullRecipeWithId_onlyRowsOfTheRecipe() {
+        assertEquals(Arrays.asList(
+                "1 ingredient Flour",
+                "1 ingredient Butter",
+                "1 step 0",
+                "1 step 1",
+                "1 step 2"
+        ), readRows(RecipeDbContract.buildFullRecipeUriWithId(1), null, null));
+    }
+
+    @Test
+    public void query_fullRecipesWithSelectionArgs_argsBindBothHalves() {
+        assertEquals(Arrays.asList(
+                "2 ingredient Sugar",
+                "2 step 1",
+                "4 ingredient null",
+                "4 step 0",
+                "4 step 1"
+        ), readRows(FullRecipeEntry.CONTENT_URI_FULL_RECIPE,
+                RecipeEntry.TABLE_NAME + "." + RecipeEntry.COLUMN_RECIPE_UID + " IN (?, ?)",
+                new String[]{"2", "4"}));
+    }
+
+    @Test
+    public void hydrate_fullRecipes_childrenInOrder() {
+        Cursor cursor = mTestProvider.getResolver().query(
+                FullRecipeEntry.CONTENT_URI_FULL_RECIPE, null, null, null, null);
+        List<Recipe> recipes;
+        try {
+            assertTrue(FullRecipeHydrator.isFullRecipeCursor(cursor));
+            recipes = FullRecipeHydrator.hydrate(cursor);
+        } finally {
+            cursor.close();
+        }
+
+        assertEquals(4, recipes.size());
+        assertEquals(2, recipes.get(0).getUid());
+        assertEquals("Sugar", recipes.get(0).getIngredients().get(0).getIngredientName());
+        assertEquals(1, recipes.get(0).getSteps().size());
+
+        Recipe recipe = recipes.get(1);
+        assertEquals(1, recipe.getUid());
+        assertEquals("Flour", recipe.getIngredients().get(0).getIngredientName());
+        assertEquals("Butter", recipe.getIngredients().get(1).getIngredientName());
+        assertEquals(3, recipe.getSteps().size());
+        for (int i = 0; i < 3; i++) assertEquals(i, recipe.getSteps().get(i).getStepNum());
+
+        assertTrue(recipes.get(2).getIngredients().isEmpty());
+        assertTrue(recipes.get(2).getSteps().isEmpty());
+        assertTrue(recipes.get(3).getIngredients().isEmpty());
+        assertEquals(2, recipes.get(3).getSteps().size());
+    }
+
+    private void insert(Uri uri, ContentValues values) {
+        mTestProvider.getResolver().insert(uri, values);
+    }
+
+    /**
+     * readRows() reads the rows of a full recipe query as "recipe kind child", the child
+     * being the ingredient name or the step number
+     */
+    private List<String> readRows(Uri uri, String selection, String[] selectionArgs) {
+        Cursor cursor = mTestProvider.getResolver().query(uri, null, selection, selectionArgs,
+                null);
+        try {
+            int recipeUidIndex = cursor.getColumnIndexOrThrow(RecipeEntry.COLUMN_RECIPE_UID);
+            int rowKindIndex = cursor.getColumnIndexOrThrow(FullRecipeEntry.COLUMN_ROW_KIND);
+            int ingredientNameIndex =
+                    cursor.getColumnIndexOrThrow(IngredientEntry.COLUMN_INGREDIENT_NAME);
+            int stepNumIndex = cursor.getColumnIndexOrThrow(StepEntry.COLUMN_STEP_NUM);
+
+            List<String> rows = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                boolean isStep = cursor.getInt(rowKindIndex) == FullRecipeEntry.ROW_KIND_STEP;
+                rows.add(cursor.getLong(recipeUidIndex) + (isStep
+                        ? " step " + cursor.getString(stepNumIndex)
+                        : " ingredient " + cursor.getString(ingredientNameIndex)));
+            }
+            return rows;
+        } finally {
+            cursor.close();
+        }
+    }
+}
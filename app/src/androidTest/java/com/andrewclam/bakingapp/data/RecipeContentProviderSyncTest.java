@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.database.SQLException;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.StepEntry;
+import com.andrewclam.bakingapp.models.Recipe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.andrewclam.bakingapp.data.TestRecipeProvider.recipe;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Instrumentation tests of {@link RecipeContentProvider#syncRecipes(List, boolean)}, a sync
+ * is a single transaction however many rows it writes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeContentProviderSyncTest {
+
+    private TestRecipeProvider mTestProvider;
+
+    @Before
+    public void setUp() {
+        mTestProvider = new TestRecipeProvider();
+    }
+
+    @After
+    public void tearDown() {
+        mTestProvider.shutdown();
+    }
+
+    @Test
+    public void syncRecipes_largeCatalog_writesAllRows() {
+        SyncStats stats = mTestProvider.getProvider().syncRecipes(recipes(100), true);
+
+        assertEquals(100, stats.getInserted());
+        assertEquals(100 * 17, stats.getRowsTouched());
+        assertEquals(100, mTestProvider.count(RecipeEntry.CONTENT_URI_RECIPE));
+        assertEquals(900, mTestProvider.count(IngredientEntry.CONTENT_URI_INGREDIENT));
+        assertEquals(700, mTestProvider.count(StepEntry.CONTENT_URI_STEP));
+    }
+
+    @Test
+    public void syncRecipes_failingRowPastManyRows_nothingWritten() {
+        // Well over a thousand rows are written before the last recipe fails its insert
+        List<Recipe> recipes = recipes(100);
+        recipes.get(99).getSteps().get(6).setDescription(null);
+
+        try {
+            mTestProvider.getProvider().syncRecipes(recipes, true);
+            fail("Synced a step without a description");
+        } catch (SQLException expected) {
+            // NOT NULL constraint of the step description
+        }
+
+        assertEquals(0, mTestProvider.count(RecipeEntry.CONTENT_URI_RECIPE));
+        assertEquals(0, mTestProvider.count(IngredientEntry.CONTENT_URI_INGREDIENT));
+        assertEquals(0, mTestProvider.count(StepEntry.CONTENT_URI_STEP));
+        assertTrue(mTestProvider.getNotifiedUris().isEmpty());
+    }
+
+    @Test
+    public void syncRecipes_failingUpdate_keepsPreviousCatalog() {
+        mTestProvider.getProvider().syncRecipes(recipes(100), true);
+
+        // Every recipe changes, the last one can't be written
+        List<Recipe> recipes = recipes(100);
+        for (Recipe recipe : recipes) recipe.setName(recipe.getName() + " v2");
+        recipes.get(99).setName(null);
+
+        try {
+            mTestProvider.getProvider().syncRecipes(recipes, true);
+            fail("Synced a recipe without a name");
+        } catch (SQLException expected) {
+            // NOT NULL constraint of the recipe name
+        }
+
+        assertEquals(0, mTestProvider.count(RecipeEntry.CONTENT_URI_RECIPE,
+                RecipeEntry.COLUMN_RECIPE_NAME + " LIKE '% v2'"));
+        assertEquals(100, mTestProvider.count(RecipeEntry.CONTENT_URI_RECIPE));
+    }
+
+    private static List<Recipe> recipes(int count) {
+        List<Recipe> recipes = new ArrayList<>();
+        for (long recipeId = 1; recipeId <= count; recipeId++) {
+            recipes.add(recipe(recipeId, 9, 7));
+        }
+        return recipes;
+    }
+}
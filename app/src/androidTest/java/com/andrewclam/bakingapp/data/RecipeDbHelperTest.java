@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation tests of the schema of {@link RecipeDbHelper}: a database upgraded from
+ * version 1 ends up with the same statements as a new one, foreign keys included, and keeps
+ * its rows, and the ingredients and the steps are looked up by the indexes of their recipe key.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeDbHelperTest {
+
+    /* Version 1 schema, as shipped */
+    private static final String[] SQL_V1_CREATE_TABLES = new String[]{
+            "CREATE TABLE recipes (_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "recipe_uid TEXT UNIQUE NOT NULL, recipe_name TEXT NOT NULL, " +
+                    "recipe_servings INTEGER NOT NULL, recipe_image_url TEXT, " +
+                    "UNIQUE (recipe_uid) ON CONFLICT REPLACE )",
+            "CREATE TABLE ingredients (_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "ingredient_uid TEXT UNIQUE NOT NULL, ingredient_name TEXT NOT NULL, " +
+                    "ingredient_measure TEXT NOT NULL, ingredient_quantity REAL NOT NULL, " +
+                    "recipe_id INTEGER NOT NULL, " +
+                    "UNIQUE (ingredient_uid) ON CONFLICT REPLACE " +
+                    "FOREIGN KEY (recipe_id) REFERENCES recipes(recipe_uid) " +
+                    "ON UPDATE NO ACTION ON DELETE SET NULL )",
+            "CREATE TABLE steps (_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "step_uid TEXT UNIQUE NOT NULL, step_num INTEGER NOT NULL, " +
+                    "step_short_description TEXT NOT NULL, step_description TEXT NOT NULL, " +
+                    "step_thumbnail_url TEXT, step_video_url TEXT, " +
+                    "recipe_id INTEGER NOT NULL, " +
+                    "UNIQUE (step_uid) ON CONFLICT REPLACE " +
+                    "FOREIGN KEY (recipe_id) REFERENCES recipes(recipe_uid) " +
+                    "ON UPDATE NO ACTION ON DELETE SET NULL )",
+            "CREATE TABLE favorites (_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "is_favorite INTEGER DEFAULT 0, recipe_id INTEGER NOT NULL, " +
+                    "FOREIGN KEY (recipe_id) REFERENCES recipes(recipe_uid) " +
+                    "ON UPDATE NO ACTION ON DELETE SET NULL )",
+            "CREATE TABLE app_widget_ids (_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "app_widget_uid INTEGER NOT NULL, recipe_id INTEGER NOT NULL, " +
+                    "UNIQUE (app_widget_uid) ON CONFLICT REPLACE " +
+                    "FOREIGN KEY (recipe_id) REFERENCES recipes(recipe_uid) " +
+                    "ON UPDATE NO ACTION ON DELETE SET NULL )"
+    };
+
+    /* Tables of the database, in order of creation */
+    private static final String[] TABLES = new String[]{
+            "recipes", "ingredients", "steps", "favorites", "app_widget_ids"
+    };
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = new RenamingDelegatingContext(
+                InstrumentationRegistry.getTargetContext(), "test.");
+        mContext.deleteDatabase(RecipeDbHelper.DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(RecipeDbHelper.DATABASE_NAME);
+    }
+
+    @Test
+    public void onUpgrade_fromVersion1_sameSchemaAsNewDatabase() {
+        List<String> newSchema = readSchema();
+        mContext.deleteDatabase(RecipeDbHelper.DATABASE_NAME);
+
+        createVersion1Database();
+        assertEquals(newSchema, readSchema());
+    }
+
+    @Test
+    public void onUpgrade_fromVersion1_foreignKeysStillReferenceRecipes() {
+        createVersion1Database();
+
+        List<String> foreignKeys = readForeignKeys();
+        assertEquals(4, foreignKeys.size());
+        for (String foreignKey : foreignKeys) {
+            assertTrue(foreignKey, foreignKey.endsWith("recipe_id -> recipes.recipe_uid"));
+        }
+    }
+
+    @Test
+    public void onUpgrade_fromVersion1_keepsRows() {
+        createVersion1Database();
+
+        RecipeDbHelper dbHelper = new RecipeDbHelper(mContext);
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            assertEquals("integer", stringForQuery(db, "SELECT typeof(recipe_uid) FROM recipes"));
+            assertEquals(String.valueOf(RecipeKeys.stepKey(1, 2)),
+                    stringForQuery(db, "SELECT step_uid FROM steps"));
+            assertEquals(String.valueOf(RecipeKeys.ingredientKey(1, "Flour")),
+                    stringForQuery(db, "SELECT ingredient_uid FROM ingredients"));
+            assertEquals("1", stringForQuery(db, "SELECT COUNT(*) FROM favorites"));
+            assertTrue(stringForQuery(db, "SELECT recipe_content_hash FROM recipes") == null);
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    @Test
+    public void queryPlan_ingredientsOfRecipe_usesRecipeIndex() {
+        assertIndexUsed("SELECT * FROM ingredients WHERE recipe_id = 1",
+                "ingredients_recipe_id");
+    }
+
+    @Test
+    public void queryPlan_stepsOfRecipeInOrder_usesRecipeIndexWithoutSorting() {
+        List<String> plan = assertIndexUsed(
+                "SELECT * FROM steps WHERE recipe_id = 1 ORDER BY step_num",
+                "steps_recipe_id");
+        assertFalse(plan.toString(), plan.toString().contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void queryPlan_fullRecipes_joinsChildrenByRecipeIndex() {
+        String sql = RecipeContentProvider.buildFullRecipesSql(null);
+        assertIndexUsed(sql, "ingredients_recipe_id");
+        assertIndexUsed(sql, "steps_recipe_id");
+    }
+
+    @Test
+    public void queryPlan_upgradedDatabase_usesRecipeIndexes() {
+        createVersion1Database();
+
+        String sql = RecipeContentProvider.buildFullRecipesSql(null);
+        assertIndexUsed(sql, "ingredients_recipe_id");
+        assertIndexUsed(sql, "steps_recipe_id");
+    }
+
+    /**
+     * assertIndexUsed() asserts that the query plan of the statement searches the index
+     *
+     * @return the details of the query plan
+     */
+    private List<String> assertIndexUsed(String sql, String indexName) {
+        RecipeDbHelper dbHelper = new RecipeDbHelper(mContext);
+        try {
+            List<String> plan = new ArrayList<>();
+            Cursor cursor = dbHelper.getReadableDatabase()
+                    .rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+            try {
+                int detailIndex = cursor.getColumnIndexOrThrow("detail");
+                while (cursor.moveToNext()) plan.add(cursor.getString(detailIndex));
+            } finally {
+                cursor.close();
+            }
+
+            assertTrue(plan.toString(), plan.toString().contains("USING INDEX " + indexName));
+            return plan;
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    /**
+     * createVersion1Database() creates the database as version 1 of the app left it, with a
+     * recipe, an ingredient, a step and a favorite
+     */
+    private void createVersion1Database() {
+        File path = mContext.getDatabasePath(RecipeDbHelper.DATABASE_NAME);
+        assertTrue(path.getParentFile().isDirectory() || path.getParentFile().mkdirs());
+
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(path, null);
+        try {
+            for (String sql : SQL_V1_CREATE_TABLES) db.execSQL(sql);
+            db.execSQL("INSERT INTO recipes (recipe_uid, recipe_name, recipe_servings, " +
+                    "recipe_image_url) VALUES ('1', 'Nutella Pie', 8, '')");
+            db.execSQL("INSERT INTO ingredients (ingredient_uid, ingredient_name, " +
+                    "ingredient_measure, ingredient_quantity, recipe_id) " +
+                    "VALUES ('1_Flour', 'Flour', 'CUP', 2, 1)");
+            db.execSQL("INSERT INTO steps (step_uid, step_num, step_short_description, " +
+                    "step_description, step_thumbnail_url, step_video_url, recipe_id) " +
+                    "VALUES ('1_2', 2, 'Mix', 'Mix it all', '', '', 1)");
+            db.execSQL("INSERT INTO favorites (is_favorite, recipe_id) VALUES (1, 1)");
+            db.setVersion(1);
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * readSchema() opens the database with the helper, upgrading it if needed, and reads the
+     * statements of its tables and indexes. The statements are compared as SQLite stores
+     * them, only the spacing and the quotes a rename puts around a table name are left out.
+     */
+    private List<String> readSchema() {
+        RecipeDbHelper dbHelper = new RecipeDbHelper(mContext);
+        try {
+            Cursor cursor = dbHelper.getReadableDatabase().rawQuery(
+                    "SELECT type, name, tbl_name, sql FROM sqlite_master" +
+                            " WHERE name NOT LIKE 'sqlite_%' AND name != 'android_metadata'" +
+                            " ORDER BY type, name", null);
+            try {
+                List<String> schema = new ArrayList<>();
+                while (cursor.moveToNext()) {
+                    String sql = cursor.isNull(3) ? null
+                            : cursor.getString(3).replace("\"", "").replaceAll("\\s+", " ");
+                    schema.add(cursor.getString(0) + " " + cursor.getString(1) + " on "
+                            + cursor.getString(2) + ": " + sql);
+                }
+                return schema;
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    /**
+     * readForeignKeys() opens the database with the helper, upgrading it if needed, and reads
+     * the table and the column each foreign key of the tables references
+     */
+    private List<String> readForeignKeys() {
+        RecipeDbHelper dbHelper = new RecipeDbHelper(mContext);
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            List<String> foreignKeys = new ArrayList<>();
+            for (String table : TABLES) {
+                // id, seq, table, from, to, on update, on delete, match
+                Cursor cursor = db.rawQuery("PRAGMA foreign_key_list(" + table + ")", null);
+                try {
+                    while (cursor.moveToNext()) {
+                        foreignKeys.add(table + "." + cursor.getString(3) + " -> "
+                                + cursor.getString(2) + "." + cursor.getString(4));
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+            return foreignKeys;
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    private static String stringForQuery(SQLiteDatabase db, String sql) {
+        Cursor cursor = db.rawQuery(sql, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+}
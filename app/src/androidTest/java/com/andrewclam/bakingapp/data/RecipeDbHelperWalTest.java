@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+import android.util.Log;
+
+import com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry;
+import com.andrewclam.bakingapp.models.Recipe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.andrewclam.bakingapp.data.TestRecipeProvider.recipe;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation tests of the write-ahead logging of {@link RecipeDbHelper}: the latency of
+ * the reads made while a large sync is being written, with and without it. The percentiles
+ * are logged under the tag of the test.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeDbHelperWalTest {
+
+    /* Debug Tag */
+    private static final String TAG = RecipeDbHelperWalTest.class.getSimpleName();
+
+    /* Recipes stored ahead of the sync, the ones read while it is written */
+    private static final int STORED_RECIPES = 100;
+
+    /* Recipes written by the sync, 17 rows each */
+    private static final int SYNCED_RECIPES = 3000;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = new RenamingDelegatingContext(
+                InstrumentationRegistry.getTargetContext(), "test.");
+        mContext.deleteDatabase(RecipeDbHelper.DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        mContext.deleteDatabase(RecipeDbHelper.DATABASE_NAME);
+    }
+
+    @Test
+    public void readDuringSync_withWal_doesNotWaitForCommit() throws Exception {
+        ReadLatencies latencies = readDuringSync(true);
+        Log.i(TAG, "With WAL: " + latencies);
+
+        // The reads run on a connection of their own, the slowest is well short of the sync
+        assertTrue(latencies.toString(), latencies.size() > 1);
+        assertTrue(latencies.toString(),
+                latencies.percentile(99) < latencies.getSyncMillis() / 2);
+    }
+
+    @Test
+    public void readDuringSync_withoutWal_waitsForCommit() throws Exception {
+        ReadLatencies latencies = readDuringSync(false);
+        Log.i(TAG, "Without WAL: " + latencies);
+
+        // The reads share the connection of the sync, the first one waits for its commit
+        assertTrue(latencies.toString(),
+                latencies.percentile(100) >= latencies.getSyncMillis() / 2);
+    }
+
+    /**
+     * readDuringSync() stores some recipes, then reads their ingredients on one thread as
+     * long as a sync of many other recipes is being written on another
+     *
+     * @return the latency of each read
+     */
+    private ReadLatencies readDuringSync(boolean writeAheadLogging) throws Exception {
+        final RecipeDbHelper dbHelper = new RecipeDbHelper(mContext, writeAheadLogging);
+        try {
+            write(dbHelper.getWritableDatabase(), 1, STORED_RECIPES);
+
+            final CountDownLatch syncStarted = new CountDownLatch(1);
+            final AtomicBoolean syncDone = new AtomicBoolean();
+            final AtomicLong syncMillis = new AtomicLong();
+            Thread syncThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.nanoTime();
+                    try {
+                        write(dbHelper.getWritableDatabase(), STORED_RECIPES + 1,
+                                SYNCED_RECIPES, syncStarted);
+                    } finally {
+                        syncMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                        syncDone.set(true);
+                    }
+                }
+            });
+            syncThread.start();
+            assertTrue(syncStarted.await(10, TimeUnit.SECONDS));
+
+            // Read until the sync is committed, at least once
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            List<Long> latencies = new ArrayList<>();
+            long recipeId = 1;
+            do {
+                long start = System.nanoTime();
+                readIngredients(db, recipeId);
+                latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                recipeId = recipeId % STORED_RECIPES + 1;
+            } while (!syncDone.get());
+
+            syncThread.join();
+            return new ReadLatencies(latencies, syncMillis.get());
+        } finally {
+            dbHelper.close();
+        }
+    }
+
+    private static void write(SQLiteDatabase db, long firstRecipeId, int count) {
+        write(db, firstRecipeId, count, null);
+    }
+
+    /**
+     * write() writes the recipes in a single transaction, as a sync writes them
+     *
+     * @param started counted down once the transaction has begun, optional
+     */
+    private static void write(SQLiteDatabase db, long firstRecipeId, int count,
+                              CountDownLatch started) {
+        RecipeBulkWriter writer = new RecipeBulkWriter(db);
+        db.beginTransaction();
+        try {
+            if (started != null) started.countDown();
+            for (long recipeId = firstRecipeId; recipeId < firstRecipeId + count; recipeId++) {
+                Recipe recipe = recipe(recipeId, 9, 7);
+                writer.add(recipe, RecipeContentHash.of(recipe));
+            }
+            writer.flush();
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            writer.close();
+        }
+    }
+
+    private static void readIngredients(SQLiteDatabase db, long recipeId) {
+        Cursor cursor = db.query(IngredientEntry.TABLE_NAME, null,
+                IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY + "=?",
+                new String[]{String.valueOf(recipeId)}, null, null, null);
+        try {
+            cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * ReadLatencies holds the latency of the reads made during a sync, in milliseconds
+     */
+    private static class ReadLatencies {
+        private final List<Long> mLatencies;
+        private final long mSyncMillis;
+
+        ReadLatencies(List<Long> latencies, long syncMillis) {
+            mLatencies = new ArrayList<>(latencies);
+            Collections.sort(mLatencies);
+            mSyncMillis = syncMillis;
+        }
+
+        int size() {
+            return mLatencies.size();
+        }
+
+        long getSyncMillis() {
+            return mSyncMillis;
+        }
+
+        /**
+         * percentile() returns the latency no more than the given percent of the reads exceed,
+         * by the nearest rank
+         */
+        long percentile(int percent) {
+            int rank = (int) Math.ceil(percent / 100.0 * mLatencies.size());
+            return mLatencies.get(Math.max(rank, 1) - 1);
+        }
+
+        @Override
+        public String toString() {
+            return mLatencies.size() + " reads during a " + mSyncMillis + " ms sync"
+                    + ", p50 " + percentile(50) + " ms"
+                    + ", p95 " + percentile(95) + " ms"
+                    + ", p99 " + percentile(99) + " ms"
+                    + ", max " + percentile(100) + " ms";
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.StepEntry;
+import com.andrewclam.bakingapp.models.Ingredient;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.Step;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.andrewclam.bakingapp.data.TestRecipeProvider.ingredientValues;
+import static com.andrewclam.bakingapp.data.TestRecipeProvider.recipeValues;
+import static com.andrewclam.bakingapp.data.TestRecipeProvider.stepValues;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation tests of {@link RecipeMergeHydrator}: the children of the two ordered child
+ * queries are merged into the right recipes, whatever the order of the recipe cursor and of
+ * the writes, and a recipe without ingredients or without steps gets empty lists.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeMergeHydratorTest {
+
+    private TestRecipeProvider mTestProvider;
+
+    @Before
+    public void setUp() {
+        mTestProvider = new TestRecipeProvider();
+
+        // Recipe 1 has both, 2 none, 3 only steps, 4 only ingredients, 5 both
+        for (long recipeId = 1; recipeId <= 5; recipeId++) {
+            insert(RecipeEntry.CONTENT_URI_RECIPE, recipeValues(recipeId, "Recipe " + recipeId));
+        }
+
+        // The children of the recipes are written interleaved and out of order
+        insert(StepEntry.CONTENT_URI_STEP, stepValues(5, 1));
+        insert(IngredientEntry.CONTENT_URI_INGREDIENT, ingredientValues(4, "Salt"));
+        insert(StepEntry.CONTENT_URI_STEP, stepValues(1, 1));
+        insert(IngredientEntry.CONTENT_URI_INGREDIENT, ingredientValues(1, "Flour"));
+        insert(StepEntry.CONTENT_URI_STEP, stepValues(3, 0));
+        insert(IngredientEntry.CONTENT_URI_INGREDIENT, ingredientValues(5, "Eggs"));
+        insert(StepEntry.CONTENT_URI_STEP, stepValues(1, 0));
+        insert(IngredientEntry.CONTENT_URI_INGREDIENT, ingredientValues(1, "Sugar"));
+        insert(StepEntry.CONTENT_URI_STEP, stepValues(5, 0));
+        insert(IngredientEntry.CONTENT_URI_INGREDIENT, ingredientValues(4, "Pepper"));
+    }
+
+    @After
+    public void tearDown() {
+        mTestProvider.shutdown();
+    }
+
+    @Test
+    public void hydrate_allRecipes_childrenMergedIntoTheirRecipes() {
+        List<Recipe> recipes = hydrate(null, null, RecipeEntry.COLUMN_RECIPE_UID);
+
+        assertEquals(5, recipes.size());
+        assertRecipe(recipes.get(0), 1, Arrays.asList("Flour", "Sugar"), Arrays.asList(0L, 1L));
+        assertRecipe(recipes.get(1), 2, noIngredients(), noSteps());
+        assertRecipe(recipes.get(2), 3, noIngredients(), Arrays.asList(0L));
+        assertRecipe(recipes.get(3), 4, Arrays.asList("Salt", "Pepper"), noSteps());
+        assertRecipe(recipes.get(4), 5, Arrays.asList("Eggs"), Arrays.asList(0L, 1L));
+    }
+
+    @Test
+    public void hydrate_recipesInDescendingOrder_keepsCursorOrder() {
+        List<Recipe> recipes = hydrate(null, null, RecipeEntry.COLUMN_RECIPE_UID + " DESC");
+
+        assertEquals(5, recipes.size());
+        assertRecipe(recipes.get(0), 5, Arrays.asList("Eggs"), Arrays.asList(0L, 1L));
+        assertRecipe(recipes.get(1), 4, Arrays.asList("Salt", "Pepper"), noSteps());
+        assertRecipe(recipes.get(2), 3, noIngredients(), Arrays.asList(0L));
+        assertRecipe(recipes.get(3), 2, noIngredients(), noSteps());
+        assertRecipe(recipes.get(4), 1, Arrays.asList("Flour", "Sugar"), Arrays.asList(0L, 1L));
+    }
+
+    @Test
+    public void hydrate_recipesWithGaps_skipsChildrenOfOtherRecipes() {
+        // The children of 3 and 4 are in the queried range of keys, but not in the cursor
+        List<Recipe> recipes = hydrate(RecipeEntry.COLUMN_RECIPE_UID + " IN (?, ?)",
+                new String[]{"5", "1"}, RecipeEntry.COLUMN_RECIPE_UID + " DESC");
+
+        assertEquals(2, recipes.size());
+        assertRecipe(recipes.get(0), 5, Arrays.asList("Eggs"), Arrays.asList(0L, 1L));
+        assertRecipe(recipes.get(1), 1, Arrays.asList("Flour", "Sugar"), Arrays.asList(0L, 1L));
+    }
+
+    @Test
+    public void hydrate_onlySteps_emptyIngredients() {
+        List<Recipe> recipes = hydrate(RecipeEntry.COLUMN_RECIPE_UID + "=?",
+                new String[]{"3"}, null);
+
+        assertEquals(1, recipes.size());
+        assertRecipe(recipes.get(0), 3, noIngredients(), Arrays.asList(0L));
+    }
+
+    @Test
+    public void hydrate_onlyIngredients_emptySteps() {
+        List<Recipe> recipes = hydrate(RecipeEntry.COLUMN_RECIPE_UID + "=?",
+                new String[]{"4"}, null);
+
+        assertEquals(1, recipes.size());
+        assertRecipe(recipes.get(0), 4, Arrays.asList("Salt", "Pepper"), noSteps());
+    }
+
+    @Test
+    public void hydrate_noRecipes_emptyList() {
+        assertTrue(hydrate(RecipeEntry.COLUMN_RECIPE_UID + "=?",
+                new String[]{"42"}, null).isEmpty());
+    }
+
+    private List<Recipe> hydrate(String selection, String[] selectionArgs, String sortOrder) {
+        Cursor cursor = mTestProvider.getResolver().query(RecipeEntry.CONTENT_URI_RECIPE,
+                null, selection, selectionArgs, sortOrder);
+        try {
+            return RecipeMergeHydrator.hydrate(mTestProvider.getResolver(), cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void insert(Uri uri, ContentValues values) {
+        mTestProvider.getResolver().insert(uri, values);
+    }
+
+    private static void assertRecipe(Recipe recipe, long recipeId, List<String> ingredientNames,
+                                     List<Long> stepNums) {
+        assertEquals(recipeId, recipe.getUid());
+
+        List<String> actualNames = new ArrayList<>();
+        for (Ingredient ingredient : recipe.getIngredients()) {
+            actualNames.add(ingredient.getIngredientName());
+        }
+        assertEquals(ingredientNames, actualNames);
+
+        List<Long> actualStepNums = new ArrayList<>();
+        for (Step step : recipe.getSteps()) {
+            actualStepNums.add(step.getStepNum());
+        }
+        assertEquals(stepNums, actualStepNums);
+    }
+
+    private static List<String> noIngredients() {
+        return new ArrayList<>();
+    }
+
+    private static List<Long> noSteps() {
+        return new ArrayList<>();
+    }
+}
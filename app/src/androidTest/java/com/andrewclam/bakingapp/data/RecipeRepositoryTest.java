@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry;
+import com.andrewclam.bakingapp.models.Recipe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.andrewclam.bakingapp.data.TestRecipeProvider.recipe;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation tests of {@link RecipeRepository}: the recipes are answered from memory
+ * once loaded, a change evicts what it touched, a load overlapping a change is delivered but
+ * not kept, and a cancelled request is not called back. The repository is used from the main
+ * thread, as the activities use it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecipeRepositoryTest {
+
+    private TestRecipeProvider mTestProvider;
+    private RecipeRepository mRepository;
+
+    @Before
+    public void setUp() {
+        mTestProvider = new TestRecipeProvider();
+        mTestProvider.getProvider().syncRecipes(
+                Arrays.asList(recipe(1, 3, 2), recipe(2, 3, 2), recipe(3, 3, 2)), true);
+        mRepository = new RecipeRepository(mTestProvider.getResolver());
+    }
+
+    @After
+    public void tearDown() {
+        mTestProvider.shutdown();
+    }
+
+    @Test
+    public void getRecipe_twice_secondFromMemory() throws Exception {
+        Recipe first = getRecipe(1);
+        Recipe second = getRecipe(1);
+
+        assertNotNull(first);
+        assertEquals(3, first.getIngredients().size());
+        assertEquals(2, first.getSteps().size());
+        assertSame(first, second);
+        assertEquals(1, mRepository.getMissCount());
+        assertEquals(1, mRepository.getHitCount());
+    }
+
+    @Test
+    public void getRecipe_unknownRecipe_nullAndNotKept() throws Exception {
+        assertNull(getRecipe(42));
+        assertNull(getRecipe(42));
+        assertEquals(2, mRepository.getMissCount());
+    }
+
+    @Test
+    public void getRecipes_thenGetRecipe_fromMemory() throws Exception {
+        List<Recipe> recipes = getRecipes();
+
+        assertEquals(3, recipes.size());
+        assertSame(recipes.get(1), getRecipe(2));
+        assertEquals(3, getRecipes().size());
+        assertEquals(1, mRepository.getMissCount());
+        assertEquals(2, mRepository.getHitCount());
+    }
+
+    @Test
+    public void invalidate_recipeUri_evictsOnlyThatRecipe() throws Exception {
+        List<Recipe> recipes = getRecipes();
+
+        invalidate(RecipeDbContract.buildRecipeUriWithId(2L));
+
+        assertSame(recipes.get(0), getRecipe(1));
+        assertSame(recipes.get(2), getRecipe(3));
+        assertEquals(1, mRepository.getMissCount());
+
+        // Once the recipe is loaded again, all of them are in memory again
+        assertNotSame(recipes.get(1), getRecipe(2));
+        assertEquals(2, mRepository.getMissCount());
+        getRecipes();
+        assertEquals(2, mRepository.getMissCount());
+    }
+
+    @Test
+    public void invalidate_fullRecipeUri_evictsOnlyThatRecipe() throws Exception {
+        List<Recipe> recipes = getRecipes();
+
+        invalidate(RecipeDbContract.buildFullRecipeUriWithId(1));
+
+        assertSame(recipes.get(1), getRecipe(2));
+        assertNotSame(recipes.get(0), getRecipe(1));
+        assertEquals(2, mRepository.getMissCount());
+    }
+
+    @Test
+    public void invalidate_otherUri_evictsAllRecipes() throws Exception {
+        List<Recipe> recipes = getRecipes();
+
+        invalidate(IngredientEntry.CONTENT_URI_INGREDIENT);
+
+        assertNotSame(recipes.get(2), getRecipe(3));
+        assertEquals(3, getRecipes().size());
+        assertEquals(3, mRepository.getMissCount());
+        assertEquals(1, mRepository.getChangeCount());
+    }
+
+    @Test
+    public void invalidate_unknownUri_evictsAllRecipes() throws Exception {
+        Recipe recipe = getRecipe(1);
+
+        invalidate(null);
+
+        assertNotSame(recipe, getRecipe(1));
+        assertEquals(2, mRepository.getMissCount());
+    }
+
+    @Test
+    public void getRecipe_changeDuringLoad_deliveredButNotKept() throws Exception {
+        final Callback<Recipe> callback = new Callback<>();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                // The load completes on a later run of the main looper, after the change
+                mRepository.getRecipe(1, callback);
+                mRepository.invalidate(RecipeDbContract.buildRecipeUriWithId(1L));
+            }
+        });
+
+        assertNotNull(callback.await());
+        assertNotSame(callback.mResult, getRecipe(1));
+        assertEquals(2, mRepository.getMissCount());
+    }
+
+    @Test
+    public void getRecipes_changeDuringLoad_deliveredButNotKept() throws Exception {
+        final Callback<List<Recipe>> callback = new Callback<>();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.getRecipes(callback.forRecipes());
+                mRepository.invalidate(null);
+            }
+        });
+
+        assertEquals(3, callback.await().size());
+        getRecipes();
+        assertEquals(2, mRepository.getMissCount());
+    }
+
+    @Test
+    public void getRecipe_afterChange_doesNotJoinStaleLoad() throws Exception {
+        final Callback<Recipe> stale = new Callback<>();
+        final Callback<Recipe> fresh = new Callback<>();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.getRecipe(1, stale);
+                mRepository.invalidate(RecipeDbContract.buildRecipeUriWithId(1L));
+                mRepository.getRecipe(1, fresh);
+            }
+        });
+
+        assertNotNull(stale.await());
+        assertNotNull(fresh.await());
+        assertNotSame(stale.mResult, fresh.mResult);
+
+        // The load started after the change is the one kept
+        assertSame(fresh.mResult, getRecipe(1));
+        assertEquals(1, mRepository.getHitCount());
+    }
+
+    @Test
+    public void getRecipe_joinedLoad_bothCalledBack() throws Exception {
+        final Callback<Recipe> first = new Callback<>();
+        final Callback<Recipe> second = new Callback<>();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.getRecipe(1, first);
+                mRepository.getRecipe(1, second);
+            }
+        });
+
+        assertSame(first.await(), second.await());
+    }
+
+    @Test
+    public void cancel_pendingRequest_listenerNotCalled() throws Exception {
+        final Callback<Recipe> cancelled = new Callback<>();
+        final Callback<Recipe> kept = new Callback<>();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                RecipeRepository.Request request = mRepository.getRecipe(1, cancelled);
+                mRepository.getRecipe(1, kept);
+                request.cancel();
+            }
+        });
+
+        // Both would be called back together
+        assertNotNull(kept.await());
+        assertEquals(0, cancelled.mCalls);
+    }
+
+    @Test
+    public void cancel_pendingRecipesRequest_listenerNotCalled() throws Exception {
+        final Callback<List<Recipe>> cancelled = new Callback<>();
+        final Callback<List<Recipe>> kept = new Callback<>();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                RecipeRepository.Request request = mRepository.getRecipes(cancelled.forRecipes());
+                mRepository.getRecipes(kept.forRecipes());
+                request.cancel();
+            }
+        });
+
+        assertEquals(3, kept.await().size());
+        assertEquals(0, cancelled.mCalls);
+    }
+
+    @Test
+    public void cancel_answeredRequest_doesNothing() throws Exception {
+        getRecipe(1);
+        final Callback<Recipe> callback = new Callback<>();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.getRecipe(1, callback).cancel();
+            }
+        });
+
+        assertEquals(1, callback.mCalls);
+        assertNotNull(callback.mResult);
+    }
+
+    @Test
+    public void onRecipesChanged_changesOfOneRun_coalesced() throws Exception {
+        final List<Long> changes = listenToChanges();
+
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.invalidate(RecipeDbContract.buildRecipeUriWithId(1L));
+                mRepository.invalidate(RecipeDbContract.buildFullRecipeUriWithId(1));
+            }
+        });
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.invalidate(RecipeDbContract.buildRecipeUriWithId(1L));
+                mRepository.invalidate(RecipeDbContract.buildRecipeUriWithId(2L));
+            }
+        });
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        assertEquals(Arrays.asList(1L, RecipeRepository.ALL_RECIPES), changes);
+        assertEquals(4, mRepository.getChangeCount());
+    }
+
+    @Test
+    public void onRecipesChanged_listenerRemovedBeforeCallback_notCalled() throws Exception {
+        final List<Long> changes = listenToChanges();
+        final RecipeRepository.OnRecipesChangedListener removed =
+                new RecipeRepository.OnRecipesChangedListener() {
+                    @Override
+                    public void onRecipesChanged(long recipeUid) {
+                        changes.add(-recipeUid);
+                    }
+                };
+
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.addOnRecipesChangedListener(removed);
+                mRepository.invalidate(RecipeDbContract.buildRecipeUriWithId(3L));
+                mRepository.removeOnRecipesChangedListener(removed);
+            }
+        });
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        assertEquals(Collections.singletonList(3L), changes);
+    }
+
+    private List<Long> listenToChanges() {
+        final List<Long> changes = new ArrayList<>();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.addOnRecipesChangedListener(
+                        new RecipeRepository.OnRecipesChangedListener() {
+                            @Override
+                            public void onRecipesChanged(long recipeUid) {
+                                changes.add(recipeUid);
+                            }
+                        });
+            }
+        });
+        return changes;
+    }
+
+    private void invalidate(final Uri uri) {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.invalidate(uri);
+            }
+        });
+    }
+
+    private Recipe getRecipe(final long uid) throws InterruptedException {
+        final Callback<Recipe> callback = new Callback<>();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.getRecipe(uid, callback);
+            }
+        });
+        return callback.await();
+    }
+
+    private List<Recipe> getRecipes() throws InterruptedException {
+        final Callback<List<Recipe>> callback = new Callback<>();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRepository.getRecipes(callback.forRecipes());
+            }
+        });
+        return callback.await();
+    }
+
+    private static void runOnMainSync(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+
+    /**
+     * Callback records the result of a get, called back on the main thread
+     */
+    private static class Callback<T> implements RecipeRepository.OnRecipeLoadedListener {
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+        private volatile T mResult;
+        private volatile int mCalls;
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void onRecipeLoaded(@Nullable Recipe recipe) {
+            onResult((T) recipe);
+        }
+
+        RecipeRepository.OnRecipesLoadedListener forRecipes() {
+            return new RecipeRepository.OnRecipesLoadedListener() {
+                @SuppressWarnings("unchecked")
+                @Override
+                public void onRecipesLoaded(@NonNull ArrayList<Recipe> recipes) {
+                    onResult((T) recipes);
+                }
+            };
+        }
+
+        private void onResult(T result) {
+            mResult = result;
+            mCalls++;
+            mLatch.countDown();
+        }
+
+        T await() throws InterruptedException {
+            assertTrue("Not called back", mLatch.await(10, TimeUnit.SECONDS));
+            return mResult;
+        }
+    }
+}
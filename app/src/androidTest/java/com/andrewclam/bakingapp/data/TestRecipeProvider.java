@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.ProviderInfo;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+
+import com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.StepEntry;
+import com.andrewclam.bakingapp.models.Ingredient;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.Step;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * TestRecipeProvider runs a {@link RecipeContentProvider} on a database of its own, apart
+ * from the one of the app, and records the uris the provider notifies.
+ */
+public class TestRecipeProvider {
+
+    /* Prefix of the files of the test database */
+    private static final String FILE_PREFIX = "test.";
+
+    private final Context mContext;
+    private final MockContentResolver mResolver;
+    private final RecipeContentProvider mProvider;
+
+    /* Uris notified so far, in order */
+    private final List<Uri> mNotifiedUris = Collections.synchronizedList(new ArrayList<Uri>());
+
+    public TestRecipeProvider() {
+        mResolver = new MockContentResolver() {
+            @Override
+            public void notifyChange(Uri uri, ContentObserver observer, boolean syncToNetwork) {
+                mNotifiedUris.add(uri);
+            }
+        };
+        mContext = new RenamingDelegatingContext(
+                InstrumentationRegistry.getTargetContext(), FILE_PREFIX) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return mResolver;
+            }
+        };
+
+        // Start from an empty database
+        mContext.deleteDatabase(RecipeDbHelper.DATABASE_NAME);
+
+        ProviderInfo providerInfo = new ProviderInfo();
+        providerInfo.authority = RecipeDbContract.AUTHORITY;
+        mProvider = new RecipeContentProvider();
+        mProvider.attachInfo(mContext, providerInfo);
+        mResolver.addProvider(RecipeDbContract.AUTHORITY, mProvider);
+    }
+
+    public Context getContext() {
+        return mContext;
+    }
+
+    public ContentResolver getResolver() {
+        return mResolver;
+    }
+
+    public RecipeContentProvider getProvider() {
+        return mProvider;
+    }
+
+    /**
+     * @return the uris notified so far, in order
+     */
+    public List<Uri> getNotifiedUris() {
+        synchronized (mNotifiedUris) {
+            return new ArrayList<>(mNotifiedUris);
+        }
+    }
+
+    public void clearNotifiedUris() {
+        mNotifiedUris.clear();
+    }
+
+    /**
+     * @return the number of rows of the query
+     */
+    public int count(Uri uri) {
+        return count(uri, null);
+    }
+
+    /**
+     * @return the number of rows of the query matching the selection
+     */
+    public int count(Uri uri, String selection) {
+        Cursor cursor = mProvider.query(uri, null, selection, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * shutdown() closes the provider and deletes its database
+     */
+    public void shutdown() {
+        mProvider.shutdown();
+        mContext.deleteDatabase(RecipeDbHelper.DATABASE_NAME);
+    }
+
+    /**
+     * @return the values of a recipe row
+     */
+    public static ContentValues recipeValues(long recipeId, String name) {
+        ContentValues values = new ContentValues();
+        values.put(RecipeEntry.COLUMN_RECIPE_UID, recipeId);
+        values.put(RecipeEntry.COLUMN_RECIPE_NAME, name);
+        values.put(RecipeEntry.COLUMN_RECIPE_SERVINGS, 8);
+        values.put(RecipeEntry.COLUMN_RECIPE_IMAGE_URL, "");
+        return values;
+    }
+
+    /**
+     * @return the values of an ingredient row of the recipe, keyed as the parsers key it
+     */
+    public static ContentValues ingredientValues(long recipeId, String name) {
+        ContentValues values = new ContentValues();
+        values.put(IngredientEntry.COLUMN_INGREDIENT_UID, RecipeKeys.ingredientKey(recipeId, name));
+        values.put(IngredientEntry.COLUMN_INGREDIENT_NAME, name);
+        values.put(IngredientEntry.COLUMN_INGREDIENT_MEASURE, "CUP");
+        values.put(IngredientEntry.COLUMN_INGREDIENT_QUANTITY, 1.5);
+        values.put(IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY, recipeId);
+        return values;
+    }
+
+    /**
+     * @return the values of a step row of the recipe, keyed as the parsers key it
+     */
+    public static ContentValues stepValues(long recipeId, long stepNum) {
+        ContentValues values = new ContentValues();
+        values.put(StepEntry.COLUMN_STEP_UID, RecipeKeys.stepKey(recipeId, stepNum));
+        values.put(StepEntry.COLUMN_STEP_NUM, stepNum);
+        values.put(StepEntry.COLUMN_STEP_SHORT_DESCRIPTION, "Step " + stepNum);
+        values.put(StepEntry.COLUMN_STEP_DESCRIPTION, stepNum + ". Mix");
+        values.put(StepEntry.COLUMN_STEP_VIDEO_URL, "");
+        values.put(StepEntry.COLUMN_STEP_THUMBNAIL_URL, "");
+        values.put(StepEntry.COLUMN_STEP_RECIPE_KEY, recipeId);
+        return values;
+    }
+
+    /**
+     * @return a recipe with the given number of ingredients and steps, keyed as the parsers
+     * key them
+     */
+    public static Recipe recipe(long recipeId, int ingredientCount, int stepCount) {
+        Recipe recipe = new Recipe();
+        recipe.setUid(recipeId);
+        recipe.setName("Recipe " + recipeId);
+        recipe.setServings(8);
+        recipe.setImageURL("");
+
+        ArrayList<Ingredient> ingredients = new ArrayList<>();
+        for (int i = 0; i < ingredientCount; i++) {
+            Ingredient ingredient = new Ingredient();
+            ingredient.setIngredientName("Ingredient " + i);
+            ingredient.setUid(RecipeKeys.ingredientKey(recipeId, ingredient.getIngredientName()));
+            ingredient.setQuantity(i + 0.5);
+            ingredient.setMeasure("CUP");
+            ingredients.add(ingredient);
+        }
+        recipe.setIngredients(ingredients);
+
+        ArrayList<Step> steps = new ArrayList<>();
+        for (int s = 0; s < stepCount; s++) {
+            Step step = new Step();
+            step.setStepNum(s);
+            step.setUid(RecipeKeys.stepKey(recipeId, s));
+            step.setShortDescription("Step " + s);
+            step.setDescription(s + ". Mix");
+            step.setVideoURL("");
+            step.setThumbnailURL("");
+            steps.add(step);
+        }
+        recipe.setSteps(steps);
+
+        return recipe;
+    }
+}
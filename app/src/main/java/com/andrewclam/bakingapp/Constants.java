@@ -32,9 +32,13 @@ public class Constants {
     public static final String PACKAGE_NAME = "com.andrewclam.bakingapp";
 
     /* Data Source URL */
-    static final String DATA_URL =
+    public static final String DATA_URL =
             "https://d17h27t6h515a5.cloudfront.net/topher/2017/May/59121517_baking/baking.json";
 
+    /* HTTP Response Cache */
+    static final String HTTP_CACHE_DIR_NAME = "http";
+    static final long HTTP_CACHE_MAX_SIZE = 10 * 1024 * 1024; // 10 MiB
+
     /* Intent Extra Key */
     static final String EXTRA_RECIPE = PACKAGE_NAME + ".extra.recipe.object";
     static final String EXTRA_RECIPE_NAME = PACKAGE_NAME + ".extra.recipe.name";
@@ -27,15 +27,12 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.database.Cursor;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 import android.support.design.widget.Snackbar;
-import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
-import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.LinearLayoutManager;
@@ -45,26 +42,34 @@ import android.widget.ProgressBar;
 import android.widget.Toast;
 
 import com.andrewclam.bakingapp.adapters.RecipeRecyclerViewAdapter;
-import com.andrewclam.bakingapp.asyncTasks.DbMultiTableParsingAsyncTask;
 import com.andrewclam.bakingapp.asyncTasks.FetchRecipeAsyncTask;
+import com.andrewclam.bakingapp.asyncTasks.SnapshotLoadingAsyncTask;
+import com.andrewclam.bakingapp.data.RecipeRepository;
+import com.andrewclam.bakingapp.data.RecipeSnapshot;
 import com.andrewclam.bakingapp.espresso.SimpleIdlingResource;
 import com.andrewclam.bakingapp.models.Recipe;
-import com.andrewclam.bakingapp.services.SyncDbIntentService;
+import com.andrewclam.bakingapp.models.RecipeChangeSet;
+import com.andrewclam.bakingapp.services.RecipeSyncCoordinator;
+import com.andrewclam.bakingapp.sync.RecipeSyncScheduler;
+import com.andrewclam.bakingapp.utils.HttpDiskCache;
+import com.andrewclam.bakingapp.utils.HttpValidators;
 import com.andrewclam.bakingapp.utils.NetworkUtils;
 import com.andrewclam.bakingapp.widget.WidgetUtils;
 
 import org.parceler.Parcels;
 
+import java.io.File;
 import java.util.ArrayList;
 
 import static com.andrewclam.bakingapp.Constants.ACTION_APPWIDGET_CONFIG;
 import static com.andrewclam.bakingapp.Constants.ACTION_CONNECTIVITY_CHANGE;
 import static com.andrewclam.bakingapp.Constants.DATA_URL;
 import static com.andrewclam.bakingapp.Constants.EXTRA_RECIPE;
-import static com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry.CONTENT_URI_RECIPE;
+import static com.andrewclam.bakingapp.Constants.HTTP_CACHE_DIR_NAME;
+import static com.andrewclam.bakingapp.Constants.HTTP_CACHE_MAX_SIZE;
 
 public class MainActivity extends AppCompatActivity implements
-        LoaderManager.LoaderCallbacks<Cursor>,
+        RecipeRepository.OnRecipesChangedListener,
         FetchRecipeAsyncTask.onFetchRecipeActionListener,
         RecipeRecyclerViewAdapter.OnRecipeItemClickedListener {
 
@@ -100,12 +105,20 @@ public class MainActivity extends AppCompatActivity implements
     private Snackbar mNetworkStateSnackBar;
 
     /**
-     * LoaderManager Instance for Loading offline db data
-     * This ID will be used to identify the Loader responsible for loading our offline database. In
-     * some cases, one Activity can deal with many Loaders. However, in our case, there is only one.
-     * We will still use this ID to initialize the loader and create the loader for best practice.
-    */
-    private static final int RECIPE_LOADER_ID = 8888;
+     * Repository of the offline db data, keeps the recipes in memory once loaded
+     */
+    private RecipeRepository mRecipeRepository;
+
+    /**
+     * Pending get of the recipes, cancelled once the activity is destroyed
+     */
+    private RecipeRepository.Request mRecipesRequest;
+
+    /**
+     * Flag whether the offline db data is being loaded because the data source was not
+     * modified since the last fetch
+     */
+    private boolean mLoadingAfterNotModified;
 
 
     @Override
@@ -113,6 +126,9 @@ public class MainActivity extends AppCompatActivity implements
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        /* Install the HTTP response cache, fresh recipe data is served without the network */
+        HttpDiskCache.install(new File(getCacheDir(), HTTP_CACHE_DIR_NAME), HTTP_CACHE_MAX_SIZE);
+
         /* Recipes List Setup */
         mRecipeRv = findViewById(R.id.recipe_list_rv);
         mAdapter = new RecipeRecyclerViewAdapter(this, this);
@@ -146,6 +162,41 @@ public class MainActivity extends AppCompatActivity implements
 
         // Get the IdlingResource instance
         getIdlingResource();
+
+        /* Paint the recipes of the snapshot first, it is read in a single file read and is
+           usually on screen before the database has been queried */
+        new SnapshotLoadingAsyncTask()
+                .setSnapshotFile(RecipeSnapshot.getSnapshotFile(this))
+                .setListener(new SnapshotLoadingAsyncTask.OnSnapshotLoadedListener() {
+                    @Override
+                    public void onSnapshotLoaded(RecipeSnapshot.Catalog catalog) {
+                        // The database or the network may have answered first, keep theirs
+                        if (catalog == null || catalog.size() == 0
+                                || mAdapter.getItemCount() != 0) return;
+
+                        mProgressBar.setVisibility(View.GONE);
+                        mEmptyView.setVisibility(View.GONE);
+
+                        // Only the fields of the list are read until a recipe is clicked
+                        mAdapter.setRecipeCatalog(catalog);
+                    }
+                }).executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+
+        /* Paint the cached recipes from the client database first, the network refresh and
+           the background sync update the database and the repository reports their changes */
+        mRecipeRepository = RecipeRepository.getInstance(this);
+        mRecipeRepository.addOnRecipesChangedListener(this);
+        loadRecipes();
+
+        /* Keep the recipes synced in the background, off the user's critical path */
+        RecipeSyncScheduler.schedule(this);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mRecipeRepository.removeOnRecipesChangedListener(this);
+        if (mRecipesRequest != null) mRecipesRequest.cancel();
     }
 
     @Override
@@ -171,6 +222,9 @@ public class MainActivity extends AppCompatActivity implements
         // Cleanup, unregister the dynamic broadcast receiver with context
         unregisterReceiver(mNetworkChangeReceiver);
         mNetworkChangeReceiver = null;
+
+        // Stop listening to the in-flight fetch, if any
+        RecipeSyncCoordinator.getInstance().removeListener(this);
     }
 
     /**
@@ -188,12 +242,9 @@ public class MainActivity extends AppCompatActivity implements
 
                 if (isConnected) {
                     /* Connected  */
-                    // Async Load The Latest Recipe Data
-                    new FetchRecipeAsyncTask()
-                            .setDataURL(DATA_URL)
-                            .setListener(MainActivity.this)
-                            .setIdlingResource(mIdlingResource)
-                            .execute();
+                    // Async Load The Latest Recipe Data, joining any fetch already in flight
+                    RecipeSyncCoordinator.getInstance().requestRefresh(
+                            context, DATA_URL, MainActivity.this, mIdlingResource);
 
                      /* Show network is now connected from being connected*/
                      // dismiss the disconnected snack bar
@@ -202,8 +253,7 @@ public class MainActivity extends AppCompatActivity implements
                 } else {
                     /* Disconnected */
                     // Load cached data from client database
-                    getSupportLoaderManager().restartLoader(RECIPE_LOADER_ID, null,
-                            MainActivity.this);
+                    loadRecipes();
 
                     /* Show network is now disconnected from being connected*/
                     if (mNetworkStateSnackBar != null) mNetworkStateSnackBar.show();
@@ -213,32 +263,82 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     /**
-     * Callback from the FetchRecipeAsyncTask with a list of recipe ready to populate the
-     * recycler view.
+     * Callback from the FetchRecipeAsyncTask with each recipe as soon as it is parsed, the
+     * row is shown while the rest of the recipes are still being downloaded.
+     *
+     * @param recipe the recipe parsed from the data source
+     */
+    @Override
+    public void onRecipeStreamed(Recipe recipe) {
+        // Got data, hide the empty view and the loading progress bar
+        mEmptyView.setVisibility(View.GONE);
+        mProgressBar.setVisibility(View.GONE);
+
+        mAdapter.appendRecipe(recipe);
+    }
+
+    /**
+     * Callback from the FetchRecipeAsyncTask when the fetch failed on a network or web
+     * service error, the recipes already shown are kept.
+     */
+    @Override
+    public void onFetchFailed() {
+        if (mAdapter.getItemCount() == 0) {
+            // No recipes parsed nor streamed, show empty view
+            mEmptyView.setVisibility(View.VISIBLE);
+        }
+
+        /* Loading Progress Bar - Fetch Done, Be GONE */
+        mProgressBar.setVisibility(View.GONE);
+    }
+
+    /**
+     * Callback from the FetchRecipeAsyncTask when the data source has not changed since the
+     * last successful fetch, the cached recipes in the database are still current.
+     */
+    @Override
+    public void onRecipesNotModified() {
+        if (mAdapter.getItemCount() == 0) {
+            // Nothing shown yet, serve the cached catalog from the client database
+            mLoadingAfterNotModified = true;
+            loadRecipes();
+        } else {
+            /* Loading Progress Bar - Data Already Shown, Be GONE */
+            mProgressBar.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * Callback from the FetchRecipeAsyncTask when the data source answered with a full feed,
+     * its recipes populate the recycler view; or with a delta, the recipes are reloaded from
+     * the client database as the delta is applied to it.
      *
-     * @param recipes the list of recipes parsed from the data source
+     * @param changeSet the full feed or the delta of the recipes
      */
     @Override
-    public void onRecipesReady(ArrayList<Recipe> recipes) {
-        // Call intent service to update the database with the latest recipes
-        if (recipes != null && !recipes.isEmpty()) {
+    public void onRecipeChangesReady(RecipeChangeSet changeSet) {
+        if (changeSet.isDelta()) {
+            // The repository observes the recipes, they are reloaded once the delta lands in
+            // the database
+            loadRecipes();
+            return;
+        }
+
+        // The RecipeSyncCoordinator has the database updated with the latest recipes
+        ArrayList<Recipe> recipes = changeSet.getRecipes();
+        if (!recipes.isEmpty()) {
             // Got data, hide the empty view
             mEmptyView.setVisibility(View.GONE);
 
-            SyncDbIntentService.syncRecipes(this, recipes);
-
             mAdapter.setRecipeData(recipes);
             mAdapter.notifyDataSetChanged();
-        }else
-        {
-            // No recipes parsed, network or web service error
-            // show empty view
+        } else if (mAdapter.getItemCount() == 0) {
+            // The data source has no recipes, show empty view
             mEmptyView.setVisibility(View.VISIBLE);
         }
 
         /* Loading Progress Bar - Data Loaded, Be GONE */
         mProgressBar.setVisibility(View.GONE);
-
     }
 
     /**
@@ -297,61 +397,57 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     /**
-     * CursorLoader and LoaderManager Implementation
-     * Do db query off the main thread and communicate via these callbacks
+     * Callback from the RecipeRepository when recipes changed in the client database, the
+     * shown recipes are reloaded.
+     *
+     * @param recipeUid the uid of the changed recipe, or RecipeRepository.ALL_RECIPES
      */
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        /* Load ALL Cached Recipe Data from Database */
-        return new CursorLoader(this,
-                CONTENT_URI_RECIPE,
-                null,
-                null,
-                null,
-                null);
+    public void onRecipesChanged(long recipeUid) {
+        loadRecipes();
     }
 
-    @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        if (data != null) {
-            // Use an asyncTask to parse the multi-table db using the Cursor data
-            new DbMultiTableParsingAsyncTask()
-                    .setContentResolver(this.getContentResolver())
-                    .setCursor(data)
-                    .setIdlingResource(mIdlingResource)
-                    .setListener(new DbMultiTableParsingAsyncTask.OnParsingActionComplete() {
-                        @Override
-                        public void onEntriesParsed(ArrayList<Recipe> recipes) {
-                            if (recipes != null && !recipes.isEmpty()) {
-                                /* Loading Progress Bar - Data Loaded, Be GONE */
-                                mProgressBar.setVisibility(View.GONE);
-
-                                // Got data, hide the empty view
-                                mEmptyView.setVisibility(View.GONE);
-
-                                mAdapter.setRecipeData(recipes);
-                                mAdapter.notifyDataSetChanged();
-                            }
+    /**
+     * loadRecipes() gets ALL Cached Recipe Data, from memory if the repository has them
+     * or from the client database otherwise
+     */
+    private void loadRecipes() {
+        if (mIdlingResource != null) mIdlingResource.setIdleState(false);
+
+        // Only the latest get is delivered
+        if (mRecipesRequest != null) mRecipesRequest.cancel();
+        mRecipesRequest = mRecipeRepository.getRecipes(
+                new RecipeRepository.OnRecipesLoadedListener() {
+                    @Override
+                    public void onRecipesLoaded(@NonNull ArrayList<Recipe> recipes) {
+                        if (!recipes.isEmpty()) {
+                            /* Loading Progress Bar - Data Loaded, Be GONE */
+                            mProgressBar.setVisibility(View.GONE);
+
+                            // Got data, hide the empty view
+                            mEmptyView.setVisibility(View.GONE);
+
+                            mAdapter.setRecipeData(recipes);
+                            mAdapter.notifyDataSetChanged();
+                        } else if (mLoadingAfterNotModified) {
+                            // The cached catalog is gone even though the data source was
+                            // not modified, forget the validators and fetch it in full
+                            HttpValidators.clear(MainActivity.this, DATA_URL);
+                            RecipeSyncCoordinator coordinator = RecipeSyncCoordinator.getInstance();
+                            coordinator.invalidate();
+                            coordinator.requestRefresh(MainActivity.this, DATA_URL,
+                                    MainActivity.this, mIdlingResource);
+                        } else if (mAdapter.getItemCount() == 0
+                                && !RecipeSyncCoordinator.getInstance().isFetching()) {
+                            // Nothing cached and no refresh to wait for, such as when offline
+                            mProgressBar.setVisibility(View.GONE);
+                            mEmptyView.setVisibility(View.VISIBLE);
                         }
-            }).execute();
-        }else
-        {
-            /* Loading Progress Bar - No Data, Be GONE */
-            mProgressBar.setVisibility(View.GONE);
-
-            // No recipes parsed, network or web service error
-            // show empty view
-            mEmptyView.setVisibility(View.VISIBLE);
-        }
-    }
+                        mLoadingAfterNotModified = false;
 
-    @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        /*
-         * Since this Loader's data is now invalid, we need to clear the Adapter that is
-         * displaying the data.
-         */
-        mAdapter.setRecipeData(null);
+                        if (mIdlingResource != null) mIdlingResource.setIdleState(true);
+                    }
+                });
     }
 
     /**
@@ -24,15 +24,10 @@ package com.andrewclam.bakingapp;
 
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Bundle;
 import android.os.PersistableBundle;
 import android.support.annotation.NonNull;
 import android.support.v4.app.Fragment;
-import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
-import android.support.v4.content.Loader;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
@@ -45,8 +40,7 @@ import android.view.ViewGroup;
 import android.widget.FrameLayout;
 import android.widget.TextView;
 
-import com.andrewclam.bakingapp.asyncTasks.DbMultiTableParsingAsyncTask;
-import com.andrewclam.bakingapp.data.RecipeDbContract;
+import com.andrewclam.bakingapp.data.RecipeRepository;
 import com.andrewclam.bakingapp.models.Ingredient;
 import com.andrewclam.bakingapp.models.Recipe;
 import com.andrewclam.bakingapp.models.Step;
@@ -71,7 +65,7 @@ import static com.andrewclam.bakingapp.Constants.EXTRA_TWO_PANE_MODE;
  */
 public class RecipeDetailActivity extends AppCompatActivity implements
         StepDetailFragment.OnStepDetailFragmentInteraction,
-        LoaderManager.LoaderCallbacks<Cursor> {
+        RecipeRepository.OnRecipesChangedListener {
     /**
      * Log Tag
      */
@@ -94,17 +88,14 @@ public class RecipeDetailActivity extends AppCompatActivity implements
     private ArrayList<Step> mSteps;
 
     /**
-     * LoaderManager Implementation for Loading offline db data
-     * This ID will be used to identify the Loader responsible for loading our offline database. In
-     * some cases, one Activity can deal with many Loaders. However, in our case, there is only one.
-     * We will still use this ID to initialize the loader and create the loader for best practice.
+     * The unique id of the Recipe that this activity is displaying
      */
-    private static final int RECIPE_DETAIL_LOADER_ID = 1688;
+    private long mRecipeId;
 
     /**
-     * The unique id of the Recipe that this activity is displaying
+     * Pending get of the recipe, cancelled once the activity is destroyed
      */
-    private long mRecipeId;
+    private RecipeRepository.Request mRecipeRequest;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -137,12 +128,6 @@ public class RecipeDetailActivity extends AppCompatActivity implements
         } else if (getIntent().hasExtra(EXTRA_RECIPE_ID)) {
             // Get the recipeId and form the extra recipeId
             mRecipeId = getIntent().getLongExtra(EXTRA_RECIPE_ID, -1L);
-
-            // Init the cursorLoader, handle the callback with this activity
-            // pass in the recipe id as the cursor loader argument
-            Bundle args = new Bundle();
-            args.putLong(EXTRA_RECIPE_ID, mRecipeId);
-            getSupportLoaderManager().restartLoader(RECIPE_DETAIL_LOADER_ID, args, this);
         }
 
         /* Get savedInstanceState vars */
@@ -150,6 +135,20 @@ public class RecipeDetailActivity extends AppCompatActivity implements
             mStepPosition = savedInstanceState.getInt(EXTRA_STEP_POSITION);
         }
 
+        // Get the recipe from the repository, and again whenever it changes, once the
+        // position is known, a recipe in memory is set up right away
+        if (mRecipe == null && getIntent().hasExtra(EXTRA_RECIPE_ID)) {
+            RecipeRepository.getInstance(this).addOnRecipesChangedListener(this);
+            loadRecipe();
+        }
+
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        RecipeRepository.getInstance(this).removeOnRecipesChangedListener(this);
+        if (mRecipeRequest != null) mRecipeRequest.cancel();
     }
 
     /**
@@ -260,40 +259,35 @@ public class RecipeDetailActivity extends AppCompatActivity implements
         if (getSupportActionBar() != null) getSupportActionBar().setTitle(title);
     }
 
-    @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        /* Return a cursor with a particular Recipe Data from Database */
-        long recipeId = args.getLong(EXTRA_RECIPE_ID);
-        Uri recipeIdUri = RecipeDbContract.buildRecipeUriWithId(recipeId);
-
-        return new CursorLoader(this,
-                recipeIdUri,
-                null,
-                null,
-                null,
-                null);
-    }
-
-    @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        if (data != null)
-            new DbMultiTableParsingAsyncTask()
-                    .setContentResolver(this.getContentResolver())
-                    .setCursor(data)
-                    .setListener(new DbMultiTableParsingAsyncTask.OnParsingActionComplete() {
-                        @Override
-                        public void onEntriesParsed(ArrayList<Recipe> recipes) {
-                            mRecipe = recipes.get(0);
-
-                            // Continue setting up the UI
-                            setupRecipeDetail();
-                        }
-                    }).execute();
+    /**
+     * loadRecipe() gets the recipe along with its ingredients and steps, from memory if the
+     * repository has it or from the client database otherwise
+     */
+    private void loadRecipe() {
+        // Only the latest get is delivered
+        if (mRecipeRequest != null) mRecipeRequest.cancel();
+        mRecipeRequest = RecipeRepository.getInstance(this).getRecipe(mRecipeId,
+                new RecipeRepository.OnRecipeLoadedListener() {
+                    @Override
+                    public void onRecipeLoaded(Recipe recipe) {
+                        if (recipe == null) return;
+                        mRecipe = recipe;
+
+                        // Continue setting up the UI
+                        setupRecipeDetail();
+                    }
+                });
     }
 
+    /**
+     * Callback from the RecipeRepository when recipes changed in the client database, the
+     * shown recipe is reloaded if it is one of them.
+     *
+     * @param recipeUid the uid of the changed recipe, or RecipeRepository.ALL_RECIPES
+     */
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        mRecipe = null;
+    public void onRecipesChanged(long recipeUid) {
+        if (recipeUid == mRecipeId || recipeUid == RecipeRepository.ALL_RECIPES) loadRecipe();
     }
 
     /**
@@ -24,15 +24,10 @@ package com.andrewclam.bakingapp;
 
 import android.content.Context;
 import android.content.res.Resources.Theme;
-import android.database.Cursor;
-import android.net.Uri;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v4.app.Fragment;
-import android.support.v4.app.LoaderManager;
 import android.support.v4.content.ContextCompat;
-import android.support.v4.content.CursorLoader;
-import android.support.v4.content.Loader;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.ThemedSpinnerAdapter;
 import android.support.v7.widget.Toolbar;
@@ -46,8 +41,7 @@ import android.widget.ArrayAdapter;
 import android.widget.Spinner;
 import android.widget.TextView;
 
-import com.andrewclam.bakingapp.asyncTasks.DbMultiTableParsingAsyncTask;
-import com.andrewclam.bakingapp.data.RecipeDbContract;
+import com.andrewclam.bakingapp.data.RecipeRepository;
 import com.andrewclam.bakingapp.models.Recipe;
 import com.andrewclam.bakingapp.models.Step;
 import com.google.android.exoplayer2.ui.BuildConfig;
@@ -62,7 +56,7 @@ import static com.andrewclam.bakingapp.Constants.EXTRA_TWO_PANE_MODE;
 
 public class StepDetailActivity extends AppCompatActivity implements
         StepDetailFragment.OnStepDetailFragmentInteraction,
-        LoaderManager.LoaderCallbacks<Cursor>{
+        RecipeRepository.OnRecipesChangedListener {
 
     private static final String TAG = StepDetailActivity.class.getSimpleName();
 
@@ -87,17 +81,14 @@ public class StepDetailActivity extends AppCompatActivity implements
     private StepsAdapter mStepsAdapter;
 
     /**
-     * LoaderManager Implementation for Loading offline db data
-     * This ID will be used to identify the Loader responsible for loading our offline database. In
-     * some cases, one Activity can deal with many Loaders. However, in our case, there is only one.
-     * We will still use this ID to initialize the loader and create the loader for best practice.
+     * The UID of the recipe
      */
-    private static final int RECIPE_STEP_DETAIL_LOADER_ID = 1688;
+    private long mRecipeId;
 
     /**
-     * The UID of the recipe
+     * Pending get of the recipe, cancelled once the activity is destroyed
      */
-    private long mRecipeId;
+    private RecipeRepository.Request mRecipeRequest;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -117,12 +108,6 @@ public class StepDetailActivity extends AppCompatActivity implements
         {
             // Get the recipeId and form the extra recipeId
             mRecipeId = getIntent().getLongExtra(EXTRA_RECIPE_ID, -1L);
-
-            // Init the cursorLoader, handle the callback with this activity
-            // pass in the recipe id as the cursor loader argument
-            Bundle args = new Bundle();
-            args.putLong(EXTRA_RECIPE_ID,mRecipeId);
-            getSupportLoaderManager().restartLoader(RECIPE_STEP_DETAIL_LOADER_ID,args,this);
         }
 
         if (getIntent().hasExtra(EXTRA_STEP_POSITION)) {
@@ -155,6 +140,13 @@ public class StepDetailActivity extends AppCompatActivity implements
             Log.d(TAG,"Activity onSaveInstanceState() called, player position restored: " + mPlayerPositionMs);
             Log.d(TAG,"Activity onSaveInstanceState() called, restored position: " + mStepPosition);
         }
+
+        // Get the recipe from the repository, and again whenever it changes, once the
+        // position is known, a recipe in memory is set up right away
+        if (getIntent().hasExtra(EXTRA_RECIPE_ID)) {
+            RecipeRepository.getInstance(this).addOnRecipesChangedListener(this);
+            loadRecipe();
+        }
     }
 
     /**
@@ -227,46 +219,37 @@ public class StepDetailActivity extends AppCompatActivity implements
     }
 
     /**
-     * CursorLoader and LoaderManager Implementation
-     * Do db query off the main thread and communicate via these callbacks
+     * loadRecipe() gets the recipe along with its steps, from memory if the repository has it
+     * or from the client database otherwise
      */
-    @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        /* Return a cursor with a particular Recipe Data from Database */
-        long recipeId = args.getLong(EXTRA_RECIPE_ID);
-        Uri recipeIdUri = RecipeDbContract.buildRecipeUriWithId(recipeId);
-
-        return new CursorLoader(this,
-                recipeIdUri,
-                null,
-                null,
-                null,
-                null);
-    }
-
-    @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        if (data != null)
-            new DbMultiTableParsingAsyncTask()
-                    .setContentResolver(this.getContentResolver())
-                    .setCursor(data)
-                    .setListener(new DbMultiTableParsingAsyncTask.OnParsingActionComplete() {
-                        @Override
-                        public void onEntriesParsed(ArrayList<Recipe> recipes) {
-                            Recipe recipe = recipes.get(0);
-                            mRecipeName = recipe.getName();
-                            mSteps = recipe.getSteps();
-
-                            // Continue setting up the UI
-                            setupStepDetail();
-                        }
-                    }).execute();
+    private void loadRecipe() {
+        // Only the latest get is delivered
+        if (mRecipeRequest != null) mRecipeRequest.cancel();
+        mRecipeRequest = RecipeRepository.getInstance(this).getRecipe(mRecipeId,
+                new RecipeRepository.OnRecipeLoadedListener() {
+                    @Override
+                    public void onRecipeLoaded(Recipe recipe) {
+                        if (recipe == null) return;
+                        mRecipeName = recipe.getName();
+
+                        // The recipe is shared by the repository, the adapter gets a copy
+                        mSteps = new ArrayList<>(recipe.getSteps());
+
+                        // Continue setting up the UI
+                        setupStepDetail();
+                    }
+                });
     }
 
+    /**
+     * Callback from the RecipeRepository when recipes changed in the client database, the
+     * shown recipe is reloaded if it is one of them.
+     *
+     * @param recipeUid the uid of the changed recipe, or RecipeRepository.ALL_RECIPES
+     */
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        mRecipeName = null;
-        mSteps.clear();
+    public void onRecipesChanged(long recipeUid) {
+        if (recipeUid == mRecipeId || recipeUid == RecipeRepository.ALL_RECIPES) loadRecipe();
     }
 
     /**
@@ -370,6 +353,8 @@ public class StepDetailActivity extends AppCompatActivity implements
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        RecipeRepository.getInstance(this).removeOnRecipesChangedListener(this);
+        if (mRecipeRequest != null) mRecipeRequest.cancel();
         mNavSpinner.setOnItemSelectedListener(null);
 
         if (mStepsAdapter != null) {
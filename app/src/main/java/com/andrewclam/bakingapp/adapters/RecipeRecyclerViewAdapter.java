@@ -32,6 +32,7 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.andrewclam.bakingapp.R;
+import com.andrewclam.bakingapp.data.RecipeSnapshot;
 import com.andrewclam.bakingapp.models.Recipe;
 import com.squareup.picasso.Picasso;
 
@@ -55,6 +56,9 @@ public class RecipeRecyclerViewAdapter extends RecyclerView.Adapter<RecipeRecycl
     /* Data, list of recipes */
     private ArrayList<Recipe> mRecipes;
 
+    /* Data, catalog of recipes read in place, used instead of mRecipes when set */
+    private RecipeSnapshot.Catalog mCatalog;
+
     /* Context for getting application resources*/
     private final Context mContext;
 
@@ -106,16 +110,26 @@ public class RecipeRecyclerViewAdapter extends RecyclerView.Adapter<RecipeRecycl
     public void onBindViewHolder(RecipeViewHolder holder, int position) {
         /* This is where we bind data to the ViewHolder */
 
-        // Get the posterPath info from the entry item at the adapter position
-        Recipe recipe = mRecipes.get(position);
-        String name = recipe.getName();
-        int servings = recipe.getServings();
+        // Get the posterPath info from the entry item at the adapter position, a catalog
+        // only has these fields read, the rest of the recipe is left undecoded
+        String name;
+        int servings;
+        String imageURL;
+        if (mCatalog != null) {
+            name = mCatalog.getName(position);
+            servings = mCatalog.getServings(position);
+            imageURL = mCatalog.getImageURL(position);
+        } else {
+            Recipe recipe = mRecipes.get(position);
+            name = recipe.getName();
+            servings = recipe.getServings();
+            imageURL = recipe.getImageURL();
+        }
 
         // Call holder's set method to set the ui elements
         holder.setNameTv(name);
         holder.setServingTv(servings);
 
-        String imageURL = recipe.getImageURL();
         Picasso.with(mContext)
                 .load(Uri.parse(imageURL))
                 .placeholder(R.drawable.ic_cupcake_full_color)
@@ -130,6 +144,7 @@ public class RecipeRecyclerViewAdapter extends RecyclerView.Adapter<RecipeRecycl
      */
     @Override
     public int getItemCount() {
+        if (mCatalog != null) return mCatalog.size();
         if (mRecipes == null || mRecipes.isEmpty()) return 0;
         return mRecipes.size();
     }
@@ -140,10 +155,49 @@ public class RecipeRecyclerViewAdapter extends RecyclerView.Adapter<RecipeRecycl
      * @param mRecipes the new dataset that we want to update the adapter with
      */
     public void setRecipeData(ArrayList<Recipe> mRecipes) {
-        this.mRecipes = mRecipes;
+        // Keep a copy, rows are appended to it as recipes are streamed in
+        this.mRecipes = mRecipes != null ? new ArrayList<>(mRecipes) : new ArrayList<Recipe>();
+        this.mCatalog = null;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * setRecipeCatalog() updates the adapter's current data set with a catalog read in place,
+     * a recipe is only decoded in full when it is clicked
+     *
+     * @param catalog the new dataset that we want to update the adapter with
+     */
+    public void setRecipeCatalog(RecipeSnapshot.Catalog catalog) {
+        this.mRecipes = new ArrayList<>();
+        this.mCatalog = catalog;
         notifyDataSetChanged();
     }
 
+    /**
+     * appendRecipe() adds a single recipe to the adapter's data set as it is streamed in,
+     * a recipe already in the data set is replaced in place
+     *
+     * @param recipe the recipe to add
+     */
+    public void appendRecipe(Recipe recipe) {
+        if (mCatalog != null) {
+            // Decode the catalog so the recipe can be merged into it
+            mRecipes = mCatalog.getRecipes();
+            mCatalog = null;
+        }
+
+        for (int i = 0; i < mRecipes.size(); i++) {
+            if (mRecipes.get(i).getUid() == recipe.getUid()) {
+                mRecipes.set(i, recipe);
+                notifyItemChanged(i);
+                return;
+            }
+        }
+
+        mRecipes.add(recipe);
+        notifyItemInserted(mRecipes.size() - 1);
+    }
+
     /**
      * Callback Interface
      * Handle on itemClick event in each itemView inside the RecyclerView
@@ -178,7 +232,9 @@ public class RecipeRecyclerViewAdapter extends RecyclerView.Adapter<RecipeRecycl
                     int adapterPosition = getAdapterPosition();
 
                     // 2) Find the corresponding clicked entry in the entries
-                    Recipe entry = mRecipes.get(adapterPosition);
+                    Recipe entry = mCatalog != null
+                            ? mCatalog.getRecipe(adapterPosition)
+                            : mRecipes.get(adapterPosition);
 
                     // 3) Use onClickHandler to notify the activity of a onClick event
                     // pass in the retrieved object
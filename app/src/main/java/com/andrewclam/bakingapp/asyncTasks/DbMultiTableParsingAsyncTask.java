@@ -28,26 +28,25 @@ import android.os.AsyncTask;
 import android.support.annotation.NonNull;
 import android.util.Log;
 
+import com.andrewclam.bakingapp.data.FullRecipeHydrator;
 import com.andrewclam.bakingapp.data.RecipeDbContract;
+import com.andrewclam.bakingapp.data.RecipeMergeHydrator;
 import com.andrewclam.bakingapp.espresso.SimpleIdlingResource;
-import com.andrewclam.bakingapp.models.Ingredient;
 import com.andrewclam.bakingapp.models.Recipe;
-import com.andrewclam.bakingapp.models.Step;
 
 import java.util.ArrayList;
 
-import static com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY;
-import static com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry.CONTENT_URI_INGREDIENT;
-import static com.andrewclam.bakingapp.data.RecipeDbContract.StepEntry.COLUMN_STEP_RECIPE_KEY;
-import static com.andrewclam.bakingapp.data.RecipeDbContract.StepEntry.CONTENT_URI_STEP;
-
 /**
  * Created by Andrew Chi Heng Lam on 8/31/2017.
  * <p>
  * DbMultiTableParsingAsyncTask (Hackish)
  * Rudimentary implementation of a multi-table query parsing to a list of model class
  * An implementation of the AsyncTask class to query database IO on a separate thread
- *
+ * <p>
+ * A cursor of the full recipes, see {@link RecipeDbContract.FullRecipeEntry}, already has the
+ * ingredients and the steps and is read in a single pass with {@link FullRecipeHydrator}.
+ * A cursor of the recipes alone takes two more queries, for all of their ingredients and all
+ * of their steps, merged into the recipes by {@link RecipeMergeHydrator}.
  */
 
 public class DbMultiTableParsingAsyncTask extends AsyncTask<Void, Void, ArrayList<Recipe>> {
@@ -147,46 +146,17 @@ public class DbMultiTableParsingAsyncTask extends AsyncTask<Void, Void, ArrayLis
 
     @Override
     protected ArrayList<Recipe> doInBackground(Void... Void) {
-        // Create an arrayList to store the entries
-        final ArrayList<Recipe> entries = new ArrayList<>();
-
-        while(mCursor.moveToNext()){
-            // Create a new entry to store the database
-            final Recipe entry = new Recipe();
-
-            // Get the index of each column from the cursor (LEFT JOINED TABLE)
-            // Parent Joined Table - Recipe Columns
-            int recipeIdColIndex =
-                    mCursor.getColumnIndex(RecipeDbContract.RecipeEntry.COLUMN_RECIPE_UID);
-            int recipeNameColIndex =
-                    mCursor.getColumnIndex(RecipeDbContract.RecipeEntry.COLUMN_RECIPE_NAME);
-            int servingColIndex =
-                    mCursor.getColumnIndex(RecipeDbContract.RecipeEntry.COLUMN_RECIPE_SERVINGS);
-            int imageUrlColIndex =
-                    mCursor.getColumnIndex(RecipeDbContract.RecipeEntry.COLUMN_RECIPE_IMAGE_URL);
-
-            // Set each field to the entry
-            Long recipeId = mCursor.getLong(recipeIdColIndex);
-
-            entry.setUid(recipeId);
-            entry.setName(mCursor.getString(recipeNameColIndex));
-            entry.setServings(mCursor.getInt(servingColIndex));
-            entry.setImageURL(mCursor.getString(imageUrlColIndex));
-
-            /* Child Tables */
-            // Steps and Ingredients
-            try {
-                parseIngredients(entry,recipeId);
-                parseSteps(entry,recipeId);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-
-            // Add the populated entry into the entry list
-            entries.add(entry);
+        // The children are in the cursor already, no further queries
+        if (FullRecipeHydrator.isFullRecipeCursor(mCursor)) {
+            ArrayList<Recipe> entries = FullRecipeHydrator.hydrate(mCursor);
+            mCursor.close();
+            return entries;
         }
 
-        // Close the cursor after the loop
+        // Two more queries for all the ingredients and all the steps, merged by recipe
+        ArrayList<Recipe> entries = RecipeMergeHydrator.hydrate(mContentResolver, mCursor);
+
+        // Close the cursor after the merge
         mCursor.close();
 
         return entries;
@@ -206,102 +176,6 @@ public class DbMultiTableParsingAsyncTask extends AsyncTask<Void, Void, ArrayLis
         }
     }
 
-    /**
-     * Child Table - Steps
-     * SubRoutine Parsing Method
-     * get and parse the rows that has matching the foreign key from the parent table
-     */
-    synchronized private void parseSteps(Recipe entry, Long recipeId) throws Exception {
-        ArrayList<Step> steps = new ArrayList<>();
-        try {
-            Cursor stepCursor = mContentResolver.query(
-                    CONTENT_URI_STEP,
-                    null,
-                    COLUMN_STEP_RECIPE_KEY + "=?",
-                    new String[]{String.valueOf(recipeId)},
-                    null);
-
-            if (stepCursor != null) {
-                // Parse the steps from the stepCursor
-                while (stepCursor.moveToNext()) {
-                    Step step = new Step();
-
-                    int stepUidIndex =
-                            stepCursor.getColumnIndex(RecipeDbContract.StepEntry.COLUMN_STEP_UID);
-                    int stepIdIndex =
-                            stepCursor.getColumnIndex(RecipeDbContract.StepEntry.COLUMN_STEP_NUM);
-                    int shortDescriptionIndex =
-                            stepCursor.getColumnIndex(RecipeDbContract.StepEntry.COLUMN_STEP_SHORT_DESCRIPTION);
-                    int descriptionIndex =
-                            stepCursor.getColumnIndex(RecipeDbContract.StepEntry.COLUMN_STEP_DESCRIPTION);
-                    int thumbnailIndex =
-                            stepCursor.getColumnIndex(RecipeDbContract.StepEntry.COLUMN_STEP_THUMBNAIL_URL);
-                    int videoIndex =
-                            stepCursor.getColumnIndex(RecipeDbContract.StepEntry.COLUMN_STEP_VIDEO_URL);
-
-                    step.setUid(stepCursor.getString(stepUidIndex));
-                    step.setStepNum(stepCursor.getLong(stepIdIndex));
-                    step.setShortDescription(stepCursor.getString(shortDescriptionIndex));
-                    step.setDescription(stepCursor.getString(descriptionIndex));
-                    step.setThumbnailURL(stepCursor.getString(thumbnailIndex));
-                    step.setVideoURL(stepCursor.getString(videoIndex));
-
-                    steps.add(step);
-                }
-
-                stepCursor.close();
-            }
-        }catch (Exception e) {
-            throw new Exception (e.getLocalizedMessage());
-        }finally
-        {
-            entry.setSteps(steps);
-        }
-    }
-
-    /**
-     * Child Table - Ingredients
-     * SubRoutine Parsing Method
-     * get and parse the rows that has matching the foreign key from the parent table
-     */
-    synchronized private void parseIngredients(Recipe entry, Long recipeId) throws Exception {
-        ArrayList<Ingredient> ingredients = new ArrayList<>();
-        try {
-            Cursor ingredientCursor = mContentResolver.query(
-                    CONTENT_URI_INGREDIENT,
-                    null,
-                    COLUMN_INGREDIENT_RECIPE_KEY + "=?",
-                    new String[]{String.valueOf(recipeId)},
-                    null);
-
-            // Parse the ingredients
-            if (ingredientCursor != null) {
-                while (ingredientCursor.moveToNext()) {
-                    Ingredient ingredient = new Ingredient();
-
-                    int ingredientUidIndex = ingredientCursor.getColumnIndex(RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_UID);
-                    int ingredientMeasureIndex = ingredientCursor.getColumnIndex(RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_MEASURE);
-                    int ingredientNameIndex = ingredientCursor.getColumnIndex(RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_NAME);
-                    int ingredientQuantityIndex = ingredientCursor.getColumnIndex(RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_QUANTITY);
-
-                    ingredient.setUid(ingredientCursor.getString(ingredientUidIndex));
-                    ingredient.setIngredientName(ingredientCursor.getString(ingredientNameIndex));
-                    ingredient.setMeasure(ingredientCursor.getString(ingredientMeasureIndex));
-                    ingredient.setQuantity(ingredientCursor.getDouble(ingredientQuantityIndex));
-
-                    ingredients.add(ingredient);
-                }
-                ingredientCursor.close();
-            }
-        }catch (Exception e)
-        {
-            throw new Exception (e.getLocalizedMessage());
-        }finally
-        {
-            entry.setIngredients(ingredients);
-        }
-    }
-
     /**
      * Interface for callback to the listener at stages where UI change is required
      * postExecute to notify caller whether the contentResolver.update() was successful.
@@ -22,19 +22,21 @@
 
 package com.andrewclam.bakingapp.asyncTasks;
 
+import android.content.Context;
 import android.os.AsyncTask;
 import android.util.Log;
 
 import com.andrewclam.bakingapp.espresso.SimpleIdlingResource;
 import com.andrewclam.bakingapp.models.Recipe;
-import com.andrewclam.bakingapp.utils.NetworkUtils;
-import com.andrewclam.bakingapp.utils.RecipeJsonUtil;
+import com.andrewclam.bakingapp.models.RecipeChangeSet;
+import com.andrewclam.bakingapp.sync.FullFeedRecipeSource;
+import com.andrewclam.bakingapp.sync.RecipeSource;
+import com.andrewclam.bakingapp.utils.RecipeParser;
+import com.andrewclam.bakingapp.utils.RetryPolicy;
 
 import org.json.JSONException;
 
 import java.io.IOException;
-import java.net.URL;
-import java.util.ArrayList;
 
 /**
  * Created by Andrew Chi Heng Lam on 9/2/2017.
@@ -43,7 +45,7 @@ import java.util.ArrayList;
  * An implementation of the AsyncTask class to do network IO on a separate thread,
  */
 
-public class FetchRecipeAsyncTask extends AsyncTask<Void, Void, ArrayList<Recipe>> {
+public class FetchRecipeAsyncTask extends AsyncTask<Void, Recipe, RecipeChangeSet> {
     /* Debug Tag */
     private static final String TAG = FetchRecipeAsyncTask.class.getSimpleName();
 
@@ -53,6 +55,22 @@ public class FetchRecipeAsyncTask extends AsyncTask<Void, Void, ArrayList<Recipe
     /* String of the URL to get the recipe */
     private String mDataURL;
 
+    /* Source of the recipes, defaults to the full feed at the data URL */
+    private RecipeSource mSource;
+
+    /* Application context, to persist the sync state of the source */
+    // optional, without it every fetch downloads and parses the full response
+    private Context mContext;
+
+    /* Timeouts, retries and deadline of the fetch from the default source */
+    private RetryPolicy mRetryPolicy = new RetryPolicy();
+
+    /* Whether to publish each recipe as soon as it is parsed */
+    private boolean mStreaming;
+
+    /* Whether the default source asks for the binary recipe feed */
+    private boolean mBinaryFeed;
+
     /* Idling Resource */
     // for Espresso Test to know when the device completes network or other long transactions
     private SimpleIdlingResource mIdlingResource;
@@ -72,6 +90,41 @@ public class FetchRecipeAsyncTask extends AsyncTask<Void, Void, ArrayList<Recipe
         return this;
     }
 
+    public FetchRecipeAsyncTask setSource(RecipeSource source) {
+        this.mSource = source;
+        return this;
+    }
+
+    public FetchRecipeAsyncTask setContext(Context context) {
+        this.mContext = context.getApplicationContext();
+        return this;
+    }
+
+    public FetchRecipeAsyncTask setRetryPolicy(RetryPolicy retryPolicy) {
+        this.mRetryPolicy = retryPolicy;
+        return this;
+    }
+
+    /**
+     * setStreaming() publishes each recipe of a full feed to
+     * {@link onFetchRecipeActionListener#onRecipeStreamed(Recipe)} as soon as its JSON object
+     * is parsed, so the first recipes show before the rest of the feed is downloaded.
+     * onRecipeChangesReady() is still called with all the recipes once the feed is complete.
+     */
+    public FetchRecipeAsyncTask setStreaming(boolean streaming) {
+        this.mStreaming = streaming;
+        return this;
+    }
+
+    /**
+     * setBinaryFeed() has the default source negotiate the binary recipe feed with the
+     * server, JSON stays the fallback. It has no effect on a source set with setSource().
+     */
+    public FetchRecipeAsyncTask setBinaryFeed(boolean binaryFeed) {
+        this.mBinaryFeed = binaryFeed;
+        return this;
+    }
+
     public FetchRecipeAsyncTask setIdlingResource(SimpleIdlingResource mIdlingResource)
     {
         this.mIdlingResource = mIdlingResource;
@@ -102,9 +155,9 @@ public class FetchRecipeAsyncTask extends AsyncTask<Void, Void, ArrayList<Recipe
             msg = msg.concat("Must set the mListener for this task." + "\n");
         }
 
-        if (mDataURL == null) {
+        if (mDataURL == null && mSource == null) {
             hasError = true;
-            msg = msg.concat("Must set the mDataURL for this task." + "\n");
+            msg = msg.concat("Must set either the mDataURL or the mSource for this task." + "\n");
         }
 
         if (hasError) {
@@ -115,22 +168,23 @@ public class FetchRecipeAsyncTask extends AsyncTask<Void, Void, ArrayList<Recipe
     }
 
     @Override
-    protected ArrayList<Recipe> doInBackground(Void... voids) {
-        // Init a arrayList to store the parsed movie entries
-        ArrayList<Recipe> entries = new ArrayList<>();
+    protected RecipeChangeSet doInBackground(Void... voids) {
+        // Fetch the full feed at the data URL unless another source is set
+        RecipeSource source = mSource != null
+                ? mSource : new FullFeedRecipeSource(mDataURL)
+                .setRetryPolicy(mRetryPolicy)
+                .setBinaryFeed(mBinaryFeed);
 
         try {
-            // Get the url required by the network util
-            URL url = new URL(mDataURL);
-
-            // Get httpResponse using the url
-            String jsonResponse = NetworkUtils.getResponseFromHttpUrl(url);
-
-            // Check for null response
-            if (jsonResponse == null) return entries;
-
-            // Got a JsonResponse from the web, parse the jsonResponse using the JsonUtils
-            entries = RecipeJsonUtil.getRecipesFromJson(jsonResponse);
+            // Get the changes of the recipes since the last sync from the source
+            return source.fetchChanges(mContext, !mStreaming ? null :
+                    new RecipeParser.OnRecipeParsedListener() {
+                        @Override
+                        public void onRecipeParsed(Recipe recipe) {
+                            // Hand the recipe over to the main thread, the fetch carries on
+                            publishProgress(recipe);
+                        }
+                    });
 
         } catch (IOException e) {
             Log.e(TAG, "FetchRecipeAsyncTask - doInBackground - " +
@@ -143,15 +197,32 @@ public class FetchRecipeAsyncTask extends AsyncTask<Void, Void, ArrayList<Recipe
             e.printStackTrace();
             return null;
         }
+    }
 
-        // return the entries
-        return entries;
+    @Override
+    protected void onProgressUpdate(Recipe... recipes) {
+        super.onProgressUpdate(recipes);
+        if (mListener != null) {
+            for (Recipe recipe : recipes) {
+                mListener.onRecipeStreamed(recipe);
+            }
+        }
     }
 
     @Override
-    protected void onPostExecute(ArrayList<Recipe> recipes) {
-        super.onPostExecute(recipes);
-        if (mListener != null) mListener.onRecipesReady(recipes);
+    protected void onPostExecute(RecipeChangeSet changeSet) {
+        super.onPostExecute(changeSet);
+        if (mListener != null) {
+            if (changeSet == null) {
+                // Network or web service error
+                mListener.onFetchFailed();
+            } else if (changeSet.isNotModified()) {
+                mListener.onRecipesNotModified();
+            } else {
+                // A full feed or a delta, along with the sync state to store once it is synced
+                mListener.onRecipeChangesReady(changeSet);
+            }
+        }
 
         /*
           set the idle state to true, this tells the test unit that the
@@ -165,8 +236,24 @@ public class FetchRecipeAsyncTask extends AsyncTask<Void, Void, ArrayList<Recipe
     /**
      * Interface for callback to the listener at stages where UI change is required
      * in preExecute and postExecute.
+     * <p>
+     * onRecipeChangesReady() is called when the source answers with a full feed or a delta,
+     * the change set carries its sync state (validators or sync token) that is only stored
+     * once it is synced. The recipes of a delta should be reloaded from the database once it
+     * is applied.
+     * onRecipesNotModified() is called instead when the server reports the data unchanged
+     * since the last fetch, the cached catalog should be served; onFetchFailed() is called
+     * instead when the fetch failed on a network or web service error.
+     * onRecipeStreamed() is called with each recipe as soon as it is parsed when streaming,
+     * ahead of onRecipeChangesReady(); a retried fetch may stream the same recipe again.
      */
     public interface onFetchRecipeActionListener {
-        void onRecipesReady(ArrayList<Recipe> recipes);
+        void onRecipeStreamed(Recipe recipe);
+
+        void onFetchFailed();
+
+        void onRecipesNotModified();
+
+        void onRecipeChangesReady(RecipeChangeSet changeSet);
     }
 }
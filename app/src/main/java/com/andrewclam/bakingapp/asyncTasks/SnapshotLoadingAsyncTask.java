@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.asyncTasks;
+
+import android.os.AsyncTask;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.andrewclam.bakingapp.data.RecipeSnapshot;
+
+import java.io.File;
+
+/**
+ * SnapshotLoadingAsyncTask reads the {@link RecipeSnapshot} off the main thread, to show the
+ * recipes on cold start before the database is queried or the network is reached. The
+ * recipes are not decoded, they are read in place from the {@link RecipeSnapshot.Catalog}.
+ * <p>
+ * Run it with {@link AsyncTask#THREAD_POOL_EXECUTOR} so it is not queued behind other tasks.
+ */
+
+public class SnapshotLoadingAsyncTask extends AsyncTask<Void, Void, RecipeSnapshot.Catalog> {
+    /* Debug Tag */
+    private static final String TAG = SnapshotLoadingAsyncTask.class.getSimpleName();
+
+    /* Listener for callback */
+    private OnSnapshotLoadedListener mListener;
+
+    /* The snapshot file to read */
+    private File mSnapshotFile;
+
+    /**
+     * No-args constructor
+     */
+    public SnapshotLoadingAsyncTask() {
+    }
+
+    /* Public Setter methods */
+    public SnapshotLoadingAsyncTask setSnapshotFile(@NonNull File snapshotFile) {
+        this.mSnapshotFile = snapshotFile;
+        return this;
+    }
+
+    public SnapshotLoadingAsyncTask setListener(OnSnapshotLoadedListener listener) {
+        this.mListener = listener;
+        return this;
+    }
+
+    @Override
+    protected void onPreExecute() {
+        super.onPreExecute();
+        // Check for required parameter before doInBackground
+        if (mSnapshotFile == null) {
+            String msg = "Must set the mSnapshotFile for this task.";
+            Log.e(TAG, msg);
+            throw new IllegalArgumentException(msg);
+        }
+    }
+
+    @Override
+    protected RecipeSnapshot.Catalog doInBackground(Void... voids) {
+        long startNanos = System.nanoTime();
+        RecipeSnapshot.Catalog catalog = RecipeSnapshot.readCatalog(mSnapshotFile);
+        if (catalog != null) {
+            Log.d(TAG, "doInBackground() loaded " + catalog.size() + " recipes in "
+                    + (System.nanoTime() - startNanos) / 1000 + " us");
+        }
+        return catalog;
+    }
+
+    @Override
+    protected void onPostExecute(RecipeSnapshot.Catalog catalog) {
+        super.onPostExecute(catalog);
+        if (mListener != null) mListener.onSnapshotLoaded(catalog);
+    }
+
+    /**
+     * Callback interface for the loaded snapshot
+     */
+    public interface OnSnapshotLoadedListener {
+        /**
+         * @param catalog the recipes of the snapshot, null if there is no valid snapshot
+         */
+        void onSnapshotLoaded(RecipeSnapshot.Catalog catalog);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import com.andrewclam.bakingapp.data.RecipeDbContract.FullRecipeEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry;
+import com.andrewclam.bakingapp.models.Ingredient;
+import com.andrewclam.bakingapp.models.IngredientCursorMapper;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.RecipeCursorMapper;
+import com.andrewclam.bakingapp.models.Step;
+import com.andrewclam.bakingapp.models.StepCursorMapper;
+
+import java.util.ArrayList;
+
+/**
+ * FullRecipeHydrator reads the recipes along with their ingredients and steps back from a
+ * cursor of {@link FullRecipeEntry} rows, in a single pass and without further queries. The
+ * rows are read with the generated {@link RecipeCursorMapper}, {@link IngredientCursorMapper}
+ * and {@link StepCursorMapper}, which look up the column indexes once per cursor.
+ */
+
+public final class FullRecipeHydrator {
+
+    private FullRecipeHydrator() {
+    }
+
+    /**
+     * isFullRecipeCursor() tells whether the cursor has the rows of {@link FullRecipeEntry}
+     */
+    public static boolean isFullRecipeCursor(@NonNull Cursor cursor) {
+        return cursor.getColumnIndex(FullRecipeEntry.COLUMN_ROW_KIND) != -1;
+    }
+
+    /**
+     * hydrate() reads the recipes from the cursor, from its current position onwards. The
+     * cursor is left open.
+     *
+     * @param cursor a cursor of {@link FullRecipeEntry#CONTENT_URI_FULL_RECIPE} or of
+     *               {@link RecipeDbContract#buildFullRecipeUriWithId(long)}
+     * @return the recipes in the order of the cursor
+     */
+    @NonNull
+    public static ArrayList<Recipe> hydrate(@NonNull Cursor cursor) {
+        // The column indexes are looked up once, by the mappers
+        final int recipeIdIndex = cursor.getColumnIndexOrThrow(RecipeEntry._ID);
+        final int rowKindIndex = cursor.getColumnIndexOrThrow(FullRecipeEntry.COLUMN_ROW_KIND);
+        final int ingredientUidIndex =
+                cursor.getColumnIndexOrThrow(IngredientEntry.COLUMN_INGREDIENT_UID);
+        final RecipeCursorMapper recipeMapper = new RecipeCursorMapper(cursor);
+        final IngredientCursorMapper ingredientMapper = new IngredientCursorMapper(cursor);
+        final StepCursorMapper stepMapper = new StepCursorMapper(cursor);
+
+        ArrayList<Recipe> recipes = new ArrayList<>();
+        Recipe recipe = null;
+        long recipeId = -1;
+
+        while (cursor.moveToNext()) {
+            // The rows of a recipe are consecutive, a new _ID starts the next recipe
+            if (recipe == null || cursor.getLong(recipeIdIndex) != recipeId) {
+                recipeId = cursor.getLong(recipeIdIndex);
+
+                recipe = recipeMapper.read();
+                recipe.setIngredients(new ArrayList<Ingredient>());
+                recipe.setSteps(new ArrayList<Step>());
+                recipes.add(recipe);
+            }
+
+            if (cursor.getInt(rowKindIndex) == FullRecipeEntry.ROW_KIND_STEP) {
+                recipe.getSteps().add(stepMapper.read());
+            } else if (!cursor.isNull(ingredientUidIndex)) {
+                // A recipe without ingredients has a row of null ingredient columns
+                recipe.getIngredients().add(ingredientMapper.read());
+            }
+        }
+
+        return recipes;
+    }
+}
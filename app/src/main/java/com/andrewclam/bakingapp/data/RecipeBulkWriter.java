@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.StepEntry;
+import com.andrewclam.bakingapp.models.Ingredient;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.Step;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * RecipeBulkWriter writes recipes along with their ingredients and steps straight from the
+ * model classes, without a ContentValues per row. Rows are buffered per table and written
+ * with multi-row INSERT statements that are compiled once and bound by position, each one
+ * holding as many rows as SQLite's limit on bound variables allows. The rows of a recipe that
+ * is stored already are updated in place by their key with compiled UPDATE statements, and
+ * only inserted if missing, so they keep their _ID. The rows of a recipe are deleted with
+ * compiled DELETE statements.
+ * <p>
+ * The caller owns the transaction; call {@link #flush()} before committing it
+ * and {@link #close()} once done.
+ */
+
+final class RecipeBulkWriter {
+
+    /* SQLite's default limit on the variables bound to a statement */
+    private static final int MAX_VARIABLES = 999;
+
+    /* Upper bound on the rows of a statement, so the compiled statements stay small */
+    private static final int MAX_ROWS_PER_STATEMENT = 100;
+
+    private final TableWriter<Recipe> mRecipeWriter;
+    private final TableWriter<Ingredient> mIngredientWriter;
+    private final TableWriter<Step> mStepWriter;
+
+    private final SQLiteDatabase mDb;
+
+    /* Compiled on first use */
+    private SQLiteStatement mDeleteIngredients;
+    private SQLiteStatement mDeleteSteps;
+    private SQLiteStatement mDeleteRecipe;
+
+    RecipeBulkWriter(@NonNull SQLiteDatabase db) {
+        mDb = db;
+
+        // The value of a recipe row is its content hash
+        mRecipeWriter = new TableWriter<Recipe>(db, RecipeEntry.TABLE_NAME,
+                RecipeEntry.COLUMN_RECIPE_UID,
+                RecipeEntry.COLUMN_RECIPE_NAME,
+                RecipeEntry.COLUMN_RECIPE_SERVINGS,
+                RecipeEntry.COLUMN_RECIPE_IMAGE_URL,
+                RecipeEntry.COLUMN_RECIPE_CONTENT_HASH) {
+            @Override
+            long keyOf(Recipe recipe) {
+                return recipe.getUid();
+            }
+
+            @Override
+            void bind(SQLiteStatement statement, int index, Recipe recipe, long contentHash) {
+                statement.bindLong(index, recipe.getUid());
+                bindString(statement, index + 1, recipe.getName());
+                statement.bindLong(index + 2, recipe.getServings());
+                bindString(statement, index + 3, recipe.getImageURL());
+                statement.bindLong(index + 4, contentHash);
+            }
+        };
+
+        // The value of a child row is the id of its recipe
+
+        mIngredientWriter = new TableWriter<Ingredient>(db, IngredientEntry.TABLE_NAME,
+                IngredientEntry.COLUMN_INGREDIENT_UID,
+                IngredientEntry.COLUMN_INGREDIENT_NAME,
+                IngredientEntry.COLUMN_INGREDIENT_MEASURE,
+                IngredientEntry.COLUMN_INGREDIENT_QUANTITY,
+                IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY) {
+            @Override
+            long keyOf(Ingredient ingredient) {
+                return ingredient.getUid();
+            }
+
+            @Override
+            void bind(SQLiteStatement statement, int index, Ingredient ingredient,
+                      long recipeId) {
+                statement.bindLong(index, ingredient.getUid());
+                bindString(statement, index + 1, ingredient.getIngredientName());
+                bindString(statement, index + 2, ingredient.getMeasure());
+                statement.bindDouble(index + 3, ingredient.getQuantity());
+                statement.bindLong(index + 4, recipeId);
+            }
+        };
+
+        mStepWriter = new TableWriter<Step>(db, StepEntry.TABLE_NAME,
+                StepEntry.COLUMN_STEP_UID,
+                StepEntry.COLUMN_STEP_NUM,
+                StepEntry.COLUMN_STEP_SHORT_DESCRIPTION,
+                StepEntry.COLUMN_STEP_DESCRIPTION,
+                StepEntry.COLUMN_STEP_THUMBNAIL_URL,
+                StepEntry.COLUMN_STEP_VIDEO_URL,
+                StepEntry.COLUMN_STEP_RECIPE_KEY) {
+            @Override
+            long keyOf(Step step) {
+                return step.getUid();
+            }
+
+            @Override
+            void bind(SQLiteStatement statement, int index, Step step, long recipeId) {
+                statement.bindLong(index, step.getUid());
+                statement.bindLong(index + 1, step.getStepNum());
+                bindString(statement, index + 2, step.getShortDescription());
+                bindString(statement, index + 3, step.getDescription());
+                bindString(statement, index + 4, step.getThumbnailURL());
+                bindString(statement, index + 5, step.getVideoURL());
+                statement.bindLong(index + 6, recipeId);
+            }
+        };
+    }
+
+    /**
+     * add() queues the rows of a recipe, its ingredients and its steps, they are written
+     * as soon as a statement's worth of rows is queued
+     *
+     * @param recipe      the recipe to write
+     * @param contentHash the {@link RecipeContentHash} of the recipe
+     * @return the number of rows queued
+     */
+    int add(@NonNull Recipe recipe, long contentHash) {
+        long recipeId = recipe.getUid();
+        int rowsAdded = 1;
+        mRecipeWriter.add(recipe, contentHash);
+
+        if (recipe.getIngredients() != null) {
+            for (Ingredient ingredient : recipe.getIngredients()) {
+                mIngredientWriter.add(ingredient, recipeId);
+            }
+            rowsAdded += recipe.getIngredients().size();
+        }
+
+        if (recipe.getSteps() != null) {
+            for (Step step : recipe.getSteps()) {
+                mStepWriter.add(step, recipeId);
+            }
+            rowsAdded += recipe.getSteps().size();
+        }
+
+        return rowsAdded;
+    }
+
+    /**
+     * update() updates the rows of a recipe that is stored already, its ingredients and its
+     * steps in place, the ones that are missing are queued to be inserted. The ingredients
+     * and the steps of the recipe that are no longer in it are deleted.
+     *
+     * @param recipe      the recipe to write
+     * @param contentHash the {@link RecipeContentHash} of the recipe
+     * @return the number of rows updated or queued
+     */
+    int update(@NonNull Recipe recipe, long contentHash) {
+        long recipeId = recipe.getUid();
+        int rowsUpdated = 1;
+        mRecipeWriter.upsert(recipe, contentHash);
+
+        Set<Long> ingredientIds = new HashSet<>();
+        if (recipe.getIngredients() != null) {
+            for (Ingredient ingredient : recipe.getIngredients()) {
+                mIngredientWriter.upsert(ingredient, recipeId);
+                ingredientIds.add(ingredient.getUid());
+            }
+            rowsUpdated += recipe.getIngredients().size();
+        }
+        mIngredientWriter.deleteOthers(IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY, recipeId,
+                ingredientIds);
+
+        Set<Long> stepIds = new HashSet<>();
+        if (recipe.getSteps() != null) {
+            for (Step step : recipe.getSteps()) {
+                mStepWriter.upsert(step, recipeId);
+                stepIds.add(step.getUid());
+            }
+            rowsUpdated += recipe.getSteps().size();
+        }
+        mStepWriter.deleteOthers(StepEntry.COLUMN_STEP_RECIPE_KEY, recipeId, stepIds);
+
+        return rowsUpdated;
+    }
+
+    /**
+     * deleteChildren() deletes the ingredients and the steps of a recipe right away, call it
+     * before queueing the recipe again
+     *
+     * @return the number of rows deleted
+     */
+    int deleteChildren(long recipeId) {
+        if (mDeleteIngredients == null) {
+            mDeleteIngredients = mDb.compileStatement("DELETE FROM " + IngredientEntry.TABLE_NAME
+                    + " WHERE " + IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY + " = ?");
+            mDeleteSteps = mDb.compileStatement("DELETE FROM " + StepEntry.TABLE_NAME
+                    + " WHERE " + StepEntry.COLUMN_STEP_RECIPE_KEY + " = ?");
+        }
+        return executeDelete(mDeleteIngredients, recipeId)
+                + executeDelete(mDeleteSteps, recipeId);
+    }
+
+    /**
+     * delete() deletes a recipe along with its ingredients and steps right away
+     *
+     * @return the number of rows deleted
+     */
+    int delete(long recipeId) {
+        if (mDeleteRecipe == null) {
+            mDeleteRecipe = mDb.compileStatement("DELETE FROM " + RecipeEntry.TABLE_NAME
+                    + " WHERE " + RecipeEntry.COLUMN_RECIPE_UID + " = ?");
+        }
+        return deleteChildren(recipeId) + executeDelete(mDeleteRecipe, recipeId);
+    }
+
+    private static int executeDelete(SQLiteStatement statement, long recipeId) {
+        statement.bindLong(1, recipeId);
+        return statement.executeUpdateDelete();
+    }
+
+    /**
+     * flush() writes the queued rows
+     *
+     * @return the number of rows written, updated or deleted by {@link #update} since the last
+     * flush
+     */
+    int flush() {
+        return mRecipeWriter.flush() + mIngredientWriter.flush() + mStepWriter.flush();
+    }
+
+    /**
+     * close() releases the compiled statements, queued rows that were not flushed are dropped
+     */
+    void close() {
+        mRecipeWriter.close();
+        mIngredientWriter.close();
+        mStepWriter.close();
+
+        if (mDeleteIngredients != null) {
+            mDeleteIngredients.close();
+            mDeleteSteps.close();
+        }
+        if (mDeleteRecipe != null) mDeleteRecipe.close();
+    }
+
+    private static void bindString(SQLiteStatement statement, int index,
+                                   @Nullable String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * TableWriter queues the rows of one table and writes them with multi-row INSERT
+     * statements, one compiled statement per number of rows, compiled on first use. The first
+     * column is the unique key of the table, the rows are updated and deleted by it.
+     */
+    private abstract static class TableWriter<T> {
+
+        private final SQLiteDatabase mDb;
+        private final String mTableName;
+        private final String[] mColumns;
+        private final int mRowsPerStatement;
+
+        /* Compiled statements, indexed by their number of rows */
+        private final SQLiteStatement[] mStatements;
+
+        /* Queued rows, the value bound along with each of them and their keys */
+        private final List<T> mRows;
+        private final long[] mValues;
+        private final Set<Long> mQueuedKeys;
+
+        /* Compiled on first use */
+        private SQLiteStatement mUpdateStatement;
+        private SQLiteStatement mDeleteStatement;
+
+        /* Rows written, updated or deleted since the last flush */
+        private int mRowsWritten;
+
+        TableWriter(SQLiteDatabase db, String tableName, String... columns) {
+            mDb = db;
+            mTableName = tableName;
+            mColumns = columns;
+            mRowsPerStatement = rowsPerStatement(columns.length);
+            mStatements = new SQLiteStatement[mRowsPerStatement + 1];
+            mRows = new ArrayList<>(mRowsPerStatement);
+            mValues = new long[mRowsPerStatement];
+            mQueuedKeys = new HashSet<>();
+        }
+
+        /**
+         * bind() binds the columns of a row, from the given index onwards
+         *
+         * @param value a column of the row that is not in the model class
+         */
+        abstract void bind(SQLiteStatement statement, int index, T row, long value);
+
+        /**
+         * keyOf() returns the value of the first column of a row
+         */
+        abstract long keyOf(T row);
+
+        void add(T row, long value) {
+            if (!mQueuedKeys.add(keyOf(row))) {
+                // A row of the same key is queued, write it so this one updates it instead
+                write();
+                update(row, value);
+                return;
+            }
+
+            mValues[mRows.size()] = value;
+            mRows.add(row);
+            if (mRows.size() == mRowsPerStatement) write();
+        }
+
+        /**
+         * upsert() updates the row of the same key in place right away, or queues the row to
+         * be inserted if there is none
+         */
+        void upsert(T row, long value) {
+            if (mQueuedKeys.contains(keyOf(row))) write();
+            if (!update(row, value)) add(row, value);
+        }
+
+        private boolean update(T row, long value) {
+            if (mUpdateStatement == null) {
+                mUpdateStatement = mDb.compileStatement(buildUpdateSql(mTableName, mColumns));
+            }
+            bind(mUpdateStatement, 1, row, value);
+            int rowsUpdated = mUpdateStatement.executeUpdateDelete();
+            mRowsWritten += rowsUpdated;
+            return rowsUpdated > 0;
+        }
+
+        /**
+         * deleteOthers() deletes the rows that have the given value in the given column, but
+         * not one of the given keys
+         */
+        void deleteOthers(String column, long value, Set<Long> keys) {
+            List<Long> otherKeys = new ArrayList<>();
+            Cursor cursor = mDb.query(mTableName, new String[]{mColumns[0]},
+                    column + " = ?", new String[]{String.valueOf(value)},
+                    null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    if (!keys.contains(cursor.getLong(0))) otherKeys.add(cursor.getLong(0));
+                }
+            } finally {
+                cursor.close();
+            }
+
+            if (otherKeys.isEmpty()) return;
+            if (mDeleteStatement == null) {
+                mDeleteStatement = mDb.compileStatement("DELETE FROM " + mTableName
+                        + " WHERE " + mColumns[0] + " = ?");
+            }
+            for (Long key : otherKeys) {
+                mDeleteStatement.bindLong(1, key);
+                mRowsWritten += mDeleteStatement.executeUpdateDelete();
+            }
+        }
+
+        int flush() {
+            write();
+            int rowsWritten = mRowsWritten;
+            mRowsWritten = 0;
+            return rowsWritten;
+        }
+
+        void close() {
+            mRows.clear();
+            mQueuedKeys.clear();
+            if (mUpdateStatement != null) mUpdateStatement.close();
+            if (mDeleteStatement != null) mDeleteStatement.close();
+            for (int i = 0; i < mStatements.length; i++) {
+                if (mStatements[i] != null) {
+                    mStatements[i].close();
+                    mStatements[i] = null;
+                }
+            }
+        }
+
+        private void write() {
+            int rowCount = mRows.size();
+            if (rowCount == 0) return;
+
+            SQLiteStatement statement = getStatement(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                bind(statement, 1 + i * mColumns.length, mRows.get(i), mValues[i]);
+            }
+            mRowsWritten += statement.executeUpdateDelete();
+            statement.clearBindings();
+            mRows.clear();
+            mQueuedKeys.clear();
+        }
+
+        private SQLiteStatement getStatement(int rowCount) {
+            SQLiteStatement statement = mStatements[rowCount];
+            if (statement == null) {
+                statement = mDb.compileStatement(buildInsertSql(mTableName, mColumns, rowCount));
+                mStatements[rowCount] = statement;
+            }
+            return statement;
+        }
+    }
+
+    /**
+     * rowsPerStatement() returns the number of rows written by a full INSERT statement of a
+     * table of the given number of columns, it binds at most {@link #MAX_VARIABLES} variables
+     */
+    static int rowsPerStatement(int columnCount) {
+        return Math.min(MAX_ROWS_PER_STATEMENT, MAX_VARIABLES / columnCount);
+    }
+
+    /**
+     * buildInsertSql() builds an INSERT statement of rowCount rows of placeholders
+     */
+    static String buildInsertSql(String tableName, String[] columns, int rowCount) {
+        StringBuilder row = new StringBuilder("(");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) row.append(", ");
+            row.append('?');
+        }
+        row.append(')');
+
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(columns[i]);
+        }
+        sql.append(") VALUES ");
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(row);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * buildUpdateSql() builds an UPDATE statement of the columns of the row of the key in the
+     * first column, with numbered placeholders so a row binds the same way as in an INSERT
+     */
+    static String buildUpdateSql(String tableName, String[] columns) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+        for (int i = 1; i < columns.length; i++) {
+            if (i > 1) sql.append(", ");
+            sql.append(columns[i]).append(" = ?").append(i + 1);
+        }
+        return sql.append(" WHERE ").append(columns[0]).append(" = ?1").toString();
+    }
+}
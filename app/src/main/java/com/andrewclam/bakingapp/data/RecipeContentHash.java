@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.andrewclam.bakingapp.models.Ingredient;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.Step;
+
+import java.util.List;
+
+/**
+ * RecipeContentHash hashes everything stored of a recipe, its fields, its ingredients and its
+ * steps, so a sync can tell an unchanged recipe apart without comparing its rows.
+ * <p>
+ * The hash is FNV-1a 64-bit over the fields in a fixed order; strings are prefixed with their
+ * length and lists with their size, so shifting a value from one field to the next changes
+ * the hash. Changing what is hashed makes every recipe look changed once, which is harmless.
+ */
+
+public final class RecipeContentHash {
+
+    /* FNV-1a 64-bit parameters */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private RecipeContentHash() {
+    }
+
+    /**
+     * of() hashes the recipe along with its ingredients and steps
+     *
+     * @param recipe the recipe to hash
+     * @return the content hash of the recipe
+     */
+    public static long of(@NonNull Recipe recipe) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = mix(hash, recipe.getUid());
+        hash = mix(hash, recipe.getName());
+        hash = mix(hash, recipe.getServings());
+        hash = mix(hash, recipe.getImageURL());
+
+        List<Ingredient> ingredients = recipe.getIngredients();
+        hash = mix(hash, ingredients != null ? ingredients.size() : -1);
+        if (ingredients != null) {
+            for (Ingredient ingredient : ingredients) {
+                hash = mix(hash, ingredient.getUid());
+                hash = mix(hash, Double.doubleToLongBits(ingredient.getQuantity()));
+                hash = mix(hash, ingredient.getMeasure());
+                hash = mix(hash, ingredient.getIngredientName());
+            }
+        }
+
+        List<Step> steps = recipe.getSteps();
+        hash = mix(hash, steps != null ? steps.size() : -1);
+        if (steps != null) {
+            for (Step step : steps) {
+                hash = mix(hash, step.getUid());
+                hash = mix(hash, step.getStepNum());
+                hash = mix(hash, step.getShortDescription());
+                hash = mix(hash, step.getDescription());
+                hash = mix(hash, step.getThumbnailURL());
+                hash = mix(hash, step.getVideoURL());
+            }
+        }
+
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            hash ^= (value >>> shift) & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, @Nullable String value) {
+        if (value == null) return mix(hash, -1L);
+
+        hash = mix(hash, (long) value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash ^= c & 0xFF;
+            hash *= FNV_PRIME;
+            hash ^= c >>> 8;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -23,22 +23,38 @@
 package com.andrewclam.bakingapp.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
 
+import com.andrewclam.bakingapp.R;
 import com.andrewclam.bakingapp.data.RecipeDbContract.AppWidgetIdEntry;
 import com.andrewclam.bakingapp.data.RecipeDbContract.FavoriteEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.FullRecipeEntry;
 import com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry;
 import com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry;
 import com.andrewclam.bakingapp.data.RecipeDbContract.StepEntry;
+import com.andrewclam.bakingapp.models.Recipe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class RecipeContentProvider extends ContentProvider {
 
@@ -48,6 +64,8 @@ public class RecipeContentProvider extends ContentProvider {
     private static final int CODE_RECIPES = 100;
     private static final int CODE_RECIPE_WITH_ID = 101;
     private static final int CODE_RECIPE_WITH_APP_WIDGET_ID = 102;
+    private static final int CODE_FULL_RECIPES = 103;
+    private static final int CODE_FULL_RECIPE_WITH_ID = 104;
     private static final int CODE_INGREDIENTS = 200;
     private static final int CODE_INGREDIENT_WITH_ID = 201;
     private static final int CODE_STEPS = 300;
@@ -55,6 +73,9 @@ public class RecipeContentProvider extends ContentProvider {
     private static final int CODE_FAVORITES = 400;
     private static final int CODE_APP_WIDGET_IDS = 500;
 
+    // Rows written by syncRecipes() past which the write-ahead log is checkpointed right away
+    private static final int CHECKPOINT_ROWS = 2000;
+
     // Declare a static variable for the Uri matcher that you construct
     private static final UriMatcher sUriMatcher = buildUriMatcher();
     private static final String TAG = RecipeContentProvider.class.getName();
@@ -76,6 +97,11 @@ public class RecipeContentProvider extends ContentProvider {
                 + "/" + RecipeDbContract.PATH_APP_WIDGET_IDS
                 + "/#", CODE_RECIPE_WITH_APP_WIDGET_ID);
 
+        uriMatcher.addURI(RecipeDbContract.AUTHORITY, RecipeDbContract.PATH_RECIPES
+                + "/" + RecipeDbContract.PATH_FULL, CODE_FULL_RECIPES);
+
+        uriMatcher.addURI(RecipeDbContract.AUTHORITY, RecipeDbContract.PATH_RECIPES
+                + "/#/" + RecipeDbContract.PATH_FULL, CODE_FULL_RECIPE_WITH_ID);
 
         // Ingredient Paths
         uriMatcher.addURI(RecipeDbContract.AUTHORITY, RecipeDbContract.PATH_INGREDIENTS,
@@ -105,15 +131,31 @@ public class RecipeContentProvider extends ContentProvider {
     // Member variable for a RecipeDbHelper that's initialized in the onCreate() method
     private RecipeDbHelper mRecipeDbHelper;
 
+    // The uris changed by the batch being applied on the calling thread, notified once the
+    // batch is committed rather than after each of its operations
+    private final ThreadLocal<Set<Uri>> mBatchChangedUris = new ThreadLocal<>();
+
     @Override
     public boolean onCreate() {
         Context context = getContext();
-        mRecipeDbHelper = new RecipeDbHelper(context);
+        mRecipeDbHelper = new RecipeDbHelper(context,
+                context != null && context.getResources().getBoolean(R.bool.useWriteAheadLogging));
         return true;
     }
 
+    /**
+     * Closes the database, for the tests that create the provider themselves
+     */
+    @Override
+    public void shutdown() {
+        mRecipeDbHelper.close();
+    }
+
     /***
      * Handles requests to insert a single new row of data
+     * <p>
+     * A recipe, an ingredient or a step of a uid that is stored already is updated in place
+     * instead, the row keeps its _ID.
      *
      * @param uri the content uri
      * @param values the content values to be inserted given the uri
@@ -128,11 +170,11 @@ public class RecipeContentProvider extends ContentProvider {
         Uri returnUri; // URI to be returned
         switch (match) {
             case CODE_RECIPES:
-                // Insert new values into the database
-                long recipeId = db.insert(
+                // Update the row of the same uid in place, or insert it
+                long recipeId = upsert(db,
                         RecipeEntry.TABLE_NAME,
-                        null,
-                        values);
+                        RecipeEntry.COLUMN_RECIPE_UID,
+                        withoutContentHash(values));
 
                 if (recipeId > 0) {
                     returnUri = ContentUris.withAppendedId(RecipeEntry.CONTENT_URI_RECIPE, recipeId);
@@ -142,10 +184,12 @@ public class RecipeContentProvider extends ContentProvider {
                 break;
 
             case CODE_INGREDIENTS:
-                // Insert new values into the database
-                long ingredientId = db.insert(
+                // Update the row of the same uid in place, or insert it, the content hash of
+                // its recipe is cleared
+                long ingredientId = upsertChild(db,
                         IngredientEntry.TABLE_NAME,
-                        null,
+                        IngredientEntry.COLUMN_INGREDIENT_UID,
+                        IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY,
                         values);
 
                 if (ingredientId > 0) {
@@ -156,10 +200,12 @@ public class RecipeContentProvider extends ContentProvider {
                 break;
 
             case CODE_STEPS:
-                // Insert new values into the database
-                long stepId = db.insert(
+                // Update the row of the same uid in place, or insert it, the content hash of
+                // its recipe is cleared
+                long stepId = upsertChild(db,
                         StepEntry.TABLE_NAME,
-                        null,
+                        StepEntry.COLUMN_STEP_UID,
+                        StepEntry.COLUMN_STEP_RECIPE_KEY,
                         values);
 
                 if (stepId > 0) {
@@ -208,7 +254,7 @@ public class RecipeContentProvider extends ContentProvider {
         }
 
         // Notify the resolver if the uri has been changed, and return the newly inserted URI
-        if (getContext() != null) getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
 
         // Return constructed uri (this points to the newly inserted row of data)
         return returnUri;
@@ -223,6 +269,9 @@ public class RecipeContentProvider extends ContentProvider {
      * are only going to implement bulkInsert. In a normal ContentProvider's implementation,
      * you will probably want to provide proper functionality for the insert method as well.
      *
+     * Rows of a uid that is stored already are updated in place, as in {@link #insert}, and
+     * the content hash of the recipe of an ingredient or a step is cleared the same way.
+     *
      * @param uri    The content:// URI of the insertion request.
      * @param values An array of sets of column_name/value pairs to add to the database.
      *               This must not be {@code null}.
@@ -251,7 +300,8 @@ public class RecipeContentProvider extends ContentProvider {
                 try {
 
                     for (ContentValues value : values) {
-                        long _id = db.insert(RecipeEntry.TABLE_NAME, null, value);
+                        long _id = upsert(db, RecipeEntry.TABLE_NAME,
+                                RecipeEntry.COLUMN_RECIPE_UID, withoutContentHash(value));
                         if (_id != -1) {
                             // If the insert is successful, increment the rowsInserted by one
                             rowsInserted++;
@@ -270,8 +320,7 @@ public class RecipeContentProvider extends ContentProvider {
 
                 // Notify the content resolver of modified dataset if there are rowsInserted
                 if (rowsInserted > 0) {
-                    if (getContext() != null) getContext().getContentResolver()
-                            .notifyChange(uri, null);
+                    notifyChange(uri);
 
                     Log.d(TAG, "Successfully bulk inserted, insertedRows " + rowsInserted + " at "
                             + uri.toString());
@@ -296,8 +345,11 @@ public class RecipeContentProvider extends ContentProvider {
                 // block is complete or throws an error/exception
                 try {
 
+                    // The content hash of the recipe of each row is cleared
                     for (ContentValues value : values) {
-                        long _id = db.insert(IngredientEntry.TABLE_NAME, null, value);
+                        long _id = upsertChild(db, IngredientEntry.TABLE_NAME,
+                                IngredientEntry.COLUMN_INGREDIENT_UID,
+                                IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY, value);
                         if (_id != -1) {
                             // If the insert is successful, increment the rowsInserted by one
                             rowsInserted++;
@@ -317,8 +369,7 @@ public class RecipeContentProvider extends ContentProvider {
 
                 // Notify the content resolver of modified dataset if there are rowsInserted
                 if (rowsInserted > 0) {
-                    if (getContext() != null) getContext().getContentResolver()
-                            .notifyChange(uri, null);
+                    notifyChange(uri);
 
                     Log.d(TAG, "Successfully bulk inserted, insertedRows " + rowsInserted + " at "
                             + uri.toString());
@@ -343,8 +394,11 @@ public class RecipeContentProvider extends ContentProvider {
                 // block is complete or throws an error/exception
                 try {
 
+                    // The content hash of the recipe of each row is cleared
                     for (ContentValues value : values) {
-                        long _id = db.insert(StepEntry.TABLE_NAME, null, value);
+                        long _id = upsertChild(db, StepEntry.TABLE_NAME,
+                                StepEntry.COLUMN_STEP_UID,
+                                StepEntry.COLUMN_STEP_RECIPE_KEY, value);
                         if (_id != -1) {
                             // If the insert is successful, increment the rowsInserted by one
                             rowsInserted++;
@@ -363,8 +417,7 @@ public class RecipeContentProvider extends ContentProvider {
 
                 // Notify the content resolver of modified dataset if there are rowsInserted
                 if (rowsInserted > 0) {
-                    if (getContext() != null) getContext().getContentResolver()
-                            .notifyChange(uri, null);
+                    notifyChange(uri);
 
                     Log.d(TAG, "Successfully bulk inserted, insertedRows " + rowsInserted + " at "
                             + uri.toString());
@@ -379,6 +432,433 @@ public class RecipeContentProvider extends ContentProvider {
         }
     }
 
+    /**
+     * Handles requests to apply a batch of operations. The whole batch runs in a single
+     * transaction, it is either applied in full or not at all, and each changed uri is
+     * notified once after the batch is committed instead of after each operation.
+     *
+     * @param operations the operations to apply, in order
+     * @return the results of the operations
+     * @throws OperationApplicationException if an operation fails, nothing is applied
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(
+            @NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mRecipeDbHelper.getWritableDatabase();
+
+        Set<Uri> changedUris = new LinkedHashSet<>();
+        mBatchChangedUris.set(changedUris);
+
+        ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < operations.size(); i++) {
+                results[i] = operations.get(i).apply(this, results, i);
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mBatchChangedUris.remove();
+        }
+
+        // Committed, notify each changed uri once; the recipe uris of the changed ingredients
+        // and steps are among them already
+        Context context = getContext();
+        if (context != null) {
+            for (Uri uri : changedUris) {
+                context.getContentResolver().notifyChange(uri, null);
+            }
+        }
+
+        Log.d(TAG, "applyBatch() applied " + operations.size() + " operations in one "
+                + "transaction, notified " + changedUris.size() + " uris");
+
+        return results;
+    }
+
+    /**
+     * Syncs recipes along with their ingredients and steps into the database with the
+     * {@link RecipeBulkWriter}, straight from the model classes. Only the recipes whose
+     * {@link RecipeContentHash} differs from the stored one are written, the unchanged ones
+     * are left as they are. A changed recipe is updated in place, along with its ingredients
+     * and steps. Available to callers in the same process, through
+     * {@link android.content.ContentProviderClient#getLocalContentProvider()}.
+     * <p>
+     * The whole sync is a single transaction, it is applied in full or not at all. It is not
+     * yielded to other threads part way: their writes wait for it to commit, their reads run
+     * alongside it with write-ahead logging and see the recipes as they were until then.
+     *
+     * @param recipes       the recipes to sync
+     * @param deleteMissing whether the recipes are the whole catalog, the recipes of the
+     *                      database that are not among them are deleted
+     * @return what the sync did, recipe by recipe
+     * @throws android.database.SQLException if a row can't be written, nothing of the sync is
+     *                                       written
+     */
+    @NonNull
+    public SyncStats syncRecipes(@NonNull List<Recipe> recipes, boolean deleteMissing) {
+        final SQLiteDatabase db = mRecipeDbHelper.getWritableDatabase();
+        RecipeBulkWriter writer = new RecipeBulkWriter(db);
+        SyncStats stats = new SyncStats();
+
+        db.beginTransaction();
+        try {
+            Map<Long, Long> storedHashes = queryContentHashes(db);
+
+            for (Recipe recipe : recipes) {
+                long contentHash = RecipeContentHash.of(recipe);
+                boolean isStored = storedHashes.containsKey(recipe.getUid());
+                Long storedHash = storedHashes.remove(recipe.getUid());
+
+                if (storedHash != null && storedHash == contentHash) {
+                    stats.addUnchanged();
+                    continue;
+                }
+
+                if (isStored) {
+                    stats.addUpdated();
+                    writer.update(recipe, contentHash);
+                } else {
+                    // Child rows left without their recipe would clash with the keys of its own
+                    stats.addInserted();
+                    stats.addRowsTouched(writer.deleteChildren(recipe.getUid()));
+                    writer.add(recipe, contentHash);
+                }
+            }
+            stats.addRowsTouched(writer.flush());
+
+            if (deleteMissing) {
+                // The recipes left are no longer in the catalog
+                for (Long recipeId : storedHashes.keySet()) {
+                    stats.addDeleted();
+                    stats.addRowsTouched(writer.delete(recipeId));
+                }
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            writer.close();
+        }
+
+        Log.d(TAG, "syncRecipes() synced " + recipes.size() + " recipes, " + stats);
+
+        if (stats.getRowsTouched() >= CHECKPOINT_ROWS) mRecipeDbHelper.checkpoint();
+
+        if (stats.hasChanges()) {
+            notifyChange(RecipeEntry.CONTENT_URI_RECIPE);
+            notifyChange(IngredientEntry.CONTENT_URI_INGREDIENT);
+            notifyChange(StepEntry.CONTENT_URI_STEP);
+        }
+        return stats;
+    }
+
+    /**
+     * queryContentHashes() reads the content hash of each stored recipe
+     *
+     * @return the content hashes keyed by recipe id, a null hash if it was never stored
+     */
+    private static Map<Long, Long> queryContentHashes(SQLiteDatabase db) {
+        Map<Long, Long> contentHashes = new HashMap<>();
+        Cursor cursor = db.query(RecipeEntry.TABLE_NAME,
+                new String[]{
+                        RecipeEntry.COLUMN_RECIPE_UID,
+                        RecipeEntry.COLUMN_RECIPE_CONTENT_HASH
+                }, null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                contentHashes.put(cursor.getLong(0),
+                        cursor.isNull(1) ? null : cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return contentHashes;
+    }
+
+    /**
+     * upsert() updates the row of the uid of the values in place, or inserts it if there is
+     * none. The row keeps its _ID and the unique index of the uid is left untouched.
+     *
+     * @return the _ID of the row, -1 if it could not be written
+     */
+    private static long upsert(SQLiteDatabase db, String tableName, String uidColumn,
+                               ContentValues values) {
+        String uid = values.getAsString(uidColumn);
+        if (uid == null) return db.insert(tableName, null, values);
+
+        String[] uidArgs = new String[]{uid};
+        ContentValues updateValues = new ContentValues(values);
+        updateValues.remove(uidColumn);
+
+        db.beginTransaction();
+        try {
+            long rowId;
+            if (db.update(tableName, updateValues, uidColumn + "=?", uidArgs) > 0) {
+                rowId = DatabaseUtils.longForQuery(db, "SELECT " + BaseColumns._ID + " FROM "
+                        + tableName + " WHERE " + uidColumn + "=?", uidArgs);
+            } else {
+                rowId = db.insert(tableName, null, values);
+            }
+
+            db.setTransactionSuccessful();
+            return rowId;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * upsertChild() upserts an ingredient or a step, the content hash of its recipe, before
+     * and after the upsert, is cleared in the same transaction
+     *
+     * @return the _ID of the row, -1 if it could not be written
+     */
+    private static long upsertChild(SQLiteDatabase db, String tableName, String uidColumn,
+                                    String recipeKeyColumn, ContentValues values) {
+        String uid = values.getAsString(uidColumn);
+
+        db.beginTransaction();
+        try {
+            // The row of the uid may be moved to another recipe
+            if (uid != null) {
+                clearContentHashes(db, tableName, recipeKeyColumn,
+                        uidColumn + "=?", new String[]{uid});
+            }
+            long rowId = upsert(db, tableName, uidColumn, values);
+
+            String recipeKey = values.getAsString(recipeKeyColumn);
+            if (recipeKey != null) {
+                clearContentHashes(db, tableName, recipeKeyColumn,
+                        recipeKeyColumn + "=?", new String[]{recipeKey});
+            }
+
+            db.setTransactionSuccessful();
+            return rowId;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * withoutContentHash() clears the content hash of recipe values that don't carry one, so
+     * a recipe written through the provider is synced in full the next time
+     */
+    private static ContentValues withoutContentHash(ContentValues values) {
+        if (values.containsKey(RecipeEntry.COLUMN_RECIPE_CONTENT_HASH)) return values;
+
+        ContentValues hashedValues = new ContentValues(values);
+        hashedValues.putNull(RecipeEntry.COLUMN_RECIPE_CONTENT_HASH);
+        return hashedValues;
+    }
+
+    /**
+     * clearContentHashes() clears the content hash of the recipes of the child rows matching
+     * the selection, so the recipes are synced in full the next time
+     */
+    private static void clearContentHashes(SQLiteDatabase db, String tableName,
+                                           String recipeKeyColumn, @Nullable String selection,
+                                           @Nullable String[] selectionArgs) {
+        String sql = "UPDATE " + RecipeEntry.TABLE_NAME
+                + " SET " + RecipeEntry.COLUMN_RECIPE_CONTENT_HASH + " = NULL"
+                + " WHERE " + RecipeEntry.COLUMN_RECIPE_UID + " IN (SELECT " + recipeKeyColumn
+                + " FROM " + tableName + whereClause(selection) + ")";
+        execSQL(db, sql, selectionArgs);
+    }
+
+    /**
+     * deleteRecipes() deletes the recipes matching the selection, along with their
+     * ingredients and steps, in a transaction
+     *
+     * @return the number of recipes deleted
+     */
+    private static int deleteRecipes(SQLiteDatabase db, @Nullable String selection,
+                                     @Nullable String[] selectionArgs) {
+        String recipeIds = "(SELECT " + RecipeEntry.COLUMN_RECIPE_UID
+                + " FROM " + RecipeEntry.TABLE_NAME + whereClause(selection) + ")";
+
+        db.beginTransaction();
+        try {
+            // Child tables first, then the parent rows
+            db.delete(IngredientEntry.TABLE_NAME,
+                    IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY + " IN " + recipeIds,
+                    selectionArgs);
+            db.delete(StepEntry.TABLE_NAME,
+                    StepEntry.COLUMN_STEP_RECIPE_KEY + " IN " + recipeIds,
+                    selectionArgs);
+            int rowsDeleted = db.delete(RecipeEntry.TABLE_NAME, selection, selectionArgs);
+
+            db.setTransactionSuccessful();
+            return rowsDeleted;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * deleteChildren() deletes the ingredients or the steps matching the selection, the
+     * content hash of their recipes is cleared in the same transaction
+     *
+     * @return the number of rows deleted
+     */
+    private static int deleteChildren(SQLiteDatabase db, String tableName,
+                                      String recipeKeyColumn, @Nullable String selection,
+                                      @Nullable String[] selectionArgs) {
+        db.beginTransaction();
+        try {
+            clearContentHashes(db, tableName, recipeKeyColumn, selection, selectionArgs);
+            int rowsDeleted = db.delete(tableName, selection, selectionArgs);
+
+            db.setTransactionSuccessful();
+            return rowsDeleted;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * updateChildren() updates the ingredients or the steps matching the selection, the
+     * content hash of their recipes, before and after the update, is cleared in the same
+     * transaction
+     *
+     * @return the number of rows updated
+     */
+    private static int updateChildren(SQLiteDatabase db, String tableName,
+                                      String recipeKeyColumn, ContentValues values,
+                                      @Nullable String selection,
+                                      @Nullable String[] selectionArgs) {
+        db.beginTransaction();
+        try {
+            clearContentHashes(db, tableName, recipeKeyColumn, selection, selectionArgs);
+            int rowsUpdated = db.update(tableName, values, selection, selectionArgs);
+
+            // The rows may have been moved to another recipe
+            String recipeKey = values.getAsString(recipeKeyColumn);
+            if (recipeKey != null) {
+                clearContentHashes(db, tableName, recipeKeyColumn,
+                        recipeKeyColumn + "=?", new String[]{recipeKey});
+            }
+
+            db.setTransactionSuccessful();
+            return rowsUpdated;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static String whereClause(@Nullable String selection) {
+        return selection == null || selection.isEmpty() ? "" : " WHERE " + selection;
+    }
+
+    private static void execSQL(SQLiteDatabase db, String sql, @Nullable String[] bindArgs) {
+        if (bindArgs == null || bindArgs.length == 0) {
+            db.execSQL(sql);
+        } else {
+            db.execSQL(sql, bindArgs);
+        }
+    }
+
+    /**
+     * notifyChange() notifies the observers of the uri, or defers it to the end of the batch
+     * if called while applying one. A change of the ingredients or the steps is a change of
+     * the recipes too, it is notified to the recipe uris and their descendants, among them the
+     * full recipes.
+     */
+    private void notifyChange(@NonNull Uri uri) {
+        Set<Uri> batchChangedUris = mBatchChangedUris.get();
+        if (batchChangedUris != null) {
+            batchChangedUris.add(uri);
+        } else if (getContext() != null) {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+
+        String path = uri.getPathSegments().isEmpty() ? null : uri.getPathSegments().get(0);
+        if (RecipeDbContract.PATH_INGREDIENTS.equals(path)
+                || RecipeDbContract.PATH_STEPS.equals(path)) {
+            notifyChange(RecipeEntry.CONTENT_URI_RECIPE);
+        }
+    }
+
+    /**
+     * queryFullRecipes() queries the recipes matching the selection along with their
+     * ingredients and steps, in the rows of {@link FullRecipeEntry}. The ingredient rows and
+     * the step rows are queried apart and put together, rather than joining both child tables
+     * at once, which would repeat each ingredient for each step of the recipe.
+     *
+     * @param selection     the selection of the recipes, on the recipe columns
+     * @param selectionArgs the arguments of the selection
+     */
+    private static Cursor queryFullRecipes(SQLiteDatabase db, String selection,
+                                           String[] selectionArgs) {
+        // Both halves of the query are selected by the same arguments
+        String[] args = null;
+        if (selectionArgs != null) {
+            args = new String[selectionArgs.length * 2];
+            System.arraycopy(selectionArgs, 0, args, 0, selectionArgs.length);
+            System.arraycopy(selectionArgs, 0, args, selectionArgs.length, selectionArgs.length);
+        }
+        return db.rawQuery(buildFullRecipesSql(selection), args);
+    }
+
+    /**
+     * buildFullRecipesSql() builds the query of {@link #queryFullRecipes}
+     */
+    static String buildFullRecipesSql(String selection) {
+        final String recipe = RecipeEntry.TABLE_NAME + ".";
+        final String ingredient = IngredientEntry.TABLE_NAME + ".";
+        final String step = StepEntry.TABLE_NAME + ".";
+        final String recipeColumns =
+                recipe + RecipeEntry._ID + " AS " + RecipeEntry._ID + ", " +
+                recipe + RecipeEntry.COLUMN_RECIPE_UID + " AS " + RecipeEntry.COLUMN_RECIPE_UID + ", " +
+                RecipeEntry.COLUMN_RECIPE_NAME + ", " +
+                RecipeEntry.COLUMN_RECIPE_SERVINGS + ", " +
+                RecipeEntry.COLUMN_RECIPE_IMAGE_URL + ", ";
+        final String where = whereClause(selection);
+
+        // Ordered by recipe, then ingredients before steps, then by the order of the children
+        final String childOrder = "child_order";
+
+        return "SELECT " + recipeColumns +
+                FullRecipeEntry.ROW_KIND_INGREDIENT + " AS " + FullRecipeEntry.COLUMN_ROW_KIND + ", " +
+                ingredient + IngredientEntry._ID + " AS " + childOrder + ", " +
+                IngredientEntry.COLUMN_INGREDIENT_UID + ", " +
+                IngredientEntry.COLUMN_INGREDIENT_QUANTITY + ", " +
+                IngredientEntry.COLUMN_INGREDIENT_MEASURE + ", " +
+                IngredientEntry.COLUMN_INGREDIENT_NAME + ", " +
+                "NULL AS " + StepEntry.COLUMN_STEP_UID + ", " +
+                "NULL AS " + StepEntry.COLUMN_STEP_NUM + ", " +
+                "NULL AS " + StepEntry.COLUMN_STEP_SHORT_DESCRIPTION + ", " +
+                "NULL AS " + StepEntry.COLUMN_STEP_DESCRIPTION + ", " +
+                "NULL AS " + StepEntry.COLUMN_STEP_VIDEO_URL + ", " +
+                "NULL AS " + StepEntry.COLUMN_STEP_THUMBNAIL_URL +
+                " FROM " + RecipeEntry.TABLE_NAME +
+                " LEFT JOIN " + IngredientEntry.TABLE_NAME +
+                " ON " + ingredient + IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY +
+                " = " + recipe + RecipeEntry.COLUMN_RECIPE_UID +
+                where +
+                " UNION ALL " +
+                "SELECT " + recipeColumns +
+                FullRecipeEntry.ROW_KIND_STEP + ", " +
+                step + StepEntry.COLUMN_STEP_NUM + ", " +
+                "NULL, NULL, NULL, NULL, " +
+                StepEntry.COLUMN_STEP_UID + ", " +
+                StepEntry.COLUMN_STEP_NUM + ", " +
+                StepEntry.COLUMN_STEP_SHORT_DESCRIPTION + ", " +
+                StepEntry.COLUMN_STEP_DESCRIPTION + ", " +
+                StepEntry.COLUMN_STEP_VIDEO_URL + ", " +
+                StepEntry.COLUMN_STEP_THUMBNAIL_URL +
+                " FROM " + RecipeEntry.TABLE_NAME +
+                " JOIN " + StepEntry.TABLE_NAME +
+                " ON " + step + StepEntry.COLUMN_STEP_RECIPE_KEY +
+                " = " + recipe + RecipeEntry.COLUMN_RECIPE_UID +
+                where +
+                " ORDER BY " + RecipeEntry._ID + ", " + FullRecipeEntry.COLUMN_ROW_KIND + ", " +
+                childOrder;
+    }
+
     /***
      * Handles requests for data by URI
      *
@@ -472,6 +952,17 @@ public class RecipeContentProvider extends ContentProvider {
                             + appWidgetId);
                 break;
 
+            case CODE_FULL_RECIPES:
+                // One query for the recipes along with their ingredients and steps
+                retCursor = queryFullRecipes(db, selection, selectionArgs);
+                break;
+
+            case CODE_FULL_RECIPE_WITH_ID:
+                retCursor = queryFullRecipes(db,
+                        RecipeEntry.TABLE_NAME + "." + RecipeEntry.COLUMN_RECIPE_UID + "=?",
+                        new String[]{uri.getPathSegments().get(1)});
+                break;
+
             case CODE_INGREDIENTS:
                 retCursor = db.query(IngredientEntry.TABLE_NAME,
                         projection,
@@ -482,6 +973,17 @@ public class RecipeContentProvider extends ContentProvider {
                         sortOrder);
                 break;
 
+            case CODE_INGREDIENT_WITH_ID:
+                // Look up by the integer key of the ingredient, see RecipeKeys
+                retCursor = db.query(IngredientEntry.TABLE_NAME,
+                        projection,
+                        IngredientEntry.COLUMN_INGREDIENT_UID + "=?",
+                        new String[]{uri.getLastPathSegment()},
+                        null,
+                        null,
+                        sortOrder);
+                break;
+
             case CODE_STEPS:
                 retCursor = db.query(StepEntry.TABLE_NAME,
                         projection,
@@ -492,6 +994,17 @@ public class RecipeContentProvider extends ContentProvider {
                         sortOrder);
                 break;
 
+            case CODE_STEP_WITH_ID:
+                // Look up by the integer key of the step, see RecipeKeys
+                retCursor = db.query(StepEntry.TABLE_NAME,
+                        projection,
+                        StepEntry.COLUMN_STEP_UID + "=?",
+                        new String[]{uri.getLastPathSegment()},
+                        null,
+                        null,
+                        sortOrder);
+                break;
+
             case CODE_FAVORITES:
                 retCursor = db.query(FavoriteEntry.TABLE_NAME,
                         projection,
@@ -525,17 +1038,173 @@ public class RecipeContentProvider extends ContentProvider {
         return retCursor;
     }
 
+    /***
+     * Handles requests to delete rows of data by URI
+     * <p>
+     * Deleting recipes deletes their ingredients and steps along with them in the same
+     * transaction. Deleting ingredients or steps clears the content hash of their recipes, so
+     * the next sync writes the recipes in full.
+     *
+     * @param uri the content uri
+     * @param selection the column to form the table, for the directory uris
+     * @param selectionArgs the arguments for the selection column
+     * @return the number of rows deleted
+     */
     @Override
     public int delete(@NonNull Uri uri, String selection, String[] selectionArgs) {
-        // No implementation
-        throw new UnsupportedOperationException("Not yet implemented");
+        final SQLiteDatabase db = mRecipeDbHelper.getWritableDatabase();
+
+        // Write URI matching code to identify the match for the directory
+        int match = sUriMatcher.match(uri);
+        int rowsDeleted;
+        switch (match) {
+            case CODE_RECIPES:
+                rowsDeleted = deleteRecipes(db, selection, selectionArgs);
+                break;
+
+            case CODE_RECIPE_WITH_ID:
+                rowsDeleted = deleteRecipes(db, RecipeEntry.COLUMN_RECIPE_UID + "=?",
+                        new String[]{uri.getPathSegments().get(1)});
+                break;
+
+            case CODE_INGREDIENTS:
+                rowsDeleted = deleteChildren(db, IngredientEntry.TABLE_NAME,
+                        IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY, selection, selectionArgs);
+                break;
+
+            case CODE_INGREDIENT_WITH_ID:
+                rowsDeleted = deleteChildren(db, IngredientEntry.TABLE_NAME,
+                        IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY,
+                        IngredientEntry.COLUMN_INGREDIENT_UID + "=?",
+                        new String[]{uri.getLastPathSegment()});
+                break;
+
+            case CODE_STEPS:
+                rowsDeleted = deleteChildren(db, StepEntry.TABLE_NAME,
+                        StepEntry.COLUMN_STEP_RECIPE_KEY, selection, selectionArgs);
+                break;
+
+            case CODE_STEP_WITH_ID:
+                rowsDeleted = deleteChildren(db, StepEntry.TABLE_NAME,
+                        StepEntry.COLUMN_STEP_RECIPE_KEY,
+                        StepEntry.COLUMN_STEP_UID + "=?",
+                        new String[]{uri.getLastPathSegment()});
+                break;
+
+            case CODE_FAVORITES:
+                rowsDeleted = db.delete(FavoriteEntry.TABLE_NAME, selection, selectionArgs);
+                break;
+
+            case CODE_APP_WIDGET_IDS:
+                rowsDeleted = db.delete(AppWidgetIdEntry.TABLE_NAME, selection, selectionArgs);
+                break;
+
+            // Default case throws an UnsupportedOperationException
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+
+        // Notify the resolver if the uri has been changed
+        if (rowsDeleted > 0) {
+            notifyChange(uri);
+
+            // The child rows went along with the recipes
+            if (match == CODE_RECIPES || match == CODE_RECIPE_WITH_ID) {
+                notifyChange(IngredientEntry.CONTENT_URI_INGREDIENT);
+                notifyChange(StepEntry.CONTENT_URI_STEP);
+            }
+        }
+
+        return rowsDeleted;
     }
 
+    /***
+     * Handles requests to update rows of data by URI, in place
+     * <p>
+     * The uid of a recipe can't be updated, as its ingredients and steps refer to it. Updating
+     * recipes without a content hash, or updating their ingredients or steps, clears the
+     * content hash of the recipes, so the next sync writes them in full.
+     *
+     * @param uri the content uri
+     * @param values the columns to update and their new values
+     * @param selection the column to form the table, for the directory uris
+     * @param selectionArgs the arguments for the selection column
+     * @return the number of rows updated
+     */
     @Override
     public int update(@NonNull Uri uri, ContentValues values, String selection,
                       String[] selectionArgs) {
-        // No implementation
-        throw new UnsupportedOperationException("Not yet implemented");
+        final SQLiteDatabase db = mRecipeDbHelper.getWritableDatabase();
+
+        // Write URI matching code to identify the match for the directory
+        int match = sUriMatcher.match(uri);
+        int rowsUpdated;
+        switch (match) {
+            case CODE_RECIPES:
+                checkRecipeUidNotUpdated(uri, values);
+                rowsUpdated = db.update(RecipeEntry.TABLE_NAME, withoutContentHash(values),
+                        selection, selectionArgs);
+                break;
+
+            case CODE_RECIPE_WITH_ID:
+                checkRecipeUidNotUpdated(uri, values);
+                rowsUpdated = db.update(RecipeEntry.TABLE_NAME, withoutContentHash(values),
+                        RecipeEntry.COLUMN_RECIPE_UID + "=?",
+                        new String[]{uri.getPathSegments().get(1)});
+                break;
+
+            case CODE_INGREDIENTS:
+                rowsUpdated = updateChildren(db, IngredientEntry.TABLE_NAME,
+                        IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY, values,
+                        selection, selectionArgs);
+                break;
+
+            case CODE_INGREDIENT_WITH_ID:
+                rowsUpdated = updateChildren(db, IngredientEntry.TABLE_NAME,
+                        IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY, values,
+                        IngredientEntry.COLUMN_INGREDIENT_UID + "=?",
+                        new String[]{uri.getLastPathSegment()});
+                break;
+
+            case CODE_STEPS:
+                rowsUpdated = updateChildren(db, StepEntry.TABLE_NAME,
+                        StepEntry.COLUMN_STEP_RECIPE_KEY, values,
+                        selection, selectionArgs);
+                break;
+
+            case CODE_STEP_WITH_ID:
+                rowsUpdated = updateChildren(db, StepEntry.TABLE_NAME,
+                        StepEntry.COLUMN_STEP_RECIPE_KEY, values,
+                        StepEntry.COLUMN_STEP_UID + "=?",
+                        new String[]{uri.getLastPathSegment()});
+                break;
+
+            case CODE_FAVORITES:
+                rowsUpdated = db.update(FavoriteEntry.TABLE_NAME, values,
+                        selection, selectionArgs);
+                break;
+
+            case CODE_APP_WIDGET_IDS:
+                rowsUpdated = db.update(AppWidgetIdEntry.TABLE_NAME, values,
+                        selection, selectionArgs);
+                break;
+
+            // Default case throws an UnsupportedOperationException
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+
+        // Notify the resolver if the uri has been changed
+        if (rowsUpdated > 0) notifyChange(uri);
+
+        return rowsUpdated;
+    }
+
+    private static void checkRecipeUidNotUpdated(Uri uri, ContentValues values) {
+        if (values.containsKey(RecipeEntry.COLUMN_RECIPE_UID)) {
+            throw new IllegalArgumentException("The uid of a recipe can't be updated, " +
+                    "its ingredients and steps refer to it: " + uri);
+        }
     }
 
 
@@ -35,7 +35,7 @@ import static com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry.CONTENT
 public class RecipeDbContract {
 
     // The authority, which is how your code knows which Content Provider to access
-    static final String AUTHORITY = "com.andrewclam.bakingapp";
+    public static final String AUTHORITY = "com.andrewclam.bakingapp";
 
     // The base content URI = "content://" + <authority>
     private static final Uri BASE_CONTENT_URI = Uri.parse("content://" + AUTHORITY);
@@ -46,6 +46,7 @@ public class RecipeDbContract {
     static final String PATH_STEPS = "steps";
     static final String PATH_FAVORITES = "favorites";
     static final String PATH_APP_WIDGET_IDS = "app_widget_ids";
+    static final String PATH_FULL = "full";
 
     // Declare a SQLiteQueryBuilder.setTable Statement to JOIN all tables for query
     static final String SET_TABLE_STATEMENT =
@@ -72,6 +73,28 @@ public class RecipeDbContract {
         public static final String COLUMN_RECIPE_NAME = "recipe_name";
         public static final String COLUMN_RECIPE_SERVINGS = "recipe_servings";
         public static final String COLUMN_RECIPE_IMAGE_URL = "recipe_image_url";
+        public static final String COLUMN_RECIPE_CONTENT_HASH = "recipe_content_hash";
+    }
+
+    /**
+     * The rows of recipes/full and recipes/#/full, each of them is a recipe along with either
+     * one of its ingredients or one of its steps, told apart by {@link #COLUMN_ROW_KIND}. The
+     * rows of a recipe are consecutive, its ingredients first and then its steps in order of
+     * their number, so the recipes can be read back in a single pass over the cursor.
+     * A recipe without ingredients has an ingredient row of null ingredient columns.
+     * <p>
+     * The columns are the recipe columns, the row kind, and the ingredient and step columns,
+     * the ones of the other kind being null.
+     */
+    public static final class FullRecipeEntry implements BaseColumns {
+        public static final Uri CONTENT_URI_FULL_RECIPE =
+                CONTENT_URI_RECIPE.buildUpon().appendPath(PATH_FULL).build();
+
+        public static final String COLUMN_ROW_KIND = "row_kind";
+
+        /* Values of COLUMN_ROW_KIND */
+        public static final int ROW_KIND_INGREDIENT = 0;
+        public static final int ROW_KIND_STEP = 1;
     }
 
     public static final class IngredientEntry implements BaseColumns{
@@ -131,6 +154,48 @@ public class RecipeDbContract {
         return CONTENT_URI_RECIPE.buildUpon().appendPath(idStr).build();
     }
 
+    /**
+     * Easy to use helper method to build the uri that points to a specific resource
+     * <p>
+     * Recipe with given its unique recipe id, along with its ingredients and steps, see
+     * {@link FullRecipeEntry}
+     *
+     * @param recipe_id the unique recipe id as fetched from web service)
+     * @return an Uri that points to that particular recipe on the user's database
+     */
+    public static Uri buildFullRecipeUriWithId(long recipe_id) {
+        return CONTENT_URI_RECIPE.buildUpon()
+                .appendPath(String.valueOf(recipe_id))
+                .appendPath(PATH_FULL).build();
+    }
+
+    /**
+     * Easy to use helper method to build the uri that points to a specific resource
+     * <p>
+     * Step with given its unique key
+     *
+     * @param stepUid the key of the step, see {@link RecipeKeys#stepKey(long, long)}
+     * @return an Uri that points to that particular step on the user's database
+     */
+    public static Uri buildStepUriWithUid(long stepUid) {
+        return StepEntry.CONTENT_URI_STEP.buildUpon()
+                .appendPath(String.valueOf(stepUid)).build();
+    }
+
+    /**
+     * Easy to use helper method to build the uri that points to a specific resource
+     * <p>
+     * Ingredient with given its unique key
+     *
+     * @param ingredientUid the key of the ingredient,
+     *                      see {@link RecipeKeys#ingredientKey(long, String)}
+     * @return an Uri that points to that particular ingredient on the user's database
+     */
+    public static Uri buildIngredientUriWithUid(long ingredientUid) {
+        return IngredientEntry.CONTENT_URI_INGREDIENT.buildUpon()
+                .appendPath(String.valueOf(ingredientUid)).build();
+    }
+
     /**
      * Easy to use helper method to build the uri that points to a specific resource
      * <p>
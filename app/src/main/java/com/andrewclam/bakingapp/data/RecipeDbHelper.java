@@ -23,8 +23,12 @@
 package com.andrewclam.bakingapp.data;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
 
 import com.andrewclam.bakingapp.data.RecipeDbContract.AppWidgetIdEntry;
 import com.andrewclam.bakingapp.data.RecipeDbContract.FavoriteEntry;
@@ -35,11 +39,20 @@ import com.andrewclam.bakingapp.data.RecipeDbContract.StepEntry;
 
 class RecipeDbHelper extends SQLiteOpenHelper {
 
+    /* Debug Tag */
+    private static final String TAG = RecipeDbHelper.class.getSimpleName();
+
     // The database name
-    private static final String DATABASE_NAME = "simplyBaking.db";
+    @VisibleForTesting
+    static final String DATABASE_NAME = "simplyBaking.db";
 
     // If you change the database schema, you must increment the database version
-    private static final int DATABASE_VERSION = 1;
+    // and add the migration from the previous version to MIGRATIONS
+    // Version 2 - Integer keys for the steps and the ingredients, see RecipeKeys
+    // Version 3 - Content hash of the recipes, see RecipeContentHash
+    // Version 4 - Rows are updated in place rather than replaced on conflict
+    // Version 5 - Integer recipe uid, indexes on the recipe keys of the child tables
+    private static final int DATABASE_VERSION = 5;
 
     // SQL CREATE TABLE String
     // Create a table to hold the recipes data
@@ -47,12 +60,13 @@ class RecipeDbHelper extends SQLiteOpenHelper {
             "CREATE TABLE " +
                     RecipeEntry.TABLE_NAME + " (" +
                     RecipeEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    RecipeEntry.COLUMN_RECIPE_UID + " TEXT UNIQUE NOT NULL, " +
+                    RecipeEntry.COLUMN_RECIPE_UID + " INTEGER UNIQUE NOT NULL, " +
                     RecipeEntry.COLUMN_RECIPE_NAME + " TEXT NOT NULL, " +
                     RecipeEntry.COLUMN_RECIPE_SERVINGS + " INTEGER NOT NULL, " +
                     RecipeEntry.COLUMN_RECIPE_IMAGE_URL + " TEXT, " +
+                    RecipeEntry.COLUMN_RECIPE_CONTENT_HASH + " INTEGER, " +
 
-                    "UNIQUE (" + RecipeEntry.COLUMN_RECIPE_UID + ") ON CONFLICT REPLACE "
+                    "UNIQUE (" + RecipeEntry.COLUMN_RECIPE_UID + ")"
 
                     +")";
 
@@ -61,13 +75,13 @@ class RecipeDbHelper extends SQLiteOpenHelper {
             "CREATE TABLE " +
                     IngredientEntry.TABLE_NAME + " (" +
                     IngredientEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    IngredientEntry.COLUMN_INGREDIENT_UID + " TEXT UNIQUE NOT NULL, " +
+                    IngredientEntry.COLUMN_INGREDIENT_UID + " INTEGER UNIQUE NOT NULL, " +
                     IngredientEntry.COLUMN_INGREDIENT_NAME + " TEXT NOT NULL, " +
                     IngredientEntry.COLUMN_INGREDIENT_MEASURE + " TEXT NOT NULL, " +
                     IngredientEntry.COLUMN_INGREDIENT_QUANTITY + " REAL NOT NULL, " +
                     IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY + " INTEGER NOT NULL, " +
 
-                    "UNIQUE (" + IngredientEntry.COLUMN_INGREDIENT_UID + ") ON CONFLICT REPLACE " +
+                    "UNIQUE (" + IngredientEntry.COLUMN_INGREDIENT_UID + "), " +
 
                     "FOREIGN KEY (" + IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY + ") " +
                     "REFERENCES " + RecipeEntry.TABLE_NAME + "("+ RecipeEntry.COLUMN_RECIPE_UID + ") "
@@ -81,7 +95,7 @@ class RecipeDbHelper extends SQLiteOpenHelper {
             "CREATE TABLE " +
                     StepEntry.TABLE_NAME + " (" +
                     StepEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    StepEntry.COLUMN_STEP_UID + " TEXT UNIQUE NOT NULL, " +
+                    StepEntry.COLUMN_STEP_UID + " INTEGER UNIQUE NOT NULL, " +
                     StepEntry.COLUMN_STEP_NUM + " INTEGER NOT NULL, " +
                     StepEntry.COLUMN_STEP_SHORT_DESCRIPTION + " TEXT NOT NULL, " +
                     StepEntry.COLUMN_STEP_DESCRIPTION + " TEXT NOT NULL, " +
@@ -89,7 +103,7 @@ class RecipeDbHelper extends SQLiteOpenHelper {
                     StepEntry.COLUMN_STEP_VIDEO_URL + " TEXT, " +
                     StepEntry.COLUMN_STEP_RECIPE_KEY + " INTEGER NOT NULL, " +
 
-                    "UNIQUE (" + StepEntry.COLUMN_STEP_UID + ") ON CONFLICT REPLACE " +
+                    "UNIQUE (" + StepEntry.COLUMN_STEP_UID + "), " +
 
                     "FOREIGN KEY (" + StepEntry.COLUMN_STEP_RECIPE_KEY + ") " +
                     "REFERENCES " + RecipeEntry.TABLE_NAME + "("+ RecipeEntry.COLUMN_RECIPE_UID + ") "
@@ -98,6 +112,20 @@ class RecipeDbHelper extends SQLiteOpenHelper {
 
                     + " )";
 
+    // Index the child tables by their recipe, the ingredients and the steps are looked up
+    // and joined by it. The steps are read in order of their number.
+    private final static String SQL_CREATE_INGREDIENTS_RECIPE_INDEX =
+            "CREATE INDEX IF NOT EXISTS " +
+                    IngredientEntry.TABLE_NAME + "_" + IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY +
+                    " ON " + IngredientEntry.TABLE_NAME +
+                    " (" + IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY + ")";
+
+    private final static String SQL_CREATE_STEPS_RECIPE_INDEX =
+            "CREATE INDEX IF NOT EXISTS " +
+                    StepEntry.TABLE_NAME + "_" + StepEntry.COLUMN_STEP_RECIPE_KEY +
+                    " ON " + StepEntry.TABLE_NAME +
+                    " (" + StepEntry.COLUMN_STEP_RECIPE_KEY + ", " + StepEntry.COLUMN_STEP_NUM + ")";
+
     // Create a table to hold the favorite data
     private final static String SQL_CREATE_FAVORITE_TABLE =
             "CREATE TABLE " +
@@ -130,9 +158,73 @@ class RecipeDbHelper extends SQLiteOpenHelper {
 
                     + " )";
 
+    // Write-ahead logging checkpoint policy
+    // Pages the log grows to before a commit checkpoints it into the database, so the small
+    // writes don't each checkpoint; a large sync is checkpointed once it commits
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+
+    // Size the log is truncated to once checkpointed, so it doesn't keep the space of the
+    // largest sync
+    private static final long WAL_SIZE_LIMIT_BYTES = 1024 * 1024;
+
+    /* Whether the database is opened with write-ahead logging */
+    private final boolean mWriteAheadLogging;
+
     // Constructor
     public RecipeDbHelper(Context context) {
+        this(context, false);
+    }
+
+    /**
+     * @param writeAheadLogging whether to open the database with write-ahead logging, reads
+     *                          then run on connections of their own, concurrently with a
+     *                          write, instead of waiting for it to commit
+     */
+    public RecipeDbHelper(Context context, boolean writeAheadLogging) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        mWriteAheadLogging = writeAheadLogging;
+        setWriteAheadLoggingEnabled(writeAheadLogging);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        if (mWriteAheadLogging) {
+            pragma(db, "wal_autocheckpoint = " + WAL_AUTOCHECKPOINT_PAGES);
+            pragma(db, "journal_size_limit = " + WAL_SIZE_LIMIT_BYTES);
+        }
+    }
+
+    /**
+     * checkpoint() copies the write-ahead log into the database without waiting on the
+     * readers, call it once a large write is committed so the log doesn't grow until the
+     * next automatic checkpoint. Does nothing without write-ahead logging.
+     */
+    void checkpoint() {
+        if (!mWriteAheadLogging) return;
+
+        Cursor cursor = getWritableDatabase().rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null);
+        try {
+            // busy, pages in the log, pages checkpointed
+            if (cursor.moveToFirst()) {
+                Log.d(TAG, "checkpoint() checkpointed " + cursor.getInt(2) + " of "
+                        + cursor.getInt(1) + " pages");
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * pragma() runs a pragma, some of them return a row so they are run as a query
+     */
+    private static void pragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
     }
 
     @Override
@@ -142,22 +234,268 @@ class RecipeDbHelper extends SQLiteOpenHelper {
         sqLiteDatabase.execSQL(SQL_CREATE_STEPS_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_FAVORITE_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_APP_WIDGET_ID_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_INGREDIENTS_RECIPE_INDEX);
+        sqLiteDatabase.execSQL(SQL_CREATE_STEPS_RECIPE_INDEX);
     }
 
+    /* The migrations from each version to the next, in order of version */
+    private static final RecipeDbMigration[] MIGRATIONS = new RecipeDbMigration[]{
+            new RecipeDbMigration(2) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    migrateToIntegerChildKeys(db);
+                }
+            },
+            new RecipeDbMigration(3) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    migrateToContentHashes(db);
+                }
+            },
+            new RecipeDbMigration(4) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    migrateToUpdateInPlace(db);
+                }
+            },
+            new RecipeDbMigration(5) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    migrateToIntegerRecipeKeys(db);
+                }
+            }
+    };
+
     @Override
-    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int i, int i1) {
-        // For now simply drop the table and create a new one.
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " +
-                RecipeDbContract.RecipeEntry.TABLE_NAME);
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " +
-                RecipeDbContract.IngredientEntry.TABLE_NAME);
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " +
-                RecipeDbContract.StepEntry.TABLE_NAME);
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " +
-                RecipeDbContract.FavoriteEntry.TABLE_NAME);
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " +
-                RecipeDbContract.AppWidgetIdEntry.TABLE_NAME);
-
-        onCreate(sqLiteDatabase);
+    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        // Migrate one version at a time, all within the transaction of the upgrade, so the
+        // cached catalog, the favorites and the app widgets are kept
+        int version = oldVersion;
+        for (RecipeDbMigration migration : MIGRATIONS) {
+            if (migration.getVersion() <= version || migration.getVersion() > newVersion) {
+                continue;
+            }
+            if (migration.getVersion() != version + 1) {
+                throw new IllegalStateException("No migration from version " + version +
+                        " to " + migration.getVersion());
+            }
+
+            Log.d(TAG, "onUpgrade() running " + migration);
+            migration.migrate(sqLiteDatabase);
+            version = migration.getVersion();
+        }
+
+        if (version != newVersion) {
+            throw new IllegalStateException("No migration from version " + version +
+                    " to " + newVersion);
+        }
+    }
+
+    /*
+     * The migrations below only use the schema of their own versions, spelled out as it was
+     * then. They don't use the SQL_CREATE_* statements or the contract columns above, which
+     * move on with the later versions and would have an old migration create the latest
+     * tables before the next migrations run.
+     */
+
+    // Version 5 recipes table, the recipe uid is an INTEGER; created aside and renamed once
+    // its rows are copied, see rebuildTable()
+    private static final String SQL_V5_CREATE_RECIPES_TABLE =
+            "CREATE TABLE recipes_new (" +
+                    "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "recipe_uid INTEGER UNIQUE NOT NULL, " +
+                    "recipe_name TEXT NOT NULL, " +
+                    "recipe_servings INTEGER NOT NULL, " +
+                    "recipe_image_url TEXT, " +
+                    "recipe_content_hash INTEGER, " +
+                    "UNIQUE (recipe_uid))";
+
+    // Version 5 indexes of the child tables by their recipe
+    private static final String SQL_V5_CREATE_INGREDIENTS_RECIPE_INDEX =
+            "CREATE INDEX IF NOT EXISTS ingredients_recipe_id ON ingredients (recipe_id)";
+
+    private static final String SQL_V5_CREATE_STEPS_RECIPE_INDEX =
+            "CREATE INDEX IF NOT EXISTS steps_recipe_id ON steps (recipe_id, step_num)";
+
+    /**
+     * Version 4 to 5
+     * The recipe uid becomes an INTEGER, like the recipe keys of the child tables that are
+     * joined on it, the copied uids are converted by the column's affinity. The child tables
+     * are indexed by their recipe key.
+     */
+    private static void migrateToIntegerRecipeKeys(SQLiteDatabase db) {
+        rebuildTable(db, "recipes", SQL_V5_CREATE_RECIPES_TABLE,
+                "_id", "recipe_uid", "recipe_name", "recipe_servings", "recipe_image_url",
+                "recipe_content_hash");
+        db.execSQL(SQL_V5_CREATE_INGREDIENTS_RECIPE_INDEX);
+        db.execSQL(SQL_V5_CREATE_STEPS_RECIPE_INDEX);
+    }
+
+    /**
+     * Version 2 to 3
+     * The recipes get a content hash, left null for the existing ones so the next sync
+     * writes them once more and stores their hash
+     */
+    private static void migrateToContentHashes(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE recipes ADD COLUMN recipe_content_hash INTEGER");
+    }
+
+    // Version 4 tables, without the ON CONFLICT REPLACE of the uids; created aside and renamed
+    // once their rows are copied, see rebuildTable()
+    private static final String SQL_V4_CREATE_RECIPES_TABLE =
+            "CREATE TABLE recipes_new (" +
+                    "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "recipe_uid TEXT UNIQUE NOT NULL, " +
+                    "recipe_name TEXT NOT NULL, " +
+                    "recipe_servings INTEGER NOT NULL, " +
+                    "recipe_image_url TEXT, " +
+                    "recipe_content_hash INTEGER, " +
+                    "UNIQUE (recipe_uid))";
+
+    private static final String SQL_V4_CREATE_INGREDIENTS_TABLE =
+            "CREATE TABLE ingredients_new (" +
+                    "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "ingredient_uid INTEGER UNIQUE NOT NULL, " +
+                    "ingredient_name TEXT NOT NULL, " +
+                    "ingredient_measure TEXT NOT NULL, " +
+                    "ingredient_quantity REAL NOT NULL, " +
+                    "recipe_id INTEGER NOT NULL, " +
+                    "UNIQUE (ingredient_uid), " +
+                    "FOREIGN KEY (recipe_id) REFERENCES recipes(recipe_uid) " +
+                    "ON UPDATE NO ACTION ON DELETE SET NULL )";
+
+    private static final String SQL_V4_CREATE_STEPS_TABLE =
+            "CREATE TABLE steps_new (" +
+                    "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "step_uid INTEGER UNIQUE NOT NULL, " +
+                    "step_num INTEGER NOT NULL, " +
+                    "step_short_description TEXT NOT NULL, " +
+                    "step_description TEXT NOT NULL, " +
+                    "step_thumbnail_url TEXT, " +
+                    "step_video_url TEXT, " +
+                    "recipe_id INTEGER NOT NULL, " +
+                    "UNIQUE (step_uid), " +
+                    "FOREIGN KEY (recipe_id) REFERENCES recipes(recipe_uid) " +
+                    "ON UPDATE NO ACTION ON DELETE SET NULL )";
+
+    /**
+     * Version 3 to 4
+     * The recipes, the ingredients and the steps no longer replace a row on a conflict of its
+     * uid, they are updated in place instead. The tables are rebuilt without the conflict
+     * clause, their rows are copied over along with their _ID.
+     */
+    private static void migrateToUpdateInPlace(SQLiteDatabase db) {
+        rebuildTable(db, "recipes", SQL_V4_CREATE_RECIPES_TABLE,
+                "_id", "recipe_uid", "recipe_name", "recipe_servings", "recipe_image_url",
+                "recipe_content_hash");
+        rebuildTable(db, "ingredients", SQL_V4_CREATE_INGREDIENTS_TABLE,
+                "_id", "ingredient_uid", "ingredient_name", "ingredient_measure",
+                "ingredient_quantity", "recipe_id");
+        rebuildTable(db, "steps", SQL_V4_CREATE_STEPS_TABLE,
+                "_id", "step_uid", "step_num", "step_short_description", "step_description",
+                "step_thumbnail_url", "step_video_url", "recipe_id");
+    }
+
+    /**
+     * rebuildTable() recreates a table with the given CREATE TABLE statement of a
+     * {@code <table>_new} table, copies the given columns of its rows over, drops the table and
+     * renames the new one in its place; the indexes of the table are dropped along with it.
+     * <p>
+     * The table itself is never renamed: since SQLite 3.26 renaming a table rewrites the
+     * foreign keys of the other tables to follow it, they would be left referencing the
+     * dropped table.
+     */
+    private static void rebuildTable(SQLiteDatabase db, String tableName, String createSql,
+                                     String... columns) {
+        final String newTable = tableName + "_new";
+
+        StringBuilder columnList = new StringBuilder();
+        for (String column : columns) {
+            if (columnList.length() > 0) columnList.append(", ");
+            columnList.append(column);
+        }
+
+        db.execSQL(createSql);
+        db.execSQL("INSERT INTO " + newTable + " (" + columnList + ") " +
+                "SELECT " + columnList + " FROM " + tableName);
+        db.execSQL("DROP TABLE " + tableName);
+        db.execSQL("ALTER TABLE " + newTable + " RENAME TO " + tableName);
+    }
+
+    // Version 2 child tables, keyed by integers
+    private static final String SQL_V2_CREATE_INGREDIENTS_TABLE =
+            "CREATE TABLE ingredients (" +
+                    "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "ingredient_uid INTEGER UNIQUE NOT NULL, " +
+                    "ingredient_name TEXT NOT NULL, " +
+                    "ingredient_measure TEXT NOT NULL, " +
+                    "ingredient_quantity REAL NOT NULL, " +
+                    "recipe_id INTEGER NOT NULL, " +
+                    "UNIQUE (ingredient_uid) ON CONFLICT REPLACE " +
+                    "FOREIGN KEY (recipe_id) REFERENCES recipes(recipe_uid) " +
+                    "ON UPDATE NO ACTION ON DELETE SET NULL )";
+
+    private static final String SQL_V2_CREATE_STEPS_TABLE =
+            "CREATE TABLE steps (" +
+                    "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "step_uid INTEGER UNIQUE NOT NULL, " +
+                    "step_num INTEGER NOT NULL, " +
+                    "step_short_description TEXT NOT NULL, " +
+                    "step_description TEXT NOT NULL, " +
+                    "step_thumbnail_url TEXT, " +
+                    "step_video_url TEXT, " +
+                    "recipe_id INTEGER NOT NULL, " +
+                    "UNIQUE (step_uid) ON CONFLICT REPLACE " +
+                    "FOREIGN KEY (recipe_id) REFERENCES recipes(recipe_uid) " +
+                    "ON UPDATE NO ACTION ON DELETE SET NULL )";
+
+    /**
+     * Version 1 to 2
+     * The steps and the ingredients were keyed by "recipeId_identifier" strings, they are
+     * copied over to tables keyed by the integer keys of {@link RecipeKeys}
+     */
+    private static void migrateToIntegerChildKeys(SQLiteDatabase db) {
+        // Steps, the packed key is computed in SQL the same way as RecipeKeys.stepKey()
+        db.execSQL("ALTER TABLE steps RENAME TO steps_v1");
+        db.execSQL(SQL_V2_CREATE_STEPS_TABLE);
+        db.execSQL("INSERT INTO steps (step_uid, step_num, step_short_description, " +
+                "step_description, step_thumbnail_url, step_video_url, recipe_id) " +
+                "SELECT (recipe_id << 32) | step_num, step_num, step_short_description, " +
+                "step_description, step_thumbnail_url, step_video_url, recipe_id " +
+                "FROM steps_v1");
+        db.execSQL("DROP TABLE steps_v1");
+
+        // Ingredients, the hashed key can only be computed here
+        db.execSQL("ALTER TABLE ingredients RENAME TO ingredients_v1");
+        db.execSQL(SQL_V2_CREATE_INGREDIENTS_TABLE);
+
+        Cursor cursor = db.query("ingredients_v1",
+                new String[]{
+                        "ingredient_name",
+                        "ingredient_measure",
+                        "ingredient_quantity",
+                        "recipe_id"
+                }, null, null, null, null, null);
+        // Replace the rows of a duplicated ingredient name, as the version 1 table did
+        SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO ingredients " +
+                "(ingredient_uid, ingredient_name, ingredient_measure, ingredient_quantity, " +
+                "recipe_id) VALUES (?, ?, ?, ?, ?)");
+        try {
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(0);
+                long recipeId = cursor.getLong(3);
+
+                insert.bindLong(1, RecipeKeys.ingredientKey(recipeId, name));
+                insert.bindString(2, name);
+                insert.bindString(3, cursor.getString(1));
+                insert.bindDouble(4, cursor.getDouble(2));
+                insert.bindLong(5, recipeId);
+                insert.executeInsert();
+            }
+        } finally {
+            cursor.close();
+            insert.close();
+        }
+        db.execSQL("DROP TABLE ingredients_v1");
     }
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * RecipeDbMigration migrates the recipe database from the previous version to its own,
+ * keeping the data. {@link RecipeDbHelper} runs the migrations in order of version within
+ * the transaction of the upgrade, so an upgrade either reaches the new version or leaves the
+ * database as it was.
+ * <p>
+ * A migration is written against the schema of its own version and is never changed once
+ * shipped: its statements are frozen literals, not the current CREATE statements of
+ * {@link RecipeDbHelper}.
+ */
+
+abstract class RecipeDbMigration {
+
+    /* The version the database is at once migrated */
+    private final int mVersion;
+
+    RecipeDbMigration(int version) {
+        mVersion = version;
+    }
+
+    int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * migrate() migrates the database from the previous version to {@link #getVersion()}
+     */
+    abstract void migrate(SQLiteDatabase db);
+
+    @Override
+    public String toString() {
+        return "RecipeDbMigration to version " + mVersion;
+    }
+}
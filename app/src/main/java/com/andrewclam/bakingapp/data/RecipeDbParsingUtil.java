@@ -27,8 +27,11 @@ import android.content.Context;
 import android.database.Cursor;
 
 import com.andrewclam.bakingapp.models.Ingredient;
+import com.andrewclam.bakingapp.models.IngredientCursorMapper;
 import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.RecipeCursorMapper;
 import com.andrewclam.bakingapp.models.Step;
+import com.andrewclam.bakingapp.models.StepCursorMapper;
 
 import java.util.ArrayList;
 
@@ -55,23 +58,12 @@ class RecipeDbParsingUtil {
         final ArrayList<Recipe> entries = new ArrayList<>();
         final ContentResolver contentResolver = context.getContentResolver();
 
+        final RecipeCursorMapper recipeMapper = new RecipeCursorMapper(recipeCursor);
+
         while (recipeCursor.moveToNext()) {
             // Create a new entry to store the database
-            Recipe entry = new Recipe();
-
-            // Get the index of each column from the cursor
-            int recipeIdColIndex = recipeCursor.getColumnIndex(RecipeDbContract.RecipeEntry.COLUMN_RECIPE_UID);
-            int recipeNameColIndex = recipeCursor.getColumnIndex(RecipeDbContract.RecipeEntry.COLUMN_RECIPE_NAME);
-            int servingColIndex = recipeCursor.getColumnIndex(RecipeDbContract.RecipeEntry.COLUMN_RECIPE_SERVINGS);
-            int imageUrlColIndex = recipeCursor.getColumnIndex(RecipeDbContract.RecipeEntry.COLUMN_RECIPE_IMAGE_URL);
-
-            // Set each field to the entry
-            Long recipeId = recipeCursor.getLong(recipeIdColIndex);
-
-            entry.setUid(recipeId);
-            entry.setName(recipeCursor.getString(recipeNameColIndex));
-            entry.setServings(recipeCursor.getInt(servingColIndex));
-            entry.setImageURL(recipeCursor.getString(imageUrlColIndex));
+            Recipe entry = recipeMapper.read();
+            long recipeId = entry.getUid();
 
             // Steps Child Table
             // Get its cursor, select only rows with the key that equals to the id
@@ -86,24 +78,9 @@ class RecipeDbParsingUtil {
 
                 if (stepCursor != null) {
                     // Parse the steps from the stepCursor
+                    StepCursorMapper stepMapper = new StepCursorMapper(stepCursor);
                     while (stepCursor.moveToNext()) {
-                        Step step = new Step();
-
-                        int stepUidIndex = stepCursor.getColumnIndex(RecipeDbContract.StepEntry.COLUMN_STEP_UID);
-                        int stepIdIndex = stepCursor.getColumnIndex(RecipeDbContract.StepEntry.COLUMN_STEP_NUM);
-                        int shortDescriptionIndex = stepCursor.getColumnIndex(RecipeDbContract.StepEntry.COLUMN_STEP_SHORT_DESCRIPTION);
-                        int descriptionIndex = stepCursor.getColumnIndex(RecipeDbContract.StepEntry.COLUMN_STEP_DESCRIPTION);
-                        int thumbnailIndex = stepCursor.getColumnIndex(RecipeDbContract.StepEntry.COLUMN_STEP_THUMBNAIL_URL);
-                        int videoIndex = stepCursor.getColumnIndex(RecipeDbContract.StepEntry.COLUMN_STEP_VIDEO_URL);
-
-                        step.setUid(stepCursor.getString(stepUidIndex));
-                        step.setStepNum(stepCursor.getLong(stepIdIndex));
-                        step.setShortDescription(stepCursor.getString(shortDescriptionIndex));
-                        step.setDescription(stepCursor.getString(descriptionIndex));
-                        step.setThumbnailURL(stepCursor.getString(thumbnailIndex));
-                        step.setVideoURL(stepCursor.getString(videoIndex));
-
-                        steps.add(step);
+                        steps.add(stepMapper.read());
                     }
                     stepCursor.close();
                 }
@@ -128,20 +105,10 @@ class RecipeDbParsingUtil {
 
                 // Parse the ingredients
                 if (ingredientCursor != null) {
+                    IngredientCursorMapper ingredientMapper =
+                            new IngredientCursorMapper(ingredientCursor);
                     while (ingredientCursor.moveToNext()) {
-                        Ingredient ingredient = new Ingredient();
-
-                        int ingredientUidIndex = ingredientCursor.getColumnIndex(RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_UID);
-                        int ingredientMeasureIndex = ingredientCursor.getColumnIndex(RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_MEASURE);
-                        int ingredientNameIndex = ingredientCursor.getColumnIndex(RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_NAME);
-                        int ingredientQuantityIndex = ingredientCursor.getColumnIndex(RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_QUANTITY);
-
-                        ingredient.setUid(ingredientCursor.getString(ingredientUidIndex));
-                        ingredient.setIngredientName(ingredientCursor.getString(ingredientNameIndex));
-                        ingredient.setMeasure(ingredientCursor.getString(ingredientMeasureIndex));
-                        ingredient.setQuantity(ingredientCursor.getDouble(ingredientQuantityIndex));
-
-                        ingredients.add(ingredient);
+                        ingredients.add(ingredientMapper.read());
                     }
                     ingredientCursor.close();
                 }
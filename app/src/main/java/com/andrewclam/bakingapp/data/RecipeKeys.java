@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.support.annotation.NonNull;
+
+/**
+ * RecipeKeys builds the integer keys of the steps and the ingredients, which are unique
+ * across all the recipes.
+ * <p>
+ * A step key packs the recipe id in its high 32 bits and the step number in its low 32 bits,
+ * so the steps of a recipe sort together and in order. An ingredient key is a 64-bit hash of
+ * the recipe id and the ingredient name, made non-negative so it can be used in content uris.
+ */
+
+public final class RecipeKeys {
+
+    /* FNV-1a 64-bit parameters */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /* Largest step number that fits in a step key */
+    private static final long MAX_STEP_NUM = 0xFFFFFFFFL;
+
+    private RecipeKeys() {
+    }
+
+    /**
+     * stepKey() builds the key of a step
+     *
+     * @param recipeId the id of the recipe, from 0 to {@link Integer#MAX_VALUE}
+     * @param stepNum  the number of the step in the recipe, from 0 to 2^32 - 1
+     * @return the key of the step
+     * @throws IllegalArgumentException if the recipe id or the step number is out of range
+     */
+    public static long stepKey(long recipeId, long stepNum) {
+        if (recipeId < 0 || recipeId > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("recipeId out of range: " + recipeId);
+        }
+        if (stepNum < 0 || stepNum > MAX_STEP_NUM) {
+            throw new IllegalArgumentException("stepNum out of range: " + stepNum);
+        }
+        return (recipeId << 32) | stepNum;
+    }
+
+    /**
+     * ingredientKey() builds the key of an ingredient
+     *
+     * @param recipeId       the id of the recipe
+     * @param ingredientName the name of the ingredient, unique in the recipe
+     * @return the key of the ingredient
+     */
+    public static long ingredientKey(long recipeId, @NonNull String ingredientName) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            hash ^= (recipeId >>> shift) & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        for (int i = 0; i < ingredientName.length(); i++) {
+            char c = ingredientName.charAt(i);
+            hash ^= c & 0xFF;
+            hash *= FNV_PRIME;
+            hash ^= c >>> 8;
+            hash *= FNV_PRIME;
+        }
+        return hash & Long.MAX_VALUE;
+    }
+}
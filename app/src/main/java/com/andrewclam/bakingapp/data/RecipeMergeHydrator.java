@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry;
+import com.andrewclam.bakingapp.data.RecipeDbContract.StepEntry;
+import com.andrewclam.bakingapp.models.Ingredient;
+import com.andrewclam.bakingapp.models.IngredientCursorMapper;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.RecipeCursorMapper;
+import com.andrewclam.bakingapp.models.Step;
+import com.andrewclam.bakingapp.models.StepCursorMapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * RecipeMergeHydrator reads the recipes of a cursor of the recipes table along with their
+ * ingredients and steps, with exactly two more queries: all the ingredients of the recipes
+ * ordered by recipe, and all their steps ordered by recipe and step number. The children are
+ * merged into the recipes in a single pass over each cursor, as a merge join on the recipe
+ * key, so no row is repeated as it would be by joining both child tables at once. The rows
+ * are read with the generated mappers of the models, which look up the column indexes once per
+ * cursor.
+ */
+
+public final class RecipeMergeHydrator {
+
+    /* Orders the recipes by their key, the order the children are queried in */
+    private static final Comparator<Recipe> BY_UID = new Comparator<Recipe>() {
+        @Override
+        public int compare(Recipe lhs, Recipe rhs) {
+            return lhs.getUid() < rhs.getUid() ? -1 : (lhs.getUid() == rhs.getUid() ? 0 : 1);
+        }
+    };
+
+    private RecipeMergeHydrator() {
+    }
+
+    /**
+     * hydrate() reads the recipes from the cursor, from its current position onwards, and
+     * queries their ingredients and steps. The cursor is left open.
+     *
+     * @param contentResolver the resolver to query the ingredients and the steps with
+     * @param recipeCursor    a cursor of the recipes table, in any order
+     * @return the recipes in the order of the cursor
+     */
+    @NonNull
+    public static ArrayList<Recipe> hydrate(@NonNull ContentResolver contentResolver,
+                                            @NonNull Cursor recipeCursor) {
+        ArrayList<Recipe> recipes = readRecipes(recipeCursor);
+        if (recipes.isEmpty()) return recipes;
+
+        // Merge in order of key, the recipes are returned in the order of the cursor
+        List<Recipe> recipesByUid = new ArrayList<>(recipes);
+        Collections.sort(recipesByUid, BY_UID);
+
+        // Only the children in the range of keys of the recipes, looked up by the indexes
+        String[] range = new String[]{
+                String.valueOf(recipesByUid.get(0).getUid()),
+                String.valueOf(recipesByUid.get(recipesByUid.size() - 1).getUid())
+        };
+
+        Cursor ingredientCursor = contentResolver.query(IngredientEntry.CONTENT_URI_INGREDIENT,
+                null,
+                IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY + " BETWEEN ? AND ?",
+                range,
+                IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY + ", " + IngredientEntry._ID);
+        try {
+            mergeIngredients(recipesByUid, ingredientCursor);
+        } finally {
+            if (ingredientCursor != null) ingredientCursor.close();
+        }
+
+        Cursor stepCursor = contentResolver.query(StepEntry.CONTENT_URI_STEP,
+                null,
+                StepEntry.COLUMN_STEP_RECIPE_KEY + " BETWEEN ? AND ?",
+                range,
+                StepEntry.COLUMN_STEP_RECIPE_KEY + ", " + StepEntry.COLUMN_STEP_NUM);
+        try {
+            mergeSteps(recipesByUid, stepCursor);
+        } finally {
+            if (stepCursor != null) stepCursor.close();
+        }
+
+        return recipes;
+    }
+
+    private static ArrayList<Recipe> readRecipes(Cursor cursor) {
+        // The key is needed to merge the children
+        cursor.getColumnIndexOrThrow(RecipeEntry.COLUMN_RECIPE_UID);
+        final RecipeCursorMapper mapper = new RecipeCursorMapper(cursor);
+
+        ArrayList<Recipe> recipes = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            Recipe recipe = mapper.read();
+            recipe.setIngredients(new ArrayList<Ingredient>());
+            recipe.setSteps(new ArrayList<Step>());
+            recipes.add(recipe);
+        }
+        return recipes;
+    }
+
+    /**
+     * mergeIngredients() adds the ingredients of the cursor, ordered by recipe, to the recipes
+     * ordered by key. Ingredients of other recipes are skipped.
+     */
+    private static void mergeIngredients(List<Recipe> recipesByUid, Cursor cursor) {
+        if (cursor == null) return;
+
+        final int recipeKeyIndex =
+                cursor.getColumnIndexOrThrow(IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY);
+        final IngredientCursorMapper mapper = new IngredientCursorMapper(cursor);
+
+        int recipeIndex = 0;
+        while (cursor.moveToNext()) {
+            long recipeKey = cursor.getLong(recipeKeyIndex);
+
+            // Both sides are in order of key, the recipe only moves forward
+            while (recipeIndex < recipesByUid.size()
+                    && recipesByUid.get(recipeIndex).getUid() < recipeKey) {
+                recipeIndex++;
+            }
+            if (recipeIndex == recipesByUid.size()) return;
+            if (recipesByUid.get(recipeIndex).getUid() != recipeKey) continue;
+
+            recipesByUid.get(recipeIndex).getIngredients().add(mapper.read());
+        }
+    }
+
+    /**
+     * mergeSteps() adds the steps of the cursor, ordered by recipe, to the recipes ordered by
+     * key. Steps of other recipes are skipped.
+     */
+    private static void mergeSteps(List<Recipe> recipesByUid, Cursor cursor) {
+        if (cursor == null) return;
+
+        final int recipeKeyIndex = cursor.getColumnIndexOrThrow(StepEntry.COLUMN_STEP_RECIPE_KEY);
+        final StepCursorMapper mapper = new StepCursorMapper(cursor);
+
+        int recipeIndex = 0;
+        while (cursor.moveToNext()) {
+            long recipeKey = cursor.getLong(recipeKeyIndex);
+
+            // Both sides are in order of key, the recipe only moves forward
+            while (recipeIndex < recipesByUid.size()
+                    && recipesByUid.get(recipeIndex).getUid() < recipeKey) {
+                recipeIndex++;
+            }
+            if (recipeIndex == recipesByUid.size()) return;
+            if (recipesByUid.get(recipeIndex).getUid() != recipeKey) continue;
+
+            recipesByUid.get(recipeIndex).getSteps().add(mapper.read());
+        }
+    }
+}
@@ -0,0 +1,480 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.support.v4.util.LruCache;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry;
+import com.andrewclam.bakingapp.models.Recipe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RecipeRepository keeps the recipes, hydrated with their ingredients and steps, in memory
+ * for the whole process, so a recipe loaded a moment earlier is neither queried nor hydrated
+ * again.
+ * <p>
+ * The recipes are kept in a least recently used cache bounded by their rows, a recipe counting
+ * for itself and for each of its ingredients and steps. A {@link ContentObserver} on the
+ * recipe uris evicts what changed: a change of {@link RecipeDbContract#buildRecipeUriWithId}
+ * or of {@link RecipeDbContract#buildFullRecipeUriWithId} evicts that recipe alone, any other
+ * change evicts all of them. The provider notifies the changes of the ingredients and the
+ * steps to the recipe uri as well.
+ * <p>
+ * The repository is used from the main thread, the listeners are called back on it. A get
+ * returns a {@link Request} to cancel once its listener is no longer wanted, so a pending
+ * load doesn't hold on to the listener, nor to the activity it belongs to. The cached
+ * recipes are shared between their callers and must not be modified.
+ */
+
+public final class RecipeRepository {
+    /* Debug Tag */
+    private static final String TAG = RecipeRepository.class.getSimpleName();
+
+    /* Passed to the listeners when any of the recipes may have changed */
+    public static final long ALL_RECIPES = -1L;
+
+    /* Rows of the recipes, their ingredients and their steps kept in memory */
+    private static final int MAX_CACHED_ROWS = 2000;
+
+    /* Process-wide instance */
+    private static RecipeRepository sInstance;
+
+    private final ContentResolver mContentResolver;
+
+    /* Main thread, the changes are observed and the listeners called back on it */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /* Hydrated recipes by uid */
+    private final LruCache<Long, Recipe> mCache = new LruCache<Long, Recipe>(MAX_CACHED_ROWS) {
+        @Override
+        protected int sizeOf(Long uid, Recipe recipe) {
+            return 1 + countOf(recipe.getIngredients()) + countOf(recipe.getSteps());
+        }
+    };
+
+    /* Uids of all the recipes in the order of the database, null until they are loaded */
+    private ArrayList<Long> mAllUids;
+
+    /* Bumped by every change, a load started before a change is not cached */
+    private int mGeneration;
+
+    /* Loads in flight, joined by the requests of the same recipes */
+    private final Map<Long, LoadRecipeTask> mRecipeLoads = new HashMap<>();
+    private LoadAllRecipesTask mAllRecipesLoad;
+
+    /* Listeners of the changes, and the uid of the changes not yet passed on to them */
+    private final List<OnRecipesChangedListener> mListeners = new ArrayList<>();
+    private Long mPendingChangeUid;
+
+    /* Metrics */
+    private int mHits;
+    private int mMisses;
+    private int mChanges;
+
+    @VisibleForTesting
+    RecipeRepository(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+    }
+
+    /**
+     * observeChanges() evicts the recipes as their uris are notified, for the life of the
+     * process
+     */
+    private void observeChanges() {
+        mContentResolver.registerContentObserver(RecipeEntry.CONTENT_URI_RECIPE, true,
+                new ContentObserver(mHandler) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        onChange(selfChange, null);
+                    }
+
+                    @Override
+                    public void onChange(boolean selfChange, Uri uri) {
+                        invalidate(uri);
+                    }
+                });
+    }
+
+    public static synchronized RecipeRepository getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new RecipeRepository(
+                    context.getApplicationContext().getContentResolver());
+            sInstance.observeChanges();
+        }
+        return sInstance;
+    }
+
+    /**
+     * getRecipe() gets a recipe with its ingredients and steps. The listener is called back
+     * right away if the recipe is in memory, otherwise once it is loaded from the database.
+     *
+     * @param uid      the uid of the recipe
+     * @param listener called back with the recipe, or with null if there is no such recipe
+     * @return the request, to cancel if the listener is no longer wanted
+     */
+    @NonNull
+    public Request getRecipe(long uid, @NonNull OnRecipeLoadedListener listener) {
+        Recipe recipe = mCache.get(uid);
+        if (recipe != null) {
+            mHits++;
+            listener.onRecipeLoaded(recipe);
+            return COMPLETED_REQUEST;
+        }
+
+        mMisses++;
+        LoadRecipeTask task = mRecipeLoads.get(uid);
+        if (task == null || task.mGeneration != mGeneration) {
+            task = new LoadRecipeTask(this, uid, mGeneration);
+            mRecipeLoads.put(uid, task);
+            task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+        task.mListeners.add(listener);
+        return new PendingRequest<>(task.mListeners, listener);
+    }
+
+    /**
+     * getRecipes() gets all the recipes with their ingredients and steps. The listener is
+     * called back right away if they are all in memory, otherwise once they are loaded from
+     * the database.
+     *
+     * @param listener called back with the recipes, in the order of the database
+     * @return the request, to cancel if the listener is no longer wanted
+     */
+    @NonNull
+    public Request getRecipes(@NonNull OnRecipesLoadedListener listener) {
+        ArrayList<Recipe> recipes = getCachedRecipes();
+        if (recipes != null) {
+            mHits++;
+            listener.onRecipesLoaded(recipes);
+            return COMPLETED_REQUEST;
+        }
+
+        mMisses++;
+        if (mAllRecipesLoad == null || mAllRecipesLoad.mGeneration != mGeneration) {
+            mAllRecipesLoad = new LoadAllRecipesTask(this, mGeneration);
+            mAllRecipesLoad.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+        mAllRecipesLoad.mListeners.add(listener);
+        return new PendingRequest<>(mAllRecipesLoad.mListeners, listener);
+    }
+
+    /**
+     * @return all the recipes if they are all in memory, null otherwise
+     */
+    @Nullable
+    private ArrayList<Recipe> getCachedRecipes() {
+        if (mAllUids == null) return null;
+
+        ArrayList<Recipe> recipes = new ArrayList<>(mAllUids.size());
+        for (Long uid : mAllUids) {
+            Recipe recipe = mCache.get(uid);
+            if (recipe == null) return null;
+            recipes.add(recipe);
+        }
+        return recipes;
+    }
+
+    public void addOnRecipesChangedListener(@NonNull OnRecipesChangedListener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeOnRecipesChangedListener(@NonNull OnRecipesChangedListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * invalidate() evicts the recipes of the changed uri, and tells the listeners once the
+     * changes notified together have all been observed.
+     *
+     * @param uri the changed uri, null if unknown
+     */
+    @VisibleForTesting
+    void invalidate(@Nullable Uri uri) {
+        mGeneration++;
+        mChanges++;
+
+        long uid = recipeUidOf(uri);
+        if (uid != ALL_RECIPES) {
+            mCache.remove(uid);
+        } else {
+            mCache.evictAll();
+            mAllUids = null;
+        }
+
+        // Changes observed before the listeners are told are passed on together
+        if (mPendingChangeUid != null) {
+            if (mPendingChangeUid != uid) mPendingChangeUid = ALL_RECIPES;
+            return;
+        }
+        mPendingChangeUid = uid;
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                long changedUid = mPendingChangeUid;
+                mPendingChangeUid = null;
+                for (OnRecipesChangedListener listener :
+                        new ArrayList<>(mListeners)) {
+                    listener.onRecipesChanged(changedUid);
+                }
+            }
+        });
+    }
+
+    private static int countOf(@Nullable List<?> list) {
+        return list == null ? 0 : list.size();
+    }
+
+    /**
+     * recipeUidOf() reads the recipe uid of recipes/# and recipes/#/full
+     *
+     * @return the uid of the recipe of the uri, {@link #ALL_RECIPES} for any other uri
+     */
+    private static long recipeUidOf(@Nullable Uri uri) {
+        if (uri == null) return ALL_RECIPES;
+
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() < 2 || !RecipeDbContract.PATH_RECIPES.equals(segments.get(0))
+                || !TextUtils.isDigitsOnly(segments.get(1))) {
+            return ALL_RECIPES;
+        }
+
+        try {
+            return Long.parseLong(segments.get(1));
+        } catch (NumberFormatException e) {
+            return ALL_RECIPES;
+        }
+    }
+
+    private void onRecipeLoaded(LoadRecipeTask task, @Nullable Recipe recipe) {
+        if (mRecipeLoads.get(task.mUid) == task) mRecipeLoads.remove(task.mUid);
+
+        // A recipe changed while it was loaded may be stale, it is not kept
+        if (recipe != null && task.mGeneration == mGeneration) {
+            mCache.put(recipe.getUid(), recipe);
+        }
+        Log.d(TAG, "onRecipeLoaded() loaded recipe " + task.mUid + ", " + this);
+    }
+
+    private void onRecipesLoaded(LoadAllRecipesTask task, @NonNull ArrayList<Recipe> recipes) {
+        if (mAllRecipesLoad == task) mAllRecipesLoad = null;
+
+        // Recipes changed while they were loaded may be stale, they are not kept
+        if (task.mGeneration == mGeneration) {
+            ArrayList<Long> uids = new ArrayList<>(recipes.size());
+            for (Recipe recipe : recipes) {
+                mCache.put(recipe.getUid(), recipe);
+                uids.add(recipe.getUid());
+            }
+            mAllUids = uids;
+        }
+        Log.d(TAG, "onRecipesLoaded() loaded " + recipes.size() + " recipes, " + this);
+    }
+
+    /**
+     * @return the number of requests answered from memory
+     */
+    public int getHitCount() {
+        return mHits;
+    }
+
+    /**
+     * @return the number of requests answered from the database
+     */
+    public int getMissCount() {
+        return mMisses;
+    }
+
+    /**
+     * @return the number of changes observed
+     */
+    public int getChangeCount() {
+        return mChanges;
+    }
+
+    /**
+     * @return the share of the requests answered from memory, 0 before any request
+     */
+    public float getHitRate() {
+        int requests = mHits + mMisses;
+        return requests == 0 ? 0f : (float) mHits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + mHits
+                + " misses=" + mMisses
+                + " changes=" + mChanges
+                + " rows=" + mCache.size() + "/" + mCache.maxSize();
+    }
+
+    /* Request of a get answered right away, there is nothing left to cancel */
+    private static final Request COMPLETED_REQUEST = new Request() {
+        @Override
+        public void cancel() {
+        }
+    };
+
+    /**
+     * Request of a get waiting on a load, cancelling it drops the listener from the load
+     */
+    private static class PendingRequest<T> implements Request {
+        private final List<T> mListeners;
+        private T mListener;
+
+        PendingRequest(List<T> listeners, T listener) {
+            mListeners = listeners;
+            mListener = listener;
+        }
+
+        @Override
+        public void cancel() {
+            if (mListener == null) return;
+            mListeners.remove(mListener);
+            mListener = null;
+        }
+    }
+
+    /**
+     * Loads a recipe from the database, for its listeners
+     */
+    private static class LoadRecipeTask extends AsyncTask<Void, Void, Recipe> {
+        private final RecipeRepository mRepository;
+        private final long mUid;
+        private final int mGeneration;
+        private final List<OnRecipeLoadedListener> mListeners = new ArrayList<>();
+
+        LoadRecipeTask(RecipeRepository repository, long uid, int generation) {
+            mRepository = repository;
+            mUid = uid;
+            mGeneration = generation;
+        }
+
+        @Override
+        protected Recipe doInBackground(Void... params) {
+            Cursor cursor = mRepository.mContentResolver.query(
+                    RecipeDbContract.buildFullRecipeUriWithId(mUid), null, null, null, null);
+            if (cursor == null) return null;
+
+            try {
+                ArrayList<Recipe> recipes = FullRecipeHydrator.hydrate(cursor);
+                return recipes.isEmpty() ? null : recipes.get(0);
+            } finally {
+                cursor.close();
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Recipe recipe) {
+            mRepository.onRecipeLoaded(this, recipe);
+            for (OnRecipeLoadedListener listener : new ArrayList<>(mListeners)) {
+                listener.onRecipeLoaded(recipe);
+            }
+        }
+    }
+
+    /**
+     * Loads all the recipes from the database, for its listeners
+     */
+    private static class LoadAllRecipesTask extends AsyncTask<Void, Void, ArrayList<Recipe>> {
+        private final RecipeRepository mRepository;
+        private final int mGeneration;
+        private final List<OnRecipesLoadedListener> mListeners = new ArrayList<>();
+
+        LoadAllRecipesTask(RecipeRepository repository, int generation) {
+            mRepository = repository;
+            mGeneration = generation;
+        }
+
+        @Override
+        protected ArrayList<Recipe> doInBackground(Void... params) {
+            Cursor cursor = mRepository.mContentResolver.query(
+                    RecipeEntry.CONTENT_URI_RECIPE, null, null, null, null);
+            if (cursor == null) return new ArrayList<>();
+
+            try {
+                return RecipeMergeHydrator.hydrate(mRepository.mContentResolver, cursor);
+            } finally {
+                cursor.close();
+            }
+        }
+
+        @Override
+        protected void onPostExecute(ArrayList<Recipe> recipes) {
+            mRepository.onRecipesLoaded(this, recipes);
+            for (OnRecipesLoadedListener listener : new ArrayList<>(mListeners)) {
+                listener.onRecipesLoaded(new ArrayList<>(recipes));
+            }
+        }
+    }
+
+    /**
+     * Interface of a get, cancel() drops its listener if it was not called back yet, it does
+     * nothing once it was
+     */
+    public interface Request {
+        void cancel();
+    }
+
+    /**
+     * Interface for the callback with a recipe
+     */
+    public interface OnRecipeLoadedListener {
+        void onRecipeLoaded(@Nullable Recipe recipe);
+    }
+
+    /**
+     * Interface for the callback with all the recipes
+     */
+    public interface OnRecipesLoadedListener {
+        void onRecipesLoaded(@NonNull ArrayList<Recipe> recipes);
+    }
+
+    /**
+     * Interface for the callback when recipes changed in the database, the recipes already
+     * handed out are not updated and are to be gotten again
+     */
+    public interface OnRecipesChangedListener {
+        /**
+         * @param recipeUid the uid of the changed recipe, {@link #ALL_RECIPES} if any of them
+         *                  may have changed
+         */
+        void onRecipesChanged(long recipeUid);
+    }
+}
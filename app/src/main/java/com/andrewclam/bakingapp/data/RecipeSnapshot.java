@@ -0,0 +1,574 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import com.andrewclam.bakingapp.models.Ingredient;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.RecipeChangeSet;
+import com.andrewclam.bakingapp.models.Step;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * RecipeSnapshot is a compact binary copy of the whole recipe catalog, written after each
+ * successful sync and read in a single file read on cold start, so the recipes show before
+ * the database is queried or the network is reached. The same bytes are the binary
+ * representation of the recipe feed, see {@link #MEDIA_TYPE}.
+ * <p>
+ * Layout, all numbers big-endian:
+ * <pre>
+ * header   int magic, int version, int payload length, long CRC32 of the payload
+ * payload  int string count, int[] offset of each string in the string section
+ *          int recipe count, int[] offset of each recipe in the recipe section
+ *          int length of the string section
+ *          string section, each distinct string as int length + UTF-8 bytes
+ *          recipe section, each recipe:
+ *            long uid, int name, int servings, int image url
+ *            int ingredient count, each: long uid, double quantity, int measure, int name
+ *            int step count, each: long uid, long step num, int short description,
+ *                                  int description, int video url, int thumbnail url
+ * </pre>
+ * Strings are written once and referred to by their index, -1 for null. The offset tables
+ * let a {@link Catalog} read any field in place without decoding the rest. A snapshot of
+ * another version, or one that fails its checksum, is ignored.
+ */
+
+public final class RecipeSnapshot {
+
+    /* Debug Tag */
+    private static final String TAG = RecipeSnapshot.class.getSimpleName();
+
+    /**
+     * Media type of the binary recipe feed, requested with the Accept header
+     */
+    public static final String MEDIA_TYPE = "application/vnd.bakingapp.recipes";
+
+    /* Name of the snapshot file in the cache directory */
+    private static final String SNAPSHOT_FILE_NAME = "recipes.snapshot";
+
+    /* "RCPS", identifies a snapshot */
+    private static final int MAGIC = 0x52435053;
+
+    /* Version of the layout, increment it on any change to the layout */
+    private static final int VERSION = 2;
+
+    /* Size of the header, magic, version, payload length and checksum */
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+
+    /* Sizes of the fixed part of each record */
+    private static final int RECIPE_SIZE = 8 + 4 + 4 + 4;
+    private static final int INGREDIENT_SIZE = 8 + 8 + 4 + 4;
+    private static final int STEP_SIZE = 8 + 8 + 4 + 4 + 4 + 4;
+
+    /* Index of a null string */
+    private static final int NO_STRING = -1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private RecipeSnapshot() {
+    }
+
+    /**
+     * @return the snapshot file of the app
+     */
+    public static File getSnapshotFile(@NonNull Context context) {
+        return new File(context.getCacheDir(), SNAPSHOT_FILE_NAME);
+    }
+
+    /**
+     * read() reads and decodes the snapshot
+     *
+     * @param file the snapshot file
+     * @return the recipes of the snapshot, null if there is no valid snapshot
+     */
+    @Nullable
+    @WorkerThread
+    public static ArrayList<Recipe> read(@NonNull File file) {
+        Catalog catalog = readCatalog(file);
+        return catalog != null ? catalog.getRecipes() : null;
+    }
+
+    /**
+     * readCatalog() reads the snapshot with one sequential read, its recipes are decoded
+     * lazily from the {@link Catalog}
+     *
+     * @param file the snapshot file
+     * @return the catalog of the snapshot, null if there is no valid snapshot
+     */
+    @Nullable
+    @WorkerThread
+    public static Catalog readCatalog(@NonNull File file) {
+        if (!file.exists()) return null;
+
+        try {
+            byte[] bytes;
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                long length = raf.length();
+                if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                    Log.w(TAG, "readCatalog() snapshot of invalid length " + length);
+                    return null;
+                }
+                bytes = new byte[(int) length];
+                raf.readFully(bytes);
+            } finally {
+                raf.close();
+            }
+
+            return wrap(bytes);
+        } catch (IOException e) {
+            Log.e(TAG, "readCatalog() unable to read the snapshot", e);
+            return null;
+        }
+    }
+
+    /**
+     * wrap() validates the snapshot bytes and wraps them in a {@link Catalog}, the bytes are
+     * not copied and must not be modified afterwards
+     *
+     * @param bytes the bytes of a snapshot, as written to the file or sent by the server
+     * @return the catalog, null if the bytes are of another version or fail their checksum
+     */
+    @Nullable
+    public static Catalog wrap(@NonNull byte[] bytes) {
+        if (bytes.length < HEADER_SIZE) return null;
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int magic = buffer.getInt(0);
+        int version = buffer.getInt(4);
+        int payloadLength = buffer.getInt(8);
+        long checksum = buffer.getLong(12);
+
+        if (magic != MAGIC || version != VERSION || payloadLength != bytes.length - HEADER_SIZE) {
+            Log.w(TAG, "wrap() ignoring snapshot of version " + version);
+            return null;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, HEADER_SIZE, payloadLength);
+        if (crc.getValue() != checksum) {
+            Log.w(TAG, "wrap() ignoring snapshot with a bad checksum");
+            return null;
+        }
+
+        try {
+            return new Catalog(buffer);
+        } catch (IndexOutOfBoundsException e) {
+            Log.w(TAG, "wrap() ignoring snapshot with invalid offsets", e);
+            return null;
+        }
+    }
+
+    /**
+     * isSnapshot() tells whether a stream starts with a snapshot, without consuming it
+     *
+     * @param in a stream that supports mark and reset
+     */
+    public static boolean isSnapshot(@NonNull InputStream in) throws IOException {
+        in.mark(4);
+        try {
+            int magic = 0;
+            for (int i = 0; i < 4; i++) {
+                int b = in.read();
+                if (b == -1) return false;
+                magic = (magic << 8) | b;
+            }
+            return magic == MAGIC;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * encode() encodes the recipes into the bytes of a snapshot
+     *
+     * @param recipes the whole recipe catalog
+     * @return the bytes of the snapshot, header included
+     */
+    @NonNull
+    public static byte[] encode(@NonNull List<Recipe> recipes) {
+        try {
+            byte[] payload = encodePayload(recipes);
+            CRC32 crc = new CRC32();
+            crc.update(payload, 0, payload.length);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + payload.length);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(payload.length);
+            out.writeLong(crc.getValue());
+            out.write(payload);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Never thrown by a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * write() replaces the snapshot with the given recipes, the file is replaced at once so a
+     * reader never sees a partial snapshot
+     *
+     * @param file    the snapshot file
+     * @param recipes the whole recipe catalog
+     * @return true if the snapshot was written
+     */
+    @WorkerThread
+    public static synchronized boolean write(@NonNull File file, @NonNull List<Recipe> recipes) {
+        byte[] bytes = encode(recipes);
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try {
+            FileOutputStream out = new FileOutputStream(tmpFile);
+            try {
+                out.write(bytes);
+                out.flush();
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "write() unable to write the snapshot", e);
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+            return false;
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            Log.e(TAG, "write() unable to replace the snapshot");
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+            return false;
+        }
+
+        Log.d(TAG, "write() wrote " + recipes.size() + " recipes in " + bytes.length + " bytes");
+        return true;
+    }
+
+    /**
+     * applyChanges() patches the snapshot with a delta of the recipes, the snapshot is
+     * deleted if there is none to patch, it is written again on the next full sync
+     *
+     * @param file      the snapshot file
+     * @param changeSet the delta applied to the database
+     */
+    @WorkerThread
+    public static synchronized void applyChanges(@NonNull File file,
+                                                 @NonNull RecipeChangeSet changeSet) {
+        ArrayList<Recipe> recipes = read(file);
+        if (recipes == null) {
+            delete(file);
+            return;
+        }
+
+        // Keep the order of the snapshot, updated recipes in place, added ones at the end
+        LinkedHashMap<Long, Recipe> recipesById = new LinkedHashMap<>();
+        for (Recipe recipe : recipes) {
+            recipesById.put(recipe.getUid(), recipe);
+        }
+        for (Long recipeId : changeSet.getDeletedRecipeIds()) {
+            recipesById.remove(recipeId);
+        }
+        for (Recipe recipe : changeSet.getRecipes()) {
+            recipesById.put(recipe.getUid(), recipe);
+        }
+
+        if (!write(file, new ArrayList<>(recipesById.values()))) delete(file);
+    }
+
+    /**
+     * delete() deletes the snapshot, so outdated recipes are never shown
+     */
+    public static synchronized void delete(@NonNull File file) {
+        if (file.exists() && !file.delete()) {
+            Log.e(TAG, "delete() unable to delete the snapshot");
+        }
+    }
+
+    private static byte[] encodePayload(List<Recipe> recipes) throws IOException {
+        // Collect the distinct strings first, they are written once and referred to by index
+        StringTable strings = new StringTable();
+        for (Recipe recipe : recipes) {
+            strings.add(recipe.getName());
+            strings.add(recipe.getImageURL());
+            for (Ingredient ingredient : nonNull(recipe.getIngredients())) {
+                strings.add(ingredient.getMeasure());
+                strings.add(ingredient.getIngredientName());
+            }
+            for (Step step : nonNull(recipe.getSteps())) {
+                strings.add(step.getShortDescription());
+                strings.add(step.getDescription());
+                strings.add(step.getVideoURL());
+                strings.add(step.getThumbnailURL());
+            }
+        }
+
+        // The sections are written apart, the offset tables in front of them point into them
+        int[] stringOffsets = new int[strings.mStrings.size()];
+        ByteArrayOutputStream stringSection = new ByteArrayOutputStream();
+        DataOutputStream stringOut = new DataOutputStream(stringSection);
+        for (int i = 0; i < stringOffsets.length; i++) {
+            stringOffsets[i] = stringOut.size();
+            byte[] utf8 = strings.mStrings.get(i).getBytes(UTF_8);
+            stringOut.writeInt(utf8.length);
+            stringOut.write(utf8);
+        }
+
+        int[] recipeOffsets = new int[recipes.size()];
+        ByteArrayOutputStream recipeSection = new ByteArrayOutputStream();
+        DataOutputStream recipeOut = new DataOutputStream(recipeSection);
+        for (int r = 0; r < recipeOffsets.length; r++) {
+            recipeOffsets[r] = recipeOut.size();
+            Recipe recipe = recipes.get(r);
+            recipeOut.writeLong(recipe.getUid());
+            recipeOut.writeInt(strings.indexOf(recipe.getName()));
+            recipeOut.writeInt(recipe.getServings());
+            recipeOut.writeInt(strings.indexOf(recipe.getImageURL()));
+
+            List<Ingredient> ingredients = nonNull(recipe.getIngredients());
+            recipeOut.writeInt(ingredients.size());
+            for (Ingredient ingredient : ingredients) {
+                recipeOut.writeLong(ingredient.getUid());
+                recipeOut.writeDouble(ingredient.getQuantity());
+                recipeOut.writeInt(strings.indexOf(ingredient.getMeasure()));
+                recipeOut.writeInt(strings.indexOf(ingredient.getIngredientName()));
+            }
+
+            List<Step> steps = nonNull(recipe.getSteps());
+            recipeOut.writeInt(steps.size());
+            for (Step step : steps) {
+                recipeOut.writeLong(step.getUid());
+                recipeOut.writeLong(step.getStepNum());
+                recipeOut.writeInt(strings.indexOf(step.getShortDescription()));
+                recipeOut.writeInt(strings.indexOf(step.getDescription()));
+                recipeOut.writeInt(strings.indexOf(step.getVideoURL()));
+                recipeOut.writeInt(strings.indexOf(step.getThumbnailURL()));
+            }
+        }
+
+        stringOut.flush();
+        recipeOut.flush();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(stringOffsets.length);
+        for (int offset : stringOffsets) out.writeInt(offset);
+        out.writeInt(recipeOffsets.length);
+        for (int offset : recipeOffsets) out.writeInt(offset);
+        out.writeInt(stringSection.size());
+        stringSection.writeTo(out);
+        recipeSection.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static <T> List<T> nonNull(@Nullable List<T> list) {
+        return list != null ? list : new ArrayList<T>();
+    }
+
+    /**
+     * Catalog reads the recipes of a snapshot in place. The fields shown in the recipe list,
+     * the name, servings and image url, are read straight from the buffer without decoding
+     * the rest of the recipe; {@link #getRecipe(int)} decodes a whole recipe when needed.
+     * It is immutable and can be read from any thread.
+     */
+    public static final class Catalog {
+
+        private final ByteBuffer mBuffer;
+
+        /* Positions of the offset tables and of the sections in the buffer */
+        private final int mStringCount;
+        private final int mStringTable;
+        private final int mRecipeCount;
+        private final int mRecipeTable;
+        private final int mStringSection;
+        private final int mRecipeSection;
+
+        private Catalog(ByteBuffer buffer) {
+            mBuffer = buffer;
+
+            int position = HEADER_SIZE;
+            mStringCount = checkCount(buffer.getInt(position));
+            mStringTable = position + 4;
+
+            position = mStringTable + 4 * mStringCount;
+            mRecipeCount = checkCount(buffer.getInt(position));
+            mRecipeTable = position + 4;
+
+            position = mRecipeTable + 4 * mRecipeCount;
+            int stringSectionLength = checkCount(buffer.getInt(position));
+            mStringSection = position + 4;
+            mRecipeSection = mStringSection + stringSectionLength;
+
+            if (mRecipeSection > buffer.limit()) {
+                throw new IndexOutOfBoundsException("String section past the end");
+            }
+        }
+
+        private static int checkCount(int count) {
+            if (count < 0) throw new IndexOutOfBoundsException("Negative count " + count);
+            return count;
+        }
+
+        /**
+         * @return the number of recipes
+         */
+        public int size() {
+            return mRecipeCount;
+        }
+
+        public long getUid(int index) {
+            return mBuffer.getLong(recipeAt(index));
+        }
+
+        @Nullable
+        public String getName(int index) {
+            return stringAt(mBuffer.getInt(recipeAt(index) + 8));
+        }
+
+        public int getServings(int index) {
+            return mBuffer.getInt(recipeAt(index) + 12);
+        }
+
+        @Nullable
+        public String getImageURL(int index) {
+            return stringAt(mBuffer.getInt(recipeAt(index) + 16));
+        }
+
+        /**
+         * getRecipe() decodes a whole recipe along with its ingredients and steps
+         */
+        @NonNull
+        public Recipe getRecipe(int index) {
+            int position = recipeAt(index);
+
+            Recipe recipe = new Recipe();
+            recipe.setUid(mBuffer.getLong(position));
+            recipe.setName(stringAt(mBuffer.getInt(position + 8)));
+            recipe.setServings(mBuffer.getInt(position + 12));
+            recipe.setImageURL(stringAt(mBuffer.getInt(position + 16)));
+            position += RECIPE_SIZE;
+
+            int ingredientCount = checkCount(mBuffer.getInt(position));
+            position += 4;
+            ArrayList<Ingredient> ingredients = new ArrayList<>(ingredientCount);
+            for (int i = 0; i < ingredientCount; i++, position += INGREDIENT_SIZE) {
+                Ingredient ingredient = new Ingredient();
+                ingredient.setUid(mBuffer.getLong(position));
+                ingredient.setQuantity(mBuffer.getDouble(position + 8));
+                ingredient.setMeasure(stringAt(mBuffer.getInt(position + 16)));
+                ingredient.setIngredientName(stringAt(mBuffer.getInt(position + 20)));
+                ingredients.add(ingredient);
+            }
+            recipe.setIngredients(ingredients);
+
+            int stepCount = checkCount(mBuffer.getInt(position));
+            position += 4;
+            ArrayList<Step> steps = new ArrayList<>(stepCount);
+            for (int i = 0; i < stepCount; i++, position += STEP_SIZE) {
+                Step step = new Step();
+                step.setUid(mBuffer.getLong(position));
+                step.setStepNum(mBuffer.getLong(position + 8));
+                step.setShortDescription(stringAt(mBuffer.getInt(position + 16)));
+                step.setDescription(stringAt(mBuffer.getInt(position + 20)));
+                step.setVideoURL(stringAt(mBuffer.getInt(position + 24)));
+                step.setThumbnailURL(stringAt(mBuffer.getInt(position + 28)));
+                steps.add(step);
+            }
+            recipe.setSteps(steps);
+
+            return recipe;
+        }
+
+        /**
+         * getRecipes() decodes all the recipes
+         */
+        @NonNull
+        public ArrayList<Recipe> getRecipes() {
+            ArrayList<Recipe> recipes = new ArrayList<>(mRecipeCount);
+            for (int i = 0; i < mRecipeCount; i++) {
+                recipes.add(getRecipe(i));
+            }
+            return recipes;
+        }
+
+        private int recipeAt(int index) {
+            if (index < 0 || index >= mRecipeCount) {
+                throw new IndexOutOfBoundsException("Recipe " + index + " of " + mRecipeCount);
+            }
+            return mRecipeSection + mBuffer.getInt(mRecipeTable + 4 * index);
+        }
+
+        @Nullable
+        private String stringAt(int index) {
+            if (index == NO_STRING) return null;
+            if (index < 0 || index >= mStringCount) {
+                throw new IndexOutOfBoundsException("String " + index + " of " + mStringCount);
+            }
+
+            int position = mStringSection + mBuffer.getInt(mStringTable + 4 * index);
+            int length = mBuffer.getInt(position);
+            return new String(mBuffer.array(), position + 4, length, UTF_8);
+        }
+    }
+
+    /**
+     * StringTable assigns each distinct string an index, in the order they are added
+     */
+    private static class StringTable {
+        private final List<String> mStrings = new ArrayList<>();
+        private final Map<String, Integer> mIndexes = new HashMap<>();
+
+        void add(@Nullable String string) {
+            if (string != null && !mIndexes.containsKey(string)) {
+                mIndexes.put(string, mStrings.size());
+                mStrings.add(string);
+            }
+        }
+
+        int indexOf(@Nullable String string) {
+            return string == null ? NO_STRING : mIndexes.get(string);
+        }
+    }
+}
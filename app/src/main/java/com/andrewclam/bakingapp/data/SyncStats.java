@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+/**
+ * SyncStats reports what a sync of the recipes did to the database, recipe by recipe, as
+ * decided by their {@link RecipeContentHash}.
+ */
+
+public class SyncStats {
+
+    /* Recipes left as they were, their content hash matched */
+    private int mUnchanged;
+
+    /* Recipes rewritten along with their ingredients and steps, their content hash differed */
+    private int mUpdated;
+
+    /* Recipes that were not in the database */
+    private int mInserted;
+
+    /* Recipes deleted along with their ingredients and steps, they are no longer synced */
+    private int mDeleted;
+
+    /* Rows of all the tables written or deleted */
+    private int mRowsTouched;
+
+    void addUnchanged() {
+        mUnchanged++;
+    }
+
+    void addUpdated() {
+        mUpdated++;
+    }
+
+    void addInserted() {
+        mInserted++;
+    }
+
+    void addDeleted() {
+        mDeleted++;
+    }
+
+    void addRowsTouched(int rowsTouched) {
+        mRowsTouched += rowsTouched;
+    }
+
+    public int getUnchanged() {
+        return mUnchanged;
+    }
+
+    public int getUpdated() {
+        return mUpdated;
+    }
+
+    public int getInserted() {
+        return mInserted;
+    }
+
+    public int getDeleted() {
+        return mDeleted;
+    }
+
+    public int getRowsTouched() {
+        return mRowsTouched;
+    }
+
+    /**
+     * @return whether the sync changed any recipe
+     */
+    public boolean hasChanges() {
+        return mUpdated + mInserted + mDeleted > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "unchanged=" + mUnchanged
+                + " updated=" + mUpdated
+                + " inserted=" + mInserted
+                + " deleted=" + mDeleted
+                + " rows=" + mRowsTouched;
+    }
+}
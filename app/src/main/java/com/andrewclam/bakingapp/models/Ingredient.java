@@ -22,8 +22,13 @@
 
 package com.andrewclam.bakingapp.models;
 
+import com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry;
+import com.andrewclam.bakingapp.utils.StringDictionary;
+import com.andrewclam.cursormapper.CursorColumn;
+
 import org.parceler.Parcel;
 import org.parceler.ParcelConstructor;
+import org.parceler.Transient;
 
 /**
  * Created by lamch on 9/14/2017.
@@ -33,9 +38,10 @@ import org.parceler.ParcelConstructor;
 @Parcel(Parcel.Serialization.BEAN)
 public class Ingredient {
 
-    private String uid;
+    private long uid;
     private double quantity;
-    private String measure;
+    private Measure measureCode; // null if the measure is not one of the known measures
+    private String measure; // only set if the measure is not one of the known measures
     private String ingredientName;
 
     @ParcelConstructor
@@ -45,31 +51,49 @@ public class Ingredient {
         return quantity;
     }
 
+    @CursorColumn(IngredientEntry.COLUMN_INGREDIENT_QUANTITY)
     public void setQuantity(double quantity) {
         this.quantity = quantity;
     }
 
     public String getMeasure() {
-        return measure;
+        return measureCode != null ? measureCode.name() : measure;
     }
 
+    @CursorColumn(IngredientEntry.COLUMN_INGREDIENT_MEASURE)
     public void setMeasure(String measure) {
-        this.measure = measure;
+        // Keep a known measure as its constant, any other one as its shared string
+        this.measureCode = Measure.fromString(measure);
+        this.measure = measureCode == null ? StringDictionary.intern(measure) : null;
+    }
+
+    /**
+     * @return the measure as one of the known measures, null if it is not one of them
+     */
+    @Transient
+    public Measure getMeasureCode() {
+        return measureCode;
     }
 
     public String getIngredientName() {
         return ingredientName;
     }
 
+    @CursorColumn(IngredientEntry.COLUMN_INGREDIENT_NAME)
     public void setIngredientName(String ingredientName) {
-        this.ingredientName = ingredientName;
+        this.ingredientName = StringDictionary.intern(ingredientName);
     }
 
-    public String getUid() {
+    /**
+     * @return the key of this row, unique across all the recipes
+     * @see com.andrewclam.bakingapp.data.RecipeKeys
+     */
+    public long getUid() {
         return uid;
     }
 
-    public void setUid(String uid) {
+    @CursorColumn(IngredientEntry.COLUMN_INGREDIENT_UID)
+    public void setUid(long uid) {
         this.uid = uid;
     }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.models;
+
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measure enumerates the units of measure of the ingredients in the recipe feed, so each
+ * ingredient refers to a shared constant rather than carrying a string of its own.
+ */
+
+public enum Measure {
+    CUP,
+    TBLSP,
+    TSP,
+    K,
+    G,
+    OZ,
+    UNIT;
+
+    /* Lookup of the measures by their name in the feed */
+    private static final Map<String, Measure> sByName = new HashMap<>();
+
+    static {
+        for (Measure measure : values()) {
+            sByName.put(measure.name(), measure);
+        }
+    }
+
+    /**
+     * fromString() looks up the measure of its name in the feed
+     *
+     * @param name the name of the measure, such as "CUP"
+     * @return the measure, null if the name is not one of the known measures
+     */
+    @Nullable
+    public static Measure fromString(@Nullable String name) {
+        return name != null ? sByName.get(name) : null;
+    }
+}
@@ -22,6 +22,9 @@
 
 package com.andrewclam.bakingapp.models;
 
+import com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry;
+import com.andrewclam.cursormapper.CursorColumn;
+
 import org.parceler.Parcel;
 import org.parceler.ParcelConstructor;
 
@@ -49,6 +52,7 @@ public class Recipe {
         return uid;
     }
 
+    @CursorColumn(RecipeEntry.COLUMN_RECIPE_UID)
     public void setUid(long uid) {
         this.uid = uid;
     }
@@ -57,6 +61,7 @@ public class Recipe {
         return name;
     }
 
+    @CursorColumn(RecipeEntry.COLUMN_RECIPE_NAME)
     public void setName(String name) {
         this.name = name;
     }
@@ -81,6 +86,7 @@ public class Recipe {
         return servings;
     }
 
+    @CursorColumn(RecipeEntry.COLUMN_RECIPE_SERVINGS)
     public void setServings(int servings) {
         this.servings = servings;
     }
@@ -89,7 +95,9 @@ public class Recipe {
         return imageURL;
     }
 
+    @CursorColumn(RecipeEntry.COLUMN_RECIPE_IMAGE_URL)
     public void setImageURL(String imageURL) {
-        this.imageURL = imageURL;
+        // Most recipes have no image, share the empty url
+        this.imageURL = imageURL != null && imageURL.isEmpty() ? "" : imageURL;
     }
 }
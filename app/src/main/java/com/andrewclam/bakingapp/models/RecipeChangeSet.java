@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.models;
+
+import org.parceler.Parcel;
+import org.parceler.ParcelConstructor;
+
+import java.util.ArrayList;
+
+/**
+ * The model class to store a set of changes of the recipes fetched from a data source.
+ * <p>
+ * A full feed replaces the recipes as a whole, a delta only carries the recipes added or
+ * updated (each with all of its steps and ingredients) and the ids of the recipes deleted
+ * since the sync token of the previous delta.
+ */
+
+@Parcel(Parcel.Serialization.BEAN)
+public class RecipeChangeSet {
+
+    /* Types of change set */
+    public static final int TYPE_NOT_MODIFIED = 0;
+    public static final int TYPE_FULL_FEED = 1;
+    public static final int TYPE_DELTA = 2;
+
+    private int type;
+    private ArrayList<Recipe> recipes;
+    private ArrayList<Long> deletedRecipeIds;
+    private String syncToken;
+    private String sourceURL;
+    private String eTag;
+    private String lastModified;
+
+    @ParcelConstructor
+    public RecipeChangeSet() {}
+
+    public static RecipeChangeSet notModified() {
+        RecipeChangeSet changeSet = new RecipeChangeSet();
+        changeSet.setType(TYPE_NOT_MODIFIED);
+        changeSet.setRecipes(new ArrayList<Recipe>());
+        changeSet.setDeletedRecipeIds(new ArrayList<Long>());
+        return changeSet;
+    }
+
+    public static RecipeChangeSet fullFeed(ArrayList<Recipe> recipes) {
+        RecipeChangeSet changeSet = new RecipeChangeSet();
+        changeSet.setType(TYPE_FULL_FEED);
+        changeSet.setRecipes(recipes);
+        changeSet.setDeletedRecipeIds(new ArrayList<Long>());
+        return changeSet;
+    }
+
+    public static RecipeChangeSet delta(ArrayList<Recipe> upsertedRecipes,
+                                        ArrayList<Long> deletedRecipeIds,
+                                        String syncToken) {
+        RecipeChangeSet changeSet = new RecipeChangeSet();
+        changeSet.setType(TYPE_DELTA);
+        changeSet.setRecipes(upsertedRecipes);
+        changeSet.setDeletedRecipeIds(deletedRecipeIds);
+        changeSet.setSyncToken(syncToken);
+        return changeSet;
+    }
+
+    public boolean isNotModified() {
+        return type == TYPE_NOT_MODIFIED;
+    }
+
+    public boolean isFullFeed() {
+        return type == TYPE_FULL_FEED;
+    }
+
+    public boolean isDelta() {
+        return type == TYPE_DELTA;
+    }
+
+    /**
+     * @return whether applying this change set leaves the recipes as they are
+     */
+    public boolean isEmpty() {
+        return (recipes == null || recipes.isEmpty())
+                && (deletedRecipeIds == null || deletedRecipeIds.isEmpty());
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public void setType(int type) {
+        this.type = type;
+    }
+
+    public ArrayList<Recipe> getRecipes() {
+        return recipes;
+    }
+
+    public void setRecipes(ArrayList<Recipe> recipes) {
+        this.recipes = recipes;
+    }
+
+    public ArrayList<Long> getDeletedRecipeIds() {
+        return deletedRecipeIds;
+    }
+
+    public void setDeletedRecipeIds(ArrayList<Long> deletedRecipeIds) {
+        this.deletedRecipeIds = deletedRecipeIds;
+    }
+
+    public String getSyncToken() {
+        return syncToken;
+    }
+
+    public void setSyncToken(String syncToken) {
+        this.syncToken = syncToken;
+    }
+
+    /**
+     * @return the data url the change set was fetched from, the sync token belongs to it
+     */
+    public String getSourceURL() {
+        return sourceURL;
+    }
+
+    public void setSourceURL(String sourceURL) {
+        this.sourceURL = sourceURL;
+    }
+
+    /**
+     * @return the ETag of the full feed response, stored under the source url once the
+     * recipes are synced
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    public void setETag(String eTag) {
+        this.eTag = eTag;
+    }
+
+    /**
+     * @return the Last-Modified of the full feed response, stored under the source url once
+     * the recipes are synced
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+}
@@ -22,6 +22,10 @@
 
 package com.andrewclam.bakingapp.models;
 
+import com.andrewclam.bakingapp.data.RecipeDbContract.StepEntry;
+import com.andrewclam.bakingapp.utils.StringDictionary;
+import com.andrewclam.cursormapper.CursorColumn;
+
 import org.parceler.Parcel;
 import org.parceler.ParcelConstructor;
 
@@ -33,7 +37,7 @@ import org.parceler.ParcelConstructor;
 @Parcel(Parcel.Serialization.BEAN)
 public class Step {
 
-    private String uid;
+    private long uid;
     private long stepNum;
     private String shortDescription;
     private String description;
@@ -50,6 +54,7 @@ public class Step {
         return stepNum;
     }
 
+    @CursorColumn(StepEntry.COLUMN_STEP_NUM)
     public void setStepNum(long stepNum) {
         this.stepNum = stepNum;
     }
@@ -58,14 +63,16 @@ public class Step {
         return shortDescription;
     }
 
+    @CursorColumn(StepEntry.COLUMN_STEP_SHORT_DESCRIPTION)
     public void setShortDescription(String shortDescription) {
-        this.shortDescription = shortDescription;
+        this.shortDescription = StringDictionary.intern(shortDescription);
     }
 
     public String getDescription() {
         return description;
     }
 
+    @CursorColumn(StepEntry.COLUMN_STEP_DESCRIPTION)
     public void setDescription(String description) {
         this.description = description;
     }
@@ -74,23 +81,32 @@ public class Step {
         return videoURL;
     }
 
+    @CursorColumn(StepEntry.COLUMN_STEP_VIDEO_URL)
     public void setVideoURL(String videoURL) {
-        this.videoURL = videoURL;
+        // Most steps have no video, share the empty url
+        this.videoURL = videoURL != null && videoURL.isEmpty() ? "" : videoURL;
     }
 
     public String getThumbnailURL() {
         return thumbnailURL;
     }
 
+    @CursorColumn(StepEntry.COLUMN_STEP_THUMBNAIL_URL)
     public void setThumbnailURL(String thumbnailURL) {
-        this.thumbnailURL = thumbnailURL;
+        // Most steps have no thumbnail, share the empty url
+        this.thumbnailURL = thumbnailURL != null && thumbnailURL.isEmpty() ? "" : thumbnailURL;
     }
 
-    public String getUid() {
+    /**
+     * @return the key of this row, unique across all the recipes
+     * @see com.andrewclam.bakingapp.data.RecipeKeys
+     */
+    public long getUid() {
         return uid;
     }
 
-    public void setUid(String uid) {
+    @CursorColumn(StepEntry.COLUMN_STEP_UID)
+    public void setUid(long uid) {
         this.uid = uid;
     }
 }
@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.services;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.andrewclam.bakingapp.asyncTasks.FetchRecipeAsyncTask;
+import com.andrewclam.bakingapp.espresso.SimpleIdlingResource;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.RecipeChangeSet;
+import com.andrewclam.bakingapp.sync.RecipeSource;
+import com.andrewclam.bakingapp.utils.RetryPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RecipeSyncCoordinator is the process-wide entry point to refresh the recipes from the
+ * data source.
+ * <p>
+ * Refresh requests made while a fetch is in flight join that fetch instead of starting
+ * another one, and requests made within the freshness TTL of the last successful sync are
+ * answered right away with {@link FetchRecipeAsyncTask.onFetchRecipeActionListener#onRecipesNotModified()}
+ * so the caller serves the cached recipes. Fetched recipes are handed to
+ * {@link SyncDbIntentService} once per fetch, whatever the number of listeners; when
+ * streaming, they are handed over in batches as they are parsed instead.
+ * <p>
+ * All methods must be called on the main thread.
+ */
+
+public class RecipeSyncCoordinator implements FetchRecipeAsyncTask.onFetchRecipeActionListener {
+
+    /* Debug Tag */
+    private static final String TAG = RecipeSyncCoordinator.class.getSimpleName();
+
+    /* Number of streamed recipes written to the database together */
+    private static final int STREAM_SYNC_BATCH_SIZE = 10;
+
+    /* Default time a successful sync is considered fresh for */
+    private static final long DEFAULT_FRESHNESS_TTL_MILLIS = 5 * 60 * 1000; // 5 minutes
+
+    /* Process-wide instance */
+    private static RecipeSyncCoordinator sInstance;
+
+    /* Listeners waiting for the in-flight fetch */
+    private final List<FetchRecipeAsyncTask.onFetchRecipeActionListener> mListeners =
+            new ArrayList<>();
+
+    /* Application context, to start the fetch and the sync with */
+    private Context mContext;
+
+    /* Whether a fetch is in flight */
+    private boolean mIsFetching;
+
+    /* Time of the last successful sync in SystemClock.elapsedRealtime(), -1 if never synced */
+    private long mLastSyncedAt = -1;
+
+    /* Time a successful sync is considered fresh for */
+    private long mFreshnessTtlMillis = DEFAULT_FRESHNESS_TTL_MILLIS;
+
+    /* Source of the recipes, null for the full feed at the requested data url */
+    private RecipeSource mSource;
+
+    /* Timeouts, retries and deadline of the fetches */
+    private RetryPolicy mRetryPolicy = new RetryPolicy();
+
+    /* Whether to stream the recipes to the listeners and the database as they are parsed */
+    private boolean mStreaming = true;
+
+    /* Whether to ask the full feed for its binary representation rather than JSON */
+    private boolean mBinaryFeed;
+
+    /* Streamed recipes of the in-flight fetch not yet handed to the database */
+    private ArrayList<Recipe> mStreamedBatch = new ArrayList<>();
+
+    /* Whether the in-flight fetch streamed any recipe */
+    private boolean mHasStreamed;
+
+    /* Metrics */
+    private int mRefreshesRequested;
+    private int mFetchesAvoided;
+
+    private RecipeSyncCoordinator() {
+    }
+
+    @MainThread
+    public static RecipeSyncCoordinator getInstance() {
+        if (sInstance == null) {
+            sInstance = new RecipeSyncCoordinator();
+        }
+        return sInstance;
+    }
+
+    /**
+     * requestRefresh() asks for the latest recipes of the data source, the listener is
+     * called back once with onRecipeChangesReady() with the full feed or the delta fetched,
+     * once it is handed to {@link SyncDbIntentService}; with onRecipesNotModified() if the
+     * data source is unchanged or the recipes are fresh; or with onFetchFailed(). When
+     * streaming, onRecipeStreamed() is called with each recipe of a full feed beforehand.
+     *
+     * @param context         context to start the fetch and the sync with
+     * @param dataUrl         the url of the data source
+     * @param listener        the listener to call back
+     * @param idlingResource  the idling resource to hold busy while fetching, may be null
+     */
+    @MainThread
+    public void requestRefresh(@NonNull Context context, @NonNull String dataUrl,
+                               @NonNull FetchRecipeAsyncTask.onFetchRecipeActionListener listener,
+                               @Nullable SimpleIdlingResource idlingResource) {
+        mContext = context.getApplicationContext();
+        mRefreshesRequested++;
+
+        if (mIsFetching) {
+            // Join the in-flight fetch
+            if (!mListeners.contains(listener)) mListeners.add(listener);
+            mFetchesAvoided++;
+            Log.d(TAG, "requestRefresh() joined the in-flight fetch, " + this);
+            return;
+        }
+
+        if (isFresh()) {
+            // Synced recently, the cached recipes are current
+            mFetchesAvoided++;
+            Log.d(TAG, "requestRefresh() recipes are fresh, " + this);
+            listener.onRecipesNotModified();
+            return;
+        }
+
+        mIsFetching = true;
+        mHasStreamed = false;
+        mListeners.add(listener);
+
+        // Run the fetch on the thread pool rather than the default serial executor, a slow
+        // network must not hold up the other AsyncTasks, such as the ones loading the database
+        new FetchRecipeAsyncTask()
+                .setDataURL(dataUrl)
+                .setSource(mSource)
+                .setContext(mContext)
+                .setRetryPolicy(mRetryPolicy)
+                .setStreaming(mStreaming)
+                .setBinaryFeed(mBinaryFeed)
+                .setListener(this)
+                .setIdlingResource(idlingResource)
+                .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * removeListener() stops calling back the listener, call this when the listener goes
+     * away before the in-flight fetch completes. The fetch itself carries on.
+     *
+     * @param listener the listener to stop calling back
+     */
+    @MainThread
+    public void removeListener(@NonNull FetchRecipeAsyncTask.onFetchRecipeActionListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * invalidate() forgets the last successful sync, the next refresh request fetches
+     * from the data source regardless of the freshness TTL.
+     */
+    @MainThread
+    public void invalidate() {
+        mLastSyncedAt = -1;
+    }
+
+    /**
+     * markSynced() records a successful sync made outside of this coordinator, such as by the
+     * background sync job, so refresh requests within the freshness TTL skip the fetch.
+     */
+    @MainThread
+    public void markSynced() {
+        mLastSyncedAt = SystemClock.elapsedRealtime();
+    }
+
+    @MainThread
+    public void setFreshnessTtl(long freshnessTtlMillis) {
+        this.mFreshnessTtlMillis = freshnessTtlMillis;
+    }
+
+    /**
+     * setSource() plugs in the source to fetch the recipes from, such as a
+     * {@link com.andrewclam.bakingapp.sync.DeltaRecipeSource}
+     *
+     * @param source the source of the recipes, null to fetch the full feed at the data url
+     *               of each refresh request
+     */
+    @MainThread
+    public void setSource(@Nullable RecipeSource source) {
+        this.mSource = source;
+    }
+
+    /**
+     * setStreaming() turns streaming on or off for the next fetches. When on, each recipe of
+     * a full feed is passed to the listeners as soon as it is parsed and is written to the
+     * database in batches, rather than all at once when the feed is complete.
+     */
+    @MainThread
+    public void setStreaming(boolean streaming) {
+        this.mStreaming = streaming;
+    }
+
+    /**
+     * setBinaryFeed() has the next fetches of the full feed negotiate the binary recipe feed,
+     * off by default. The server may still answer with JSON, which is parsed as usual.
+     */
+    @MainThread
+    public void setBinaryFeed(boolean binaryFeed) {
+        this.mBinaryFeed = binaryFeed;
+    }
+
+    @MainThread
+    public void setRetryPolicy(@NonNull RetryPolicy retryPolicy) {
+        this.mRetryPolicy = retryPolicy;
+    }
+
+    /**
+     * @return whether a fetch is in flight, its listeners are yet to be called back
+     */
+    @MainThread
+    public boolean isFetching() {
+        return mIsFetching;
+    }
+
+    /**
+     * @return the number of refresh requests that were served without a fetch of their own
+     */
+    public int getFetchesAvoided() {
+        return mFetchesAvoided;
+    }
+
+    public int getRefreshesRequested() {
+        return mRefreshesRequested;
+    }
+
+    @Override
+    public void onRecipeStreamed(Recipe recipe) {
+        mHasStreamed = true;
+
+        // Write the streamed recipes to the database in batches while the feed downloads
+        mStreamedBatch.add(recipe);
+        if (mStreamedBatch.size() >= STREAM_SYNC_BATCH_SIZE) flushStreamedBatch();
+
+        for (FetchRecipeAsyncTask.onFetchRecipeActionListener listener :
+                new ArrayList<>(mListeners)) {
+            listener.onRecipeStreamed(recipe);
+        }
+    }
+
+    @Override
+    public void onFetchFailed() {
+        // The fetch failed, write the recipes streamed before it did; the catalog is
+        // incomplete so nothing is deleted
+        mIsFetching = false;
+        if (mHasStreamed) flushStreamedBatch();
+
+        for (FetchRecipeAsyncTask.onFetchRecipeActionListener listener : drainListeners()) {
+            listener.onFetchFailed();
+        }
+    }
+
+    @Override
+    public void onRecipesNotModified() {
+        mIsFetching = false;
+        mLastSyncedAt = SystemClock.elapsedRealtime();
+
+        for (FetchRecipeAsyncTask.onFetchRecipeActionListener listener : drainListeners()) {
+            listener.onRecipesNotModified();
+        }
+    }
+
+    @Override
+    public void onRecipeChangesReady(RecipeChangeSet changeSet) {
+        if (changeSet.isFullFeed()) {
+            onFullFeedReady(changeSet);
+            return;
+        }
+
+        mIsFetching = false;
+        mLastSyncedAt = SystemClock.elapsedRealtime();
+
+        // Apply the delta to the database, this also stores its sync token
+        SyncDbIntentService.applyChanges(mContext, changeSet);
+
+        for (FetchRecipeAsyncTask.onFetchRecipeActionListener listener : drainListeners()) {
+            if (changeSet.isEmpty()) {
+                listener.onRecipesNotModified();
+            } else {
+                listener.onRecipeChangesReady(changeSet);
+            }
+        }
+    }
+
+    private void onFullFeedReady(RecipeChangeSet fullFeed) {
+        mIsFetching = false;
+        ArrayList<Recipe> recipes = fullFeed.getRecipes();
+
+        if (mHasStreamed) {
+            // The recipes were synced in batches as they were parsed, write the last batch,
+            // then sync the whole catalog: the batches are unchanged by now and are skipped,
+            // the recipes no longer in the catalog are deleted
+            flushStreamedBatch();
+        }
+
+        if (!recipes.isEmpty()) {
+            // Update the database with the latest recipes, once for all the listeners; this
+            // also stores the validators of the feed
+            SyncDbIntentService.syncRecipes(mContext, fullFeed);
+            mLastSyncedAt = SystemClock.elapsedRealtime();
+        }
+
+        for (FetchRecipeAsyncTask.onFetchRecipeActionListener listener : drainListeners()) {
+            listener.onRecipeChangesReady(fullFeed);
+        }
+    }
+
+    private void flushStreamedBatch() {
+        if (mStreamedBatch.isEmpty()) return;
+
+        SyncDbIntentService.syncRecipeBatch(mContext, mStreamedBatch);
+        mStreamedBatch = new ArrayList<>();
+    }
+
+    private boolean isFresh() {
+        return mLastSyncedAt != -1
+                && SystemClock.elapsedRealtime() - mLastSyncedAt < mFreshnessTtlMillis;
+    }
+
+    private List<FetchRecipeAsyncTask.onFetchRecipeActionListener> drainListeners() {
+        List<FetchRecipeAsyncTask.onFetchRecipeActionListener> listeners =
+                new ArrayList<>(mListeners);
+        mListeners.clear();
+        return listeners;
+    }
+
+    @Override
+    public String toString() {
+        return "RecipeSyncCoordinator{" +
+                "refreshesRequested=" + mRefreshesRequested +
+                ", fetchesAvoided=" + mFetchesAvoided +
+                ", waitingListeners=" + mListeners.size() +
+                '}';
+    }
+}
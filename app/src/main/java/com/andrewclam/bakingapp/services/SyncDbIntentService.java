@@ -23,23 +23,40 @@
 package com.andrewclam.bakingapp.services;
 
 import android.app.IntentService;
+import android.content.ContentProvider;
+import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.net.Uri;
+import android.content.OperationApplicationException;
+import android.database.SQLException;
+import android.os.RemoteException;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
 import android.util.Log;
 
+import com.andrewclam.bakingapp.data.RecipeContentHash;
+import com.andrewclam.bakingapp.data.RecipeContentProvider;
+import com.andrewclam.bakingapp.data.RecipeDbContract;
+import com.andrewclam.bakingapp.data.RecipeSnapshot;
+import com.andrewclam.bakingapp.data.SyncStats;
 import com.andrewclam.bakingapp.models.Ingredient;
 import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.RecipeChangeSet;
 import com.andrewclam.bakingapp.models.Step;
+import com.andrewclam.bakingapp.sync.DeltaRecipeSource;
+import com.andrewclam.bakingapp.utils.HttpValidators;
 
-import org.parceler.Parcels;
-
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
-import static com.andrewclam.bakingapp.Constants.EXTRA_RECIPE_LIST;
 import static com.andrewclam.bakingapp.Constants.PACKAGE_NAME;
 import static com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_MEASURE;
 import static com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_NAME;
@@ -47,6 +64,7 @@ import static com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry.COL
 import static com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY;
 import static com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_UID;
 import static com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry.CONTENT_URI_INGREDIENT;
+import static com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry.COLUMN_RECIPE_CONTENT_HASH;
 import static com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry.COLUMN_RECIPE_IMAGE_URL;
 import static com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry.COLUMN_RECIPE_NAME;
 import static com.andrewclam.bakingapp.data.RecipeDbContract.RecipeEntry.COLUMN_RECIPE_SERVINGS;
@@ -76,24 +94,94 @@ public class SyncDbIntentService extends IntentService {
      */
     private static final String ACTION_SYNC_RECIPES = PACKAGE_NAME
             + ".services.action.insert.recipes";
+    private static final String ACTION_APPLY_CHANGES = PACKAGE_NAME
+            + ".services.action.apply.changes";
+    private static final String ACTION_SYNC_RECIPE_BATCH = PACKAGE_NAME
+            + ".services.action.insert.recipe.batch";
+
+    /**
+     * The latest full feed waiting to be synced. The feed is handed over through this reference
+     * rather than parceled into the intent, so a sync requested while another one is still
+     * queued replaces it instead of being queued after it; only the latest one wins.
+     */
+    private static final AtomicReference<RecipeChangeSet> sPendingFeed = new AtomicReference<>();
+
+    /**
+     * The batches of streamed recipes waiting to be synced, in the order they were parsed.
+     * Each batch is queued with an intent of its own and is never collapsed.
+     */
+    private static final Queue<List<Recipe>> sPendingBatches = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The deltas waiting to be applied, in the order they were fetched. A delta may be as
+     * large as a full feed, so it is handed over through this queue rather than parceled into
+     * the intent; each delta is queued with an intent of its own and is never collapsed.
+     */
+    private static final Queue<RecipeChangeSet> sPendingChanges = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Maximum number of operations in a batch, a batch holds a lock on the database for the
+     * whole of its transaction. A recipe is never split across batches.
+     */
+    private static final int MAX_BATCH_OPERATIONS = 500;
+
+    /**
+     * Number of rows of a batch that failed, none of its rows were written
+     */
+    private static final int FAILED_BATCH = -1;
 
     public SyncDbIntentService() {
         super(SyncDbIntentService.class.getSimpleName());
     }
 
     /**
-     * Starts this service to perform action Foo with the given parameters. If
-     * the service is already performing a task this action will be queued.
+     * Starts this service to sync the recipes of a full feed into the database. If a sync is
+     * already queued and not yet started, its feed is replaced with this one and no new sync is
+     * queued. The validators of the feed are stored once its recipes are synced.
      *
      * @see IntentService
      */
-    public static void syncRecipes(Context context, @NonNull List<Recipe> recipes) {
+    public static void syncRecipes(Context context, @NonNull RecipeChangeSet fullFeed) {
+        if (sPendingFeed.getAndSet(fullFeed) != null) {
+            Log.d(TAG, "syncRecipes() collapsed into the sync that is already queued");
+            return;
+        }
+
         Intent intent = new Intent(context, SyncDbIntentService.class);
-        intent.putExtra(EXTRA_RECIPE_LIST, Parcels.wrap(recipes));
         intent.setAction(ACTION_SYNC_RECIPES);
         context.startService(intent);
     }
 
+    /**
+     * Starts this service to sync a batch of the recipes streamed off a feed that is still
+     * being downloaded. Unlike {@link #syncRecipes(Context, RecipeChangeSet)}, batches are never
+     * collapsed, each one is written in the order it was queued.
+     *
+     * @see IntentService
+     */
+    public static void syncRecipeBatch(Context context, @NonNull List<Recipe> recipes) {
+        sPendingBatches.add(recipes);
+
+        Intent intent = new Intent(context, SyncDbIntentService.class);
+        intent.setAction(ACTION_SYNC_RECIPE_BATCH);
+        context.startService(intent);
+    }
+
+    /**
+     * Starts this service to apply a delta of the recipes to the database. Unlike
+     * {@link #syncRecipes(Context, RecipeChangeSet)}, deltas are never collapsed, each one is applied in
+     * the order it was fetched. The sync token of the delta is stored once it is applied.
+     *
+     * @see IntentService
+     */
+    public static void applyChanges(Context context, @NonNull RecipeChangeSet changeSet) {
+        sPendingChanges.add(changeSet);
+
+        Intent intent = new Intent(context, SyncDbIntentService.class);
+        intent.setAction(ACTION_APPLY_CHANGES);
+        context.startService(intent);
+    }
+
     @Override
     protected void onHandleIntent(Intent intent) {
         if (intent != null) {
@@ -101,9 +189,23 @@ public class SyncDbIntentService extends IntentService {
             switch (action) {
                 case ACTION_SYNC_RECIPES:
                     Log.d(TAG, "onHandleIntent() ACTION_SYNC_RECIPES received");
-                    List<Recipe> recipes = Parcels.unwrap(
-                            intent.getParcelableExtra(EXTRA_RECIPE_LIST));
-                    handleSyncRecipes(recipes);
+                    // Take the latest feed, leave none behind for a later sync to collapse into
+                    RecipeChangeSet fullFeed = sPendingFeed.getAndSet(null);
+                    if (fullFeed != null) handleSyncRecipes(fullFeed);
+                    break;
+
+                case ACTION_SYNC_RECIPE_BATCH:
+                    Log.d(TAG, "onHandleIntent() ACTION_SYNC_RECIPE_BATCH received");
+                    // One batch per intent, the batches are written in the order they queued
+                    List<Recipe> batch = sPendingBatches.poll();
+                    if (batch != null) handleSyncRecipeBatch(batch);
+                    break;
+
+                case ACTION_APPLY_CHANGES:
+                    Log.d(TAG, "onHandleIntent() ACTION_APPLY_CHANGES received");
+                    // One delta per intent, the deltas are applied in the order they queued
+                    RecipeChangeSet changeSet = sPendingChanges.poll();
+                    if (changeSet != null) handleApplyChanges(changeSet);
                     break;
 
                 default:
@@ -117,72 +219,277 @@ public class SyncDbIntentService extends IntentService {
      * Handle ActionUpdateWidget in the provided background thread with the provided
      * parameters.
      */
-    private void handleSyncRecipes(List<Recipe> recipes) {
+    private void handleSyncRecipes(RecipeChangeSet fullFeed) {
         Log.d(TAG, "handleSyncRecipes() Got entries from the web services");
+        syncRecipesNow(this, fullFeed);
+    }
 
-        ContentResolver contentResolver = this.getContentResolver();
+    /**
+     * Handle ActionSyncRecipeBatch in the provided background thread with the provided
+     * parameters, a batch is only part of the catalog so no recipe is deleted and the
+     * snapshot is left as it is.
+     */
+    private void handleSyncRecipeBatch(List<Recipe> batch) {
+        Log.d(TAG, "handleSyncRecipeBatch() Got " + batch.size() + " streamed recipes");
+        insertRecipesNow(getContentResolver(), batch, false);
+    }
 
+    /**
+     * Handle ActionApplyChanges in the provided background thread with the provided
+     * parameters.
+     */
+    private void handleApplyChanges(RecipeChangeSet changeSet) {
+        Log.d(TAG, "handleApplyChanges() Got " + changeSet.getRecipes().size()
+                + " upserted and " + changeSet.getDeletedRecipeIds().size()
+                + " deleted recipes from the web services");
+        applyChangesNow(this, changeSet);
+    }
+
+    /**
+     * Syncs the recipes of a full feed into the database on the calling thread, for callers
+     * that are already off the main thread such as the background sync job. The recipes are
+     * the whole catalog: only the added or changed recipes are written, the recipes no longer
+     * in the catalog are deleted, and the catalog is written to the {@link RecipeSnapshot} read
+     * on cold start. The validators of the feed are stored once the recipes are synced, so the
+     * next fetch is conditional on what the database holds, and the sync token of the deltas
+     * of its source is cleared.
+     *
+     * @param context  context to get the contentResolver with
+     * @param fullFeed the full feed to write along with the steps and ingredients of its recipes
+     * @return the number of rows written or deleted
+     */
+    @WorkerThread
+    public static int syncRecipesNow(@NonNull Context context,
+                                     @NonNull RecipeChangeSet fullFeed) {
+        List<Recipe> recipes = fullFeed.getRecipes();
+        int rowsTouched = insertRecipesNow(context.getContentResolver(), recipes, true);
+        if (rowsTouched == FAILED_BATCH) {
+            // The feed is not synced, keep the snapshot and the validators of the last feed
+            // that was, so the next fetch downloads this one again
+            return 0;
+        }
+
+        RecipeSnapshot.write(RecipeSnapshot.getSnapshotFile(context), recipes);
+
+        if (fullFeed.getSourceURL() != null) {
+            // The recipes are synced, the next fetch is conditional on this feed
+            if (fullFeed.getETag() != null || fullFeed.getLastModified() != null) {
+                HttpValidators.save(context, fullFeed.getSourceURL(),
+                        fullFeed.getETag(), fullFeed.getLastModified());
+            }
+
+            // Any delta is now to be requested from scratch, not from the token of a delta
+            // applied before this feed replaced the catalog
+            DeltaRecipeSource.saveSyncToken(context, fullFeed.getSourceURL(), null);
+        }
+        return rowsTouched;
+    }
+
+    /**
+     * Syncs the recipes with the provider when it runs in this process, comparing their
+     * content hashes; otherwise every recipe is written in batches of operations and no
+     * recipe is deleted
+     *
+     * @param deleteMissing whether the recipes are the whole catalog, the recipes of the
+     *                      database that are not among them are deleted
+     * @return the number of rows written or deleted, {@link #FAILED_BATCH} if the sync failed;
+     * the batches written before a failed one are kept, the recipes are not all synced
+     */
+    @WorkerThread
+    private static int insertRecipesNow(ContentResolver contentResolver,
+                                        @NonNull List<Recipe> recipes,
+                                        boolean deleteMissing) {
         if (contentResolver == null)
             throw new NullPointerException("Unable to use " +
                     "context to get the contentResolver");
 
-        // Iterate over all the recipes
+        ContentProviderClient client =
+                contentResolver.acquireContentProviderClient(RecipeDbContract.AUTHORITY);
+        if (client != null) {
+            try {
+                ContentProvider provider = client.getLocalContentProvider();
+                if (provider instanceof RecipeContentProvider) {
+                    SyncStats stats = ((RecipeContentProvider) provider)
+                            .syncRecipes(recipes, deleteMissing);
+                    Log.d(TAG, "insertRecipesNow() " + stats);
+                    return stats.getRowsTouched();
+                }
+            } catch (SQLException e) {
+                Log.e(TAG, "insertRecipesNow() sync failed, no row was written", e);
+                return FAILED_BATCH;
+            } finally {
+                client.release();
+            }
+        }
+
+        int rowsTouched = 0;
+        boolean failed = false;
+
+        // Write the recipes in batches of whole recipes, each batch is one transaction
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
         for (Recipe recipe : recipes) {
-            // Get the unique recipe id first, this is used as foreign key for child tables
-            Long recipeId = recipe.getUid();
+            int recipeOperations = 2 + sizeOf(recipe.getIngredients()) + sizeOf(recipe.getSteps());
+            if (!operations.isEmpty()
+                    && operations.size() + recipeOperations > MAX_BATCH_OPERATIONS) {
+                int batchRows = applyBatch(contentResolver, operations);
+                if (batchRows == FAILED_BATCH) {
+                    failed = true;
+                } else {
+                    rowsTouched += batchRows;
+                }
+                operations = new ArrayList<>();
+            }
+            addInsertRecipeOperations(operations, recipe);
+        }
+        int batchRows = applyBatch(contentResolver, operations);
+        if (batchRows == FAILED_BATCH) {
+            failed = true;
+        } else {
+            rowsTouched += batchRows;
+        }
 
-            // Put the java fields into key-value pairs
-            ContentValues cv = new ContentValues();
-            cv.put(COLUMN_RECIPE_UID, recipeId);
-            cv.put(COLUMN_RECIPE_IMAGE_URL, recipe.getImageURL());
-            cv.put(COLUMN_RECIPE_NAME, recipe.getName());
-            cv.put(COLUMN_RECIPE_SERVINGS, recipe.getServings());
+        // The other batches are still written, a streamed batch is better partly synced
+        return failed ? FAILED_BATCH : rowsTouched;
+    }
 
-            // PARENT TABLE - RECIPES
-            insertRecipes(contentResolver, cv);
+    /**
+     * Applies a delta of the recipes to the database on the calling thread, only the recipes
+     * in the delta are touched: deleted recipes are removed along with their steps and
+     * ingredients, added or updated recipes are written in place along with their steps and
+     * ingredients, the ones no longer in the recipe are removed. The delta is applied in a
+     * single transaction, all of it or none of it.
+     *
+     * @param context   context to get the contentResolver with
+     * @param changeSet the delta to apply, its sync token is stored once it is applied
+     * @return the number of rows deleted and written
+     */
+    @WorkerThread
+    public static int applyChangesNow(@NonNull Context context,
+                                      @NonNull RecipeChangeSet changeSet) {
+        ContentResolver contentResolver = context.getContentResolver();
 
-            // CHILD TABLE - INGREDIENTS
-            bulkInsertIngredients(contentResolver, recipe.getIngredients(), recipeId);
+        if (contentResolver == null)
+            throw new NullPointerException("Unable to use " +
+                    "context to get the contentResolver");
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+        // Deleted recipes, the provider removes their child rows along with them
+        for (Long recipeId : changeSet.getDeletedRecipeIds()) {
+            operations.add(ContentProviderOperation
+                    .newDelete(RecipeDbContract.buildRecipeUriWithId(recipeId))
+                    .build());
+        }
+
+        // Added or updated recipes, drop the child rows that are no longer in the recipe, the
+        // provider updates the others in place
+        for (Recipe recipe : changeSet.getRecipes()) {
+            String[] selectionArgs = new String[]{String.valueOf(recipe.getUid())};
+
+            List<Long> ingredientIds = new ArrayList<>();
+            if (recipe.getIngredients() != null) {
+                for (Ingredient ingredient : recipe.getIngredients()) {
+                    ingredientIds.add(ingredient.getUid());
+                }
+            }
+            operations.add(ContentProviderOperation.newDelete(CONTENT_URI_INGREDIENT)
+                    .withSelection(COLUMN_INGREDIENT_RECIPE_KEY + "=?"
+                            + notIn(COLUMN_INGREDIENT_UID, ingredientIds), selectionArgs)
+                    .build());
+
+            List<Long> stepIds = new ArrayList<>();
+            if (recipe.getSteps() != null) {
+                for (Step step : recipe.getSteps()) {
+                    stepIds.add(step.getUid());
+                }
+            }
+            operations.add(ContentProviderOperation.newDelete(CONTENT_URI_STEP)
+                    .withSelection(COLUMN_STEP_RECIPE_KEY + "=?"
+                            + notIn(COLUMN_STEP_UID, stepIds), selectionArgs)
+                    .build());
+
+            addInsertRecipeOperations(operations, recipe);
+        }
+
+        int rowsTouched = applyBatch(contentResolver, operations);
+        if (rowsTouched == FAILED_BATCH) {
+            // Nothing was applied, the delta is fetched again from the same sync token
+            return 0;
+        }
 
-            // CHILD TABLE - STEPS
-            bulkInsertSteps(contentResolver, recipe.getSteps(), recipeId);
+        // The delta is applied, the next one is requested from its sync token
+        if (changeSet.isDelta() && changeSet.getSourceURL() != null) {
+            DeltaRecipeSource.saveSyncToken(context, changeSet.getSourceURL(),
+                    changeSet.getSyncToken());
         }
+
+        // Patch the snapshot the same way, so it stays a copy of the database
+        RecipeSnapshot.applyChanges(RecipeSnapshot.getSnapshotFile(context), changeSet);
+
+        return rowsTouched;
     }
 
     /**
-     * Method to insert individual recipe into the recipe table
+     * Method to build a selection excluding the given ids, the ids are numbers and are written
+     * into the selection rather than bound, so it does not run into the limit on bound
+     * arguments
      *
-     * @param contentResolver contentResolver to get the proper content provider given the uri
-     * @param cv the content value for the recipe, less then child table lists
+     * @param column the id column
+     * @param ids    the ids to exclude
+     * @return the selection, to be appended to another one, empty if there are no ids
      */
-    private void insertRecipes(@NonNull ContentResolver contentResolver, ContentValues cv) {
-        // use the contentResolver bulkInsert to insert all the cv values
-        final Uri contentUri = contentResolver.insert(CONTENT_URI_RECIPE, cv);
-        if (contentUri == null) Log.e(TAG,"insertRecipes() failed");
+    private static String notIn(@NonNull String column, @NonNull List<Long> ids) {
+        if (ids.isEmpty()) return "";
+
+        StringBuilder selection = new StringBuilder(" AND ").append(column).append(" NOT IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) selection.append(',');
+            selection.append(ids.get(i).longValue());
+        }
+        return selection.append(')').toString();
     }
 
     /**
-     * Method to bulkInsert bulkInsertSteps of a particular recipe into the IngredientsTable
+     * Method to add the operations inserting a recipe into the recipe table and its
+     * ingredients and steps into the child tables, then storing the content hash of the recipe
      *
-     * @param contentResolver contentResolver to get the proper content provider given the uri
-     * @param steps the list of steps to store each step from the cursor
-     * @param recipeId the recipe uid to select the step cursor with
+     * @param operations the batch to add the operations to
+     * @param recipe the recipe to insert
      */
-    synchronized private void bulkInsertSteps(@NonNull ContentResolver contentResolver,
-                                              List<Step> steps,
-                                              @NonNull Long recipeId) {
-
-        ContentValues[] cvArray = new ContentValues[steps.size()];
+    private static void addInsertRecipeOperations(
+            @NonNull ArrayList<ContentProviderOperation> operations, Recipe recipe) {
+        // Get the unique recipe id first, this is used as foreign key for child tables
+        long recipeId = recipe.getUid();
+
+        // PARENT TABLE - RECIPES
+        ContentValues cv = new ContentValues();
+        cv.put(COLUMN_RECIPE_UID, recipeId);
+        cv.put(COLUMN_RECIPE_IMAGE_URL, recipe.getImageURL());
+        cv.put(COLUMN_RECIPE_NAME, recipe.getName());
+        cv.put(COLUMN_RECIPE_SERVINGS, recipe.getServings());
+        operations.add(ContentProviderOperation.newInsert(CONTENT_URI_RECIPE)
+                .withValues(cv)
+                .build());
+
+        // CHILD TABLE - INGREDIENTS
+        if (recipe.getIngredients() != null) {
+            for (Ingredient ingredient : recipe.getIngredients()) {
+                cv = new ContentValues();
+                cv.put(COLUMN_INGREDIENT_UID, ingredient.getUid());
+                cv.put(COLUMN_INGREDIENT_MEASURE, ingredient.getMeasure());
+                cv.put(COLUMN_INGREDIENT_NAME, ingredient.getIngredientName());
+                cv.put(COLUMN_INGREDIENT_QUANTITY, ingredient.getQuantity());
+                cv.put(COLUMN_INGREDIENT_RECIPE_KEY, recipeId);
+                operations.add(ContentProviderOperation.newInsert(CONTENT_URI_INGREDIENT)
+                        .withValues(cv)
+                        .build());
+            }
+        }
 
-        try {
-            // Set a count index for the foreach loop, this index value is for
-            // referencing the correct ContentValue in the ContentValue[] to
-            // store each entry.
-            int i = 0;
-
-            // Iterate over all the ingredients
-            for (Step step : steps) {
-                ContentValues cv = new ContentValues();
+        // CHILD TABLE - STEPS
+        if (recipe.getSteps() != null) {
+            for (Step step : recipe.getSteps()) {
+                cv = new ContentValues();
                 cv.put(COLUMN_STEP_UID, step.getUid());
                 cv.put(COLUMN_STEP_NUM, step.getStepNum());
                 cv.put(COLUMN_STEP_DESCRIPTION, step.getDescription());
@@ -190,66 +497,55 @@ public class SyncDbIntentService extends IntentService {
                 cv.put(COLUMN_STEP_THUMBNAIL_URL, step.getThumbnailURL());
                 cv.put(COLUMN_STEP_VIDEO_URL, step.getVideoURL());
                 cv.put(COLUMN_STEP_RECIPE_KEY, recipeId);
-                cvArray[i] = cv;
-
-                // increment one after iteration for the next set of cv
-                i++;
+                operations.add(ContentProviderOperation.newInsert(CONTENT_URI_STEP)
+                        .withValues(cv)
+                        .build());
             }
-
-        } catch (Exception e) {
-            Log.e(TAG, e.getLocalizedMessage());
-            e.printStackTrace();
-
-        } finally {
-            // use the contentResolver bulkInsert to insert all the cv values
-            final int rowInserted = contentResolver.bulkInsert(CONTENT_URI_STEP, cvArray);
-            if (rowInserted <= 0) Log.e(TAG,"bulkInsertSteps() failed");
         }
-    }
 
+        // CONTENT HASH - written last, writing the child rows clears the hash of their recipe
+        cv = new ContentValues();
+        cv.put(COLUMN_RECIPE_CONTENT_HASH, RecipeContentHash.of(recipe));
+        operations.add(ContentProviderOperation
+                .newUpdate(RecipeDbContract.buildRecipeUriWithId(recipeId))
+                .withValues(cv)
+                .build());
+    }
 
     /**
-     * Method to bulkInsert ingredients of a particular recipe into the IngredientsTable
+     * Method to apply a batch of operations in a single transaction of the provider
      *
      * @param contentResolver contentResolver to get the proper content provider given the uri
-     * @param ingredients the list of ingredients to store each step from the cursor
-     * @param recipeId the recipe uid to select the data cursor with
+     * @param operations the operations to apply
+     * @return the number of rows inserted or deleted, {@link #FAILED_BATCH} if the batch
+     * failed and nothing was applied
      */
-    synchronized private void bulkInsertIngredients(@NonNull ContentResolver contentResolver,
-                                                    List<Ingredient> ingredients,
-                                                    @NonNull Long recipeId) {
-
-        ContentValues[] cvArray = new ContentValues[ingredients.size()];
+    private static int applyBatch(@NonNull ContentResolver contentResolver,
+                                  @NonNull ArrayList<ContentProviderOperation> operations) {
+        if (operations.isEmpty()) return 0;
 
+        ContentProviderResult[] results;
         try {
-            // set a count index for the foreach loop, this index value is for
-            // referencing the correct ContentValue in the ContentValue[] to
-            // store each entry.
-            int i = 0;
-
-            // Iterate over all the ingredients
-            for (Ingredient ingredient : ingredients) {
-                ContentValues cv = new ContentValues();
-                cv.put(COLUMN_INGREDIENT_UID,ingredient.getUid());
-                cv.put(COLUMN_INGREDIENT_MEASURE, ingredient.getMeasure());
-                cv.put(COLUMN_INGREDIENT_NAME, ingredient.getIngredientName());
-                cv.put(COLUMN_INGREDIENT_QUANTITY, ingredient.getQuantity());
-                cv.put(COLUMN_INGREDIENT_RECIPE_KEY, recipeId);
-                cvArray[i] = cv;
+            results = contentResolver.applyBatch(RecipeDbContract.AUTHORITY, operations);
+        } catch (RemoteException | OperationApplicationException | SQLException e) {
+            // The provider throws a SQLException when a row can't be written, the
+            // transaction of the batch is rolled back all the same
+            Log.e(TAG, "applyBatch() failed, no row of the batch was written", e);
+            return FAILED_BATCH;
+        }
 
-                // increment one after iteration for the next set of cv
-                i++;
+        int rowsTouched = 0;
+        for (ContentProviderResult result : results) {
+            if (result.count != null) {
+                rowsTouched += result.count;
+            } else if (result.uri != null) {
+                rowsTouched++;
             }
-
-        } catch (Exception e) {
-            Log.e(TAG, e.getLocalizedMessage());
-            e.printStackTrace();
-
-        } finally {
-            // use the contentResolver bulkInsert to insert all the cv values
-            final int rowInserted =
-                    contentResolver.bulkInsert(CONTENT_URI_INGREDIENT, cvArray);
-            if (rowInserted <= 0) Log.e(TAG,"bulkInsertIngredients() failed");
         }
+        return rowsTouched;
+    }
+
+    private static int sizeOf(@Nullable List<?> list) {
+        return list != null ? list.size() : 0;
     }
 }
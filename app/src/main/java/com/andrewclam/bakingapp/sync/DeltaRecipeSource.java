@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.andrewclam.bakingapp.models.RecipeChangeSet;
+import com.andrewclam.bakingapp.utils.NetworkUtils;
+import com.andrewclam.bakingapp.utils.RecipeJsonUtil;
+import com.andrewclam.bakingapp.utils.RecipeParser;
+import com.andrewclam.bakingapp.utils.RetryPolicy;
+import com.andrewclam.bakingapp.utils.TransferStats;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLEncoder;
+
+/**
+ * DeltaRecipeSource requests only the changes since the stored sync token, with the token
+ * as the "since" query parameter of the data url. The response format is described in
+ * {@link RecipeJsonUtil#getRecipeChangesFromJson(InputStream)}; a source without delta
+ * support that answers with the full feed is handled as a full feed.
+ * <p>
+ * The sync token is only stored once the changes are applied, with
+ * {@link #saveSyncToken(Context, String, String)}; once a full feed is synced instead, the
+ * stored token is cleared, as the database no longer is the one the token was issued for.
+ */
+
+public class DeltaRecipeSource implements RecipeSource {
+
+    /* Debug Tag */
+    private static final String TAG = DeltaRecipeSource.class.getSimpleName();
+
+    /* Query parameter of the sync token */
+    private static final String QUERY_PARAM_SINCE = "since";
+
+    /* Charset of the query parameters */
+    private static final String CHARSET_UTF_8 = "UTF-8";
+
+    /* SharedPreferences file of the sync tokens, keyed by data url */
+    private static final String PREFS_NAME = "recipe_sync_tokens";
+
+    /* String of the URL to get the recipe changes */
+    private final String mDataURL;
+
+    /* Timeouts, retries and deadline of the fetch */
+    private RetryPolicy mRetryPolicy = new RetryPolicy();
+
+    public DeltaRecipeSource(@NonNull String dataURL) {
+        this.mDataURL = dataURL;
+    }
+
+    public DeltaRecipeSource setRetryPolicy(@NonNull RetryPolicy retryPolicy) {
+        this.mRetryPolicy = retryPolicy;
+        return this;
+    }
+
+    @Override
+    public RecipeChangeSet fetchChanges(
+            @Nullable Context context,
+            @Nullable final RecipeParser.OnRecipeParsedListener listener)
+            throws IOException, JSONException {
+        // Ask for the changes since the last sync, or everything if never synced
+        String syncToken = context != null ? loadSyncToken(context, mDataURL) : null;
+        URL url = new URL(syncToken == null ? mDataURL : mDataURL
+                + (mDataURL.indexOf('?') == -1 ? '?' : '&')
+                + QUERY_PARAM_SINCE + '=' + URLEncoder.encode(syncToken, CHARSET_UTF_8));
+
+        TransferStats stats = new TransferStats();
+        RecipeChangeSet changeSet = NetworkUtils.getResponseFromHttpUrl(url, null, stats,
+                mRetryPolicy,
+                new NetworkUtils.ResponseHandler<RecipeChangeSet>() {
+                    @Override
+                    public RecipeChangeSet onResponse(InputStream in)
+                            throws IOException, JSONException {
+                        return RecipeJsonUtil.getRecipeChangesFromJson(in, listener);
+                    }
+                });
+
+        Log.d(TAG, "fetchChanges() fetched " + url + " " + stats);
+
+        // Tag the changes with their source, the sync token is stored under it once they are
+        // applied, or cleared if they are a full feed
+        changeSet.setSourceURL(mDataURL);
+        return changeSet;
+    }
+
+    /**
+     * loadSyncToken() reads the sync token of the last applied delta of the data url
+     *
+     * @return the sync token, null if no delta of the data url was ever applied
+     */
+    @Nullable
+    public static String loadSyncToken(@NonNull Context context, @NonNull String dataURL) {
+        return getPreferences(context).getString(dataURL, null);
+    }
+
+    /**
+     * saveSyncToken() stores the sync token of a delta, call this once the delta is applied
+     *
+     * @param dataURL   the data url the delta was fetched from,
+     *                  see {@link RecipeChangeSet#getSourceURL()}
+     * @param syncToken the sync token of the delta
+     */
+    public static void saveSyncToken(@NonNull Context context, @NonNull String dataURL,
+                                     @Nullable String syncToken) {
+        getPreferences(context).edit().putString(dataURL, syncToken).apply();
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
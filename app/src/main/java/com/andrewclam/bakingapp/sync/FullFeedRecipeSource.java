@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.sync;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.andrewclam.bakingapp.data.RecipeSnapshot;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.RecipeChangeSet;
+import com.andrewclam.bakingapp.utils.BinaryRecipeParser;
+import com.andrewclam.bakingapp.utils.HttpValidators;
+import com.andrewclam.bakingapp.utils.JsonObjectRecipeParser;
+import com.andrewclam.bakingapp.utils.JsonReaderRecipeParser;
+import com.andrewclam.bakingapp.utils.NetworkUtils;
+import com.andrewclam.bakingapp.utils.RecipeParser;
+import com.andrewclam.bakingapp.utils.RetryPolicy;
+import com.andrewclam.bakingapp.utils.TransferStats;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+
+/**
+ * FullFeedRecipeSource fetches the whole recipe feed, a JSON array of all the recipes.
+ * The fetch is conditional on the validators of the last successful sync, the validators of
+ * the response are carried in the change set and stored once its recipes are synced, with
+ * {@link com.andrewclam.bakingapp.services.SyncDbIntentService#syncRecipesNow(Context, RecipeChangeSet)}.
+ */
+
+public class FullFeedRecipeSource implements RecipeSource {
+
+    /* Debug Tag */
+    private static final String TAG = FullFeedRecipeSource.class.getSimpleName();
+
+    /* Accept header of the binary recipe feed, preferred over JSON */
+    private static final String ACCEPT_BINARY_FEED =
+            RecipeSnapshot.MEDIA_TYPE + ", application/json;q=0.5";
+
+    /* String of the URL to get the recipes */
+    private final String mDataURL;
+
+    /* Timeouts, retries and deadline of the fetch */
+    private RetryPolicy mRetryPolicy = new RetryPolicy();
+
+    /* Parser of the recipe feed */
+    private RecipeParser mParser = new JsonReaderRecipeParser();
+
+    /* Whether to ask for the binary recipe feed, JSON by default */
+    private boolean mBinaryFeed;
+
+    public FullFeedRecipeSource(@NonNull String dataURL) {
+        this.mDataURL = dataURL;
+    }
+
+    public FullFeedRecipeSource setRetryPolicy(@NonNull RetryPolicy retryPolicy) {
+        this.mRetryPolicy = retryPolicy;
+        return this;
+    }
+
+    /**
+     * setParser() swaps the parser of the recipe feed, such as the org.json
+     * {@link JsonObjectRecipeParser} to benchmark it against the default
+     * {@link JsonReaderRecipeParser}
+     */
+    public FullFeedRecipeSource setParser(@NonNull RecipeParser parser) {
+        this.mParser = parser;
+        return this;
+    }
+
+    /**
+     * setBinaryFeed() asks the server for the binary recipe feed, {@link RecipeSnapshot}, with
+     * JSON as the fallback if the server doesn't serve it
+     */
+    public FullFeedRecipeSource setBinaryFeed(boolean binaryFeed) {
+        this.mBinaryFeed = binaryFeed;
+        return this;
+    }
+
+    @Override
+    public RecipeChangeSet fetchChanges(
+            @Nullable Context context,
+            @Nullable final RecipeParser.OnRecipeParsedListener listener)
+            throws IOException, JSONException {
+        // Get the url required by the network util
+        URL url = new URL(mDataURL);
+
+        // Get the validators of the last successful fetch, to make a conditional request
+        HttpValidators validators = context != null
+                ? HttpValidators.load(context, mDataURL) : null;
+
+        // Stream the httpResponse using the url, parse the recipes off the stream
+        // using the JsonUtils as it is being downloaded
+        TransferStats stats = new TransferStats();
+        final RecipeParser parser = mBinaryFeed ? new BinaryRecipeParser(mParser) : mParser;
+        String accept = mBinaryFeed ? ACCEPT_BINARY_FEED : null;
+        ArrayList<Recipe> recipes = NetworkUtils.getResponseFromHttpUrl(url, validators, stats,
+                mRetryPolicy, accept,
+                new NetworkUtils.ResponseHandler<ArrayList<Recipe>>() {
+                    @Override
+                    public ArrayList<Recipe> onResponse(InputStream in)
+                            throws IOException, JSONException {
+                        return parser.parseRecipes(in, listener);
+                    }
+                });
+
+        Log.d(TAG, "fetchChanges() fetched " + mDataURL + " " + stats);
+
+        if (validators != null && validators.isNotModified()) {
+            // Nothing changed since the last fetch, skip parsing and syncing,
+            // the cached catalog is still current
+            return RecipeChangeSet.notModified();
+        }
+
+        // Hand the validators over with the recipes, they are only stored once the recipes
+        // are synced, or a failed sync would leave the database stale behind a 304
+        RecipeChangeSet changeSet =
+                RecipeChangeSet.fullFeed(recipes != null ? recipes : new ArrayList<Recipe>());
+        changeSet.setSourceURL(mDataURL);
+        if (validators != null && recipes != null) {
+            changeSet.setETag(validators.getETag());
+            changeSet.setLastModified(validators.getLastModified());
+        }
+        return changeSet;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.sync;
+
+import android.content.Context;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.andrewclam.bakingapp.models.RecipeChangeSet;
+import com.andrewclam.bakingapp.utils.RecipeParser;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+
+/**
+ * RecipeSource is a data source of recipes, it tells what changed since the recipes were
+ * last synced from it.
+ */
+
+public interface RecipeSource {
+
+    /**
+     * fetchChanges() fetches the changes of the recipes since the last sync
+     *
+     * @param context  context to read the sync state of the source, may be null in which case
+     *                 the source fetches as if it was never synced
+     * @param listener called on the fetching thread with each recipe of a full feed as soon
+     *                 as it is parsed, before the rest of the response is read; may be null
+     * @return the change set, {@link RecipeChangeSet#notModified()} if nothing changed
+     * @throws IOException   Related to network and stream reading
+     * @throws JSONException Related to parsing the response
+     */
+    @WorkerThread
+    RecipeChangeSet fetchChanges(@Nullable Context context,
+                                 @Nullable RecipeParser.OnRecipeParsedListener listener)
+            throws IOException, JSONException;
+}
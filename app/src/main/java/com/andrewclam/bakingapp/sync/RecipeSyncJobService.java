@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.sync;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.andrewclam.bakingapp.models.RecipeChangeSet;
+import com.andrewclam.bakingapp.services.RecipeSyncCoordinator;
+import com.andrewclam.bakingapp.services.SyncDbIntentService;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+
+import static com.andrewclam.bakingapp.Constants.DATA_URL;
+
+/**
+ * RecipeSyncJobService runs the background sync scheduled by {@link RecipeSyncScheduler}:
+ * it fetches the recipes, parses them and writes them into the database, all off the main
+ * thread, then records the duration of the run and the rows it touched.
+ */
+
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class RecipeSyncJobService extends JobService {
+
+    /* Debug Tag */
+    private static final String TAG = RecipeSyncJobService.class.getSimpleName();
+
+    /* The running sync, null when idle */
+    private SyncTask mSyncTask;
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        if (RecipeSyncScheduler.shouldSkipRun(this)) {
+            // The other job or an earlier run synced within the interval
+            Log.d(TAG, "onStartJob() synced recently, skipping job " + params.getJobId());
+            return false;
+        }
+
+        if (mSyncTask != null) {
+            // The other job is already syncing
+            Log.d(TAG, "onStartJob() sync in progress, skipping job " + params.getJobId());
+            return false;
+        }
+
+        mSyncTask = new SyncTask(this, params);
+        mSyncTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+
+        // The work continues on the background thread
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The constraints no longer hold, stop and retry the sync later
+        if (mSyncTask != null) {
+            mSyncTask.cancel(true);
+            mSyncTask = null;
+        }
+        return true;
+    }
+
+    private void onSyncFinished(JobParameters params, boolean success) {
+        mSyncTask = null;
+
+        if (success) {
+            // Let the foreground refreshes know the database is current
+            RecipeSyncCoordinator.getInstance().markSynced();
+        }
+
+        // Reschedule a failed sync with the job's backoff rather than waiting a whole interval
+        jobFinished(params, !success);
+    }
+
+    /**
+     * SyncTask runs the fetch, parse and database writes pipeline on a background thread
+     */
+    private static class SyncTask extends AsyncTask<Void, Void, Boolean> {
+
+        /* The job service to call back, the context to sync with */
+        private final RecipeSyncJobService mService;
+
+        /* The parameters of the job to finish */
+        private final JobParameters mParams;
+
+        SyncTask(RecipeSyncJobService service, JobParameters params) {
+            this.mService = service;
+            this.mParams = params;
+        }
+
+        @Override
+        protected Boolean doInBackground(Void... voids) {
+            Context context = mService.getApplicationContext();
+            long startedAt = SystemClock.elapsedRealtime();
+            int rowsTouched = 0;
+            boolean success = false;
+
+            try {
+                RecipeChangeSet changeSet =
+                        new FullFeedRecipeSource(DATA_URL).fetchChanges(context, null);
+
+                if (!isCancelled()) {
+                    if (changeSet.isDelta()) {
+                        rowsTouched = SyncDbIntentService.applyChangesNow(context, changeSet);
+                    } else if (changeSet.isFullFeed() && !changeSet.isEmpty()) {
+                        rowsTouched = SyncDbIntentService.syncRecipesNow(context, changeSet);
+                    }
+                    success = true;
+                }
+            } catch (IOException | JSONException e) {
+                Log.e(TAG, "doInBackground() sync failed", e);
+            } finally {
+                RecipeSyncScheduler.recordRun(context,
+                        SystemClock.elapsedRealtime() - startedAt, rowsTouched, success);
+            }
+
+            return success;
+        }
+
+        @Override
+        protected void onPostExecute(Boolean success) {
+            mService.onSyncFinished(mParams, success);
+        }
+    }
+}
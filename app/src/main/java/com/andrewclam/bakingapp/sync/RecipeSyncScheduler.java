@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.sync;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * RecipeSyncScheduler schedules the background sync of the recipes, so the fetch, the parse
+ * and the database writes run while the user is not waiting on them and the UI reads only
+ * from the local database.
+ * <p>
+ * The sync runs at most once per {@link #SYNC_INTERVAL_MILLIS}, on an unmetered network,
+ * while the device is either idle or charging. JobScheduler constraints are all required
+ * together, so the idle and the charging cases are scheduled as two jobs of the same
+ * {@link RecipeSyncJobService}, and a run is skipped when the other job synced within the
+ * interval. The duration and the rows touched by each run are recorded with
+ * {@link #recordRun(Context, long, int, boolean)}.
+ * <p>
+ * JobScheduler is only available from Lollipop, earlier devices keep refreshing while the
+ * app is in the foreground only.
+ */
+
+public class RecipeSyncScheduler {
+
+    /* Debug Tag */
+    private static final String TAG = RecipeSyncScheduler.class.getSimpleName();
+
+    /* Minimum time between two background syncs */
+    public static final long SYNC_INTERVAL_MILLIS = 6 * 60 * 60 * 1000; // 6 hours
+
+    /* Job Ids */
+    static final int JOB_ID_SYNC_WHEN_IDLE = 1001;
+    static final int JOB_ID_SYNC_WHEN_CHARGING = 1002;
+
+    /* SharedPreferences file and keys of the recorded runs */
+    private static final String PREFS_NAME = "recipe_sync_runs";
+    private static final String KEY_LAST_RUN_AT = "last_run_at";
+    private static final String KEY_LAST_SUCCESS_AT = "last_success_at";
+    private static final String KEY_LAST_DURATION_MILLIS = "last_duration_millis";
+    private static final String KEY_LAST_ROWS_TOUCHED = "last_rows_touched";
+    private static final String KEY_RUN_COUNT = "run_count";
+    private static final String KEY_FAILURE_COUNT = "failure_count";
+
+    private RecipeSyncScheduler() {
+    }
+
+    /**
+     * schedule() schedules the background sync jobs, jobs that are already scheduled are
+     * left as they are, so this is safe to call on every launch.
+     *
+     * @param context context to get the JobScheduler with
+     */
+    public static void schedule(@NonNull Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            Log.d(TAG, "schedule() JobScheduler unavailable, background sync disabled");
+            return;
+        }
+        scheduleJobs(context.getApplicationContext());
+    }
+
+    /**
+     * cancel() cancels the background sync jobs
+     *
+     * @param context context to get the JobScheduler with
+     */
+    public static void cancel(@NonNull Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) return;
+
+        JobScheduler jobScheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        jobScheduler.cancel(JOB_ID_SYNC_WHEN_IDLE);
+        jobScheduler.cancel(JOB_ID_SYNC_WHEN_CHARGING);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void scheduleJobs(@NonNull Context context) {
+        JobScheduler jobScheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+
+        boolean hasIdleJob = false;
+        boolean hasChargingJob = false;
+        List<JobInfo> pendingJobs = jobScheduler.getAllPendingJobs();
+        for (JobInfo job : pendingJobs) {
+            if (job.getId() == JOB_ID_SYNC_WHEN_IDLE) hasIdleJob = true;
+            if (job.getId() == JOB_ID_SYNC_WHEN_CHARGING) hasChargingJob = true;
+        }
+
+        ComponentName service = new ComponentName(context, RecipeSyncJobService.class);
+
+        if (!hasIdleJob) {
+            int result = jobScheduler.schedule(newJobBuilder(JOB_ID_SYNC_WHEN_IDLE, service)
+                    .setRequiresDeviceIdle(true)
+                    .build());
+            Log.d(TAG, "scheduleJobs() idle job scheduled: "
+                    + (result == JobScheduler.RESULT_SUCCESS));
+        }
+
+        if (!hasChargingJob) {
+            int result = jobScheduler.schedule(newJobBuilder(JOB_ID_SYNC_WHEN_CHARGING, service)
+                    .setRequiresCharging(true)
+                    .build());
+            Log.d(TAG, "scheduleJobs() charging job scheduled: "
+                    + (result == JobScheduler.RESULT_SUCCESS));
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static JobInfo.Builder newJobBuilder(int jobId, @NonNull ComponentName service) {
+        return new JobInfo.Builder(jobId, service)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setPeriodic(SYNC_INTERVAL_MILLIS)
+                .setPersisted(true);
+    }
+
+    /**
+     * shouldSkipRun() tells whether a run would be redundant, as the last successful sync
+     * was made within the sync interval.
+     *
+     * @param context context to read the recorded runs with
+     * @return true if the last successful sync is recent enough to skip this run
+     */
+    static boolean shouldSkipRun(@NonNull Context context) {
+        long lastSuccessAt = getPrefs(context).getLong(KEY_LAST_SUCCESS_AT, -1);
+        if (lastSuccessAt == -1) return false;
+
+        long sinceLastSuccess = System.currentTimeMillis() - lastSuccessAt;
+        return sinceLastSuccess >= 0 && sinceLastSuccess < SYNC_INTERVAL_MILLIS;
+    }
+
+    /**
+     * recordRun() records the outcome of a background sync run
+     *
+     * @param context        context to store the recorded runs with
+     * @param durationMillis wall time of the run, fetch, parse and database writes
+     * @param rowsTouched    the number of rows deleted and written in the database
+     * @param success        whether the run completed
+     */
+    static void recordRun(@NonNull Context context, long durationMillis, int rowsTouched,
+                          boolean success) {
+        SharedPreferences prefs = getPrefs(context);
+        long now = System.currentTimeMillis();
+
+        SharedPreferences.Editor editor = prefs.edit()
+                .putLong(KEY_LAST_RUN_AT, now)
+                .putLong(KEY_LAST_DURATION_MILLIS, durationMillis)
+                .putInt(KEY_LAST_ROWS_TOUCHED, rowsTouched)
+                .putInt(KEY_RUN_COUNT, prefs.getInt(KEY_RUN_COUNT, 0) + 1);
+
+        if (success) {
+            editor.putLong(KEY_LAST_SUCCESS_AT, now);
+        } else {
+            editor.putInt(KEY_FAILURE_COUNT, prefs.getInt(KEY_FAILURE_COUNT, 0) + 1);
+        }
+        editor.apply();
+
+        Log.d(TAG, "recordRun() success=" + success
+                + ", durationMillis=" + durationMillis
+                + ", rowsTouched=" + rowsTouched);
+    }
+
+    /**
+     * @return the wall time of the last background sync run, -1 if it never ran
+     */
+    public static long getLastDurationMillis(@NonNull Context context) {
+        return getPrefs(context).getLong(KEY_LAST_DURATION_MILLIS, -1);
+    }
+
+    /**
+     * @return the number of rows touched by the last background sync run, -1 if it never ran
+     */
+    public static int getLastRowsTouched(@NonNull Context context) {
+        return getPrefs(context).getInt(KEY_LAST_ROWS_TOUCHED, -1);
+    }
+
+    /**
+     * @return the time of the last successful background sync in
+     * System.currentTimeMillis(), -1 if it never succeeded
+     */
+    public static long getLastSuccessAt(@NonNull Context context) {
+        return getPrefs(context).getLong(KEY_LAST_SUCCESS_AT, -1);
+    }
+
+    public static int getRunCount(@NonNull Context context) {
+        return getPrefs(context).getInt(KEY_RUN_COUNT, 0);
+    }
+
+    public static int getFailureCount(@NonNull Context context) {
+        return getPrefs(context).getInt(KEY_FAILURE_COUNT, 0);
+    }
+
+    private static SharedPreferences getPrefs(@NonNull Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
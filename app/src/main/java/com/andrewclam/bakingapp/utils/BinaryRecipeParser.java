@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.andrewclam.bakingapp.data.RecipeSnapshot;
+import com.andrewclam.bakingapp.models.Recipe;
+
+import org.json.JSONException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/**
+ * BinaryRecipeParser parses the binary recipe feed, the {@link RecipeSnapshot} layout served
+ * as {@link RecipeSnapshot#MEDIA_TYPE}. The feed is told apart from JSON by its magic number
+ * rather than by its Content-Type, so a cached response is parsed the same way; a JSON feed
+ * is handed to the JSON parser.
+ * <p>
+ * The binary feed is read into a single buffer and decoded in place, recipe by recipe.
+ */
+
+public class BinaryRecipeParser implements RecipeParser {
+
+    /* Size of the buffer the feed is read with */
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    /* Parser of a feed that is JSON after all */
+    private final RecipeParser mJsonParser;
+
+    public BinaryRecipeParser(@NonNull RecipeParser jsonParser) {
+        this.mJsonParser = jsonParser;
+    }
+
+    @Override
+    public ArrayList<Recipe> parseRecipes(InputStream in,
+                                          @Nullable OnRecipeParsedListener listener)
+            throws IOException, JSONException {
+        if (!in.markSupported()) in = new BufferedInputStream(in, READ_BUFFER_SIZE);
+
+        if (!RecipeSnapshot.isSnapshot(in)) {
+            // The server doesn't serve the binary feed, or the response is an older cached one
+            return mJsonParser.parseRecipes(in, listener);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+
+        RecipeSnapshot.Catalog catalog = RecipeSnapshot.wrap(bytes.toByteArray());
+        if (catalog == null) {
+            throw new IOException("Binary recipe feed of an unsupported version or corrupt");
+        }
+
+        ArrayList<Recipe> recipes = new ArrayList<>(catalog.size());
+        for (int i = 0; i < catalog.size(); i++) {
+            Recipe recipe = catalog.getRecipe(i);
+            if (listener != null) listener.onRecipeParsed(recipe);
+            recipes.add(recipe);
+        }
+        return recipes;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * CountingInputStream is a pass-through stream that counts the bytes read through it
+ */
+
+public class CountingInputStream extends FilterInputStream {
+
+    /* Number of bytes read so far */
+    private long mCount;
+
+    /* Count at the time mark() was called */
+    private long mMark = -1;
+
+    public CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int result = in.read();
+        if (result != -1) mCount++;
+        return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int result = in.read(b, off, len);
+        if (result != -1) mCount += result;
+        return result;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long result = in.skip(n);
+        mCount += result;
+        return result;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        in.mark(readLimit);
+        mMark = mCount;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        if (!in.markSupported()) throw new IOException("Mark not supported");
+        if (mMark == -1) throw new IOException("Mark not set");
+        in.reset();
+        mCount = mMark;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import android.support.annotation.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+
+/**
+ * GuardedInputStream guards the read of a response body. Reads fail once the deadline of the
+ * request has passed, however slowly the server trickles the body, and the error of the
+ * underlying stream is kept so that it can be told apart from an error of the consumer parsing
+ * what it read.
+ */
+
+class GuardedInputStream extends FilterInputStream {
+
+    /* Time past which reads fail, on the clock of NetworkUtils.elapsedMillis() */
+    private final long mDeadline;
+
+    /* The first error of the underlying stream, null if it never failed */
+    @Nullable
+    private IOException mReadError;
+
+    GuardedInputStream(InputStream in, long deadline) {
+        super(in);
+        this.mDeadline = deadline;
+    }
+
+    /**
+     * @return the first error of the underlying stream, null if it never failed
+     */
+    @Nullable
+    IOException getReadError() {
+        return mReadError;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkDeadline();
+        try {
+            return in.read();
+        } catch (IOException e) {
+            throw onReadError(e);
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkDeadline();
+        try {
+            return in.read(b, off, len);
+        } catch (IOException e) {
+            throw onReadError(e);
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        checkDeadline();
+        try {
+            return in.skip(n);
+        } catch (IOException e) {
+            throw onReadError(e);
+        }
+    }
+
+    private void checkDeadline() throws IOException {
+        if (NetworkUtils.elapsedMillis() >= mDeadline) {
+            throw onReadError(new SocketTimeoutException(
+                    "Deadline exceeded while reading the response"));
+        }
+    }
+
+    private IOException onReadError(IOException e) {
+        // A read cut off by the deadline watchdog fails with whatever the closed connection
+        // throws, report it as the timeout it is
+        if (!(e instanceof SocketTimeoutException)
+                && NetworkUtils.elapsedMillis() >= mDeadline) {
+            SocketTimeoutException timeout = new SocketTimeoutException(
+                    "Deadline exceeded while reading the response");
+            timeout.initCause(e);
+            e = timeout;
+        }
+
+        if (mReadError == null) mReadError = e;
+        return e;
+    }
+}
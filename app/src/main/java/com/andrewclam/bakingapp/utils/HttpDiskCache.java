@@ -0,0 +1,597 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * HttpDiskCache is a disk backed cache of HTTP responses keyed by url.
+ * <p>
+ * Each entry keeps the response body as it came over the wire (still compressed, if it was)
+ * together with its Content-Encoding, validators and the expiry computed from the
+ * Cache-Control, Expires, Date and Age headers of the response, see
+ * {@link #computeExpiresAt(String, String, String, String, long)}. The total size of the
+ * stored bodies is capped, the least recently used entries are evicted first.
+ * <p>
+ * Once installed with {@link #install(File, long)}, {@link NetworkUtils} serves fresh entries
+ * without touching the network.
+ */
+
+public class HttpDiskCache {
+
+    /* Log Tag */
+    private static final String TAG = HttpDiskCache.class.getSimpleName();
+
+    /* Version of the metadata file format, bump it when the format changes */
+    private static final int META_VERSION = 1;
+
+    /* File extensions of an entry */
+    private static final String EXT_META = ".meta";
+    private static final String EXT_BODY = ".body";
+    private static final String EXT_TMP = ".tmp";
+
+    /* Cache-Control directives */
+    private static final String DIRECTIVE_NO_STORE = "no-store";
+    private static final String DIRECTIVE_NO_CACHE = "no-cache";
+    private static final String DIRECTIVE_MAX_AGE = "max-age=";
+
+    /* Format of the HTTP dates of the Expires and Date headers */
+    private static final String HTTP_DATE_PATTERN = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    /* Process-wide installed cache */
+    private static HttpDiskCache sInstalled;
+
+    /* Directory of the entries and the cap of the total size of the bodies */
+    private final File mDirectory;
+    private long mMaxSize;
+
+    private HttpDiskCache(@NonNull File directory, long maxSize) {
+        this.mDirectory = directory;
+        this.mMaxSize = maxSize;
+    }
+
+    /**
+     * install() creates the process-wide cache, or resizes it if it's already installed
+     *
+     * @param directory the directory to store the entries in
+     * @param maxSize   the cap of the total size of the stored response bodies in bytes
+     * @return the installed cache
+     */
+    public static synchronized HttpDiskCache install(@NonNull File directory, long maxSize) {
+        if (sInstalled == null || !sInstalled.mDirectory.equals(directory)) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                Log.e(TAG, "install() unable to create the cache directory " + directory);
+            }
+            sInstalled = new HttpDiskCache(directory, maxSize);
+            sInstalled.deleteTempFiles();
+        } else {
+            sInstalled.setMaxSize(maxSize);
+        }
+        return sInstalled;
+    }
+
+    /**
+     * @return the process-wide cache, null if it was never installed
+     */
+    @Nullable
+    public static synchronized HttpDiskCache getInstalled() {
+        return sInstalled;
+    }
+
+    /**
+     * uninstall() removes the process-wide cache, its entries are left on disk
+     */
+    @VisibleForTesting
+    static synchronized void uninstall() {
+        sInstalled = null;
+    }
+
+    public synchronized void setMaxSize(long maxSize) {
+        this.mMaxSize = maxSize;
+        trimToSize();
+    }
+
+    /**
+     * get() reads the entry of the url
+     *
+     * @param url the url of the response
+     * @return the cached entry, null if the url isn't cached
+     */
+    @Nullable
+    public synchronized Entry get(@NonNull String url) {
+        String key = keyOf(url);
+        File metaFile = new File(mDirectory, key + EXT_META);
+        File bodyFile = new File(mDirectory, key + EXT_BODY);
+        if (!metaFile.exists() || !bodyFile.exists()) return null;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(metaFile));
+            if (in.readInt() != META_VERSION) return null;
+
+            Entry entry = new Entry(bodyFile);
+            String cachedUrl = in.readUTF();
+            entry.mContentEncoding = readNullableString(in);
+            entry.mETag = readNullableString(in);
+            entry.mLastModified = readNullableString(in);
+            entry.mExpiresAt = in.readLong();
+
+            // Guard against a collision of the keys
+            if (!url.equals(cachedUrl)) return null;
+
+            // Mark as recently used
+            //noinspection ResultOfMethodCallIgnored
+            bodyFile.setLastModified(System.currentTimeMillis());
+            return entry;
+        } catch (IOException e) {
+            Log.w(TAG, "get() unable to read the cache entry of " + url, e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * edit() starts writing a new entry of the url, the entry only replaces the current one
+     * once the returned writer is committed.
+     *
+     * @param url             the url of the response
+     * @param contentEncoding the Content-Encoding of the response body
+     * @param eTag            the ETag of the response
+     * @param lastModified    the Last-Modified of the response
+     * @param cacheControl    the Cache-Control of the response
+     * @param expiresAt       when the response stops being fresh, see
+     *                        {@link #computeExpiresAt(String, String, String, String, long)}
+     * @return a writer of the entry, null if the response must not be stored
+     */
+    @Nullable
+    public Writer edit(@NonNull String url, @Nullable String contentEncoding,
+                       @Nullable String eTag, @Nullable String lastModified,
+                       @Nullable String cacheControl, long expiresAt) {
+        if (cacheControl != null
+                && cacheControl.toLowerCase(Locale.US).contains(DIRECTIVE_NO_STORE)) {
+            return null;
+        }
+
+        Entry entry = new Entry(new File(mDirectory, keyOf(url) + EXT_BODY));
+        entry.mContentEncoding = contentEncoding;
+        entry.mETag = eTag;
+        entry.mLastModified = lastModified;
+        entry.mExpiresAt = expiresAt;
+        return new Writer(url, entry);
+    }
+
+    /**
+     * refresh() updates the expiry of an entry after the server revalidated it with a
+     * 304 Not Modified response.
+     *
+     * @param url       the url of the response
+     * @param entry     the revalidated entry
+     * @param expiresAt when the response stops being fresh, computed from the headers of the
+     *                  304 response
+     */
+    public synchronized void refresh(@NonNull String url, @NonNull Entry entry,
+                                     long expiresAt) {
+        entry.mExpiresAt = expiresAt;
+        try {
+            writeMeta(url, entry, new File(mDirectory, keyOf(url) + EXT_META));
+        } catch (IOException e) {
+            Log.w(TAG, "refresh() unable to update the cache entry of " + url, e);
+        }
+    }
+
+    /**
+     * remove() deletes the entry of the url
+     *
+     * @param url the url of the response
+     */
+    public synchronized void remove(@NonNull String url) {
+        String key = keyOf(url);
+        deleteEntry(key);
+    }
+
+    private synchronized void commit(String url, Entry entry, File tmpBodyFile)
+            throws IOException {
+        String key = keyOf(url);
+        File bodyFile = new File(mDirectory, key + EXT_BODY);
+        File metaFile = new File(mDirectory, key + EXT_META);
+
+        deleteEntry(key);
+        if (!tmpBodyFile.renameTo(bodyFile)) {
+            throw new IOException("Unable to commit the cache entry of " + url);
+        }
+        writeMeta(url, entry, metaFile);
+
+        trimToSize();
+    }
+
+    /**
+     * trimToSize() evicts the least recently used entries until the total size of the bodies
+     * is within the cap
+     */
+    private synchronized void trimToSize() {
+        File[] bodies = mDirectory.listFiles();
+        if (bodies == null) return;
+
+        long size = 0;
+        for (File file : bodies) {
+            if (file.getName().endsWith(EXT_BODY)) size += file.length();
+        }
+        if (size <= mMaxSize) return;
+
+        // Least recently used first
+        Arrays.sort(bodies, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsUsed = lhs.lastModified();
+                long rhsUsed = rhs.lastModified();
+                return lhsUsed < rhsUsed ? -1 : (lhsUsed == rhsUsed ? 0 : 1);
+            }
+        });
+
+        for (File file : bodies) {
+            if (size <= mMaxSize) break;
+            String name = file.getName();
+            if (!name.endsWith(EXT_BODY)) continue;
+
+            size -= file.length();
+            deleteEntry(name.substring(0, name.length() - EXT_BODY.length()));
+        }
+    }
+
+    private void writeMeta(String url, Entry entry, File metaFile) throws IOException {
+        File tmpMetaFile = new File(mDirectory, metaFile.getName() + EXT_TMP);
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(tmpMetaFile));
+        try {
+            out.writeInt(META_VERSION);
+            out.writeUTF(url);
+            writeNullableString(out, entry.mContentEncoding);
+            writeNullableString(out, entry.mETag);
+            writeNullableString(out, entry.mLastModified);
+            out.writeLong(entry.mExpiresAt);
+        } finally {
+            out.close();
+        }
+
+        if (!tmpMetaFile.renameTo(metaFile)) {
+            throw new IOException("Unable to write the cache metadata of " + url);
+        }
+    }
+
+    /**
+     * deleteTempFiles() deletes the bodies left half written by writers of a previous process
+     */
+    private synchronized void deleteTempFiles() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) return;
+
+        for (File file : files) {
+            if (file.getName().endsWith(EXT_TMP)) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    private void deleteEntry(String key) {
+        //noinspection ResultOfMethodCallIgnored
+        new File(mDirectory, key + EXT_META).delete();
+        //noinspection ResultOfMethodCallIgnored
+        new File(mDirectory, key + EXT_BODY).delete();
+    }
+
+    /**
+     * computeExpiresAt() computes when a response stops being fresh. The freshness lifetime is
+     * the Cache-Control max-age, or else the time from Date to Expires; the age the response
+     * already had when it was received, the larger of its Age header and the time since its
+     * Date, is taken off. A response with no-cache, or with neither max-age nor Expires, is
+     * stale right away and is revalidated before it is served.
+     *
+     * @param cacheControl the Cache-Control of the response
+     * @param age          the Age of the response, in seconds
+     * @param expires      the Expires of the response, an HTTP date
+     * @param date         the Date of the response, an HTTP date
+     * @param now          the time the response was received
+     * @return the time the response stops being fresh
+     */
+    public static long computeExpiresAt(@Nullable String cacheControl, @Nullable String age,
+                                        @Nullable String expires, @Nullable String date,
+                                        long now) {
+        long maxAgeMillis = -1;
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                directive = directive.trim().toLowerCase(Locale.US);
+                if (directive.equals(DIRECTIVE_NO_CACHE)) {
+                    return now;
+                } else if (directive.startsWith(DIRECTIVE_MAX_AGE)) {
+                    maxAgeMillis = parseSeconds(directive.substring(DIRECTIVE_MAX_AGE.length()));
+                }
+            }
+        }
+
+        long dateMillis = parseHttpDate(date);
+
+        long lifetimeMillis;
+        if (maxAgeMillis != -1) {
+            lifetimeMillis = maxAgeMillis;
+        } else if (expires != null) {
+            // An invalid Expires, such as "0", means already expired
+            long expiresMillis = parseHttpDate(expires);
+            if (expiresMillis == -1) return now;
+            lifetimeMillis = expiresMillis - (dateMillis != -1 ? dateMillis : now);
+        } else {
+            return now;
+        }
+
+        long ageMillis = Math.max(0, parseSeconds(age));
+        if (dateMillis != -1) ageMillis = Math.max(ageMillis, now - dateMillis);
+
+        return now + Math.max(0, lifetimeMillis - ageMillis);
+    }
+
+    /**
+     * @return the milliseconds of a number of seconds, -1 if it is missing or invalid
+     */
+    private static long parseSeconds(@Nullable String seconds) {
+        if (seconds == null) return -1;
+        try {
+            return Long.parseLong(seconds.trim()) * 1000L;
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "parseSeconds() invalid number of seconds " + seconds);
+            return -1;
+        }
+    }
+
+    /**
+     * @return the time of an HTTP date, -1 if it is missing or invalid
+     */
+    private static long parseHttpDate(@Nullable String httpDate) {
+        if (httpDate == null) return -1;
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_PATTERN, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return format.parse(httpDate.trim()).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    @VisibleForTesting
+    static String keyOf(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(url.getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16));
+                key.append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // MD5 and UTF-8 are always available
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, @Nullable String value)
+            throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    @Nullable
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * A cached response
+     */
+    public static class Entry {
+        private final File mBodyFile;
+        private String mContentEncoding;
+        private String mETag;
+        private String mLastModified;
+        private long mExpiresAt;
+
+        private Entry(File bodyFile) {
+            this.mBodyFile = bodyFile;
+        }
+
+        public boolean isFresh() {
+            return System.currentTimeMillis() < mExpiresAt;
+        }
+
+        /**
+         * @return whether the validators are the ones this entry was stored with, that is the
+         * holder of the validators already consumed this very response
+         */
+        public boolean matches(@NonNull HttpValidators validators) {
+            if (mETag != null) return mETag.equals(validators.getETag());
+            return mLastModified != null && mLastModified.equals(validators.getLastModified());
+        }
+
+        /**
+         * @return a stream of the body as it came over the wire
+         */
+        public InputStream openBody() throws IOException {
+            return new FileInputStream(mBodyFile);
+        }
+
+        @Nullable
+        public String getContentEncoding() {
+            return mContentEncoding;
+        }
+
+        @Nullable
+        public String getETag() {
+            return mETag;
+        }
+
+        @Nullable
+        public String getLastModified() {
+            return mLastModified;
+        }
+    }
+
+    /**
+     * Writer stores a response body into the cache as it is read off the network, the
+     * entry is only committed once the whole body has been stored.
+     */
+    public class Writer {
+        private final String mUrl;
+        private final Entry mEntry;
+
+        /* Body file of this writer alone, concurrent writers of the url each get their own */
+        private File mTmpBodyFile;
+        private OutputStream mOut;
+        private InputStream mTee;
+
+        /* Set once storing the body failed, the network read carries on regardless */
+        private boolean mFailed;
+
+        private Writer(String url, Entry entry) {
+            this.mUrl = url;
+            this.mEntry = entry;
+        }
+
+        /**
+         * tee() wraps the response stream so every byte read from it is also stored
+         *
+         * @param in the response stream as it comes over the wire
+         * @return the wrapped stream, to be read instead of the response stream
+         */
+        public InputStream tee(InputStream in) throws IOException {
+            mTmpBodyFile = File.createTempFile(keyOf(mUrl) + ".", EXT_BODY + EXT_TMP, mDirectory);
+            mOut = new FileOutputStream(mTmpBodyFile);
+            mTee = new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1) store(new byte[]{(byte) b}, 0, 1);
+                    return b;
+                }
+
+                @Override
+                public int read(@NonNull byte[] buffer, int off, int len) throws IOException {
+                    int count = super.read(buffer, off, len);
+                    if (count > 0) store(buffer, off, count);
+                    return count;
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    // Read through so that skipped bytes are stored as well
+                    byte[] buffer = new byte[(int) Math.min(n, 4096)];
+                    long skipped = 0;
+                    while (skipped < n) {
+                        int count = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                        if (count == -1) break;
+                        skipped += count;
+                    }
+                    return skipped;
+                }
+
+                @Override
+                public boolean markSupported() {
+                    return false;
+                }
+            };
+            return mTee;
+        }
+
+        /**
+         * commit() stores whatever is left of the response and publishes the entry, call
+         * it only once the response has been consumed successfully
+         */
+        public void commit() throws IOException {
+            if (mFailed) {
+                abort();
+                return;
+            }
+
+            try {
+                byte[] buffer = new byte[4096];
+                //noinspection StatementWithEmptyBody
+                while (mTee.read(buffer) != -1) {
+                    // drain the rest of the body into the cache
+                }
+            } finally {
+                mOut.close();
+            }
+            HttpDiskCache.this.commit(mUrl, mEntry, mTmpBodyFile);
+        }
+
+        private void store(byte[] buffer, int off, int len) {
+            if (mFailed) return;
+            try {
+                mOut.write(buffer, off, len);
+            } catch (IOException e) {
+                Log.w(TAG, "store() unable to store the response of " + mUrl, e);
+                mFailed = true;
+                closeQuietly(mOut);
+            }
+        }
+
+        /**
+         * abort() discards the partially stored response
+         */
+        public void abort() {
+            closeQuietly(mOut);
+            if (mTmpBodyFile != null) {
+                //noinspection ResultOfMethodCallIgnored
+                mTmpBodyFile.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * HttpValidators holds the cache validators (ETag and Last-Modified) of the last successful
+ * response of a url, and persists them in SharedPreferences so the next request can be made
+ * conditional with If-None-Match/If-Modified-Since.
+ */
+
+public class HttpValidators {
+
+    /* SharedPreferences file and key suffixes */
+    private static final String PREFS_NAME = "http_validators";
+    private static final String KEY_SUFFIX_ETAG = ".etag";
+    private static final String KEY_SUFFIX_LAST_MODIFIED = ".last_modified";
+
+    /* The url that the validators belong to */
+    private final String mUrl;
+
+    /* Validators, as returned by the server */
+    @Nullable
+    private String mETag;
+    @Nullable
+    private String mLastModified;
+
+    /* Whether the last request made with these validators got a 304 Not Modified */
+    private boolean mNotModified;
+
+    private HttpValidators(@NonNull String url) {
+        this.mUrl = url;
+    }
+
+    /**
+     * load() reads the persisted validators of the url
+     *
+     * @param context context to get the SharedPreferences
+     * @param url     the url that the validators belong to
+     * @return the validators of the url, empty if the url was never fetched successfully
+     */
+    public static HttpValidators load(@NonNull Context context, @NonNull String url) {
+        SharedPreferences prefs = getPreferences(context);
+        HttpValidators validators = new HttpValidators(url);
+        validators.mETag = prefs.getString(url + KEY_SUFFIX_ETAG, null);
+        validators.mLastModified = prefs.getString(url + KEY_SUFFIX_LAST_MODIFIED, null);
+        return validators;
+    }
+
+    /**
+     * clear() removes the persisted validators of the url, the next request of the url
+     * will be unconditional.
+     *
+     * @param context context to get the SharedPreferences
+     * @param url     the url that the validators belong to
+     */
+    public static void clear(@NonNull Context context, @NonNull String url) {
+        getPreferences(context).edit()
+                .remove(url + KEY_SUFFIX_ETAG)
+                .remove(url + KEY_SUFFIX_LAST_MODIFIED)
+                .apply();
+    }
+
+    /**
+     * save() persists the validators of the url, call this only once the response that
+     * carried them has been fully consumed and its content stored.
+     *
+     * @param context      context to get the SharedPreferences
+     * @param url          the url that the validators belong to
+     * @param eTag         the ETag of the response, may be null
+     * @param lastModified the Last-Modified of the response, may be null
+     */
+    public static void save(@NonNull Context context, @NonNull String url,
+                            @Nullable String eTag, @Nullable String lastModified) {
+        getPreferences(context).edit()
+                .putString(url + KEY_SUFFIX_ETAG, eTag)
+                .putString(url + KEY_SUFFIX_LAST_MODIFIED, lastModified)
+                .apply();
+    }
+
+    @Nullable
+    public String getETag() {
+        return mETag;
+    }
+
+    public void setETag(@Nullable String eTag) {
+        this.mETag = eTag;
+    }
+
+    @Nullable
+    public String getLastModified() {
+        return mLastModified;
+    }
+
+    public void setLastModified(@Nullable String lastModified) {
+        this.mLastModified = lastModified;
+    }
+
+    public boolean isNotModified() {
+        return mNotModified;
+    }
+
+    public void setNotModified(boolean notModified) {
+        this.mNotModified = notModified;
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
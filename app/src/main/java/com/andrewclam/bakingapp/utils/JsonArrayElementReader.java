@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * JsonArrayElementReader walks a top-level JSON array from a character stream and returns
+ * the raw text of one element at a time.
+ * <p>
+ * Only the element currently being read is held in memory, so a caller that parses and
+ * discards each element keeps its peak heap bounded by the largest single element rather
+ * than by the size of the whole array.
+ */
+
+public final class JsonArrayElementReader implements Closeable {
+
+    /* Size of the char buffer used to read from the underlying reader */
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /* Source of the JSON text */
+    private final Reader mReader;
+
+    /* Read buffer and its cursor */
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+    private int mPos;
+    private int mLimit;
+
+    /* Reader state, whether the opening and closing brackets of the array have been seen */
+    private boolean mStarted;
+    private boolean mFinished;
+
+    public JsonArrayElementReader(Reader reader) {
+        this.mReader = reader;
+    }
+
+    /**
+     * nextElement() reads the next element of the top-level array
+     *
+     * @return the raw JSON text of the next element, or null when the array is exhausted
+     * @throws IOException if the stream can't be read or is not a well-formed JSON array
+     */
+    public String nextElement() throws IOException {
+        if (mFinished) return null;
+
+        int c = nextNonWhitespace();
+
+        if (!mStarted) {
+            // An empty response is treated as an empty array
+            if (c == -1) {
+                mFinished = true;
+                return null;
+            }
+
+            if (c != '[') {
+                throw new IOException("Expected a JSON array but was '" + (char) c + "'");
+            }
+
+            mStarted = true;
+            c = nextNonWhitespace();
+        }
+
+        // Skip the separator left behind by the previous container or string element
+        if (c == ',') c = nextNonWhitespace();
+
+        if (c == ']') {
+            mFinished = true;
+            return null;
+        }
+
+        // Accumulate the element, tracking nesting so brackets inside strings are ignored
+        StringBuilder element = new StringBuilder();
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+
+        while (true) {
+            if (c == -1) throw new EOFException("Unterminated JSON array");
+
+            if (inString) {
+                element.append((char) c);
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (depth == 0) return element.toString();
+                }
+            } else if (c == '"') {
+                inString = true;
+                element.append((char) c);
+            } else if (c == '{' || c == '[') {
+                depth++;
+                element.append((char) c);
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    // Closing bracket of the top-level array right after a scalar element
+                    mFinished = true;
+                    return element.toString().trim();
+                }
+
+                depth--;
+                element.append((char) c);
+                if (depth == 0) return element.toString();
+            } else if (c == ',' && depth == 0) {
+                // End of a scalar element
+                return element.toString().trim();
+            } else {
+                element.append((char) c);
+            }
+
+            c = read();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c = read();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            c = read();
+        }
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (mPos == mLimit) {
+            mLimit = mReader.read(mBuffer, 0, mBuffer.length);
+            mPos = 0;
+            if (mLimit <= 0) {
+                mLimit = 0;
+                return -1;
+            }
+        }
+        return mBuffer[mPos++];
+    }
+}
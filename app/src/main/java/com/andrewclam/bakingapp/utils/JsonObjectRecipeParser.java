@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import android.support.annotation.Nullable;
+
+import com.andrewclam.bakingapp.models.Recipe;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/**
+ * JsonObjectRecipeParser parses each recipe of the feed into an org.json
+ * {@link org.json.JSONObject} tree first, then reads the fields off the tree.
+ *
+ * @see RecipeJsonUtil#getRecipesFromJson(InputStream, OnRecipeParsedListener)
+ */
+
+public class JsonObjectRecipeParser implements RecipeParser {
+
+    @Override
+    public ArrayList<Recipe> parseRecipes(InputStream in,
+                                          @Nullable OnRecipeParsedListener listener)
+            throws IOException, JSONException {
+        return RecipeJsonUtil.getRecipesFromJson(in, listener);
+    }
+}
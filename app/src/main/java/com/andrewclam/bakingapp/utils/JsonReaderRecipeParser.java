@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import android.support.annotation.Nullable;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.andrewclam.bakingapp.data.RecipeKeys;
+import com.andrewclam.bakingapp.models.Ingredient;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.Step;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.util.ArrayList;
+
+import static com.andrewclam.bakingapp.utils.RecipeJsonUtil.RECIPE_ID;
+import static com.andrewclam.bakingapp.utils.RecipeJsonUtil.RECIPE_IMAGE;
+import static com.andrewclam.bakingapp.utils.RecipeJsonUtil.RECIPE_INGREDIENTS;
+import static com.andrewclam.bakingapp.utils.RecipeJsonUtil.RECIPE_INGREDIENTS_INGREDIENT_NAME;
+import static com.andrewclam.bakingapp.utils.RecipeJsonUtil.RECIPE_INGREDIENTS_MEASURE;
+import static com.andrewclam.bakingapp.utils.RecipeJsonUtil.RECIPE_INGREDIENTS_QUANTITY;
+import static com.andrewclam.bakingapp.utils.RecipeJsonUtil.RECIPE_NAME;
+import static com.andrewclam.bakingapp.utils.RecipeJsonUtil.RECIPE_SERVINGS;
+import static com.andrewclam.bakingapp.utils.RecipeJsonUtil.RECIPE_STEPS;
+import static com.andrewclam.bakingapp.utils.RecipeJsonUtil.RECIPE_STEPS_DESCRIPTION;
+import static com.andrewclam.bakingapp.utils.RecipeJsonUtil.RECIPE_STEPS_NUM;
+import static com.andrewclam.bakingapp.utils.RecipeJsonUtil.RECIPE_STEPS_SHORT_DESCRIPTION;
+import static com.andrewclam.bakingapp.utils.RecipeJsonUtil.RECIPE_STEPS_THUMBNAIL_URL;
+import static com.andrewclam.bakingapp.utils.RecipeJsonUtil.RECIPE_STEPS_VIDEO_URL;
+
+/**
+ * JsonReaderRecipeParser builds the recipes, steps and ingredients straight off the tokens
+ * of a {@link JsonReader}, in a single pass and without an intermediate tree.
+ * <p>
+ * The results are the same as {@link JsonObjectRecipeParser}: values are coerced the way
+ * org.json does (numbers read as strings, strings read as numbers, fractional ids truncated),
+ * a missing field fails the parse, unknown fields are skipped and the last of duplicate
+ * fields wins. The keys of the steps and ingredients are set once the recipe is read, as
+ * its id may come after them. Unlike org.json, a nested object or array where a string is
+ * expected fails the parse rather than being read as its JSON text.
+ */
+
+public class JsonReaderRecipeParser implements RecipeParser {
+
+    /* Charset of the web response */
+    private static final String CHARSET_UTF_8 = "UTF-8";
+
+    @Override
+    public ArrayList<Recipe> parseRecipes(InputStream in,
+                                          @Nullable OnRecipeParsedListener listener)
+            throws IOException, JSONException {
+        PushbackReader pushbackReader =
+                new PushbackReader(new InputStreamReader(in, CHARSET_UTF_8));
+
+        // An empty response is treated as an empty array
+        int c = pushbackReader.read();
+        while (Character.isWhitespace(c)) c = pushbackReader.read();
+        if (c == -1) return new ArrayList<>();
+        pushbackReader.unread(c);
+
+        JsonReader reader = new JsonReader(pushbackReader);
+
+        // Initialize an arrayList to store objects. This data will back the recycler view adapter.
+        ArrayList<Recipe> recipes = new ArrayList<>();
+
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Recipe recipe = readRecipe(reader);
+                recipes.add(recipe);
+
+                // Publish the recipe before reading the next one off the stream
+                if (listener != null) listener.onRecipeParsed(recipe);
+            }
+            reader.endArray();
+        } catch (IllegalStateException | NumberFormatException e) {
+            // A token of an unexpected type, org.json reports it as a JSONException
+            throw new JSONException(e.getMessage());
+        }
+
+        return recipes;
+    }
+
+    /**
+     * readRecipe() reads a single recipe JSON object, including its ingredients and steps.
+     *
+     * @return the parsed recipe
+     */
+    static Recipe readRecipe(JsonReader reader) throws IOException, JSONException {
+        Long id = null;
+        String name = null;
+        Integer servings = null;
+        String imageURL = null;
+        ArrayList<Ingredient> ingredients = null;
+        ArrayList<Step> steps = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case RECIPE_ID:
+                    id = readLong(reader);
+                    break;
+                case RECIPE_NAME:
+                    name = readString(reader);
+                    break;
+                case RECIPE_SERVINGS:
+                    servings = readInt(reader);
+                    break;
+                case RECIPE_IMAGE:
+                    imageURL = readString(reader);
+                    break;
+                case RECIPE_INGREDIENTS:
+                    ingredients = readIngredients(reader);
+                    break;
+                case RECIPE_STEPS:
+                    steps = readSteps(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        /* Store each element into the data model class */
+        Recipe recipe = new Recipe();
+        recipe.setUid(require(id, RECIPE_ID));
+        recipe.setName(require(name, RECIPE_NAME));
+        recipe.setServings(require(servings, RECIPE_SERVINGS));
+        recipe.setImageURL(require(imageURL, RECIPE_IMAGE));
+        recipe.setIngredients(require(ingredients, RECIPE_INGREDIENTS));
+        recipe.setSteps(require(steps, RECIPE_STEPS));
+
+        // Create UID of the steps and ingredients now that the recipe id is known
+        for (Ingredient ingredient : ingredients) {
+            ingredient.setUid(RecipeKeys.ingredientKey(id, ingredient.getIngredientName()));
+        }
+        for (Step step : steps) {
+            step.setUid(RecipeJsonUtil.stepKey(id, step.getStepNum()));
+        }
+
+        return recipe;
+    }
+
+    /**
+     * readSteps() reads the steps array of a recipe, the step uids are left to the caller
+     *
+     * @return a list of steps in an array list
+     */
+    private static ArrayList<Step> readSteps(JsonReader reader)
+            throws IOException, JSONException {
+        ArrayList<Step> steps = new ArrayList<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Long stepNum = null;
+            String shortDescription = null;
+            String description = null;
+            String videoURL = null;
+            String thumbnailURL = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case RECIPE_STEPS_NUM:
+                        stepNum = readLong(reader);
+                        break;
+                    case RECIPE_STEPS_SHORT_DESCRIPTION:
+                        shortDescription = readString(reader);
+                        break;
+                    case RECIPE_STEPS_DESCRIPTION:
+                        description = readString(reader);
+                        break;
+                    case RECIPE_STEPS_VIDEO_URL:
+                        videoURL = readString(reader);
+                        break;
+                    case RECIPE_STEPS_THUMBNAIL_URL:
+                        thumbnailURL = readString(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            Step step = new Step();
+            step.setStepNum(require(stepNum, RECIPE_STEPS_NUM));
+            step.setShortDescription(require(shortDescription, RECIPE_STEPS_SHORT_DESCRIPTION));
+            step.setDescription(require(description, RECIPE_STEPS_DESCRIPTION));
+            step.setVideoURL(require(videoURL, RECIPE_STEPS_VIDEO_URL));
+            step.setThumbnailURL(require(thumbnailURL, RECIPE_STEPS_THUMBNAIL_URL));
+            steps.add(step);
+        }
+        reader.endArray();
+
+        return steps;
+    }
+
+    /**
+     * readIngredients() reads the ingredients array of a recipe, the ingredient uids are left
+     * to the caller
+     *
+     * @return a list of ingredients in an array list
+     */
+    private static ArrayList<Ingredient> readIngredients(JsonReader reader)
+            throws IOException, JSONException {
+        ArrayList<Ingredient> ingredients = new ArrayList<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Double quantity = null;
+            String measure = null;
+            String ingredientName = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case RECIPE_INGREDIENTS_QUANTITY:
+                        quantity = reader.nextDouble();
+                        break;
+                    case RECIPE_INGREDIENTS_MEASURE:
+                        measure = readString(reader);
+                        break;
+                    case RECIPE_INGREDIENTS_INGREDIENT_NAME:
+                        ingredientName = readString(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            Ingredient ingredient = new Ingredient();
+            ingredient.setQuantity(require(quantity, RECIPE_INGREDIENTS_QUANTITY));
+            ingredient.setMeasure(require(measure, RECIPE_INGREDIENTS_MEASURE));
+            ingredient.setIngredientName(
+                    require(ingredientName, RECIPE_INGREDIENTS_INGREDIENT_NAME));
+            ingredients.add(ingredient);
+        }
+        reader.endArray();
+
+        return ingredients;
+    }
+
+    /**
+     * readString() reads a value as a string the way JSONObject.getString() does: numbers are
+     * read as org.json would print them, booleans and null as their literals.
+     */
+    private static String readString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case NUMBER:
+                return numberToString(reader.nextString());
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            case NULL:
+                reader.nextNull();
+                return "null";
+            default:
+                return reader.nextString();
+        }
+    }
+
+    /**
+     * readLong() reads a value as a long the way JSONObject.getLong() does, a fractional
+     * number is truncated
+     */
+    private static long readLong(JsonReader reader) throws IOException {
+        try {
+            return reader.nextLong();
+        } catch (NumberFormatException e) {
+            // Not an exact long, the reader has not consumed the value
+            return (long) reader.nextDouble();
+        }
+    }
+
+    /**
+     * readInt() reads a value as an int the way JSONObject.getInt() does, a fractional
+     * number is truncated
+     */
+    private static int readInt(JsonReader reader) throws IOException {
+        try {
+            return reader.nextInt();
+        } catch (NumberFormatException e) {
+            // Not an exact int, the reader has not consumed the value
+            return (int) reader.nextDouble();
+        }
+    }
+
+    /**
+     * numberToString() prints a number literal the way org.json does, which parses literals
+     * without a decimal point as longs and the others as doubles
+     */
+    private static String numberToString(String literal) {
+        if (literal.indexOf('.') == -1) {
+            try {
+                return String.valueOf(Long.parseLong(literal));
+            } catch (NumberFormatException ignored) {
+                // Out of range or an exponent, parsed as a double below
+            }
+        }
+        return String.valueOf(Double.valueOf(literal));
+    }
+
+    /**
+     * require() fails the parse with the same message as org.json when a field is missing
+     */
+    private static <T> T require(T value, String name) throws JSONException {
+        if (value == null) throw new JSONException("No value for " + name);
+        return value;
+    }
+}
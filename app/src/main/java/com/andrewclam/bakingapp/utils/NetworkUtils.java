@@ -25,12 +25,26 @@ package com.andrewclam.bakingapp.utils;
 import android.content.Context;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
 
+import org.json.JSONException;
+
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
  * Created by Andrew Chi Heng Lam on 8/19/2017.
@@ -43,36 +57,451 @@ public class NetworkUtils {
     /* Instance Vars and Constants */
     private static final String TAG = NetworkUtils.class.getSimpleName(); // Log tag
 
+    /* HTTP Headers */
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String HEADER_ACCEPT = "Accept";
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+    private static final String HEADER_AGE = "Age";
+    private static final String HEADER_EXPIRES = "Expires";
+    private static final String HEADER_DATE = "Date";
+
+    /* Content Encodings */
+    private static final String ENCODING_GZIP = "gzip";
+    private static final String ENCODING_DEFLATE = "deflate";
+    private static final String ENCODING_IDENTITY = "identity";
+    private static final String ACCEPTED_ENCODINGS = ENCODING_GZIP + ", " + ENCODING_DEFLATE;
+
+    /* Size of the buffers used to decompress a response */
+    private static final int DECODE_BUFFER_SIZE = 8 * 1024;
+
+    /* Disconnects the requests that run past their deadline, created on first use */
+    private static ScheduledExecutorService sDeadlineWatchdog;
+
     /* Methods */
 
     /**
-     * This method returns the entire result from the HTTP response.
-     * Source: Udacity Sunshine App
+     * This method opens the HTTP response as a stream and hands it straight to the handler,
+     * the response body is never materialized as a whole in memory.
      *
-     * @param url The URL to fetch the HTTP response from.
-     * @return The contents of the HTTP response.
-     * @throws IOException Related to network and stream reading
+     * @param url     The URL to fetch the HTTP response from.
+     * @param handler The consumer of the response stream, the stream is closed once it returns.
+     * @return The value produced by the handler from the response stream.
+     * @throws IOException   Related to network and stream reading
+     * @throws JSONException Related to parsing the response in the handler
      */
-    public static String getResponseFromHttpUrl(URL url) throws IOException {
-        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
-        try {
-            InputStream in = urlConnection.getInputStream();
+    public static <T> T getResponseFromHttpUrl(URL url, ResponseHandler<T> handler)
+            throws IOException, JSONException {
+        return getResponseFromHttpUrl(url, null, null, new RetryPolicy(), handler);
+    }
+
+    /**
+     * This method makes a conditional request with the validators of the last successful
+     * response. If the server answers 304 Not Modified, the handler is never invoked and the
+     * validators are flagged with {@link HttpValidators#isNotModified()}; otherwise the
+     * validators are updated with the ones of the new response (they are not persisted, the
+     * caller saves them once it has successfully consumed the response).
+     * <p>
+     * When a {@link HttpDiskCache} is installed, a fresh cached response is served without
+     * touching the network, a stale one is revalidated with the server.
+     *
+     * @param url        The URL to fetch the HTTP response from.
+     * @param validators The validators of the last successful response, may be null to make
+     *                   an unconditional request.
+     * @param stats      Receives the compressed and uncompressed byte counts of the response,
+     *                   may be null.
+     * @param handler    The consumer of the response stream, the stream is closed once it
+     *                   returns.
+     * @return The value produced by the handler from the response stream, null if not modified.
+     * @throws IOException   Related to network and stream reading
+     * @throws JSONException Related to parsing the response in the handler
+     */
+    public static <T> T getResponseFromHttpUrl(URL url, @Nullable HttpValidators validators,
+                                               @Nullable TransferStats stats,
+                                               ResponseHandler<T> handler)
+            throws IOException, JSONException {
+        return getResponseFromHttpUrl(url, validators, stats, new RetryPolicy(), handler);
+    }
+
+    /**
+     * This method makes the request of
+     * {@link #getResponseFromHttpUrl(URL, HttpValidators, TransferStats, ResponseHandler)}
+     * under the timeouts of the retry policy, failed attempts are retried with exponential
+     * backoff and jitter until the attempts or the total deadline of the policy run out.
+     * The deadline holds while the body is read too, a server trickling the body is cut off
+     * with a {@link java.net.SocketTimeoutException} once it passes.
+     * <p>
+     * Client errors (4xx other than 408 and 429) and parsing errors are not retried: an
+     * IOException of the handler that isn't an error reading the response stream is thrown as
+     * a {@link ResponseParseException}.
+     *
+     * @param url         The URL to fetch the HTTP response from.
+     * @param validators  The validators of the last successful response, may be null.
+     * @param stats       Receives the byte counts of the response and the duration of each
+     *                    attempt, may be null.
+     * @param retryPolicy The timeouts, retries and deadline of the request.
+     * @param handler     The consumer of the response stream, it is invoked again from the
+     *                    start of the response if an attempt fails while it's reading.
+     * @return The value produced by the handler from the response stream, null if not modified.
+     * @throws IOException   The error of the last attempt, if none succeeded
+     * @throws JSONException Related to parsing the response in the handler
+     */
+    public static <T> T getResponseFromHttpUrl(URL url, @Nullable HttpValidators validators,
+                                               @Nullable TransferStats stats,
+                                               RetryPolicy retryPolicy,
+                                               ResponseHandler<T> handler)
+            throws IOException, JSONException {
+        return getResponseFromHttpUrl(url, validators, stats, retryPolicy, null, handler);
+    }
+
+    /**
+     * This method makes the request of
+     * {@link #getResponseFromHttpUrl(URL, HttpValidators, TransferStats, RetryPolicy,
+     * ResponseHandler)} with an Accept header, to negotiate the representation of the
+     * response. The handler must accept any representation, the server is free to ignore it.
+     *
+     * @param accept The value of the Accept header, null to send none.
+     */
+    public static <T> T getResponseFromHttpUrl(URL url, @Nullable HttpValidators validators,
+                                               @Nullable TransferStats stats,
+                                               RetryPolicy retryPolicy,
+                                               @Nullable String accept,
+                                               ResponseHandler<T> handler)
+            throws IOException, JSONException {
+        long startedAt = elapsedMillis();
+        long deadline = startedAt + retryPolicy.getTotalDeadline();
+
+        int attempt = 0;
+        while (true) {
+            attempt++;
+
+            // Each attempt gets the configured timeouts, cut down to what's left of the deadline
+            long remaining = deadline - elapsedMillis();
+            int connectTimeout =
+                    (int) Math.max(1, Math.min(retryPolicy.getConnectTimeout(), remaining));
+            int readTimeout =
+                    (int) Math.max(1, Math.min(retryPolicy.getReadTimeout(), remaining));
+
+            long attemptStartedAt = elapsedMillis();
+            try {
+                T result = getResponseOnce(url, validators, stats, connectTimeout, readTimeout,
+                        deadline, accept, handler);
+                recordAttempt(url, stats, attempt, attemptStartedAt, null);
+                return result;
+            } catch (IOException e) {
+                recordAttempt(url, stats, attempt, attemptStartedAt, e);
+
+                boolean isRetryable = e instanceof HttpStatusException
+                        ? ((HttpStatusException) e).isRetryable()
+                        : !(e instanceof ResponseParseException);
+                if (!isRetryable || attempt >= retryPolicy.getMaxAttempts()) throw e;
+
+                long backoff = retryPolicy.getBackoff(attempt);
+                if (elapsedMillis() + backoff >= deadline) {
+                    Log.w(TAG, "getResponseFromHttpUrl() " + url + " deadline reached after "
+                            + attempt + " attempts");
+                    throw e;
+                }
 
-            Scanner scanner = new Scanner(in);
-            scanner.useDelimiter("\\A");
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while backing off");
+                }
+            }
+        }
+    }
+
+    /**
+     * recordAttempt() logs the duration and outcome of an attempt and adds it to the stats
+     */
+    private static void recordAttempt(URL url, @Nullable TransferStats stats, int attempt,
+                                      long attemptStartedAt, @Nullable IOException error) {
+        long duration = elapsedMillis() - attemptStartedAt;
+        if (stats != null) stats.addAttempt(duration);
+
+        if (error == null) {
+            Log.d(TAG, "getResponseFromHttpUrl() " + url + " attempt " + attempt
+                    + " succeeded in " + duration + "ms");
+        } else {
+            Log.w(TAG, "getResponseFromHttpUrl() " + url + " attempt " + attempt
+                    + " failed in " + duration + "ms: " + error);
+        }
+    }
+
+    /**
+     * elapsedMillis() is the monotonic clock of the timeouts and deadlines of the requests
+     */
+    static long elapsedMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    /**
+     * getResponseOnce() makes a single attempt of the request, the connection is cut off if
+     * it is still open at the deadline
+     */
+    private static <T> T getResponseOnce(URL url, @Nullable HttpValidators validators,
+                                         @Nullable TransferStats stats,
+                                         int connectTimeout, int readTimeout, long deadline,
+                                         @Nullable String accept,
+                                         ResponseHandler<T> handler)
+            throws IOException, JSONException {
+        if (validators != null) validators.setNotModified(false);
 
-            boolean hasInput = scanner.hasNext();
-            if (hasInput) {
-                return scanner.next();
-            } else {
-                scanner.close();
+        // Check the cache first, a fresh response doesn't need the network at all
+        String urlString = url.toString();
+        HttpDiskCache cache = HttpDiskCache.getInstalled();
+        HttpDiskCache.Entry cached = cache != null ? cache.get(urlString) : null;
+        if (cached != null && cached.isFresh()) {
+            if (validators != null && cached.matches(validators)) {
+                // The caller already consumed this very response
+                Log.d(TAG, "getResponseFromHttpUrl() " + url + " fresh in cache, not modified");
+                validators.setNotModified(true);
                 return null;
             }
+
+            Log.d(TAG, "getResponseFromHttpUrl() " + url + " served from cache");
+            return handleCachedResponse(cached, validators, stats, deadline, handler);
+        }
+
+        final HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+
+        // The read timeout bounds each read, the watchdog bounds them all together
+        ScheduledFuture<?> watchdog = getDeadlineWatchdog().schedule(new Runnable() {
+            @Override
+            public void run() {
+                urlConnection.disconnect();
+            }
+        }, Math.max(0, deadline - elapsedMillis()), TimeUnit.MILLISECONDS);
+        try {
+            // Bound the time a stalled server can hold this thread
+            urlConnection.setConnectTimeout(connectTimeout);
+            urlConnection.setReadTimeout(readTimeout);
+
+            // Advertise compressed transfer, setting this explicitly means the response is
+            // not transparently decoded and has to be decoded by decodeResponseStream()
+            urlConnection.setRequestProperty(HEADER_ACCEPT_ENCODING, ACCEPTED_ENCODINGS);
+
+            // Negotiate the representation of the response, if the caller accepts another one
+            if (accept != null) urlConnection.setRequestProperty(HEADER_ACCEPT, accept);
+
+            // Make the request conditional, with the caller's validators if it has any,
+            // otherwise with the ones of the stale cached response
+            boolean hasCallerValidators = validators != null
+                    && (validators.getETag() != null || validators.getLastModified() != null);
+            String eTag = hasCallerValidators ? validators.getETag()
+                    : cached != null ? cached.getETag() : null;
+            String lastModified = hasCallerValidators ? validators.getLastModified()
+                    : cached != null ? cached.getLastModified() : null;
+
+            if (eTag != null) {
+                urlConnection.setRequestProperty(HEADER_IF_NONE_MATCH, eTag);
+            }
+            if (lastModified != null) {
+                urlConnection.setRequestProperty(HEADER_IF_MODIFIED_SINCE, lastModified);
+            }
+
+            int responseCode = urlConnection.getResponseCode();
+            if (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                throw new HttpStatusException(responseCode,
+                        "HTTP " + responseCode + " response from " + url);
+            }
+
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                if (cached != null) {
+                    // The stale cached response is valid again
+                    cache.refresh(urlString, cached, computeExpiresAt(urlConnection));
+                }
+
+                if (hasCallerValidators) {
+                    Log.d(TAG, "getResponseFromHttpUrl() " + url + " not modified");
+                    validators.setNotModified(true);
+                    return null;
+                }
+
+                if (cached != null) {
+                    Log.d(TAG, "getResponseFromHttpUrl() " + url + " revalidated cache");
+                    return handleCachedResponse(cached, validators, stats, deadline, handler);
+                }
+
+                throw new IOException("Unexpected 304 Not Modified response from " + url);
+            }
+
+            if (validators != null) {
+                validators.setETag(urlConnection.getHeaderField(HEADER_ETAG));
+                validators.setLastModified(urlConnection.getHeaderField(HEADER_LAST_MODIFIED));
+            }
+
+            // Store the response in the cache as it is being read
+            String contentEncoding = urlConnection.getContentEncoding();
+            HttpDiskCache.Writer cacheWriter = cache == null ? null : cache.edit(
+                    urlString,
+                    contentEncoding,
+                    urlConnection.getHeaderField(HEADER_ETAG),
+                    urlConnection.getHeaderField(HEADER_LAST_MODIFIED),
+                    urlConnection.getHeaderField(HEADER_CACHE_CONTROL),
+                    computeExpiresAt(urlConnection));
+
+            return handleResponseStream(urlConnection.getInputStream(), contentEncoding,
+                    cacheWriter, stats, deadline, handler);
         } finally {
+            watchdog.cancel(false);
             urlConnection.disconnect();
         }
     }
 
+    private static synchronized ScheduledExecutorService getDeadlineWatchdog() {
+        if (sDeadlineWatchdog == null) {
+            sDeadlineWatchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, TAG + " deadline watchdog");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sDeadlineWatchdog;
+    }
+
+    /**
+     * computeExpiresAt() computes when the response of the connection stops being fresh
+     */
+    private static long computeExpiresAt(HttpURLConnection urlConnection) {
+        return HttpDiskCache.computeExpiresAt(
+                urlConnection.getHeaderField(HEADER_CACHE_CONTROL),
+                urlConnection.getHeaderField(HEADER_AGE),
+                urlConnection.getHeaderField(HEADER_EXPIRES),
+                urlConnection.getHeaderField(HEADER_DATE),
+                System.currentTimeMillis());
+    }
+
+    /**
+     * handleCachedResponse() hands a cached response body to the handler
+     */
+    private static <T> T handleCachedResponse(HttpDiskCache.Entry cached,
+                                              @Nullable HttpValidators validators,
+                                              @Nullable TransferStats stats,
+                                              long deadline,
+                                              ResponseHandler<T> handler)
+            throws IOException, JSONException {
+        if (validators != null) {
+            validators.setETag(cached.getETag());
+            validators.setLastModified(cached.getLastModified());
+        }
+        if (stats != null) stats.setFromCache(true);
+
+        return handleResponseStream(cached.openBody(), cached.getContentEncoding(), null,
+                stats, deadline, handler);
+    }
+
+    /**
+     * handleResponseStream() decodes a response body and hands it to the handler, storing it
+     * in the cache along the way if a cache writer is given. Reads of the body fail once the
+     * deadline has passed.
+     */
+    private static <T> T handleResponseStream(InputStream in,
+                                              @Nullable String contentEncoding,
+                                              @Nullable HttpDiskCache.Writer cacheWriter,
+                                              @Nullable TransferStats stats,
+                                              long deadline,
+                                              ResponseHandler<T> handler)
+            throws IOException, JSONException {
+        boolean isConsumed = false;
+        try {
+            if (cacheWriter != null) {
+                try {
+                    in = cacheWriter.tee(in);
+                } catch (IOException e) {
+                    // The response is still read, it just isn't cached
+                    Log.w(TAG, "handleResponseStream() unable to cache the response", e);
+                    cacheWriter.abort();
+                    cacheWriter = null;
+                }
+            }
+
+            CountingInputStream wireStream = new CountingInputStream(in);
+            CountingInputStream decodedStream =
+                    new CountingInputStream(decodeResponseStream(wireStream, contentEncoding));
+            if (stats != null) stats.setStreams(contentEncoding, wireStream, decodedStream);
+
+            // The handler reads through the guard, what it throws without the stream having
+            // failed is an error parsing the response
+            GuardedInputStream guardedStream = new GuardedInputStream(decodedStream, deadline);
+            try {
+                T result;
+                try {
+                    result = handler.onResponse(guardedStream);
+                } catch (IOException e) {
+                    if (guardedStream.getReadError() != null) throw e;
+                    throw new ResponseParseException("Unable to parse the response", e);
+                }
+                isConsumed = true;
+
+                if (cacheWriter != null) {
+                    try {
+                        cacheWriter.commit();
+                    } catch (IOException e) {
+                        // The response was consumed fine, only caching it failed
+                        Log.w(TAG, "handleResponseStream() unable to cache the response", e);
+                        cacheWriter.abort();
+                    }
+                }
+                return result;
+            } finally {
+                decodedStream.close();
+            }
+        } finally {
+            if (cacheWriter != null && !isConsumed) cacheWriter.abort();
+            in.close();
+        }
+    }
+
+    /**
+     * decodeResponseStream() wraps the response stream with a streaming decoder matching its
+     * Content-Encoding, the body is decompressed as it is read.
+     *
+     * @param in              the raw response stream
+     * @param contentEncoding the Content-Encoding header of the response, null for identity
+     * @return a stream of the decoded response body
+     * @throws ResponseParseException if the encoding is not supported, retrying would get the
+     *                                same encoding back
+     * @throws IOException            if the stream header is corrupt
+     */
+    private static InputStream decodeResponseStream(InputStream in,
+                                                    @Nullable String contentEncoding)
+            throws IOException {
+        if (contentEncoding == null || contentEncoding.equalsIgnoreCase(ENCODING_IDENTITY)) {
+            return in;
+        } else if (contentEncoding.equalsIgnoreCase(ENCODING_GZIP)) {
+            return new GZIPInputStream(in, DECODE_BUFFER_SIZE);
+        } else if (contentEncoding.equalsIgnoreCase(ENCODING_DEFLATE)) {
+            // "deflate" is meant to be zlib wrapped, but some servers send a raw deflate stream,
+            // peek at the header to tell them apart
+            BufferedInputStream buffered = new BufferedInputStream(in, DECODE_BUFFER_SIZE);
+            buffered.mark(2);
+            int cmf = buffered.read();
+            int flg = buffered.read();
+            buffered.reset();
+            boolean isZlibWrapped = (cmf & 0x0F) == 8 && ((cmf << 8) | flg) % 31 == 0;
+
+            final Inflater inflater = new Inflater(!isZlibWrapped);
+            return new InflaterInputStream(buffered, inflater, DECODE_BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    inflater.end();
+                }
+            };
+        } else {
+            throw new ResponseParseException("Unsupported Content-Encoding: " + contentEncoding);
+        }
+    }
+
     /**
      * detectInternetConnection() uses the system service to see if the device is connected
      * to any network with internet access
@@ -91,4 +520,11 @@ public class NetworkUtils {
             throw new RuntimeException("Can't get a reference to the ConnectivityManager");
         }
     }
+
+    /**
+     * Interface for a streaming consumer of a HTTP response body
+     */
+    public interface ResponseHandler<T> {
+        T onResponse(InputStream in) throws IOException, JSONException;
+    }
 }
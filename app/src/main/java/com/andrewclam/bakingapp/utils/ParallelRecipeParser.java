@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.andrewclam.bakingapp.models.Recipe;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ParallelRecipeParser parses large recipe feeds on a pool of worker threads.
+ * <p>
+ * The reading thread splits the top-level array into the raw JSON text of each recipe with
+ * a {@link JsonArrayElementReader}, which only tracks the nesting of the elements, and hands
+ * chunks of them to the workers to be parsed as in {@link JsonObjectRecipeParser}. The
+ * recipes are returned, and published to the listener, in the order of the feed.
+ * <p>
+ * The first recipes, up to the sequential threshold, are parsed on the reading thread, so
+ * small feeds never pay for the hand-off to the pool.
+ */
+
+public class ParallelRecipeParser implements RecipeParser {
+
+    /* Debug Tag */
+    private static final String TAG = ParallelRecipeParser.class.getSimpleName();
+
+    /* Default number of recipes parsed on the reading thread before going parallel */
+    public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 256;
+
+    /* Number of recipes in each chunk handed to a worker */
+    private static final int CHUNK_SIZE = 64;
+
+    /* Chunks each worker may have queued before the reading thread waits for them */
+    private static final int MAX_PENDING_CHUNKS_PER_THREAD = 2;
+
+    /* Time an idle worker is kept for */
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /* Charset of the web response */
+    private static final String CHARSET_UTF_8 = "UTF-8";
+
+    /* Worker pool, its threads are let go when idle */
+    private final ThreadPoolExecutor mExecutor;
+
+    /* Number of workers */
+    private final int mThreads;
+
+    /* Number of recipes parsed on the reading thread before going parallel */
+    private int mSequentialThreshold = DEFAULT_SEQUENTIAL_THRESHOLD;
+
+    /**
+     * Creates a parser with a worker per available core
+     */
+    public ParallelRecipeParser() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a parser with the given number of workers
+     *
+     * @param threads the number of workers, at least 1
+     */
+    public ParallelRecipeParser(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+
+        this.mThreads = threads;
+        this.mExecutor = new ThreadPoolExecutor(threads, threads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                TAG + " #" + mCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        this.mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * setSequentialThreshold() sets the number of recipes parsed on the reading thread before
+     * the rest of the feed is parsed in parallel
+     */
+    public ParallelRecipeParser setSequentialThreshold(int sequentialThreshold) {
+        this.mSequentialThreshold = sequentialThreshold;
+        return this;
+    }
+
+    public int getThreads() {
+        return mThreads;
+    }
+
+    @Override
+    public ArrayList<Recipe> parseRecipes(InputStream in,
+                                          @Nullable OnRecipeParsedListener listener)
+            throws IOException, JSONException {
+        JsonArrayElementReader reader =
+                new JsonArrayElementReader(new InputStreamReader(in, CHARSET_UTF_8));
+
+        // Initialize an arrayList to store objects. This data will back the recycler view adapter.
+        ArrayList<Recipe> recipes = new ArrayList<>();
+
+        // Small feeds, or the head of a large one, are parsed right on the reading thread
+        String element = null;
+        while (recipes.size() < mSequentialThreshold
+                && (element = reader.nextElement()) != null) {
+            Recipe recipe = RecipeJsonUtil.getRecipeFromJson(new JSONObject(element));
+            recipes.add(recipe);
+            if (listener != null) listener.onRecipeParsed(recipe);
+        }
+        if (recipes.size() < mSequentialThreshold) return recipes;
+
+        // The rest of the feed is parsed in chunks, the chunks are collected in feed order
+        LinkedList<Future<List<Recipe>>> pendingChunks = new LinkedList<>();
+        int maxPendingChunks = mThreads * MAX_PENDING_CHUNKS_PER_THREAD;
+
+        try {
+            List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+            while ((element = reader.nextElement()) != null) {
+                chunk.add(element);
+                if (chunk.size() < CHUNK_SIZE) continue;
+
+                pendingChunks.add(mExecutor.submit(new ParseChunkTask(chunk)));
+                chunk = new ArrayList<>(CHUNK_SIZE);
+
+                // Collect the chunks that are done, wait for the oldest one if the workers
+                // are too far behind rather than holding the feed in memory
+                while (!pendingChunks.isEmpty() && (pendingChunks.peek().isDone()
+                        || pendingChunks.size() >= maxPendingChunks)) {
+                    collectChunk(pendingChunks.poll(), recipes, listener);
+                }
+            }
+
+            if (!chunk.isEmpty()) pendingChunks.add(mExecutor.submit(new ParseChunkTask(chunk)));
+
+            while (!pendingChunks.isEmpty()) {
+                collectChunk(pendingChunks.poll(), recipes, listener);
+            }
+        } finally {
+            // The parse failed, drop the chunks still queued
+            for (Future<List<Recipe>> pendingChunk : pendingChunks) {
+                pendingChunk.cancel(true);
+            }
+        }
+
+        return recipes;
+    }
+
+    /**
+     * collectChunk() waits for a chunk to be parsed and adds its recipes to the list
+     */
+    private static void collectChunk(Future<List<Recipe>> pendingChunk,
+                                     List<Recipe> recipes,
+                                     @Nullable OnRecipeParsedListener listener)
+            throws IOException, JSONException {
+        List<Recipe> chunkRecipes;
+        try {
+            chunkRecipes = pendingChunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing the recipes");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JSONException) throw (JSONException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            Log.e(TAG, "collectChunk() unexpected failure", cause);
+            throw new IOException(cause);
+        }
+
+        for (Recipe recipe : chunkRecipes) {
+            recipes.add(recipe);
+            if (listener != null) listener.onRecipeParsed(recipe);
+        }
+    }
+
+    /**
+     * ParseChunkTask parses a chunk of recipe elements on a worker
+     */
+    private static class ParseChunkTask implements Callable<List<Recipe>> {
+
+        /* The raw JSON text of each recipe of the chunk */
+        private final List<String> mElements;
+
+        ParseChunkTask(List<String> elements) {
+            this.mElements = elements;
+        }
+
+        @Override
+        public List<Recipe> call() throws JSONException {
+            List<Recipe> recipes = new ArrayList<>(mElements.size());
+            for (String element : mElements) {
+                recipes.add(RecipeJsonUtil.getRecipeFromJson(new JSONObject(element)));
+            }
+            return recipes;
+        }
+    }
+}
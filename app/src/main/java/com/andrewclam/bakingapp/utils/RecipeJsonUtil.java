@@ -22,16 +22,25 @@
 
 package com.andrewclam.bakingapp.utils;
 
+import android.support.annotation.Nullable;
+import android.util.JsonReader;
+import android.util.JsonToken;
 import android.util.Log;
 
+import com.andrewclam.bakingapp.data.RecipeKeys;
 import com.andrewclam.bakingapp.models.Ingredient;
 import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.RecipeChangeSet;
 import com.andrewclam.bakingapp.models.Step;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
 import java.util.ArrayList;
 
 /**
@@ -43,23 +52,31 @@ import java.util.ArrayList;
 
 public final class RecipeJsonUtil {
     /* JSON Key Constants */
-    private static final String RECIPE_ID = "id";
-    private static final String RECIPE_NAME = "name";
+    static final String RECIPE_ID = "id";
+    static final String RECIPE_NAME = "name";
 
-    private static final String RECIPE_INGREDIENTS = "ingredients";
-    private static final String RECIPE_INGREDIENTS_QUANTITY = "quantity";
-    private static final String RECIPE_INGREDIENTS_MEASURE = "measure";
-    private static final String RECIPE_INGREDIENTS_INGREDIENT_NAME = "ingredient";
+    static final String RECIPE_INGREDIENTS = "ingredients";
+    static final String RECIPE_INGREDIENTS_QUANTITY = "quantity";
+    static final String RECIPE_INGREDIENTS_MEASURE = "measure";
+    static final String RECIPE_INGREDIENTS_INGREDIENT_NAME = "ingredient";
 
-    private static final String RECIPE_STEPS = "steps";
-    private static final String RECIPE_STEPS_NUM = "id";
-    private static final String RECIPE_STEPS_SHORT_DESCRIPTION = "shortDescription";
-    private static final String RECIPE_STEPS_DESCRIPTION = "description";
-    private static final String RECIPE_STEPS_VIDEO_URL = "videoURL";
-    private static final String RECIPE_STEPS_THUMBNAIL_URL = "thumbnailURL";
+    static final String RECIPE_STEPS = "steps";
+    static final String RECIPE_STEPS_NUM = "id";
+    static final String RECIPE_STEPS_SHORT_DESCRIPTION = "shortDescription";
+    static final String RECIPE_STEPS_DESCRIPTION = "description";
+    static final String RECIPE_STEPS_VIDEO_URL = "videoURL";
+    static final String RECIPE_STEPS_THUMBNAIL_URL = "thumbnailURL";
 
-    private static final String RECIPE_SERVINGS = "servings";
-    private static final String RECIPE_IMAGE = "image";
+    static final String RECIPE_SERVINGS = "servings";
+    static final String RECIPE_IMAGE = "image";
+
+    /* Delta JSON Key Constants */
+    private static final String DELTA_SYNC_TOKEN = "sync_token";
+    private static final String DELTA_RECIPES = "recipes";
+    private static final String DELTA_DELETED = "deleted";
+
+    /* Charset of the web response */
+    private static final String CHARSET_UTF_8 = "UTF-8";
 
     /* Log Tag */
     private static final String TAG = RecipeJsonUtil.class.getSimpleName();
@@ -91,25 +108,8 @@ public final class RecipeJsonUtil {
             // Get each element of the resultArray as a result element
             JSONObject recipeJSON = recipeJSONArray.getJSONObject(i);
             if (recipeJSON != null) {
-                /* Create an instance of the model class to store the retrieved elements */
-                Recipe recipe = new Recipe();
-
-                /* Retrieve each element from the result JSONObject */
-                long id = recipeJSON.getLong(RECIPE_ID);
-                String name = recipeJSON.getString(RECIPE_NAME);
-                int servings = recipeJSON.getInt(RECIPE_SERVINGS);
-                String imageURL = recipeJSON.getString(RECIPE_IMAGE);
-
-                /* Store each element into the data model class */
-                recipe.setUid(id);
-                recipe.setName(name);
-                recipe.setServings(servings);
-                recipe.setImageURL(imageURL);
-                recipe.setIngredients(getIngredientFromRecipeJson(recipeJSON,id));
-                recipe.setSteps(getStepsFromRecipeJson(recipeJSON,id));
-
                 /* Add the recipe object to the list */
-                recipes.add(recipe);
+                recipes.add(getRecipeFromJson(recipeJSON));
             } else {
                 Log.w(TAG, "Error retrieving the json object at index " + i +
                         ", skipping creating item");
@@ -119,6 +119,154 @@ public final class RecipeJsonUtil {
         return recipes;
     }
 
+    /**
+     * This method parses a JSON array streamed from a web response and returns an ArrayList of
+     * objects. Unlike {@link #getRecipesFromJson(String)}, the response is never held in memory
+     * as a whole; each recipe is read off the stream, parsed and discarded before the next one
+     * is read.
+     *
+     * @param in       the response stream from the server, it is not closed by this method
+     * @param listener called with each recipe as soon as it is parsed, may be null
+     * @return an ArrayList of Recipes objects, each containing the steps, ingredient and media
+     * @throws IOException   If the stream can't be read or isn't a JSON array
+     * @throws JSONException If JSON data cannot be properly parsed
+     */
+    public static ArrayList<Recipe> getRecipesFromJson(
+            InputStream in, @Nullable RecipeParser.OnRecipeParsedListener listener)
+            throws IOException, JSONException {
+        JsonArrayElementReader reader =
+                new JsonArrayElementReader(new InputStreamReader(in, CHARSET_UTF_8));
+
+        // Initialize an arrayList to store objects. This data will back the recycler view adapter.
+        ArrayList<Recipe> recipes = new ArrayList<>();
+
+        // Parse each recipe as soon as its element is read off the stream
+        String element;
+        while ((element = reader.nextElement()) != null) {
+            Recipe recipe = getRecipeFromJson(new JSONObject(element));
+            recipes.add(recipe);
+            if (listener != null) listener.onRecipeParsed(recipe);
+        }
+
+        return recipes;
+    }
+
+    /**
+     * This method parses the response of a delta capable data source into a change set.
+     * <p>
+     * A source that ignores the delta request answers with the full feed, a JSON array of all
+     * the recipes, which is streamed as in
+     * {@link #getRecipesFromJson(InputStream, RecipeParser.OnRecipeParsedListener)}. A delta is
+     * a JSON object of the form
+     * <pre>
+     * {
+     *   "sync_token": "token to request the next delta with",
+     *   "recipes": [ the added or updated recipes, each with all its steps and ingredients ],
+     *   "deleted": [ the ids of the deleted recipes ]
+     * }
+     * </pre>
+     * Both are read off the stream as it downloads, a delta is never buffered as a whole.
+     *
+     * @param in       the response stream from the server, it is not closed by this method
+     * @param listener called with each recipe of a full feed as soon as it is parsed, the
+     *                 recipes of a delta are not published one by one; may be null
+     * @return the change set of the response
+     * @throws IOException   If the stream can't be read or is neither a JSON array nor object
+     * @throws JSONException If JSON data cannot be properly parsed
+     */
+    public static RecipeChangeSet getRecipeChangesFromJson(
+            InputStream in, @Nullable RecipeParser.OnRecipeParsedListener listener)
+            throws IOException, JSONException {
+        PushbackReader reader =
+                new PushbackReader(new InputStreamReader(in, CHARSET_UTF_8));
+
+        // Peek at the first token to tell a full feed from a delta
+        int c = reader.read();
+        while (Character.isWhitespace(c)) c = reader.read();
+        if (c == -1) return RecipeChangeSet.fullFeed(new ArrayList<Recipe>());
+        reader.unread(c);
+
+        if (c == '[') {
+            ArrayList<Recipe> recipes = new ArrayList<>();
+            JsonArrayElementReader elementReader = new JsonArrayElementReader(reader);
+            String element;
+            while ((element = elementReader.nextElement()) != null) {
+                Recipe recipe = getRecipeFromJson(new JSONObject(element));
+                recipes.add(recipe);
+                if (listener != null) listener.onRecipeParsed(recipe);
+            }
+            return RecipeChangeSet.fullFeed(recipes);
+        }
+
+        if (c != '{') {
+            throw new IOException("Expected a JSON array or object but was '" + (char) c + "'");
+        }
+
+        // Read the delta off the stream as well, its recipes are built straight from the tokens
+        JsonReader jsonReader = new JsonReader(reader);
+        ArrayList<Recipe> recipes = new ArrayList<>();
+        ArrayList<Long> deletedRecipeIds = new ArrayList<>();
+        String syncToken = null;
+        try {
+            jsonReader.beginObject();
+            while (jsonReader.hasNext()) {
+                String name = jsonReader.nextName();
+                if (DELTA_RECIPES.equals(name) && jsonReader.peek() != JsonToken.NULL) {
+                    jsonReader.beginArray();
+                    while (jsonReader.hasNext()) {
+                        recipes.add(JsonReaderRecipeParser.readRecipe(jsonReader));
+                    }
+                    jsonReader.endArray();
+                } else if (DELTA_DELETED.equals(name) && jsonReader.peek() != JsonToken.NULL) {
+                    jsonReader.beginArray();
+                    while (jsonReader.hasNext()) {
+                        deletedRecipeIds.add(jsonReader.nextLong());
+                    }
+                    jsonReader.endArray();
+                } else if (DELTA_SYNC_TOKEN.equals(name)
+                        && jsonReader.peek() != JsonToken.NULL) {
+                    syncToken = jsonReader.nextString();
+                } else {
+                    jsonReader.skipValue();
+                }
+            }
+            jsonReader.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            // A token of an unexpected type, org.json reports it as a JSONException
+            throw new JSONException(e.getMessage());
+        }
+
+        if (syncToken == null) throw new JSONException("No value for " + DELTA_SYNC_TOKEN);
+        return RecipeChangeSet.delta(recipes, deletedRecipeIds, syncToken);
+    }
+
+    /**
+     * getRecipeFromJson() is a helper method to parse a single recipe JSON object
+     * into a Recipe, including its ingredients and steps.
+     *
+     * @return the parsed recipe
+     */
+    static Recipe getRecipeFromJson(JSONObject recipeJSON) throws JSONException {
+        /* Create an instance of the model class to store the retrieved elements */
+        Recipe recipe = new Recipe();
+
+        /* Retrieve each element from the result JSONObject */
+        long id = recipeJSON.getLong(RECIPE_ID);
+        String name = recipeJSON.getString(RECIPE_NAME);
+        int servings = recipeJSON.getInt(RECIPE_SERVINGS);
+        String imageURL = recipeJSON.getString(RECIPE_IMAGE);
+
+        /* Store each element into the data model class */
+        recipe.setUid(id);
+        recipe.setName(name);
+        recipe.setServings(servings);
+        recipe.setImageURL(imageURL);
+        recipe.setIngredients(getIngredientFromRecipeJson(recipeJSON,id));
+        recipe.setSteps(getStepsFromRecipeJson(recipeJSON,id));
+
+        return recipe;
+    }
+
     /**
      * getStepsFromRecipeJson() is a helper method to parse the steps in each recipe JSON
      * into a list of Steps.
@@ -149,8 +297,8 @@ public final class RecipeJsonUtil {
             // Create an instance of the model class step to store the info*/
             Step step = new Step();
 
-            // Create UID of the ingredient for a particular id
-            String stepUid = createUid(recipeId,String.valueOf(stepNum));
+            // Create UID of the step for a particular id
+            long stepUid = stepKey(recipeId, stepNum);
 
             step.setUid(stepUid);
             step.setStepNum(stepNum);
@@ -166,6 +314,20 @@ public final class RecipeJsonUtil {
         return steps;
     }
 
+    /**
+     * stepKey() builds the key of a step as {@link RecipeKeys#stepKey(long, long)} does, an id
+     * or step number out of the range of the keys fails the parse like any other bad value
+     *
+     * @throws JSONException if the recipe id or the step number is out of range
+     */
+    static long stepKey(long recipeId, long stepNum) throws JSONException {
+        try {
+            return RecipeKeys.stepKey(recipeId, stepNum);
+        } catch (IllegalArgumentException e) {
+            throw new JSONException(e.getMessage());
+        }
+    }
+
     /**
      * getStepsFromRecipeJson() is a helper method to parse the ingredients in each recipe JSON
      * into a list of ingredients.
@@ -196,7 +358,7 @@ public final class RecipeJsonUtil {
             Ingredient ingredient = new Ingredient();
 
             // Create UID of the ingredient for a particular id
-            String ingredientUid = createUid(recipeId,ingredientName);
+            long ingredientUid = RecipeKeys.ingredientKey(recipeId, ingredientName);
 
             ingredient.setUid(ingredientUid);
             ingredient.setQuantity(quantity);
@@ -209,9 +371,4 @@ public final class RecipeJsonUtil {
 
         return ingredients;
     }
-
-    private static String createUid(Long recipeId, String identifier)
-    {
-        return recipeId + "_" + identifier;
-    }
 }
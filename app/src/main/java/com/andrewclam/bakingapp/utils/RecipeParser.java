@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.andrewclam.bakingapp.models.Recipe;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/**
+ * RecipeParser parses the recipe feed, a JSON array of all the recipes, into the model
+ * classes. Implementations must produce the same recipes for the same feed, uids included,
+ * so they can be swapped and benchmarked against each other.
+ *
+ * @see JsonObjectRecipeParser
+ * @see JsonReaderRecipeParser
+ */
+
+public interface RecipeParser {
+    /**
+     * parseRecipes() parses the recipe feed off the stream
+     *
+     * @param in       the response stream from the server, it is not closed by this method
+     * @param listener called with each recipe as soon as its JSON object is parsed, before
+     *                 the rest of the feed is read; may be null
+     * @return an ArrayList of Recipes objects, each containing the steps, ingredient and media
+     * @throws IOException   If the stream can't be read or isn't a JSON array
+     * @throws JSONException If JSON data cannot be properly parsed
+     */
+    @WorkerThread
+    ArrayList<Recipe> parseRecipes(InputStream in, @Nullable OnRecipeParsedListener listener)
+            throws IOException, JSONException;
+
+    /**
+     * Interface for callback to the listener as each recipe of the feed is parsed, called on
+     * the parsing thread
+     */
+    interface OnRecipeParsedListener {
+        @WorkerThread
+        void onRecipeParsed(Recipe recipe);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import java.util.Random;
+
+/**
+ * RetryPolicy configures how a HTTP request is made by {@link NetworkUtils}: the connect and
+ * read timeouts of each attempt, how many attempts are made, the exponential backoff with
+ * jitter between them and the deadline of all attempts together.
+ */
+
+public class RetryPolicy {
+
+    /* Defaults */
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10 * 1000;
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = 15 * 1000;
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 1000;
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 8 * 1000;
+    private static final double DEFAULT_BACKOFF_MULTIPLIER = 2.0;
+    private static final long DEFAULT_TOTAL_DEADLINE_MILLIS = 45 * 1000;
+
+    /* Source of the jitter */
+    private static final Random sRandom = new Random();
+
+    private int mConnectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private int mReadTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+    private int mMaxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long mInitialBackoffMillis = DEFAULT_INITIAL_BACKOFF_MILLIS;
+    private long mMaxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+    private double mBackoffMultiplier = DEFAULT_BACKOFF_MULTIPLIER;
+    private long mTotalDeadlineMillis = DEFAULT_TOTAL_DEADLINE_MILLIS;
+
+    /* No-args constructor, with the default policy */
+    public RetryPolicy() {
+    }
+
+    /* Public Setters */
+    public RetryPolicy setConnectTimeout(int connectTimeoutMillis) {
+        this.mConnectTimeoutMillis = connectTimeoutMillis;
+        return this;
+    }
+
+    public RetryPolicy setReadTimeout(int readTimeoutMillis) {
+        this.mReadTimeoutMillis = readTimeoutMillis;
+        return this;
+    }
+
+    public RetryPolicy setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be >= 1");
+        this.mMaxAttempts = maxAttempts;
+        return this;
+    }
+
+    public RetryPolicy setBackoff(long initialBackoffMillis, long maxBackoffMillis,
+                                  double multiplier) {
+        this.mInitialBackoffMillis = initialBackoffMillis;
+        this.mMaxBackoffMillis = maxBackoffMillis;
+        this.mBackoffMultiplier = multiplier;
+        return this;
+    }
+
+    public RetryPolicy setTotalDeadline(long totalDeadlineMillis) {
+        this.mTotalDeadlineMillis = totalDeadlineMillis;
+        return this;
+    }
+
+    /* Public Getters */
+    public int getConnectTimeout() {
+        return mConnectTimeoutMillis;
+    }
+
+    public int getReadTimeout() {
+        return mReadTimeoutMillis;
+    }
+
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    public long getTotalDeadline() {
+        return mTotalDeadlineMillis;
+    }
+
+    /**
+     * getBackoff() computes the delay before the next attempt, the exponential delay is
+     * jittered between half and all of itself so that clients failing together don't retry
+     * together.
+     *
+     * @param failedAttempts the number of attempts made so far, starting at 1
+     * @return the delay before the next attempt in milliseconds
+     */
+    public long getBackoff(int failedAttempts) {
+        double exponential =
+                mInitialBackoffMillis * Math.pow(mBackoffMultiplier, failedAttempts - 1);
+        long delay = (long) Math.min(mMaxBackoffMillis, exponential);
+        long half = delay / 2;
+        return half + (long) (sRandom.nextDouble() * (delay - half));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StringDictionary is the process-wide dictionary of the strings repeated across the parsed
+ * models, such as ingredient names and step short descriptions. Each distinct string is kept
+ * once and every model that carries it shares that instance, whether it was parsed from the
+ * web response, read from the database or unwrapped from an Intent.
+ * <p>
+ * The dictionary is bounded, once full, new strings are returned as they are.
+ * Safe to use from multiple threads.
+ */
+
+public final class StringDictionary {
+
+    /* Maximum number of distinct strings kept */
+    private static final int MAX_ENTRIES = 8192;
+
+    /* Strings longer than this are unlikely to repeat, they are not kept */
+    private static final int MAX_LENGTH = 128;
+
+    /* The dictionary, each string maps to its shared instance */
+    private static final ConcurrentHashMap<String, String> sEntries =
+            new ConcurrentHashMap<>(256);
+
+    private StringDictionary() {
+    }
+
+    /**
+     * intern() returns the shared instance of the string
+     *
+     * @param value the string to look up, may be null
+     * @return the shared instance equal to the string, or the string itself if it is not kept
+     */
+    @Nullable
+    public static String intern(@Nullable String value) {
+        if (value == null || value.length() > MAX_LENGTH) return value;
+
+        String shared = sEntries.get(value);
+        if (shared != null) return shared;
+
+        if (sEntries.size() >= MAX_ENTRIES) return value;
+
+        shared = sEntries.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+
+    /**
+     * @return the number of distinct strings kept
+     */
+    public static int size() {
+        return sEntries.size();
+    }
+}
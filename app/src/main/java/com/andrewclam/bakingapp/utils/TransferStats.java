@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * TransferStats reports the size of a HTTP response body as it went over the wire and after
+ * it has been decoded, the numbers are final once the response stream has been consumed.
+ */
+
+public class TransferStats {
+
+    /* Content-Encoding of the response, null for identity */
+    @Nullable
+    private String mContentEncoding;
+
+    /* Duration of each attempt made to get the response, in milliseconds */
+    private final List<Long> mAttemptDurations = new ArrayList<>();
+
+    /* Whether the response was served from the HttpDiskCache */
+    private boolean mFromCache;
+
+    /* Streams counting the bytes on either side of the decoder */
+    @Nullable
+    private CountingInputStream mWireStream;
+    @Nullable
+    private CountingInputStream mDecodedStream;
+
+    void setStreams(@Nullable String contentEncoding, CountingInputStream wireStream,
+                    CountingInputStream decodedStream) {
+        this.mContentEncoding = contentEncoding;
+        this.mWireStream = wireStream;
+        this.mDecodedStream = decodedStream;
+    }
+
+    void addAttempt(long durationMillis) {
+        mAttemptDurations.add(durationMillis);
+    }
+
+    /**
+     * @return the duration of each attempt made to get the response in milliseconds, the
+     * last one is the successful one if the request succeeded
+     */
+    public List<Long> getAttemptDurations() {
+        return Collections.unmodifiableList(mAttemptDurations);
+    }
+
+    void setFromCache(boolean fromCache) {
+        this.mFromCache = fromCache;
+    }
+
+    public boolean isFromCache() {
+        return mFromCache;
+    }
+
+    @Nullable
+    public String getContentEncoding() {
+        return mContentEncoding;
+    }
+
+    /**
+     * @return the number of bytes received over the wire, compressed if the response was
+     */
+    public long getCompressedBytes() {
+        return mWireStream == null ? 0 : mWireStream.getCount();
+    }
+
+    /**
+     * @return the number of bytes handed to the response handler after decompression
+     */
+    public long getUncompressedBytes() {
+        return mDecodedStream == null ? 0 : mDecodedStream.getCount();
+    }
+
+    @Override
+    public String toString() {
+        return "TransferStats{" +
+                "contentEncoding=" + (mContentEncoding == null ? "identity" : mContentEncoding) +
+                ", compressedBytes=" + getCompressedBytes() +
+                ", uncompressedBytes=" + getUncompressedBytes() +
+                ", fromCache=" + mFromCache +
+                ", attemptDurations=" + mAttemptDurations +
+                '}';
+    }
+}
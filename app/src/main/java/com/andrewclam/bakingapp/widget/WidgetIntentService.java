@@ -32,6 +32,8 @@ import android.os.Build;
 import android.util.Log;
 
 import com.andrewclam.bakingapp.data.RecipeDbContract;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.RecipeCursorMapper;
 import com.andrewclam.bakingapp.utils.NotificationUtil;
 
 import static com.andrewclam.bakingapp.Constants.EXTRA_APP_WIDGET_ID;
@@ -142,19 +144,12 @@ public class WidgetIntentService extends IntentService{
             // Data - Get the recipe data from the cursor
             mCursor.moveToNext();
 
-            int uidColIndex =
-                    mCursor.getColumnIndex(RecipeDbContract.RecipeEntry.COLUMN_RECIPE_UID);
-            int nameColIndex =
-                    mCursor.getColumnIndex(RecipeDbContract.RecipeEntry.COLUMN_RECIPE_NAME);
-            int servingColIndex =
-                    mCursor.getColumnIndex(RecipeDbContract.RecipeEntry.COLUMN_RECIPE_SERVINGS);
-            int imageUrlColIndex =
-                    mCursor.getColumnIndex(RecipeDbContract.RecipeEntry.COLUMN_RECIPE_IMAGE_URL);
-
-            Long recipeId = mCursor.getLong(uidColIndex);
-            String recipeName = mCursor.getString(nameColIndex);
-            Long servings = mCursor.getLong(servingColIndex);
-            String imageUrl = mCursor.getString(imageUrlColIndex);
+            Recipe recipe = new RecipeCursorMapper(mCursor).read();
+
+            Long recipeId = recipe.getUid();
+            String recipeName = recipe.getName();
+            Long servings = (long) recipe.getServings();
+            String imageUrl = recipe.getImageURL();
 
             // Close the cursor after use
             mCursor.close();
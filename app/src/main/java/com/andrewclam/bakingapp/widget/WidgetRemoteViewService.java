@@ -32,6 +32,8 @@ import android.widget.RemoteViewsService;
 
 import com.andrewclam.bakingapp.R;
 import com.andrewclam.bakingapp.data.RecipeDbContract;
+import com.andrewclam.bakingapp.models.Ingredient;
+import com.andrewclam.bakingapp.models.IngredientCursorMapper;
 
 import static com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_RECIPE_KEY;
 import static com.andrewclam.bakingapp.data.RecipeDbContract.IngredientEntry.CONTENT_URI_INGREDIENT;
@@ -75,6 +77,7 @@ class WidgetRemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory
     private final Context mContext;
     private final long mRecipeId;
     private Cursor mCursor;
+    private IngredientCursorMapper mMapper;
 
     WidgetRemoteViewsFactory(Context mContext, Long mRecipeId) {
         this.mContext = mContext;
@@ -107,7 +110,11 @@ class WidgetRemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory
         if (mCursor == null || mCursor.getCount() == 0)
         {
             Log.e(TAG, "mCursor of the ingredient is null or empty with mRecipeId: " + mRecipeId);
+            return;
         }
+
+        // Look up the columns once for all the rows of the new cursor
+        mMapper = new IngredientCursorMapper(mCursor);
     }
 
     @Override
@@ -136,16 +143,11 @@ class WidgetRemoteViewsFactory implements RemoteViewsService.RemoteViewsFactory
         if (mCursor == null || mCursor.getCount() == 0) return null;
         mCursor.moveToPosition(position);
 
-        int ingredientMeasureIndex =
-                mCursor.getColumnIndex(RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_MEASURE);
-        int ingredientNameIndex =
-                mCursor.getColumnIndex(RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_NAME);
-        int ingredientQuantityIndex =
-                mCursor.getColumnIndex(RecipeDbContract.IngredientEntry.COLUMN_INGREDIENT_QUANTITY);
+        Ingredient ingredient = mMapper.read();
 
-        String name = mCursor.getString(ingredientNameIndex);
-        String measure = mCursor.getString(ingredientMeasureIndex);
-        double quantity = mCursor.getDouble(ingredientQuantityIndex);
+        String name = ingredient.getIngredientName();
+        String measure = ingredient.getMeasure();
+        double quantity = ingredient.getQuantity();
 
         // Create the remote view from the list item layout file
         RemoteViews views = new RemoteViews(mContext.getPackageName(),
@@ -36,6 +36,8 @@ import android.widget.RemoteViews;
 import com.andrewclam.bakingapp.R;
 import com.andrewclam.bakingapp.RecipeDetailActivity;
 import com.andrewclam.bakingapp.data.RecipeDbContract;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.RecipeCursorMapper;
 import com.squareup.picasso.Picasso;
 
 import static com.andrewclam.bakingapp.Constants.EXTRA_RECIPE_ID;
@@ -98,16 +100,11 @@ public class WidgetUtils {
                 recipeCursor.moveToNext();
 
                 // Data - Get the recipe data from the cursor
-                int recipeNameColIndex =
-                        recipeCursor.getColumnIndex(RecipeDbContract.RecipeEntry.COLUMN_RECIPE_NAME);
-                int recipeServingColIndex =
-                        recipeCursor.getColumnIndex(RecipeDbContract.RecipeEntry.COLUMN_RECIPE_SERVINGS);
-                int recipeImageUrlColIndex =
-                        recipeCursor.getColumnIndex(RecipeDbContract.RecipeEntry.COLUMN_RECIPE_IMAGE_URL);
-
-                recipeName = recipeCursor.getString(recipeNameColIndex);
-                servings = recipeCursor.getLong(recipeServingColIndex);
-                imageUrl = recipeCursor.getString(recipeImageUrlColIndex);
+                Recipe recipe = new RecipeCursorMapper(recipeCursor).read();
+
+                recipeName = recipe.getName();
+                servings = (long) recipe.getServings();
+                imageUrl = recipe.getImageURL();
 
                 // Close the cursor
                 recipeCursor.close();
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * TestContext is a context for local unit tests, it only provides SharedPreferences, kept in
+ * memory.
+ */
+
+public class TestContext extends ContextWrapper {
+
+    /* SharedPreferences by name */
+    private final Map<String, InMemorySharedPreferences> mPreferences = new HashMap<>();
+
+    public TestContext() {
+        super(null);
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public SharedPreferences getSharedPreferences(String name, int mode) {
+        InMemorySharedPreferences preferences = mPreferences.get(name);
+        if (preferences == null) {
+            preferences = new InMemorySharedPreferences();
+            mPreferences.put(name, preferences);
+        }
+        return preferences;
+    }
+
+    /**
+     * SharedPreferences kept in memory, with the framework semantics of a null value removing
+     * the key
+     */
+    private static class InMemorySharedPreferences implements SharedPreferences {
+        private final Map<String, Object> mValues = new HashMap<>();
+
+        @Override
+        public synchronized Map<String, ?> getAll() {
+            return new HashMap<>(mValues);
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            return (String) get(key, defValue);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            return (Set<String>) get(key, defValues);
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            return (Integer) get(key, defValue);
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            return (Long) get(key, defValue);
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            return (Float) get(key, defValue);
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            return (Boolean) get(key, defValue);
+        }
+
+        @Override
+        public synchronized boolean contains(String key) {
+            return mValues.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new InMemoryEditor();
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(
+                OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(
+                OnSharedPreferenceChangeListener listener) {
+        }
+
+        private synchronized Object get(String key, Object defValue) {
+            return mValues.containsKey(key) ? mValues.get(key) : defValue;
+        }
+
+        private class InMemoryEditor implements Editor {
+            private final Map<String, Object> mChanges = new HashMap<>();
+            private boolean mClear;
+
+            @Override
+            public Editor putString(String key, String value) {
+                return put(key, value);
+            }
+
+            @Override
+            public Editor putStringSet(String key, Set<String> values) {
+                return put(key, values != null ? new HashSet<>(values) : null);
+            }
+
+            @Override
+            public Editor putInt(String key, int value) {
+                return put(key, value);
+            }
+
+            @Override
+            public Editor putLong(String key, long value) {
+                return put(key, value);
+            }
+
+            @Override
+            public Editor putFloat(String key, float value) {
+                return put(key, value);
+            }
+
+            @Override
+            public Editor putBoolean(String key, boolean value) {
+                return put(key, value);
+            }
+
+            @Override
+            public Editor remove(String key) {
+                return put(key, null);
+            }
+
+            @Override
+            public Editor clear() {
+                mClear = true;
+                return this;
+            }
+
+            @Override
+            public boolean commit() {
+                synchronized (InMemorySharedPreferences.this) {
+                    if (mClear) mValues.clear();
+                    for (Map.Entry<String, Object> change : mChanges.entrySet()) {
+                        if (change.getValue() == null) {
+                            mValues.remove(change.getKey());
+                        } else {
+                            mValues.put(change.getKey(), change.getValue());
+                        }
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public void apply() {
+                commit();
+            }
+
+            private Editor put(String key, Object value) {
+                mChanges.put(key, value);
+                return this;
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of the SQL built by {@link RecipeBulkWriter}, the multi-row INSERT statements
+ * must stay within SQLite's limit of 999 bound variables.
+ */
+public class RecipeBulkWriterTest {
+
+    /* SQLite's default limit on the variables bound to a statement */
+    private static final int MAX_VARIABLES = 999;
+
+    private static final String[] COLUMNS = {"uid", "name", "recipe_id"};
+
+    @Test
+    public void buildInsertSql_singleRow() {
+        assertEquals("INSERT INTO t (uid, name, recipe_id) VALUES (?, ?, ?)",
+                RecipeBulkWriter.buildInsertSql("t", COLUMNS, 1));
+    }
+
+    @Test
+    public void buildInsertSql_multipleRows_oneGroupPerRow() {
+        assertEquals("INSERT INTO t (uid, name, recipe_id) VALUES (?, ?, ?), (?, ?, ?), (?, ?, ?)",
+                RecipeBulkWriter.buildInsertSql("t", COLUMNS, 3));
+    }
+
+    @Test
+    public void buildInsertSql_fullStatement_placeholdersWithinLimit() {
+        for (int columnCount = 1; columnCount <= 40; columnCount++) {
+            String[] columns = new String[columnCount];
+            for (int i = 0; i < columnCount; i++) columns[i] = "c" + i;
+
+            int rowCount = RecipeBulkWriter.rowsPerStatement(columnCount);
+            String sql = RecipeBulkWriter.buildInsertSql("t", columns, rowCount);
+
+            assertEquals(columnCount * rowCount, countOf(sql, '?'));
+            assertTrue(columnCount + " columns", countOf(sql, '?') <= MAX_VARIABLES);
+        }
+    }
+
+    @Test
+    public void rowsPerStatement_cappedByVariablesAndRows() {
+        // The 5 columns of the recipes and ingredients and the 7 of the steps hit the row cap
+        assertEquals(100, RecipeBulkWriter.rowsPerStatement(5));
+        assertEquals(100, RecipeBulkWriter.rowsPerStatement(7));
+        // Wider tables are held by the variable limit, 999 / 12 rounded down
+        assertEquals(83, RecipeBulkWriter.rowsPerStatement(12));
+        assertEquals(1, RecipeBulkWriter.rowsPerStatement(MAX_VARIABLES));
+    }
+
+    @Test
+    public void buildUpdateSql_numberedPlaceholdersMatchInsertOrder() {
+        // A row binds its columns from 1 onwards in both statements, the key first
+        assertEquals("UPDATE t SET name = ?2, recipe_id = ?3 WHERE uid = ?1",
+                RecipeBulkWriter.buildUpdateSql("t", COLUMNS));
+    }
+
+    private static int countOf(String s, char c) {
+        int count = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == c) count++;
+        }
+        return count;
+    }
+}
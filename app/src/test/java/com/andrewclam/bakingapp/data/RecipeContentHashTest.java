@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import com.andrewclam.bakingapp.models.Ingredient;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.Step;
+import com.andrewclam.bakingapp.utils.JsonObjectRecipeParser;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.SAMPLE_FEED;
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.streamOf;
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.syntheticFeed;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Unit tests of {@link RecipeContentHash}: the hash of a recipe is the same however the recipe
+ * was read, and changes when anything stored of the recipe changes.
+ */
+public class RecipeContentHashTest {
+
+    @Test
+    public void of_emptyRecipe_pinnedValue() {
+        // The hash is stored in the database, it must not drift between builds unnoticed
+        assertEquals(EMPTY_RECIPE_HASH, RecipeContentHash.of(new Recipe()));
+    }
+
+    @Test
+    public void of_sameRecipeParsedTwice_sameHash() throws Exception {
+        List<Recipe> first = parse(SAMPLE_FEED);
+        List<Recipe> second = parse(SAMPLE_FEED);
+
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(RecipeContentHash.of(first.get(i)), RecipeContentHash.of(second.get(i)));
+        }
+    }
+
+    @Test
+    public void of_recipeReadBackFromSnapshot_sameHash() throws Exception {
+        List<Recipe> recipes = parse(syntheticFeed(20));
+        List<Recipe> readBack = RecipeSnapshot.wrap(RecipeSnapshot.encode(recipes)).getRecipes();
+
+        for (int i = 0; i < recipes.size(); i++) {
+            assertEquals(RecipeContentHash.of(recipes.get(i)),
+                    RecipeContentHash.of(readBack.get(i)));
+        }
+    }
+
+    @Test
+    public void of_distinctRecipes_distinctHashes() throws Exception {
+        Set<Long> hashes = new HashSet<>();
+        for (Recipe recipe : parse(syntheticFeed(1000))) {
+            hashes.add(RecipeContentHash.of(recipe));
+        }
+        assertEquals(1000, hashes.size());
+    }
+
+    @Test
+    public void of_anyRecipeFieldChanged_hashChanges() throws Exception {
+        long hash = RecipeContentHash.of(sample());
+
+        Recipe recipe = sample();
+        recipe.setUid(recipe.getUid() + 1);
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+
+        recipe = sample();
+        recipe.setName(recipe.getName() + " ");
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+
+        recipe = sample();
+        recipe.setServings(recipe.getServings() + 1);
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+
+        recipe = sample();
+        recipe.setImageURL("https://example.com/pie.png");
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+    }
+
+    @Test
+    public void of_anyIngredientFieldChanged_hashChanges() throws Exception {
+        long hash = RecipeContentHash.of(sample());
+
+        Recipe recipe = sample();
+        ingredient(recipe).setUid(ingredient(recipe).getUid() + 1);
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+
+        recipe = sample();
+        ingredient(recipe).setQuantity(ingredient(recipe).getQuantity() + 0.25);
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+
+        recipe = sample();
+        ingredient(recipe).setMeasure("TSP");
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+
+        recipe = sample();
+        ingredient(recipe).setIngredientName("Salt");
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+
+        recipe = sample();
+        recipe.getIngredients().remove(1);
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+    }
+
+    @Test
+    public void of_anyStepFieldChanged_hashChanges() throws Exception {
+        long hash = RecipeContentHash.of(sample());
+
+        Recipe recipe = sample();
+        step(recipe).setUid(step(recipe).getUid() + 1);
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+
+        recipe = sample();
+        step(recipe).setStepNum(step(recipe).getStepNum() + 1);
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+
+        recipe = sample();
+        step(recipe).setShortDescription("Prep");
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+
+        recipe = sample();
+        step(recipe).setDescription(step(recipe).getDescription() + ".");
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+
+        recipe = sample();
+        step(recipe).setThumbnailURL("https://example.com/1.png");
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+
+        recipe = sample();
+        step(recipe).setVideoURL("https://example.com/1.mp4");
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+
+        recipe = sample();
+        Collections.reverse(recipe.getSteps());
+        assertNotEquals(hash, RecipeContentHash.of(recipe));
+    }
+
+    @Test
+    public void of_valueShiftedBetweenFields_hashChanges() {
+        Recipe first = new Recipe();
+        first.setName("ab");
+        first.setImageURL("c");
+        Recipe second = new Recipe();
+        second.setName("a");
+        second.setImageURL("bc");
+
+        assertNotEquals(RecipeContentHash.of(first), RecipeContentHash.of(second));
+    }
+
+    @Test
+    public void of_nullAndEmpty_hashDifferently() {
+        Recipe nullName = new Recipe();
+        Recipe emptyName = new Recipe();
+        emptyName.setName("");
+        assertNotEquals(RecipeContentHash.of(nullName), RecipeContentHash.of(emptyName));
+
+        Recipe noSteps = new Recipe();
+        noSteps.setSteps(new ArrayList<Step>());
+        assertNotEquals(RecipeContentHash.of(new Recipe()), RecipeContentHash.of(noSteps));
+
+        // A string of a single char 0 is not the same as an empty one
+        Recipe zeroName = new Recipe();
+        zeroName.setName("\u0000");
+        assertNotEquals(RecipeContentHash.of(emptyName), RecipeContentHash.of(zeroName));
+    }
+
+    /* Hash of a recipe with no field set */
+    private static final long EMPTY_RECIPE_HASH = -6498196532693011515L;
+
+    private static Recipe sample() throws Exception {
+        return parse(SAMPLE_FEED).get(0);
+    }
+
+    private static Ingredient ingredient(Recipe recipe) {
+        return recipe.getIngredients().get(1);
+    }
+
+    private static Step step(Recipe recipe) {
+        return recipe.getSteps().get(1);
+    }
+
+    private static List<Recipe> parse(String feed) throws Exception {
+        return new JsonObjectRecipeParser().parseRecipes(streamOf(feed), null);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests of {@link RecipeKeys}, the packed step keys and the hashed ingredient keys.
+ */
+public class RecipeKeysTest {
+
+    /* Largest step number that fits in a step key */
+    private static final long MAX_STEP_NUM = 0xFFFFFFFFL;
+
+    @Test
+    public void stepKey_packsRecipeIdHighAndStepNumLow() {
+        long key = RecipeKeys.stepKey(3, 7);
+
+        assertEquals(3, key >>> 32);
+        assertEquals(7, key & MAX_STEP_NUM);
+        assertEquals(0x0000000300000007L, key);
+    }
+
+    @Test
+    public void stepKey_rangeEdges_nonNegativeAndUnpackable() {
+        long[][] edges = {{0, 0}, {0, MAX_STEP_NUM}, {Integer.MAX_VALUE, 0},
+                {Integer.MAX_VALUE, MAX_STEP_NUM}};
+
+        for (long[] edge : edges) {
+            long key = RecipeKeys.stepKey(edge[0], edge[1]);
+            assertTrue(key >= 0);
+            assertEquals(edge[0], key >>> 32);
+            assertEquals(edge[1], key & MAX_STEP_NUM);
+        }
+        assertEquals(Long.MAX_VALUE, RecipeKeys.stepKey(Integer.MAX_VALUE, MAX_STEP_NUM));
+    }
+
+    @Test
+    public void stepKey_sortsByRecipeThenStep() {
+        assertTrue(RecipeKeys.stepKey(1, MAX_STEP_NUM) < RecipeKeys.stepKey(2, 0));
+        assertTrue(RecipeKeys.stepKey(2, 0) < RecipeKeys.stepKey(2, 1));
+    }
+
+    @Test
+    public void stepKey_outOfRange_throwsIllegalArgumentException() {
+        long[][] outOfRange = {{-1, 0}, {Integer.MAX_VALUE + 1L, 0}, {Long.MIN_VALUE, 0},
+                {0, -1}, {0, MAX_STEP_NUM + 1}, {0, Long.MAX_VALUE}};
+
+        for (long[] values : outOfRange) {
+            try {
+                RecipeKeys.stepKey(values[0], values[1]);
+                fail("Built a step key of " + values[0] + ", " + values[1]);
+            } catch (IllegalArgumentException expected) {
+                // Out of the range of the key
+            }
+        }
+    }
+
+    @Test
+    public void ingredientKey_stableAndNonNegative() {
+        long key = RecipeKeys.ingredientKey(1, "salt");
+
+        assertEquals(key, RecipeKeys.ingredientKey(1, new String("salt")));
+        assertTrue(key >= 0);
+        assertTrue(RecipeKeys.ingredientKey(-1, "salt") >= 0);
+        assertTrue(RecipeKeys.ingredientKey(Long.MIN_VALUE, "") >= 0);
+    }
+
+    @Test
+    public void ingredientKey_differsByRecipeAndName() {
+        long key = RecipeKeys.ingredientKey(1, "salt");
+
+        assertNotEquals(key, RecipeKeys.ingredientKey(2, "salt"));
+        assertNotEquals(key, RecipeKeys.ingredientKey(1, "Salt"));
+        assertNotEquals(key, RecipeKeys.ingredientKey(1, "salt "));
+        // Both bytes of each char are hashed
+        assertNotEquals(RecipeKeys.ingredientKey(1, "š"), RecipeKeys.ingredientKey(1, "a"));
+    }
+}
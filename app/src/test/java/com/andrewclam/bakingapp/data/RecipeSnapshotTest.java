@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.data;
+
+import com.andrewclam.bakingapp.models.Ingredient;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.RecipeChangeSet;
+import com.andrewclam.bakingapp.models.Step;
+import com.andrewclam.bakingapp.utils.JsonObjectRecipeParser;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.SAMPLE_FEED;
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.assertSameRecipe;
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.assertSameRecipes;
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.streamOf;
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.syntheticFeed;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of the {@link RecipeSnapshot} codec, the recipes must come back out of a
+ * snapshot exactly as they went in.
+ */
+public class RecipeSnapshotTest {
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void encodeWrap_sampleFeed_roundTrips() throws Exception {
+        List<Recipe> recipes = parse(SAMPLE_FEED);
+
+        RecipeSnapshot.Catalog catalog = RecipeSnapshot.wrap(RecipeSnapshot.encode(recipes));
+
+        assertNotNull(catalog);
+        assertSameRecipes(recipes, catalog.getRecipes());
+    }
+
+    @Test
+    public void encodeWrap_syntheticFeed_roundTrips() throws Exception {
+        List<Recipe> recipes = parse(syntheticFeed(300));
+
+        assertSameRecipes(recipes, RecipeSnapshot.wrap(RecipeSnapshot.encode(recipes))
+                .getRecipes());
+    }
+
+    @Test
+    public void encodeWrap_nullsAndEdgeValues_roundTrip() {
+        Recipe recipe = new Recipe();
+        recipe.setUid(Integer.MAX_VALUE);
+        recipe.setName("Crème brûlée 🍮");
+        recipe.setServings(-1);
+        recipe.setImageURL(null);
+
+        Ingredient ingredient = new Ingredient();
+        ingredient.setUid(Long.MAX_VALUE);
+        ingredient.setQuantity(Double.MIN_VALUE);
+        ingredient.setMeasure("pinch");
+        ingredient.setIngredientName("");
+        recipe.setIngredients(new ArrayList<>(Collections.singletonList(ingredient)));
+
+        Step step = new Step();
+        step.setUid(RecipeKeys.stepKey(Integer.MAX_VALUE, 0xFFFFFFFFL));
+        step.setStepNum(0xFFFFFFFFL);
+        step.setShortDescription(null);
+        step.setDescription("");
+        step.setVideoURL(null);
+        step.setThumbnailURL(null);
+        recipe.setSteps(new ArrayList<>(Collections.singletonList(step)));
+
+        List<Recipe> recipes = Collections.singletonList(recipe);
+        assertSameRecipes(recipes, RecipeSnapshot.wrap(RecipeSnapshot.encode(recipes))
+                .getRecipes());
+    }
+
+    @Test
+    public void encodeWrap_nullChildLists_readAsEmpty() {
+        Recipe recipe = new Recipe();
+        recipe.setUid(1);
+        recipe.setName("n");
+
+        Recipe decoded = RecipeSnapshot.wrap(
+                RecipeSnapshot.encode(Collections.singletonList(recipe))).getRecipe(0);
+
+        assertEquals(0, decoded.getIngredients().size());
+        assertEquals(0, decoded.getSteps().size());
+    }
+
+    @Test
+    public void encodeWrap_emptyCatalog_roundTrips() {
+        RecipeSnapshot.Catalog catalog =
+                RecipeSnapshot.wrap(RecipeSnapshot.encode(new ArrayList<Recipe>()));
+
+        assertNotNull(catalog);
+        assertEquals(0, catalog.size());
+    }
+
+    @Test
+    public void catalog_listFields_readInPlace() throws Exception {
+        List<Recipe> recipes = parse(SAMPLE_FEED);
+        RecipeSnapshot.Catalog catalog = RecipeSnapshot.wrap(RecipeSnapshot.encode(recipes));
+
+        assertEquals(recipes.size(), catalog.size());
+        for (int i = 0; i < recipes.size(); i++) {
+            assertEquals(recipes.get(i).getUid(), catalog.getUid(i));
+            assertEquals(recipes.get(i).getName(), catalog.getName(i));
+            assertEquals(recipes.get(i).getServings(), catalog.getServings(i));
+            assertEquals(recipes.get(i).getImageURL(), catalog.getImageURL(i));
+            assertSameRecipe(recipes.get(i), catalog.getRecipe(i));
+        }
+    }
+
+    @Test
+    public void wrap_corruptBytes_returnsNull() throws Exception {
+        byte[] bytes = RecipeSnapshot.encode(parse(SAMPLE_FEED));
+
+        // A flipped payload byte fails the checksum
+        byte[] corrupt = bytes.clone();
+        corrupt[corrupt.length - 1] ^= 1;
+        assertNull(RecipeSnapshot.wrap(corrupt));
+
+        // Another version of the layout is ignored
+        byte[] otherVersion = bytes.clone();
+        otherVersion[7]++;
+        assertNull(RecipeSnapshot.wrap(otherVersion));
+
+        // A truncated snapshot does not match its payload length
+        assertNull(RecipeSnapshot.wrap(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertNull(RecipeSnapshot.wrap(new byte[3]));
+    }
+
+    @Test
+    public void isSnapshot_checksMagicWithoutConsuming() throws Exception {
+        InputStream snapshot = new BufferedInputStream(new ByteArrayInputStream(
+                RecipeSnapshot.encode(parse(SAMPLE_FEED))));
+        assertTrue(RecipeSnapshot.isSnapshot(snapshot));
+        assertEquals(0x52, snapshot.read());
+
+        InputStream json = new BufferedInputStream(streamOf(SAMPLE_FEED));
+        assertFalse(RecipeSnapshot.isSnapshot(json));
+        assertEquals('[', json.read());
+
+        assertFalse(RecipeSnapshot.isSnapshot(new BufferedInputStream(streamOf("RC"))));
+    }
+
+    @Test
+    public void writeRead_file_roundTrips() throws Exception {
+        File file = new File(mFolder.getRoot(), "recipes.snapshot");
+        List<Recipe> recipes = parse(syntheticFeed(20));
+
+        assertNull(RecipeSnapshot.read(file));
+        assertTrue(RecipeSnapshot.write(file, recipes));
+        assertSameRecipes(recipes, RecipeSnapshot.read(file));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        RecipeSnapshot.delete(file);
+        assertNull(RecipeSnapshot.read(file));
+    }
+
+    @Test
+    public void applyChanges_delta_patchesInPlace() throws Exception {
+        File file = new File(mFolder.getRoot(), "recipes.snapshot");
+        ArrayList<Recipe> recipes = parse(syntheticFeed(3));
+        RecipeSnapshot.write(file, recipes);
+
+        // Recipe 2 is deleted, recipe 1 updated and recipe 4 added
+        ArrayList<Recipe> upserted = parse(syntheticFeed(4));
+        upserted.remove(2);
+        upserted.remove(1);
+        upserted.get(0).setName("Updated");
+        RecipeSnapshot.applyChanges(file, RecipeChangeSet.delta(upserted,
+                new ArrayList<>(Collections.singletonList(2L)), "token"));
+
+        ArrayList<Recipe> patched = RecipeSnapshot.read(file);
+        assertEquals(3, patched.size());
+        assertSameRecipe(upserted.get(0), patched.get(0));
+        assertSameRecipe(recipes.get(2), patched.get(1));
+        assertSameRecipe(upserted.get(1), patched.get(2));
+    }
+
+    @Test
+    public void applyChanges_noSnapshot_leavesNone() throws Exception {
+        File file = new File(mFolder.getRoot(), "recipes.snapshot");
+
+        RecipeSnapshot.applyChanges(file, RecipeChangeSet.delta(parse(syntheticFeed(1)),
+                new ArrayList<Long>(), "token"));
+
+        assertFalse(file.exists());
+    }
+
+    private static ArrayList<Recipe> parse(String feed) throws Exception {
+        return new JsonObjectRecipeParser().parseRecipes(streamOf(feed), null);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.models;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests of {@link Ingredient}, which keeps a known measure as its {@link Measure}
+ * constant and any other one as a shared string.
+ */
+public class IngredientTest {
+
+    @Test
+    public void setMeasure_knownMeasures_roundTrip() {
+        for (Measure measure : Measure.values()) {
+            Ingredient ingredient = new Ingredient();
+            ingredient.setMeasure(new String(measure.name()));
+
+            assertSame(measure, ingredient.getMeasureCode());
+            assertSame(measure.name(), ingredient.getMeasure());
+        }
+    }
+
+    @Test
+    public void setMeasure_unknownMeasure_keptAsSharedString() {
+        Ingredient first = new Ingredient();
+        first.setMeasure(new String("pinch"));
+        Ingredient second = new Ingredient();
+        second.setMeasure(new String("pinch"));
+
+        assertNull(first.getMeasureCode());
+        assertEquals("pinch", first.getMeasure());
+        assertSame(first.getMeasure(), second.getMeasure());
+    }
+
+    @Test
+    public void setMeasure_caseDiffers_notAKnownMeasure() {
+        Ingredient ingredient = new Ingredient();
+        ingredient.setMeasure("cup");
+
+        assertNull(ingredient.getMeasureCode());
+        assertEquals("cup", ingredient.getMeasure());
+    }
+
+    @Test
+    public void setMeasure_null_roundTrips() {
+        Ingredient ingredient = new Ingredient();
+        ingredient.setMeasure("CUP");
+        ingredient.setMeasure(null);
+
+        assertNull(ingredient.getMeasureCode());
+        assertNull(ingredient.getMeasure());
+    }
+
+    @Test
+    public void fromString_unknownOrNull_returnsNull() {
+        assertSame(Measure.TBLSP, Measure.fromString("TBLSP"));
+        assertNull(Measure.fromString("TABLESPOON"));
+        assertNull(Measure.fromString(null));
+    }
+
+    @Test
+    public void setIngredientName_equalNames_shareInstance() {
+        Ingredient first = new Ingredient();
+        first.setIngredientName(new String("unsalted butter"));
+        Ingredient second = new Ingredient();
+        second.setIngredientName(new String("unsalted butter"));
+
+        assertSame(first.getIngredientName(), second.getIngredientName());
+    }
+}
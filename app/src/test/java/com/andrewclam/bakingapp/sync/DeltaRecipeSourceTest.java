@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.sync;
+
+import com.andrewclam.bakingapp.TestContext;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.RecipeChangeSet;
+import com.andrewclam.bakingapp.utils.RecipeParser;
+import com.andrewclam.bakingapp.utils.TestHttpServer;
+
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of {@link DeltaRecipeSource} against a local stand-in of a delta capable web
+ * service. A delta is read with android.util.JsonReader, the tests run on Robolectric.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class DeltaRecipeSourceTest {
+
+    private static final String BROWNIES = "{\"id\":2,\"name\":\"Brownies\",\"servings\":8,"
+            + "\"image\":\"\",\"ingredients\":[{\"quantity\":350,\"measure\":\"G\","
+            + "\"ingredient\":\"Bittersweet chocolate\"},{\"quantity\":226,\"measure\":\"G\","
+            + "\"ingredient\":\"unsalted butter\"}],\"steps\":[{\"id\":0,"
+            + "\"shortDescription\":\"Recipe Introduction\",\"description\":\"Recipe Introduction\","
+            + "\"videoURL\":\"\",\"thumbnailURL\":\"\"}]}";
+    private static final String CHEESECAKE = "{\"id\":4,\"name\":\"Cheesecake\",\"servings\":8,"
+            + "\"image\":\"\",\"ingredients\":[],\"steps\":[{\"id\":0,"
+            + "\"shortDescription\":\"Intro\",\"description\":\"Intro\",\"videoURL\":\"\","
+            + "\"thumbnailURL\":\"\"},{\"id\":1,\"shortDescription\":\"Starting prep\","
+            + "\"description\":\"1. Preheat the oven\",\"videoURL\":\"\",\"thumbnailURL\":\"\"}]}";
+
+    private TestHttpServer mServer;
+    private TestContext mContext;
+    private String mDataURL;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new TestHttpServer();
+        mContext = new TestContext();
+        mDataURL = mServer.getUrl("/recipes.json").toString();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void fetchChanges_neverSynced_requestsEverything() throws Exception {
+        mServer.enqueue(new TestHttpServer.Response().setBody("{\"sync_token\":\"t1\","
+                + "\"server_time\":{\"ignored\":[1,2]},"
+                + "\"recipes\":[" + BROWNIES + "," + CHEESECAKE + "],\"deleted\":[3,5]}"));
+
+        RecipeChangeSet changeSet = new DeltaRecipeSource(mDataURL).fetchChanges(mContext, null);
+
+        assertNull(mServer.getRequest(0).getQuery());
+        assertTrue(changeSet.isDelta());
+        assertEquals("t1", changeSet.getSyncToken());
+        assertEquals(mDataURL, changeSet.getSourceURL());
+        assertEquals(Arrays.asList(3L, 5L), changeSet.getDeletedRecipeIds());
+
+        List<Recipe> recipes = changeSet.getRecipes();
+        assertEquals(2, recipes.size());
+        assertEquals("Brownies", recipes.get(0).getName());
+        assertEquals(2, recipes.get(0).getIngredients().size());
+        assertEquals(1, recipes.get(0).getSteps().size());
+        assertEquals(4, recipes.get(1).getUid());
+        assertEquals(0, recipes.get(1).getIngredients().size());
+        assertEquals(2, recipes.get(1).getSteps().size());
+
+        // The token is only stored once the delta is applied
+        assertNull(DeltaRecipeSource.loadSyncToken(mContext, mDataURL));
+    }
+
+    @Test
+    public void fetchChanges_synced_requestsChangesSinceToken() throws Exception {
+        String dataURL = mServer.getUrl("/recipes.json?v=2").toString();
+        DeltaRecipeSource.saveSyncToken(mContext, dataURL, "2017-09-01 a&b");
+        mServer.enqueue(new TestHttpServer.Response()
+                .setBody("{\"sync_token\":\"t2\",\"recipes\":[],\"deleted\":[]}"));
+
+        RecipeChangeSet changeSet = new DeltaRecipeSource(dataURL).fetchChanges(mContext, null);
+
+        assertEquals("v=2&since=2017-09-01+a%26b", mServer.getRequest(0).getQuery());
+        assertTrue(changeSet.isDelta());
+        assertTrue(changeSet.isEmpty());
+        assertEquals("t2", changeSet.getSyncToken());
+    }
+
+    @Test
+    public void fetchChanges_noDeltaSupport_isFullFeed() throws Exception {
+        DeltaRecipeSource.saveSyncToken(mContext, mDataURL, "t1");
+        mServer.enqueue(new TestHttpServer.Response()
+                .setBody("[" + BROWNIES + "," + CHEESECAKE + "]"));
+
+        final List<String> parsed = new ArrayList<>();
+        RecipeChangeSet changeSet = new DeltaRecipeSource(mDataURL).fetchChanges(mContext,
+                new RecipeParser.OnRecipeParsedListener() {
+                    @Override
+                    public void onRecipeParsed(Recipe recipe) {
+                        parsed.add(recipe.getName());
+                    }
+                });
+
+        assertTrue(changeSet.isFullFeed());
+        assertEquals(mDataURL, changeSet.getSourceURL());
+        assertNull(changeSet.getSyncToken());
+        assertEquals(Arrays.asList("Brownies", "Cheesecake"), parsed);
+        assertEquals(2, changeSet.getRecipes().size());
+    }
+
+    @Test(expected = JSONException.class)
+    public void fetchChanges_deltaWithoutToken_throws() throws Exception {
+        mServer.enqueue(new TestHttpServer.Response()
+                .setBody("{\"recipes\":[" + BROWNIES + "],\"deleted\":[]}"));
+
+        new DeltaRecipeSource(mDataURL).fetchChanges(mContext, null);
+    }
+
+    @Test
+    public void saveSyncToken_null_clearsToken() {
+        DeltaRecipeSource.saveSyncToken(mContext, mDataURL, "t1");
+        assertEquals("t1", DeltaRecipeSource.loadSyncToken(mContext, mDataURL));
+
+        DeltaRecipeSource.saveSyncToken(mContext, mDataURL, null);
+        assertNull(DeltaRecipeSource.loadSyncToken(mContext, mDataURL));
+    }
+}
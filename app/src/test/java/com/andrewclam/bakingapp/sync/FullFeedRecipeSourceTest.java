@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.sync;
+
+import com.andrewclam.bakingapp.data.RecipeSnapshot;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.RecipeChangeSet;
+import com.andrewclam.bakingapp.utils.BinaryRecipeParser;
+import com.andrewclam.bakingapp.utils.JsonObjectRecipeParser;
+import com.andrewclam.bakingapp.utils.NetworkUtils;
+import com.andrewclam.bakingapp.utils.RecipeParser;
+import com.andrewclam.bakingapp.utils.RetryPolicy;
+import com.andrewclam.bakingapp.utils.TestHttpServer;
+import com.andrewclam.bakingapp.utils.TransferStats;
+
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.SAMPLE_FEED;
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.assertSameRecipes;
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.streamOf;
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.syntheticFeed;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests of the binary recipe feed of {@link FullFeedRecipeSource}, against a local
+ * stand-in server that serves the feed as JSON or as a {@link RecipeSnapshot} depending on
+ * the Accept header of the request. The JSON feed is read with the org.json
+ * {@link JsonObjectRecipeParser}, the default parser needs android.util.JsonReader.
+ */
+public class FullFeedRecipeSourceTest {
+
+    /* Number of recipes of the feed the two encodings are compared on */
+    private static final int BENCHMARK_RECIPES = 1000;
+
+    /* Number of timed decodes of each encoding, after a warm-up round */
+    private static final int BENCHMARK_ROUNDS = 5;
+
+    /* Single attempt, an error surfaces right away */
+    private static final RetryPolicy NO_RETRY = new RetryPolicy().setMaxAttempts(1);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private TestHttpServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new TestHttpServer();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void fetchChanges_binaryFeed_sameRecipesAsJson() throws Exception {
+        List<Recipe> expected = parseJson(SAMPLE_FEED);
+        serveFeed(SAMPLE_FEED, true, false);
+
+        RecipeChangeSet json = source(false).fetchChanges(null, null);
+        RecipeChangeSet binary = source(true).fetchChanges(null, null);
+
+        assertSameRecipes(expected, json.getRecipes());
+        assertSameRecipes(expected, binary.getRecipes());
+        String jsonAccept = mServer.getRequest(0).getHeader("Accept");
+        assertTrue(jsonAccept == null || !jsonAccept.contains(RecipeSnapshot.MEDIA_TYPE));
+        assertTrue(mServer.getRequest(1).getHeader("Accept")
+                .startsWith(RecipeSnapshot.MEDIA_TYPE));
+    }
+
+    @Test
+    public void fetchChanges_binaryFeedGzipped_sameRecipesAsJson() throws Exception {
+        String feed = syntheticFeed(200);
+        serveFeed(feed, true, true);
+
+        assertSameRecipes(parseJson(feed), source(true).fetchChanges(null, null).getRecipes());
+    }
+
+    @Test
+    public void fetchChanges_serverWithoutBinaryFeed_fallsBackToJson() throws Exception {
+        serveFeed(SAMPLE_FEED, false, false);
+
+        RecipeChangeSet changeSet = source(true).fetchChanges(null, null);
+
+        assertSameRecipes(parseJson(SAMPLE_FEED), changeSet.getRecipes());
+        assertTrue(changeSet.isFullFeed());
+    }
+
+    @Test
+    public void fetchChanges_binaryFeed_publishesEachRecipe() throws Exception {
+        final int[] published = new int[1];
+        serveFeed(syntheticFeed(10), true, false);
+
+        source(true).fetchChanges(null, new RecipeParser.OnRecipeParsedListener() {
+            @Override
+            public void onRecipeParsed(Recipe recipe) {
+                published[0]++;
+            }
+        });
+
+        assertEquals(10, published[0]);
+    }
+
+    @Test
+    public void fetchChanges_corruptBinaryFeed_throwsIOException() throws Exception {
+        byte[] body = RecipeSnapshot.encode(parseJson(SAMPLE_FEED));
+        body[body.length - 1] ^= 1;
+        mServer.enqueue(new TestHttpServer.Response()
+                .setHeader("Content-Type", RecipeSnapshot.MEDIA_TYPE)
+                .setBody(body));
+
+        try {
+            source(true).fetchChanges(null, null);
+            fail("Parsed a corrupt binary feed");
+        } catch (IOException expected) {
+            // The checksum fails, the feed is not retried as a parse error
+            assertEquals(1, mServer.getRequestCount());
+        }
+    }
+
+    /**
+     * Compares the two encodings of the same feed: the bytes on the wire with and without
+     * gzip, the time to decode and the bytes allocated while decoding. The figures are
+     * printed for comparison only, they depend on the machine.
+     */
+    @Test
+    public void benchmark_binaryVsJsonFeed() throws Exception {
+        String feed = syntheticFeed(BENCHMARK_RECIPES);
+        byte[] json = feed.getBytes(UTF_8);
+        byte[] binary = RecipeSnapshot.encode(parseJson(feed));
+        serveFeed(feed, true, true);
+
+        long jsonWireBytes = wireBytes(null);
+        long binaryWireBytes = wireBytes(RecipeSnapshot.MEDIA_TYPE);
+
+        RecipeParser jsonParser = new JsonObjectRecipeParser();
+        RecipeParser binaryParser = new BinaryRecipeParser(jsonParser);
+        assertSameRecipes(decode(jsonParser, json), decode(binaryParser, binary));
+
+        System.out.println(String.format("%d recipes, JSON: %d bytes, %d gzipped, %s",
+                BENCHMARK_RECIPES, json.length, jsonWireBytes, time(jsonParser, json)));
+        System.out.println(String.format("%d recipes, binary: %d bytes, %d gzipped, %s",
+                BENCHMARK_RECIPES, binary.length, binaryWireBytes, time(binaryParser, binary)));
+    }
+
+    /**
+     * serveFeed() has the server answer every request with the feed
+     *
+     * @param binary whether to serve the binary feed to a request that accepts it
+     * @param gzip   whether to gzip the feed for a request that accepts it
+     */
+    private void serveFeed(String feed, final boolean binary, final boolean gzip)
+            throws Exception {
+        final byte[] json = feed.getBytes(UTF_8);
+        final byte[] snapshot = RecipeSnapshot.encode(parseJson(feed));
+
+        mServer.setDispatcher(new TestHttpServer.Dispatcher() {
+            @Override
+            public TestHttpServer.Response dispatch(TestHttpServer.Request request) {
+                String accept = request.getHeader("Accept");
+                boolean isBinary = binary && accept != null
+                        && accept.contains(RecipeSnapshot.MEDIA_TYPE);
+
+                TestHttpServer.Response response = new TestHttpServer.Response()
+                        .setHeader("Content-Type",
+                                isBinary ? RecipeSnapshot.MEDIA_TYPE : "application/json")
+                        .setHeader("Vary", "Accept");
+                byte[] body = isBinary ? snapshot : json;
+
+                String acceptEncoding = request.getHeader("Accept-Encoding");
+                if (gzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    response.setHeader("Content-Encoding", "gzip");
+                    body = gzip(body);
+                }
+                return response.setBody(body);
+            }
+        });
+    }
+
+    private FullFeedRecipeSource source(boolean binaryFeed) throws IOException {
+        return new FullFeedRecipeSource(mServer.getUrl("/recipes").toString())
+                .setParser(new JsonObjectRecipeParser())
+                .setRetryPolicy(NO_RETRY)
+                .setBinaryFeed(binaryFeed);
+    }
+
+    /**
+     * @return the bytes of the feed on the wire, as served for the Accept header
+     */
+    private long wireBytes(String accept) throws Exception {
+        TransferStats stats = new TransferStats();
+        NetworkUtils.getResponseFromHttpUrl(mServer.getUrl("/recipes"), null, stats, NO_RETRY,
+                accept, new NetworkUtils.ResponseHandler<Void>() {
+                    @Override
+                    public Void onResponse(InputStream in) throws IOException {
+                        byte[] buffer = new byte[8192];
+                        //noinspection StatementWithEmptyBody
+                        while (in.read(buffer) != -1) ;
+                        return null;
+                    }
+                });
+        return stats.getCompressedBytes();
+    }
+
+    /**
+     * @return the mean decode time and the bytes allocated per decode, where the JVM reports
+     * them
+     */
+    private static String time(RecipeParser parser, byte[] body) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean countsAllocations = threads instanceof com.sun.management.ThreadMXBean;
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = countsAllocations ? ((com.sun.management.ThreadMXBean) threads)
+                .getThreadAllocatedBytes(threadId) : 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ROUNDS; i++) {
+            decode(parser, body);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = countsAllocations ? ((com.sun.management.ThreadMXBean) threads)
+                .getThreadAllocatedBytes(threadId) : 0;
+
+        return String.format("decoded in %.1f ms, %s", elapsed / 1e6 / BENCHMARK_ROUNDS,
+                countsAllocations ? (allocatedAfter - allocatedBefore) / BENCHMARK_ROUNDS / 1024
+                        + " KB allocated" : "allocations not reported");
+    }
+
+    private static List<Recipe> decode(RecipeParser parser, byte[] body) throws Exception {
+        return parser.parseRecipes(new ByteArrayInputStream(body), null);
+    }
+
+    private static List<Recipe> parseJson(String feed) throws IOException, JSONException {
+        return new JsonObjectRecipeParser().parseRecipes(streamOf(feed), null);
+    }
+
+    private static byte[] gzip(byte[] data) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(out);
+            gzip.write(data);
+            gzip.close();
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of {@link HttpDiskCache}: the keys of the entries, the expiry computed from the
+ * response headers and the eviction of the least recently used entries.
+ */
+public class HttpDiskCacheTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long NOW = 1500000000000L;
+    private static final String URL_A = "https://example.com/a.json";
+    private static final String URL_B = "https://example.com/b.json";
+    private static final String URL_C = "https://example.com/c.json";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = mTemporaryFolder.newFolder();
+    }
+
+    @After
+    public void tearDown() {
+        HttpDiskCache.uninstall();
+    }
+
+    @Test
+    public void keyOf_isStableHexPerUrl() {
+        String key = HttpDiskCache.keyOf(URL_A);
+
+        assertEquals(32, key.length());
+        assertTrue(key.matches("[0-9a-f]+"));
+        assertEquals(key, HttpDiskCache.keyOf(URL_A));
+        assertNotEquals(key, HttpDiskCache.keyOf(URL_B));
+    }
+
+    @Test
+    public void computeExpiresAt_maxAge_lessAge() {
+        assertEquals(NOW + 60000,
+                HttpDiskCache.computeExpiresAt("public, max-age=60", null, null, null, NOW));
+        assertEquals(NOW + 20000,
+                HttpDiskCache.computeExpiresAt("max-age=60", "40", null, null, NOW));
+        assertEquals(NOW,
+                HttpDiskCache.computeExpiresAt("max-age=60", "90", null, null, NOW));
+    }
+
+    @Test
+    public void computeExpiresAt_maxAge_winsOverExpires() {
+        assertEquals(NOW + 60000, HttpDiskCache.computeExpiresAt("max-age=60", null,
+                httpDate(NOW + 3600000), httpDate(NOW), NOW));
+    }
+
+    @Test
+    public void computeExpiresAt_expires_relativeToDate() {
+        // The server clock is an hour ahead, the lifetime is what counts
+        assertEquals(NOW + 120000, HttpDiskCache.computeExpiresAt(null, null,
+                httpDate(NOW + 3600000 + 120000), httpDate(NOW + 3600000), NOW));
+        // Without a Date, relative to now
+        assertEquals(NOW + 120000, HttpDiskCache.computeExpiresAt(null, null,
+                httpDate(NOW + 120000), null, NOW));
+    }
+
+    @Test
+    public void computeExpiresAt_dateInThePast_countsAsAge() {
+        assertEquals(NOW + 50000, HttpDiskCache.computeExpiresAt("max-age=60", "5", null,
+                httpDate(NOW - 10000), NOW));
+    }
+
+    @Test
+    public void computeExpiresAt_staleRightAway() {
+        assertEquals(NOW, HttpDiskCache.computeExpiresAt(null, null, null, null, NOW));
+        assertEquals(NOW, HttpDiskCache.computeExpiresAt("no-cache, max-age=60", null, null,
+                null, NOW));
+        assertEquals(NOW, HttpDiskCache.computeExpiresAt(null, null, "0", null, NOW));
+        assertEquals(NOW, HttpDiskCache.computeExpiresAt(null, null, httpDate(NOW - 1000),
+                null, NOW));
+    }
+
+    @Test
+    public void edit_noStore_isNotCached() {
+        HttpDiskCache cache = HttpDiskCache.install(mDirectory, 1024);
+
+        assertNull(cache.edit(URL_A, null, null, null, "no-store", NOW));
+    }
+
+    @Test
+    public void commit_storesBodyAndMetadata() throws Exception {
+        HttpDiskCache cache = HttpDiskCache.install(mDirectory, 1024);
+        long expiresAt = System.currentTimeMillis() + 60000;
+        store(cache, URL_A, "body a", "\"etag-a\"", expiresAt);
+
+        HttpDiskCache.Entry entry = cache.get(URL_A);
+        assertNotNull(entry);
+        assertEquals("body a", read(entry));
+        assertEquals("\"etag-a\"", entry.getETag());
+        assertTrue(entry.isFresh());
+        assertNull(cache.get(URL_B));
+    }
+
+    @Test
+    public void concurrentWriters_ofSameUrl_doNotShareTheirBody() throws Exception {
+        HttpDiskCache cache = HttpDiskCache.install(mDirectory, 1 << 20);
+        String first = repeat('1', 10000);
+        String second = repeat('2', 20000);
+
+        HttpDiskCache.Writer firstWriter = cache.edit(URL_A, null, "\"1\"", null, null, NOW);
+        HttpDiskCache.Writer secondWriter = cache.edit(URL_A, null, "\"2\"", null, null, NOW);
+        InputStream firstIn = firstWriter.tee(stream(first));
+        InputStream secondIn = secondWriter.tee(stream(second));
+
+        // Interleave the reads of both responses
+        byte[] buffer = new byte[1000];
+        boolean firstDone = false;
+        boolean secondDone = false;
+        while (!firstDone || !secondDone) {
+            if (!firstDone) firstDone = firstIn.read(buffer) == -1;
+            if (!secondDone) secondDone = secondIn.read(buffer) == -1;
+        }
+        firstWriter.commit();
+        secondWriter.commit();
+
+        HttpDiskCache.Entry entry = cache.get(URL_A);
+        assertEquals("\"2\"", entry.getETag());
+        assertEquals(second, read(entry));
+        assertNoTempFiles();
+    }
+
+    @Test
+    public void abort_discardsTheBody() throws Exception {
+        HttpDiskCache cache = HttpDiskCache.install(mDirectory, 1024);
+        HttpDiskCache.Writer writer = cache.edit(URL_A, null, null, null, null, NOW);
+        writer.tee(stream("partial")).read(new byte[3]);
+        writer.abort();
+
+        assertNull(cache.get(URL_A));
+        assertNoTempFiles();
+    }
+
+    @Test
+    public void trimToSize_evictsLeastRecentlyUsed() throws Exception {
+        HttpDiskCache cache = HttpDiskCache.install(mDirectory, 250);
+        store(cache, URL_A, repeat('a', 100), null, NOW);
+        store(cache, URL_B, repeat('b', 100), null, NOW);
+
+        // A is read after B was written, B is the least recently used
+        long now = System.currentTimeMillis();
+        assertTrue(bodyFile(URL_A).setLastModified(now - 20000));
+        assertTrue(bodyFile(URL_B).setLastModified(now - 10000));
+        assertNotNull(cache.get(URL_A));
+
+        store(cache, URL_C, repeat('c', 100), null, NOW);
+
+        assertNotNull(cache.get(URL_A));
+        assertNull(cache.get(URL_B));
+        assertNotNull(cache.get(URL_C));
+    }
+
+    @Test
+    public void setMaxSize_trimsRightAway() throws Exception {
+        HttpDiskCache cache = HttpDiskCache.install(mDirectory, 1000);
+        store(cache, URL_A, repeat('a', 100), null, NOW);
+        store(cache, URL_B, repeat('b', 100), null, NOW);
+        long now = System.currentTimeMillis();
+        assertTrue(bodyFile(URL_A).setLastModified(now - 20000));
+        assertTrue(bodyFile(URL_B).setLastModified(now - 10000));
+
+        cache.setMaxSize(150);
+
+        assertNull(cache.get(URL_A));
+        assertNotNull(cache.get(URL_B));
+    }
+
+    private static void store(HttpDiskCache cache, String url, String body, String eTag,
+                              long expiresAt) throws IOException {
+        HttpDiskCache.Writer writer = cache.edit(url, null, eTag, null, null, expiresAt);
+        InputStream in = writer.tee(stream(body));
+        NetworkUtilsTest.readFully(in);
+        writer.commit();
+    }
+
+    private File bodyFile(String url) {
+        return new File(mDirectory, HttpDiskCache.keyOf(url) + ".body");
+    }
+
+    private void assertNoTempFiles() {
+        for (String name : mDirectory.list()) {
+            assertFalse(name, name.endsWith(".tmp"));
+        }
+    }
+
+    private static String read(HttpDiskCache.Entry entry) throws IOException {
+        InputStream in = entry.openBody();
+        try {
+            return new String(NetworkUtilsTest.readFully(in), UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(UTF_8));
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) builder.append(c);
+        return builder.toString();
+    }
+
+    private static String httpDate(long time) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(time));
+    }
+}
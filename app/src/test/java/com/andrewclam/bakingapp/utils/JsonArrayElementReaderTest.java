@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests of {@link JsonArrayElementReader}, which splits a top-level JSON array into the
+ * raw text of its elements.
+ */
+public class JsonArrayElementReaderTest {
+
+    @Test
+    public void nextElement_objects_returnsEachObject() throws Exception {
+        List<String> elements = readAll("[{\"id\":1,\"name\":\"a\"}, {\"id\":2,\"steps\":[{},{}]}]");
+
+        assertEquals(2, elements.size());
+        assertEquals("{\"id\":1,\"name\":\"a\"}", elements.get(0));
+        assertEquals("{\"id\":2,\"steps\":[{},{}]}", elements.get(1));
+    }
+
+    @Test
+    public void nextElement_bracketsInStrings_areNotNesting() throws Exception {
+        List<String> elements = readAll("[{\"s\":\"]}[{,\"},{\"s\":\"a \\\" ] quote\"}]");
+
+        assertEquals(2, elements.size());
+        assertEquals("{\"s\":\"]}[{,\"}", elements.get(0));
+        assertEquals("{\"s\":\"a \\\" ] quote\"}", elements.get(1));
+    }
+
+    @Test
+    public void nextElement_scalars_returnsTrimmedText() throws Exception {
+        List<String> elements = readAll(" [ 1 , \"two\" ,true,null , 4.5 ] ");
+
+        assertEquals(5, elements.size());
+        assertEquals("1", elements.get(0));
+        assertEquals("\"two\"", elements.get(1));
+        assertEquals("true", elements.get(2));
+        assertEquals("null", elements.get(3));
+        assertEquals("4.5", elements.get(4));
+    }
+
+    @Test
+    public void nextElement_emptyArrayOrResponse_returnsNull() throws Exception {
+        assertEquals(0, readAll("[]").size());
+        assertEquals(0, readAll(" [ \n ] ").size());
+        assertEquals(0, readAll("").size());
+    }
+
+    @Test
+    public void nextElement_afterEnd_keepsReturningNull() throws Exception {
+        JsonArrayElementReader reader = new JsonArrayElementReader(new StringReader("[{}]"));
+
+        assertEquals("{}", reader.nextElement());
+        assertNull(reader.nextElement());
+        assertNull(reader.nextElement());
+    }
+
+    @Test
+    public void nextElement_elementsAcrossBufferBoundaries_areWhole() throws Exception {
+        // Elements larger than the read buffer, handed over a few chars at a time
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 3; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"description\":\"");
+            for (int j = 0; j < 10000; j++) json.append((char) ('a' + (i + j) % 26));
+            json.append("\"}");
+        }
+        json.append(']');
+
+        JsonArrayElementReader reader = new JsonArrayElementReader(
+                new TrickleReader(json.toString(), 7));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(10000 + "{\"description\":\"\"}".length(), reader.nextElement().length());
+        }
+        assertNull(reader.nextElement());
+    }
+
+    @Test(expected = IOException.class)
+    public void nextElement_notAnArray_throws() throws Exception {
+        readAll("{\"id\":1}");
+    }
+
+    @Test(expected = EOFException.class)
+    public void nextElement_truncatedArray_throws() throws Exception {
+        readAll("[{\"id\":1},{\"id\":");
+    }
+
+    private static List<String> readAll(String json) throws IOException {
+        JsonArrayElementReader reader = new JsonArrayElementReader(new StringReader(json));
+        List<String> elements = new ArrayList<>();
+        String element;
+        while ((element = reader.nextElement()) != null) {
+            elements.add(element);
+        }
+        reader.close();
+        return elements;
+    }
+
+    /**
+     * A reader handing over at most a few chars per read, as a slow network would
+     */
+    private static class TrickleReader extends Reader {
+        private final String mText;
+        private final int mChunk;
+        private int mPos;
+
+        TrickleReader(String text, int chunk) {
+            mText = text;
+            mChunk = chunk;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (mPos == mText.length()) return -1;
+            int count = Math.min(Math.min(length, mChunk), mText.length() - mPos);
+            mText.getChars(mPos, mPos + count, buffer, offset);
+            mPos += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import com.andrewclam.bakingapp.data.RecipeKeys;
+import com.andrewclam.bakingapp.models.Recipe;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.SAMPLE_FEED;
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.assertSameRecipes;
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.streamOf;
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.syntheticFeed;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests of {@link JsonReaderRecipeParser}, which must parse the same recipes as the
+ * org.json based {@link JsonObjectRecipeParser}, down to the keys of the steps and the
+ * ingredients. android.util.JsonReader is only a stub on the JVM, the tests run on
+ * Robolectric.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class JsonReaderRecipeParserTest {
+
+    /* Number of recipes of the feed the two parsers are timed on */
+    private static final int BENCHMARK_RECIPES = 2000;
+
+    /* Number of timed rounds of each parser, after a warm-up round */
+    private static final int BENCHMARK_ROUNDS = 5;
+
+    private final RecipeParser mJsonObjectParser = new JsonObjectRecipeParser();
+    private final RecipeParser mJsonReaderParser = new JsonReaderRecipeParser();
+
+    @Test
+    public void parseRecipes_sampleFeed_sameAsJsonObjectParser() throws Exception {
+        List<Recipe> recipes = parseBoth(SAMPLE_FEED);
+
+        assertEquals(2, recipes.size());
+        Recipe pie = recipes.get(0);
+        assertEquals(RecipeKeys.stepKey(1, 1), pie.getSteps().get(1).getUid());
+        assertEquals(RecipeKeys.ingredientKey(1, "salt"), pie.getIngredients().get(1).getUid());
+        assertEquals("1. Preheat the oven to 350°F.", pie.getSteps().get(1).getDescription());
+        assertTrue(recipes.get(1).getSteps().isEmpty());
+    }
+
+    @Test
+    public void parseRecipes_syntheticFeed_sameAsJsonObjectParser() throws Exception {
+        assertEquals(100, parseBoth(syntheticFeed(100)).size());
+    }
+
+    @Test
+    public void parseRecipes_idAfterChildren_sameKeys() throws Exception {
+        // The keys of the steps and ingredients depend on the recipe id that comes last
+        List<Recipe> recipes = parseBoth("[{\"name\":\"n\",\"servings\":1,\"image\":\"\"," +
+                "\"steps\":[{\"id\":3,\"shortDescription\":\"s\",\"description\":\"d\"," +
+                "\"videoURL\":\"\",\"thumbnailURL\":\"\"}]," +
+                "\"ingredients\":[{\"quantity\":1,\"measure\":\"K\",\"ingredient\":\"i\"}]," +
+                "\"id\":7}]");
+
+        assertEquals(RecipeKeys.stepKey(7, 3), recipes.get(0).getSteps().get(0).getUid());
+        assertEquals(RecipeKeys.ingredientKey(7, "i"),
+                recipes.get(0).getIngredients().get(0).getUid());
+    }
+
+    @Test
+    public void parseRecipes_coercedValues_sameAsJsonObjectParser() throws Exception {
+        // Quoted numbers, numbers read as strings, fractional ids and unknown fields
+        List<Recipe> recipes = parseBoth("[{\"id\":\"4\",\"name\":12,\"servings\":2.9," +
+                "\"image\":\"\",\"rating\":{\"stars\":[5]},\"ingredients\":" +
+                "[{\"quantity\":\"1.5\",\"measure\":\"UNIT\",\"ingredient\":\"egg\"}]," +
+                "\"steps\":[{\"id\":1.0,\"shortDescription\":\"s\",\"description\":true," +
+                "\"videoURL\":\"\",\"thumbnailURL\":\"\"}]}]");
+
+        Recipe recipe = recipes.get(0);
+        assertEquals(4, recipe.getUid());
+        assertEquals("12", recipe.getName());
+        assertEquals(2, recipe.getServings());
+        assertEquals(1.5, recipe.getIngredients().get(0).getQuantity(), 0);
+        assertEquals("true", recipe.getSteps().get(0).getDescription());
+    }
+
+    @Test
+    public void parseRecipes_emptyFeed_noRecipes() throws Exception {
+        assertEquals(0, parseBoth("[]").size());
+        assertEquals(0, parseBoth(" ").size());
+    }
+
+    @Test
+    public void parseRecipes_missingField_bothThrowJSONException() throws Exception {
+        String feed = "[{\"id\":1,\"name\":\"n\",\"servings\":1,\"image\":\"\"," +
+                "\"ingredients\":[],\"steps\":[{\"id\":0,\"shortDescription\":\"s\"," +
+                "\"description\":\"d\",\"videoURL\":\"\"}]}]";
+
+        assertThrowsJSONException(mJsonObjectParser, feed, "thumbnailURL");
+        assertThrowsJSONException(mJsonReaderParser, feed, "thumbnailURL");
+    }
+
+    @Test
+    public void parseRecipes_keyOutOfRange_bothThrowJSONException() throws Exception {
+        // A negative id, an id beyond the 32 bits of a step key and a negative step number
+        String[] feeds = {stepFeed("-1", "0"), stepFeed("2147483648", "0"), stepFeed("1", "-1")};
+
+        for (String feed : feeds) {
+            assertThrowsJSONException(mJsonObjectParser, feed, "out of range");
+            assertThrowsJSONException(mJsonReaderParser, feed, "out of range");
+        }
+    }
+
+    @Test
+    public void parseRecipes_listener_calledInOrder() throws Exception {
+        final List<Long> parsed = new ArrayList<>();
+        mJsonReaderParser.parseRecipes(streamOf(syntheticFeed(5)),
+                new RecipeParser.OnRecipeParsedListener() {
+                    @Override
+                    public void onRecipeParsed(Recipe recipe) {
+                        parsed.add(recipe.getUid());
+                    }
+                });
+
+        assertEquals(5, parsed.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            assertEquals(i + 1, (long) parsed.get(i));
+        }
+    }
+
+    @Test
+    public void parseRecipes_repeatedStrings_shareInstances() throws Exception {
+        List<Recipe> recipes = parse(mJsonReaderParser, syntheticFeed(3));
+
+        // Each recipe has the same ingredient names and step short descriptions, interned
+        // by the StringDictionary
+        for (int r = 1; r < recipes.size(); r++) {
+            assertSame(recipes.get(0).getIngredients().get(2).getIngredientName(),
+                    recipes.get(r).getIngredients().get(2).getIngredientName());
+            assertSame(recipes.get(0).getSteps().get(4).getShortDescription(),
+                    recipes.get(r).getSteps().get(4).getShortDescription());
+        }
+    }
+
+    @Test
+    public void parseRecipes_interned_sameAsJsonObjectParser() throws Exception {
+        // Interning must not change what is read
+        assertEquals(20, parseBoth(syntheticFeed(20)).size());
+    }
+
+    /**
+     * Times both parsers on the same synthetic feed. The results must match; the timings are
+     * printed for comparison only, they are not asserted as they depend on the machine.
+     */
+    @Test
+    public void benchmark_jsonReaderVsJsonObject() throws Exception {
+        String feed = syntheticFeed(BENCHMARK_RECIPES);
+
+        // Warm up both parsers and check they agree on the feed they are timed on
+        assertSameRecipes(parse(mJsonObjectParser, feed), parse(mJsonReaderParser, feed));
+
+        long jsonObjectNanos = time(mJsonObjectParser, feed);
+        long jsonReaderNanos = time(mJsonReaderParser, feed);
+
+        System.out.println(String.format(
+                "%d recipes, %d KB: JsonObjectRecipeParser %.1f ms, " +
+                        "JsonReaderRecipeParser %.1f ms",
+                BENCHMARK_RECIPES, feed.length() / 1024,
+                jsonObjectNanos / 1e6 / BENCHMARK_ROUNDS,
+                jsonReaderNanos / 1e6 / BENCHMARK_ROUNDS));
+    }
+
+    /**
+     * parseBoth() parses the feed with both parsers, asserts they agree and returns the
+     * recipes
+     */
+    private List<Recipe> parseBoth(String feed) throws Exception {
+        List<Recipe> expected = parse(mJsonObjectParser, feed);
+        List<Recipe> actual = parse(mJsonReaderParser, feed);
+        assertSameRecipes(expected, actual);
+        return actual;
+    }
+
+    private static List<Recipe> parse(RecipeParser parser, String feed) throws Exception {
+        return parser.parseRecipes(streamOf(feed), null);
+    }
+
+    private static long time(RecipeParser parser, String feed) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ROUNDS; i++) {
+            parse(parser, feed);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * @return a feed of a recipe with a single step
+     */
+    private static String stepFeed(String recipeId, String stepNum) {
+        return "[{\"id\":" + recipeId + ",\"name\":\"n\",\"servings\":1,\"image\":\"\"," +
+                "\"ingredients\":[],\"steps\":[{\"id\":" + stepNum + "," +
+                "\"shortDescription\":\"s\",\"description\":\"d\",\"videoURL\":\"\"," +
+                "\"thumbnailURL\":\"\"}]}]";
+    }
+
+    private static void assertThrowsJSONException(RecipeParser parser, String feed,
+                                                  String messagePart) throws Exception {
+        try {
+            parse(parser, feed);
+            fail(parser.getClass().getSimpleName() + " parsed a bad recipe");
+        } catch (JSONException expected) {
+            // The wording of org.json differs between its builds, only check the gist
+            assertTrue(expected.getMessage(), expected.getMessage().contains(messagePart));
+        }
+    }
+}
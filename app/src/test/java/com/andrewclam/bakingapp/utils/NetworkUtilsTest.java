@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests of {@link NetworkUtils} against a local stand-in of the recipe web service.
+ */
+public class NetworkUtilsTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /* A feed as repetitive as the recipe feed */
+    private static final String FEED;
+
+    static {
+        StringBuilder feed = new StringBuilder("[");
+        for (int i = 0; i < 200; i++) {
+            if (i > 0) feed.append(',');
+            feed.append("{\"quantity\":2,\"measure\":\"CUP\",\"ingredient\":\"Graham Cracker crumbs\"}");
+        }
+        FEED = feed.append(']').toString();
+    }
+
+    /* Single attempt, an error surfaces right away */
+    private static final RetryPolicy NO_RETRY = new RetryPolicy().setMaxAttempts(1);
+
+    /* Three attempts in quick succession */
+    private static final RetryPolicy QUICK_RETRY = new RetryPolicy()
+            .setMaxAttempts(3)
+            .setBackoff(10, 20, 2.0);
+
+    private TestHttpServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new TestHttpServer();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void getResponse_gzip_isDecodedAsStreamed() throws Exception {
+        byte[] body = gzip(FEED.getBytes(UTF_8));
+        mServer.enqueue(new TestHttpServer.Response()
+                .setHeader("Content-Encoding", "gzip")
+                .setBody(body));
+
+        TransferStats stats = new TransferStats();
+        String response = fetch(stats);
+
+        assertEquals(FEED, response);
+        assertTrue(mServer.getRequest(0).getHeader("Accept-Encoding").contains("gzip"));
+        assertEquals("gzip", stats.getContentEncoding());
+        assertEquals(body.length, stats.getCompressedBytes());
+        assertEquals(FEED.length(), stats.getUncompressedBytes());
+        assertTrue(stats.getCompressedBytes() < stats.getUncompressedBytes() / 10);
+    }
+
+    @Test
+    public void getResponse_deflateZlibWrapped_isDecoded() throws Exception {
+        mServer.enqueue(new TestHttpServer.Response()
+                .setHeader("Content-Encoding", "deflate")
+                .setBody(deflate(FEED.getBytes(UTF_8), false)));
+
+        assertEquals(FEED, fetch(null));
+        assertTrue(mServer.getRequest(0).getHeader("Accept-Encoding").contains("deflate"));
+    }
+
+    @Test
+    public void getResponse_deflateRaw_isDecoded() throws Exception {
+        mServer.enqueue(new TestHttpServer.Response()
+                .setHeader("Content-Encoding", "deflate")
+                .setBody(deflate(FEED.getBytes(UTF_8), true)));
+
+        assertEquals(FEED, fetch(null));
+    }
+
+    @Test
+    public void getResponse_identity_isPassedThrough() throws Exception {
+        mServer.enqueue(new TestHttpServer.Response().setBody(FEED));
+
+        TransferStats stats = new TransferStats();
+        String response = fetch(stats);
+
+        assertEquals(FEED, response);
+        assertEquals(FEED.length(), stats.getCompressedBytes());
+        assertEquals(FEED.length(), stats.getUncompressedBytes());
+        assertFalse(stats.isFromCache());
+    }
+
+    @Test
+    public void getResponse_unsupportedEncoding_throwsWithoutRetrying() throws Exception {
+        mServer.enqueue(new TestHttpServer.Response()
+                .setHeader("Content-Encoding", "br")
+                .setBody(FEED));
+
+        TransferStats stats = new TransferStats();
+        try {
+            fetch(stats, QUICK_RETRY);
+            fail("Expected a ResponseParseException");
+        } catch (ResponseParseException e) {
+            assertTrue(e.getMessage().contains("br"));
+        }
+        assertEquals(1, stats.getAttemptDurations().size());
+    }
+
+    @Test
+    public void getResponse_serverErrors_retriedUntilAttemptsRunOut() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mServer.enqueue(new TestHttpServer.Response().setCode(503));
+        }
+
+        TransferStats stats = new TransferStats();
+        try {
+            fetch(stats, QUICK_RETRY);
+            fail("Expected an HttpStatusException");
+        } catch (HttpStatusException e) {
+            assertEquals(503, e.getStatusCode());
+        }
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(3, stats.getAttemptDurations().size());
+    }
+
+    @Test
+    public void getResponse_serverError_retriedThenSucceeds() throws Exception {
+        mServer.enqueue(new TestHttpServer.Response().setCode(500));
+        mServer.enqueue(new TestHttpServer.Response().setBody(FEED));
+
+        assertEquals(FEED, fetch(null, QUICK_RETRY));
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void getResponse_clientError_notRetried() throws Exception {
+        mServer.enqueue(new TestHttpServer.Response().setCode(404));
+        mServer.enqueue(new TestHttpServer.Response().setBody(FEED));
+
+        try {
+            fetch(null, QUICK_RETRY);
+            fail("Expected an HttpStatusException");
+        } catch (HttpStatusException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void getResponse_parseError_notRetried() throws Exception {
+        mServer.enqueue(new TestHttpServer.Response().setBody("{\"not\":\"an array\"}"));
+        mServer.enqueue(new TestHttpServer.Response().setBody(FEED));
+
+        try {
+            NetworkUtils.getResponseFromHttpUrl(mServer.getUrl("/recipes.json"), null, null,
+                    QUICK_RETRY, new NetworkUtils.ResponseHandler<Integer>() {
+                        @Override
+                        public Integer onResponse(InputStream in) throws IOException {
+                            JsonArrayElementReader reader =
+                                    new JsonArrayElementReader(new InputStreamReader(in, UTF_8));
+                            int count = 0;
+                            while (reader.nextElement() != null) count++;
+                            return count;
+                        }
+                    });
+            fail("Expected a ResponseParseException");
+        } catch (ResponseParseException e) {
+            assertEquals(1, mServer.getRequestCount());
+        }
+    }
+
+    @Test
+    public void getResponse_stalledServer_cutOffAtDeadline() throws Exception {
+        // 20 bytes every 100ms, each read is well within the read timeout but the whole body
+        // would take 10s
+        byte[] body = FEED.substring(0, 2000).getBytes(UTF_8);
+        for (int i = 0; i < 3; i++) {
+            mServer.enqueue(new TestHttpServer.Response().setBody(body).setTrickle(20, 100));
+        }
+        RetryPolicy policy = new RetryPolicy()
+                .setReadTimeout(1000)
+                .setMaxAttempts(3)
+                .setBackoff(10, 20, 2.0)
+                .setTotalDeadline(800);
+
+        long startedAt = System.nanoTime();
+        try {
+            fetch(null, policy);
+            fail("Expected a SocketTimeoutException");
+        } catch (SocketTimeoutException e) {
+            long elapsedMillis = (System.nanoTime() - startedAt) / 1000000L;
+            assertTrue("took " + elapsedMillis + "ms", elapsedMillis < 2000);
+        }
+        // The deadline ran out during the first attempt, no time left to retry
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void getResponse_silentServer_cutOffAtDeadline() throws Exception {
+        // One byte, then nothing for longer than the deadline; the read timeout is longer
+        // still, only the watchdog ends the blocked read
+        byte[] body = FEED.substring(0, 2).getBytes(UTF_8);
+        mServer.enqueue(new TestHttpServer.Response().setBody(body).setTrickle(1, 5000));
+        RetryPolicy policy = new RetryPolicy()
+                .setReadTimeout(10000)
+                .setMaxAttempts(1)
+                .setTotalDeadline(500);
+
+        long startedAt = System.nanoTime();
+        try {
+            fetch(null, policy);
+            fail("Expected a SocketTimeoutException");
+        } catch (SocketTimeoutException e) {
+            long elapsedMillis = (System.nanoTime() - startedAt) / 1000000L;
+            assertTrue("took " + elapsedMillis + "ms", elapsedMillis < 2000);
+        }
+    }
+
+    private String fetch(TransferStats stats) throws IOException, JSONException {
+        return fetch(stats, NO_RETRY);
+    }
+
+    private String fetch(TransferStats stats, RetryPolicy retryPolicy)
+            throws IOException, JSONException {
+        return NetworkUtils.getResponseFromHttpUrl(mServer.getUrl("/recipes.json"), null, stats,
+                retryPolicy, new NetworkUtils.ResponseHandler<String>() {
+                    @Override
+                    public String onResponse(InputStream in) throws IOException {
+                        return new String(readFully(in), UTF_8);
+                    }
+                });
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(data);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data, boolean raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeflaterOutputStream deflate = new DeflaterOutputStream(out,
+                new Deflater(Deflater.DEFAULT_COMPRESSION, raw));
+        deflate.write(data);
+        deflate.close();
+        return out.toByteArray();
+    }
+}
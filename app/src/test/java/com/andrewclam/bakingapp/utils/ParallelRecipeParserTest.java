@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import com.andrewclam.bakingapp.models.Recipe;
+
+import org.json.JSONException;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.assertSameRecipes;
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.streamOf;
+import static com.andrewclam.bakingapp.utils.RecipeFeeds.syntheticFeed;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests of {@link ParallelRecipeParser}, which must return the same recipes in the same
+ * order as the sequential {@link JsonObjectRecipeParser}, whatever the number of workers.
+ */
+public class ParallelRecipeParserTest {
+
+    /* Feed sizes and worker counts of the throughput benchmark */
+    private static final int[] BENCHMARK_RECIPES = {1000, 10000, 100000};
+    private static final int[] BENCHMARK_THREADS =
+            {1, 2, 4, Runtime.getRuntime().availableProcessors()};
+
+    /* Charset of the web response */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void parseRecipes_parallel_sameRecipesInFeedOrder() throws Exception {
+        // Not a multiple of the chunk size, so the last chunk is a partial one
+        String feed = syntheticFeed(1000);
+        List<Recipe> expected = new JsonObjectRecipeParser().parseRecipes(streamOf(feed), null);
+
+        for (int threads : new int[]{1, 2, 4}) {
+            ParallelRecipeParser parser =
+                    new ParallelRecipeParser(threads).setSequentialThreshold(0);
+            assertSameRecipes(expected, parser.parseRecipes(streamOf(feed), null));
+        }
+    }
+
+    @Test
+    public void parseRecipes_listener_calledInFeedOrder() throws Exception {
+        final List<Long> parsed = new ArrayList<>();
+        List<Recipe> recipes = new ParallelRecipeParser(4).setSequentialThreshold(10)
+                .parseRecipes(streamOf(syntheticFeed(500)),
+                        new RecipeParser.OnRecipeParsedListener() {
+                            @Override
+                            public void onRecipeParsed(Recipe recipe) {
+                                parsed.add(recipe.getUid());
+                            }
+                        });
+
+        assertEquals(500, recipes.size());
+        assertEquals(500, parsed.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            assertEquals(i + 1, (long) parsed.get(i));
+        }
+    }
+
+    @Test
+    public void parseRecipes_belowThreshold_parsedOnReadingThread() throws Exception {
+        final Thread readingThread = Thread.currentThread();
+        final List<Thread> parsingThreads = new ArrayList<>();
+        new ParallelRecipeParser(4).parseRecipes(streamOf(syntheticFeed(100)),
+                new RecipeParser.OnRecipeParsedListener() {
+                    @Override
+                    public void onRecipeParsed(Recipe recipe) {
+                        parsingThreads.add(Thread.currentThread());
+                    }
+                });
+
+        assertEquals(100, parsingThreads.size());
+        for (Thread thread : parsingThreads) {
+            assertEquals(readingThread, thread);
+        }
+    }
+
+    @Test
+    public void parseRecipes_emptyFeed_noRecipes() throws Exception {
+        assertEquals(0, new ParallelRecipeParser(2).setSequentialThreshold(0)
+                .parseRecipes(streamOf("[]"), null).size());
+    }
+
+    @Test
+    public void parseRecipes_badRecipeOnWorker_throwsJSONException() throws Exception {
+        // The last recipe misses its name, it is parsed by a worker
+        String feed = syntheticFeed(300);
+        feed = feed.substring(0, feed.lastIndexOf("\"name\""))
+                + feed.substring(feed.lastIndexOf(",\"ingredients\"") + 1);
+
+        try {
+            new ParallelRecipeParser(2).setSequentialThreshold(0)
+                    .parseRecipes(streamOf(feed), null);
+            fail("Parsed a recipe with a missing field");
+        } catch (JSONException expected) {
+            // The failure of the worker is reported as it is
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_noThreads_throws() {
+        new ParallelRecipeParser(0);
+    }
+
+    /**
+     * Throughput of the parser at 1k, 10k and 100k recipes with 1, 2, 4 and a worker per
+     * core. The timings are printed, not asserted; the 100k feed takes over 150 MB, so the
+     * benchmark is only run on demand.
+     */
+    @Ignore("Benchmark, run on demand")
+    @Test
+    public void benchmark_throughputByThreads() throws Exception {
+        for (int recipeCount : BENCHMARK_RECIPES) {
+            byte[] feed = syntheticFeed(recipeCount).getBytes(UTF_8);
+
+            for (int threads : BENCHMARK_THREADS) {
+                ParallelRecipeParser parser = new ParallelRecipeParser(threads)
+                        .setSequentialThreshold(threads == 1 ? Integer.MAX_VALUE
+                                : ParallelRecipeParser.DEFAULT_SEQUENTIAL_THRESHOLD);
+
+                // Warm up, then take the best of three runs
+                parser.parseRecipes(new ByteArrayInputStream(feed), null);
+                long bestNanos = Long.MAX_VALUE;
+                for (int run = 0; run < 3; run++) {
+                    long start = System.nanoTime();
+                    parser.parseRecipes(new ByteArrayInputStream(feed), null);
+                    bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+                }
+
+                System.out.println(String.format(
+                        "%6d recipes, %2d threads: %8.1f ms, %8.0f recipes/s",
+                        recipeCount, threads, bestNanos / 1e6, recipeCount / (bestNanos / 1e9)));
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import com.andrewclam.bakingapp.models.Ingredient;
+import com.andrewclam.bakingapp.models.Recipe;
+import com.andrewclam.bakingapp.models.Step;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * RecipeFeeds builds the recipe feeds shared by the parser, codec and sync tests, and
+ * compares the recipes parsed off them field by field.
+ */
+public final class RecipeFeeds {
+
+    /* Charset of the web response */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /* A small feed in the shape of the web response, with the fields in the usual order */
+    public static final String SAMPLE_FEED = "[" +
+            "{\"id\":1,\"name\":\"Nutella Pie\",\"ingredients\":[" +
+            "{\"quantity\":2,\"measure\":\"CUP\",\"ingredient\":\"Graham Cracker crumbs\"}," +
+            "{\"quantity\":0.5,\"measure\":\"TBLSP\",\"ingredient\":\"salt\"}]," +
+            "\"steps\":[" +
+            "{\"id\":0,\"shortDescription\":\"Recipe Introduction\"," +
+            "\"description\":\"Recipe Introduction\"," +
+            "\"videoURL\":\"https://example.com/intro.mp4\",\"thumbnailURL\":\"\"}," +
+            "{\"id\":1,\"shortDescription\":\"Starting prep\"," +
+            "\"description\":\"1. Preheat the oven to 350\\u00b0F.\"," +
+            "\"videoURL\":\"\",\"thumbnailURL\":\"\"}]," +
+            "\"servings\":8,\"image\":\"\"}," +
+            "{\"id\":2,\"name\":\"Brownies\",\"ingredients\":[" +
+            "{\"quantity\":350,\"measure\":\"G\",\"ingredient\":\"Bittersweet chocolate\"}]," +
+            "\"steps\":[],\"servings\":8,\"image\":\"https://example.com/brownies.png\"}" +
+            "]";
+
+    private RecipeFeeds() {
+    }
+
+    /**
+     * syntheticFeed() builds a feed of the given number of recipes, each with a few
+     * ingredients and steps, the recipe ids run from 1
+     */
+    public static String syntheticFeed(int recipeCount) {
+        StringBuilder feed = new StringBuilder(recipeCount * 1024).append('[');
+        for (int r = 1; r <= recipeCount; r++) {
+            if (r > 1) feed.append(',');
+            feed.append("{\"id\":").append(r)
+                    .append(",\"name\":\"Recipe ").append(r).append('"')
+                    .append(",\"ingredients\":[");
+            for (int i = 0; i < 9; i++) {
+                if (i > 0) feed.append(',');
+                feed.append("{\"quantity\":").append(i + 0.5)
+                        .append(",\"measure\":\"").append(i % 2 == 0 ? "CUP" : "TSP")
+                        .append("\",\"ingredient\":\"Ingredient ").append(i).append("\"}");
+            }
+            feed.append("],\"steps\":[");
+            for (int s = 0; s < 7; s++) {
+                if (s > 0) feed.append(',');
+                feed.append("{\"id\":").append(s)
+                        .append(",\"shortDescription\":\"Step ").append(s)
+                        .append("\",\"description\":\"").append(s)
+                        .append(". Mix the ingredients of recipe ").append(r)
+                        .append(" together.\",\"videoURL\":\"https://example.com/")
+                        .append(r).append('/').append(s)
+                        .append(".mp4\",\"thumbnailURL\":\"\"}");
+            }
+            feed.append("],\"servings\":").append(r % 12 + 1)
+                    .append(",\"image\":\"\"}");
+        }
+        return feed.append(']').toString();
+    }
+
+    /**
+     * @return the stream of the UTF-8 bytes of the feed
+     */
+    public static InputStream streamOf(String feed) {
+        return new ByteArrayInputStream(feed.getBytes(UTF_8));
+    }
+
+    /**
+     * assertSameRecipes() asserts the recipes are equal field by field, including the keys
+     * of their ingredients and steps
+     */
+    public static void assertSameRecipes(List<Recipe> expected, List<Recipe> actual) {
+        assertEquals("recipe count", expected.size(), actual.size());
+        for (int r = 0; r < expected.size(); r++) {
+            assertSameRecipe(expected.get(r), actual.get(r));
+        }
+    }
+
+    public static void assertSameRecipe(Recipe expected, Recipe actual) {
+        String at = "recipe " + expected.getUid() + " ";
+        assertEquals(at + "uid", expected.getUid(), actual.getUid());
+        assertEquals(at + "name", expected.getName(), actual.getName());
+        assertEquals(at + "servings", expected.getServings(), actual.getServings());
+        assertEquals(at + "image", expected.getImageURL(), actual.getImageURL());
+
+        assertEquals(at + "ingredient count",
+                expected.getIngredients().size(), actual.getIngredients().size());
+        for (int i = 0; i < expected.getIngredients().size(); i++) {
+            Ingredient e = expected.getIngredients().get(i);
+            Ingredient a = actual.getIngredients().get(i);
+            assertEquals(at + "ingredient uid", e.getUid(), a.getUid());
+            assertEquals(at + "ingredient name", e.getIngredientName(), a.getIngredientName());
+            assertEquals(at + "quantity", e.getQuantity(), a.getQuantity(), 0);
+            assertEquals(at + "measure", e.getMeasure(), a.getMeasure());
+        }
+
+        assertEquals(at + "step count", expected.getSteps().size(), actual.getSteps().size());
+        for (int s = 0; s < expected.getSteps().size(); s++) {
+            Step e = expected.getSteps().get(s);
+            Step a = actual.getSteps().get(s);
+            assertEquals(at + "step uid", e.getUid(), a.getUid());
+            assertEquals(at + "step num", e.getStepNum(), a.getStepNum());
+            assertEquals(at + "short description",
+                    e.getShortDescription(), a.getShortDescription());
+            assertEquals(at + "description", e.getDescription(), a.getDescription());
+            assertEquals(at + "video", e.getVideoURL(), a.getVideoURL());
+            assertEquals(at + "thumbnail", e.getThumbnailURL(), a.getThumbnailURL());
+        }
+    }
+}
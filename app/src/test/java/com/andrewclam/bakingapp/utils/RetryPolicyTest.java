@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of the exponential backoff with jitter of {@link RetryPolicy}.
+ */
+public class RetryPolicyTest {
+
+    private static final int SAMPLES = 1000;
+
+    @Test
+    public void getBackoff_growsExponentially_jitteredWithinUpperHalf() {
+        RetryPolicy policy = new RetryPolicy().setBackoff(100, 100000, 2.0);
+
+        for (int attempt = 1; attempt <= 5; attempt++) {
+            long delay = 100L << (attempt - 1);
+            for (int i = 0; i < SAMPLES; i++) {
+                long backoff = policy.getBackoff(attempt);
+                assertTrue("attempt " + attempt + " backoff " + backoff,
+                        backoff >= delay / 2 && backoff <= delay);
+            }
+        }
+    }
+
+    @Test
+    public void getBackoff_cappedAtMaxBackoff() {
+        RetryPolicy policy = new RetryPolicy().setBackoff(1000, 8000, 2.0);
+
+        for (int i = 0; i < SAMPLES; i++) {
+            long backoff = policy.getBackoff(30);
+            assertTrue("backoff " + backoff, backoff >= 4000 && backoff <= 8000);
+        }
+    }
+
+    @Test
+    public void getBackoff_isJittered() {
+        RetryPolicy policy = new RetryPolicy().setBackoff(1000, 8000, 2.0);
+
+        Set<Long> backoffs = new HashSet<>();
+        for (int i = 0; i < SAMPLES; i++) {
+            backoffs.add(policy.getBackoff(2));
+        }
+        assertTrue(backoffs.size() > SAMPLES / 2);
+    }
+
+    @Test
+    public void getBackoff_noMultiplier_isConstant() {
+        RetryPolicy policy = new RetryPolicy().setBackoff(500, 8000, 1.0);
+
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            long backoff = policy.getBackoff(attempt);
+            assertTrue("backoff " + backoff, backoff >= 250 && backoff <= 500);
+        }
+    }
+
+    @Test
+    public void defaults() {
+        RetryPolicy policy = new RetryPolicy();
+
+        assertEquals(3, policy.getMaxAttempts());
+        assertTrue(policy.getConnectTimeout() > 0);
+        assertTrue(policy.getReadTimeout() > 0);
+        assertTrue(policy.getTotalDeadline() >= policy.getReadTimeout());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setMaxAttempts_belowOne_throws() {
+        new RetryPolicy().setMaxAttempts(0);
+    }
+}
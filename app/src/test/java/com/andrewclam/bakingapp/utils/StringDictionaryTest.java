@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests of {@link StringDictionary}, which hands out a single shared instance of each
+ * repeated string. The strings the parser interns are tested with
+ * {@link JsonReaderRecipeParserTest}.
+ */
+public class StringDictionaryTest {
+
+    @Test
+    public void intern_equalStrings_returnsSameInstance() {
+        String first = new String("Preheat the oven");
+        String second = new String("Preheat the oven");
+
+        assertSame(StringDictionary.intern(first), StringDictionary.intern(second));
+        assertEquals(first, StringDictionary.intern(second));
+    }
+
+    @Test
+    public void intern_null_returnsNull() {
+        assertNull(StringDictionary.intern(null));
+    }
+
+    @Test
+    public void intern_longString_notKept() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; i++) builder.append('x');
+        String first = builder.toString();
+        String second = builder.toString();
+
+        int size = StringDictionary.size();
+        assertSame(first, StringDictionary.intern(first));
+        assertSame(second, StringDictionary.intern(second));
+        assertNotSame(first, second);
+        assertEquals(size, StringDictionary.size());
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.bakingapp.utils;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * TestHttpServer is a local stand-in for the recipe web service, it answers each request with
+ * the next queued {@link Response}, or the one of its {@link Dispatcher} once the queue is
+ * empty, and records the requests it got.
+ */
+
+public class TestHttpServer {
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    /* Responses waiting to be served, in order */
+    private final Queue<Response> mResponses = new ConcurrentLinkedQueue<>();
+
+    /* Requests served so far, in order */
+    private final List<Request> mRequests = Collections.synchronizedList(new ArrayList<Request>());
+
+    /* Answers the requests once no response is queued, null to answer them with a 500 */
+    private volatile Dispatcher mDispatcher;
+
+    public TestHttpServer() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 0);
+        mServer.setExecutor(mExecutor);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        mServer.start();
+    }
+
+    public TestHttpServer enqueue(Response response) {
+        mResponses.add(response);
+        return this;
+    }
+
+    public TestHttpServer setDispatcher(Dispatcher dispatcher) {
+        this.mDispatcher = dispatcher;
+        return this;
+    }
+
+    public URL getUrl(String path) throws IOException {
+        return new URL("http", "127.0.0.1", mServer.getAddress().getPort(), path);
+    }
+
+    public int getRequestCount() {
+        return mRequests.size();
+    }
+
+    public Request getRequest(int index) {
+        return mRequests.get(index);
+    }
+
+    public void shutdown() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        Request request = new Request(exchange.getRequestURI().getRawQuery(),
+                exchange.getRequestHeaders());
+        mRequests.add(request);
+
+        Response response = mResponses.poll();
+        Dispatcher dispatcher = mDispatcher;
+        if (response == null && dispatcher != null) response = dispatcher.dispatch(request);
+        if (response == null) response = new Response().setCode(500);
+
+        try {
+            for (Map.Entry<String, String> header : response.mHeaders.entrySet()) {
+                exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+            }
+
+            if (response.mBody == null) {
+                exchange.sendResponseHeaders(response.mCode, -1);
+                return;
+            }
+
+            // A trickled body is sent chunked, it has no length up front
+            boolean isTrickled = response.mChunkDelayMillis > 0;
+            exchange.sendResponseHeaders(response.mCode,
+                    isTrickled ? 0 : response.mBody.length);
+
+            OutputStream out = exchange.getResponseBody();
+            int chunkSize = isTrickled ? response.mChunkSize : response.mBody.length;
+            for (int offset = 0; offset < response.mBody.length; offset += chunkSize) {
+                out.write(response.mBody, offset,
+                        Math.min(chunkSize, response.mBody.length - offset));
+                out.flush();
+                if (isTrickled) Thread.sleep(response.mChunkDelayMillis);
+            }
+        } catch (IOException | InterruptedException e) {
+            // The client hung up, or the server is shutting down
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Dispatcher answers each request on its own, such as by its headers
+     */
+    public interface Dispatcher {
+        Response dispatch(Request request);
+    }
+
+    /**
+     * A request as received by the server
+     */
+    public static class Request {
+        private final String mQuery;
+        private final Headers mHeaders;
+
+        Request(String query, Headers headers) {
+            mQuery = query;
+            mHeaders = headers;
+        }
+
+        public String getQuery() {
+            return mQuery;
+        }
+
+        public String getHeader(String name) {
+            return mHeaders.getFirst(name);
+        }
+    }
+
+    /**
+     * A response to serve, 200 with no headers and no body by default
+     */
+    public static class Response {
+        private int mCode = 200;
+        private final Map<String, String> mHeaders = new LinkedHashMap<>();
+        private byte[] mBody;
+        private int mChunkSize;
+        private long mChunkDelayMillis;
+
+        public Response setCode(int code) {
+            this.mCode = code;
+            return this;
+        }
+
+        public Response setHeader(String name, String value) {
+            mHeaders.put(name, value);
+            return this;
+        }
+
+        public Response setBody(byte[] body) {
+            this.mBody = body;
+            return this;
+        }
+
+        public Response setBody(String body) {
+            return setBody(body.getBytes(Charset.forName("UTF-8")));
+        }
+
+        /**
+         * setTrickle() sends the body a chunk at a time with a pause after each chunk, as a
+         * stalled server would
+         */
+        public Response setTrickle(int chunkSize, long chunkDelayMillis) {
+            this.mChunkSize = chunkSize;
+            this.mChunkDelayMillis = chunkDelayMillis;
+            return this;
+        }
+    }
+}
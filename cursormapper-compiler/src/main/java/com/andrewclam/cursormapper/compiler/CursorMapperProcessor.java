@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.cursormapper.compiler;
+
+import com.andrewclam.cursormapper.CursorColumn;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * CursorMapperProcessor generates a {@code <Model>CursorMapper} for each class with setters
+ * marked with {@link CursorColumn}. The mapper looks up the index of each column once, when it
+ * is created for a cursor, and reads a new model from the current row of the cursor by calling
+ * the setters directly. A column missing from the cursor is skipped, so the same mapper serves
+ * queries of only some of the columns.
+ */
+
+public class CursorMapperProcessor extends AbstractProcessor {
+
+    /* Suffix of the generated classes */
+    private static final String MAPPER_SUFFIX = "CursorMapper";
+
+    /* Cursor getters of the supported setter parameter types */
+    private static final Map<String, String> GETTERS = new LinkedHashMap<>();
+
+    static {
+        GETTERS.put("long", "getLong");
+        GETTERS.put("int", "getInt");
+        GETTERS.put("short", "getShort");
+        GETTERS.put("double", "getDouble");
+        GETTERS.put("float", "getFloat");
+        GETTERS.put("java.lang.Long", "getLong");
+        GETTERS.put("java.lang.Integer", "getInt");
+        GETTERS.put("java.lang.Short", "getShort");
+        GETTERS.put("java.lang.Double", "getDouble");
+        GETTERS.put("java.lang.Float", "getFloat");
+        GETTERS.put("java.lang.String", "getString");
+        GETTERS.put("byte[]", "getBlob");
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(CursorColumn.class.getCanonicalName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        // Group the setters by their model, in the order they are declared
+        Map<TypeElement, List<ExecutableElement>> settersByModel = new LinkedHashMap<>();
+        for (ExecutableElement setter :
+                ElementFilter.methodsIn(roundEnv.getElementsAnnotatedWith(CursorColumn.class))) {
+            TypeElement model = (TypeElement) setter.getEnclosingElement();
+            List<ExecutableElement> setters = settersByModel.get(model);
+            if (setters == null) {
+                setters = new ArrayList<>();
+                settersByModel.put(model, setters);
+            }
+            setters.add(setter);
+        }
+
+        for (Map.Entry<TypeElement, List<ExecutableElement>> entry : settersByModel.entrySet()) {
+            if (isValidModel(entry.getKey()) && areValidSetters(entry.getValue())) {
+                writeMapper(entry.getKey(), entry.getValue());
+            }
+        }
+        return true;
+    }
+
+    private boolean isValidModel(TypeElement model) {
+        Messager messager = processingEnv.getMessager();
+        if (model.getKind() != ElementKind.CLASS
+                || model.getModifiers().contains(Modifier.ABSTRACT)
+                || !model.getModifiers().contains(Modifier.PUBLIC)
+                || (model.getNestingKind() == NestingKind.MEMBER
+                && !model.getModifiers().contains(Modifier.STATIC))) {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                    "@CursorColumn setters must be in a public, concrete, top-level or static class",
+                    model);
+            return false;
+        }
+
+        for (ExecutableElement constructor :
+                ElementFilter.constructorsIn(model.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()
+                    && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        messager.printMessage(Diagnostic.Kind.ERROR,
+                "A class with @CursorColumn setters must have a public no-args constructor",
+                model);
+        return false;
+    }
+
+    private boolean areValidSetters(List<ExecutableElement> setters) {
+        Messager messager = processingEnv.getMessager();
+        Set<String> fieldNames = new HashSet<>();
+        boolean valid = true;
+
+        for (ExecutableElement setter : setters) {
+            if (!setter.getModifiers().contains(Modifier.PUBLIC)
+                    || setter.getModifiers().contains(Modifier.STATIC)
+                    || setter.getParameters().size() != 1) {
+                messager.printMessage(Diagnostic.Kind.ERROR,
+                        "@CursorColumn must be on a public instance method of one parameter",
+                        setter);
+                valid = false;
+                continue;
+            }
+
+            TypeMirror type = setter.getParameters().get(0).asType();
+            if (type.getKind() != TypeKind.BOOLEAN && !GETTERS.containsKey(typeName(type))) {
+                messager.printMessage(Diagnostic.Kind.ERROR,
+                        "@CursorColumn does not support a parameter of type " + type, setter);
+                valid = false;
+            }
+
+            if (!fieldNames.add(indexFieldName(setter))) {
+                messager.printMessage(Diagnostic.Kind.ERROR,
+                        "@CursorColumn is on more than one method of this name", setter);
+                valid = false;
+            }
+        }
+        return valid;
+    }
+
+    private void writeMapper(TypeElement model, List<ExecutableElement> setters) {
+        PackageElement modelPackage = processingEnv.getElementUtils().getPackageOf(model);
+        String packageName = modelPackage.getQualifiedName().toString();
+        String modelName = model.getQualifiedName().toString();
+        String mapperName = flatName(model, modelPackage) + MAPPER_SUFFIX;
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import android.database.Cursor;\n\n")
+                .append("/**\n")
+                .append(" * Reads a {@link ").append(modelName)
+                .append("} from the current row of a cursor.\n")
+                .append(" * Generated by ").append(getClass().getSimpleName())
+                .append(" from the @CursorColumn setters of the model, do not edit.\n")
+                .append(" */\n")
+                .append("public final class ").append(mapperName).append(" {\n\n")
+                .append("    private final Cursor mCursor;\n");
+
+        for (ExecutableElement setter : setters) {
+            source.append("    private final int ").append(indexFieldName(setter)).append(";\n");
+        }
+
+        // Constructor, the indexes are looked up once per cursor
+        source.append("\n    public ").append(mapperName).append("(Cursor cursor) {\n")
+                .append("        mCursor = cursor;\n");
+        for (ExecutableElement setter : setters) {
+            source.append("        ").append(indexFieldName(setter))
+                    .append(" = cursor.getColumnIndex(")
+                    .append(processingEnv.getElementUtils().getConstantExpression(
+                            setter.getAnnotation(CursorColumn.class).value()))
+                    .append(");\n");
+        }
+        source.append("    }\n\n");
+
+        // read(), the columns missing from the cursor are skipped
+        source.append("    /**\n")
+                .append("     * @return a new model of the current row, the setters of the columns ")
+                .append("missing from the cursor are not called\n")
+                .append("     */\n")
+                .append("    public ").append(modelName).append(" read() {\n")
+                .append("        ").append(modelName).append(" model = new ")
+                .append(modelName).append("();\n");
+        for (ExecutableElement setter : setters) {
+            String index = indexFieldName(setter);
+            source.append("        if (").append(index).append(" != -1) model.")
+                    .append(setter.getSimpleName()).append('(')
+                    .append(readExpression(setter.getParameters().get(0).asType(), index))
+                    .append(");\n");
+        }
+        source.append("        return model;\n")
+                .append("    }\n")
+                .append("}\n");
+
+        String qualifiedMapperName = packageName.isEmpty()
+                ? mapperName
+                : packageName + "." + mapperName;
+        Writer writer = null;
+        try {
+            writer = processingEnv.getFiler().createSourceFile(qualifiedMapperName, model)
+                    .openWriter();
+            writer.write(source.toString());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write " + qualifiedMapperName + ": " + e.getMessage(), model);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                    // Already reported when writing
+                }
+            }
+        }
+    }
+
+    /**
+     * readExpression() builds the expression reading the column of the index as the type
+     */
+    private static String readExpression(TypeMirror type, String index) {
+        if (type.getKind() == TypeKind.BOOLEAN) {
+            return "mCursor.getInt(" + index + ") != 0";
+        }
+
+        String name = typeName(type);
+        String read = "mCursor." + GETTERS.get(name) + "(" + index + ")";
+        if (type.getKind() == TypeKind.DECLARED && !name.equals("java.lang.String")) {
+            // A boxed number is null for a null column instead of 0
+            return "mCursor.isNull(" + index + ") ? null : " + name + ".valueOf(" + read + ")";
+        }
+        return read;
+    }
+
+    private static String typeName(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            return typeName(((ArrayType) type).getComponentType()) + "[]";
+        }
+        if (type.getKind() == TypeKind.DECLARED) {
+            return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+        }
+        return type.toString();
+    }
+
+    /**
+     * indexFieldName() names the field of the index of a setter, mUidIndex for setUid()
+     */
+    private static String indexFieldName(ExecutableElement setter) {
+        String name = setter.getSimpleName().toString();
+        if (name.length() > 3 && name.startsWith("set")) {
+            name = name.substring(3);
+        }
+        return "m" + Character.toUpperCase(name.charAt(0)) + name.substring(1) + "Index";
+    }
+
+    /**
+     * flatName() names a nested class by its enclosing classes, Outer_Inner for Outer.Inner
+     */
+    private static String flatName(TypeElement model, PackageElement modelPackage) {
+        String qualifiedName = model.getQualifiedName().toString();
+        String packageName = modelPackage.getQualifiedName().toString();
+        String name = packageName.isEmpty()
+                ? qualifiedName
+                : qualifiedName.substring(packageName.length() + 1);
+        return name.replace('.', '_');
+    }
+}
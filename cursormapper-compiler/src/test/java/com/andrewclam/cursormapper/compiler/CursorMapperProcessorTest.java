@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2017 Andrew Chi Heng Lam
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.andrewclam.cursormapper.compiler;
+
+import com.andrewclam.cursormapper.CursorColumn;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests of {@link CursorMapperProcessor}: models are compiled with the processor by the
+ * system Java compiler, against a minimal android.database.Cursor, and the generated mappers
+ * are loaded and run against cursors of a single row.
+ */
+public class CursorMapperProcessorTest {
+
+    /* The subset of android.database.Cursor the generated mappers use */
+    private static final String CURSOR_SOURCE = "package android.database;\n"
+            + "public interface Cursor {\n"
+            + "    int getColumnIndex(String columnName);\n"
+            + "    boolean isNull(int columnIndex);\n"
+            + "    long getLong(int columnIndex);\n"
+            + "    int getInt(int columnIndex);\n"
+            + "    short getShort(int columnIndex);\n"
+            + "    double getDouble(int columnIndex);\n"
+            + "    float getFloat(int columnIndex);\n"
+            + "    String getString(int columnIndex);\n"
+            + "    byte[] getBlob(int columnIndex);\n"
+            + "}\n";
+
+    /* A model of each supported type */
+    private static final String PIE_SOURCE = "package test;\n"
+            + "import com.andrewclam.cursormapper.CursorColumn;\n"
+            + "public class Pie {\n"
+            + "    public long uid; public int servings; public short slices;\n"
+            + "    public double weight; public float ratio; public boolean favorite;\n"
+            + "    public String name; public byte[] image; public Long hash = 7L;\n"
+            + "    @CursorColumn(\"uid\") public void setUid(long v) { uid = v; }\n"
+            + "    @CursorColumn(\"servings\") public void setServings(int v) { servings = v; }\n"
+            + "    @CursorColumn(\"slices\") public void setSlices(short v) { slices = v; }\n"
+            + "    @CursorColumn(\"weight\") public void setWeight(double v) { weight = v; }\n"
+            + "    @CursorColumn(\"ratio\") public void setRatio(float v) { ratio = v; }\n"
+            + "    @CursorColumn(\"is_favorite\") public void setFavorite(boolean v) { favorite = v; }\n"
+            + "    @CursorColumn(\"name\") public void setName(String v) { name = v; }\n"
+            + "    @CursorColumn(\"image\") public void setImage(byte[] v) { image = v; }\n"
+            + "    @CursorColumn(\"hash\") public void setHash(Long v) { hash = v; }\n"
+            + "}\n";
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void process_model_generatesMapperNextToIt() throws Exception {
+        Compilation compilation = compile("test.Pie", PIE_SOURCE);
+
+        assertTrue(compilation.errors(), compilation.success);
+        assertTrue(new File(compilation.generatedDir, "test/PieCursorMapper.java").isFile());
+    }
+
+    @Test
+    public void read_allColumns_callsEachSetter() throws Exception {
+        Compilation compilation = compile("test.Pie", PIE_SOURCE);
+        Map<String, Object> row = new HashMap<>();
+        row.put("uid", 42L);
+        row.put("servings", 8);
+        row.put("slices", (short) 6);
+        row.put("weight", 1.5);
+        row.put("ratio", 0.25f);
+        row.put("is_favorite", 1);
+        row.put("name", "Nutella Pie");
+        row.put("image", new byte[]{1, 2});
+        row.put("hash", -3L);
+
+        Object pie = compilation.newMapper("test.PieCursorMapper", cursor(row)).read();
+
+        assertEquals(42L, field(pie, "uid"));
+        assertEquals(8, field(pie, "servings"));
+        assertEquals((short) 6, field(pie, "slices"));
+        assertEquals(1.5, field(pie, "weight"));
+        assertEquals(0.25f, field(pie, "ratio"));
+        assertEquals(true, field(pie, "favorite"));
+        assertEquals("Nutella Pie", field(pie, "name"));
+        assertArrayEquals(new byte[]{1, 2}, (byte[]) field(pie, "image"));
+        assertEquals(-3L, field(pie, "hash"));
+    }
+
+    @Test
+    public void read_missingColumns_settersNotCalled() throws Exception {
+        Compilation compilation = compile("test.Pie", PIE_SOURCE);
+        Map<String, Object> row = new HashMap<>();
+        row.put("name", "Nutella Pie");
+
+        Object pie = compilation.newMapper("test.PieCursorMapper", cursor(row)).read();
+
+        assertEquals("Nutella Pie", field(pie, "name"));
+        assertEquals(0L, field(pie, "uid"));
+        assertEquals(false, field(pie, "favorite"));
+        assertEquals(7L, field(pie, "hash"));
+    }
+
+    @Test
+    public void read_nullColumnOfBoxedNumber_setsNull() throws Exception {
+        Compilation compilation = compile("test.Pie", PIE_SOURCE);
+        Map<String, Object> row = new HashMap<>();
+        row.put("hash", null);
+
+        Object pie = compilation.newMapper("test.PieCursorMapper", cursor(row)).read();
+
+        assertNull(field(pie, "hash"));
+    }
+
+    @Test
+    public void read_manyRows_looksUpColumnIndexesOnce() throws Exception {
+        Compilation compilation = compile("test.Pie", PIE_SOURCE);
+        Map<String, Object> row = new HashMap<>();
+        row.put("uid", 1L);
+        List<String> lookups = new ArrayList<>();
+
+        Mapper mapper = compilation.newMapper("test.PieCursorMapper", cursor(row, lookups));
+        for (int i = 0; i < 10; i++) mapper.read();
+
+        assertEquals(Arrays.asList("uid", "servings", "slices", "weight", "ratio",
+                "is_favorite", "name", "image", "hash"), lookups);
+    }
+
+    @Test
+    public void process_staticNestedModel_namedByEnclosingClass() throws Exception {
+        Compilation compilation = compile("test.Recipes", "package test;\n"
+                + "import com.andrewclam.cursormapper.CursorColumn;\n"
+                + "public class Recipes {\n"
+                + "    public static class Step {\n"
+                + "        public String text;\n"
+                + "        @CursorColumn(\"text\") public void setText(String v) { text = v; }\n"
+                + "    }\n"
+                + "}\n");
+
+        assertTrue(compilation.errors(), compilation.success);
+        Map<String, Object> row = new HashMap<>();
+        row.put("text", "Mix");
+        Object step = compilation.newMapper("test.Recipes_StepCursorMapper", cursor(row)).read();
+        assertEquals("Mix", field(step, "text"));
+    }
+
+    @Test
+    public void process_unsupportedType_fails() throws Exception {
+        assertFails("does not support a parameter of type",
+                "@CursorColumn(\"c\") public void setC(char v) { }");
+    }
+
+    @Test
+    public void process_privateSetter_fails() throws Exception {
+        assertFails("must be on a public instance method of one parameter",
+                "@CursorColumn(\"c\") private void setC(String v) { }");
+    }
+
+    @Test
+    public void process_setterOfTwoParameters_fails() throws Exception {
+        assertFails("must be on a public instance method of one parameter",
+                "@CursorColumn(\"c\") public void setC(String v, String w) { }");
+    }
+
+    @Test
+    public void process_overloadedSetters_fails() throws Exception {
+        assertFails("is on more than one method of this name",
+                "@CursorColumn(\"a\") public void setC(String v) { }\n"
+                        + "@CursorColumn(\"b\") public void setC(long v) { }");
+    }
+
+    @Test
+    public void process_noNoArgsConstructor_fails() throws Exception {
+        assertFails("must have a public no-args constructor",
+                "public Model(String v) { }\n"
+                        + "@CursorColumn(\"c\") public void setC(String v) { }");
+    }
+
+    @Test
+    public void process_innerClass_fails() throws Exception {
+        Compilation compilation = compile("test.Outer", "package test;\n"
+                + "import com.andrewclam.cursormapper.CursorColumn;\n"
+                + "public class Outer {\n"
+                + "    public class Inner {\n"
+                + "        @CursorColumn(\"c\") public void setC(String v) { }\n"
+                + "    }\n"
+                + "}\n");
+
+        assertFalse(compilation.success);
+        assertTrue(compilation.errors(), compilation.errors().contains(
+                "must be in a public, concrete, top-level or static class"));
+    }
+
+    /**
+     * assertFails() compiles a model of the given members and asserts it fails with the
+     * message
+     */
+    private void assertFails(String message, String members) throws Exception {
+        Compilation compilation = compile("test.Model", "package test;\n"
+                + "import com.andrewclam.cursormapper.CursorColumn;\n"
+                + "public class Model {\n" + members + "\n}\n");
+
+        assertFalse(compilation.success);
+        assertTrue(compilation.errors(), compilation.errors().contains(message));
+        assertFalse(new File(compilation.generatedDir, "test/ModelCursorMapper.java").exists());
+    }
+
+    /**
+     * compile() compiles the model with the processor, along with the Cursor interface
+     */
+    private Compilation compile(String modelName, String modelSource) throws Exception {
+        File sourceDir = mFolder.newFolder();
+        File generatedDir = mFolder.newFolder();
+        File classesDir = mFolder.newFolder();
+        List<File> sources = Arrays.asList(
+                write(sourceDir, "android.database.Cursor", CURSOR_SOURCE),
+                write(sourceDir, modelName, modelSource));
+
+        // The annotation is on the classpath of the models, as in an app module
+        File annotationsPath = new File(CursorColumn.class.getProtectionDomain()
+                .getCodeSource().getLocation().toURI());
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager fileManager =
+                compiler.getStandardFileManager(diagnostics, Locale.ROOT, null);
+        try {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                    Arrays.asList(
+                            "-classpath", annotationsPath.getPath(),
+                            "-d", classesDir.getPath(),
+                            "-s", generatedDir.getPath()),
+                    null, fileManager.getJavaFileObjectsFromFiles(sources));
+            task.setProcessors(Collections.singletonList(new CursorMapperProcessor()));
+
+            return new Compilation(task.call(), diagnostics.getDiagnostics(), generatedDir,
+                    classesDir);
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    private static File write(File sourceDir, String className, String source)
+            throws IOException {
+        File file = new File(sourceDir, className.replace('.', '/') + ".java");
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(source);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    /**
+     * cursor() returns a cursor of the row, columns missing from the row have no index
+     */
+    private static InvocationHandler cursor(Map<String, Object> row) {
+        return cursor(row, new ArrayList<String>());
+    }
+
+    /**
+     * @param lookups the columns looked up by name, in order
+     */
+    private static InvocationHandler cursor(final Map<String, Object> row,
+                                            final List<String> lookups) {
+        final List<String> columns = new ArrayList<>(row.keySet());
+        return new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getColumnIndex")) {
+                    lookups.add((String) args[0]);
+                    return columns.indexOf(args[0]);
+                }
+
+                Object value = row.get(columns.get((Integer) args[0]));
+                if (method.getName().equals("isNull")) return value == null;
+                return value;
+            }
+        };
+    }
+
+    private static Object field(Object model, String name) throws Exception {
+        return model.getClass().getField(name).get(model);
+    }
+
+    /**
+     * Mapper calls read() of a generated mapper
+     */
+    private static class Mapper {
+        private final Object mMapper;
+
+        Mapper(Object mapper) {
+            mMapper = mapper;
+        }
+
+        Object read() throws Exception {
+            return mMapper.getClass().getMethod("read").invoke(mMapper);
+        }
+    }
+
+    /**
+     * Compilation holds the outcome of a compilation, and loads the classes it compiled
+     */
+    private static class Compilation {
+        final boolean success;
+        final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+        final File generatedDir;
+        final ClassLoader classLoader;
+
+        Compilation(boolean success, List<Diagnostic<? extends JavaFileObject>> diagnostics,
+                    File generatedDir, File classesDir) throws IOException {
+            this.success = success;
+            this.diagnostics = diagnostics;
+            this.generatedDir = generatedDir;
+            this.classLoader = new URLClassLoader(new URL[]{classesDir.toURI().toURL()},
+                    CursorMapperProcessorTest.class.getClassLoader());
+        }
+
+        String errors() {
+            StringBuilder errors = new StringBuilder();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    errors.append(diagnostic.getMessage(Locale.ROOT)).append('\n');
+                }
+            }
+            return errors.toString();
+        }
+
+        /**
+         * newMapper() creates the mapper for a cursor calling the handler
+         */
+        Mapper newMapper(String mapperName, InvocationHandler cursorHandler) throws Exception {
+            assertTrue(errors(), success);
+            Class<?> cursorClass = classLoader.loadClass("android.database.Cursor");
+            Object cursor = Proxy.newProxyInstance(classLoader, new Class<?>[]{cursorClass},
+                    cursorHandler);
+            return new Mapper(classLoader.loadClass(mapperName)
+                    .getConstructor(cursorClass).newInstance(cursor));
+        }
+    }
+}